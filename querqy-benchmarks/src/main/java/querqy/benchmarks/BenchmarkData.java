@@ -0,0 +1,155 @@
+package querqy.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * <p>Creates synthetic rules and queries for the benchmarks. The data only depends on the seed and the requested
+ * sizes, so that all runs of a benchmark work on exactly the same data.</p>
+ *
+ * <p>A share of the query words is taken from the rule inputs so that a realistic number of rules match. The
+ * remaining words come from a separate vocabulary that is never used in rule inputs.</p>
+ */
+public final class BenchmarkData {
+
+    public static final long DEFAULT_SEED = 4711L;
+
+    /**
+     * The share of query words that are taken from the rule inputs.
+     */
+    public static final double MATCHING_WORD_RATIO = 0.5;
+
+    private static final char[] LETTERS = "abcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    private final long seed;
+    private final List<String> inputWords;
+    private final List<String> otherWords;
+
+    /**
+     * @param numInputWords The number of distinct words in rule inputs
+     * @param numOtherWords The number of distinct words that only occur in queries
+     * @param seed The seed for all random decisions
+     */
+    public BenchmarkData(final int numInputWords, final int numOtherWords, final long seed) {
+        this.seed = seed;
+        final List<String> words = createWords(numInputWords + numOtherWords, new Random(seed));
+        inputWords = Collections.unmodifiableList(words.subList(0, numInputWords));
+        otherWords = Collections.unmodifiableList(words.subList(numInputWords, words.size()));
+    }
+
+    /**
+     * Creates data with a vocabulary that grows with the number of rules.
+     *
+     * @param numRules The number of rules that will be created
+     * @return The benchmark data
+     */
+    public static BenchmarkData forRules(final int numRules) {
+        final int numInputWords = Math.max(100, numRules / 2);
+        return new BenchmarkData(numInputWords, Math.max(100, numInputWords / 10), DEFAULT_SEED);
+    }
+
+    /**
+     * <p>Create rules in the common rules format. Rule inputs have one to three words. Each rule has a synonym and
+     * one more instruction, about a fifth of the rules have properties that can be used for rule selection.</p>
+     *
+     * @param numRules The number of rules
+     * @return The rules
+     */
+    public String createRules(final int numRules) {
+
+        final Random random = new Random(seed + 1);
+        final StringBuilder sb = new StringBuilder(numRules * 48);
+
+        for (int i = 0; i < numRules; i++) {
+
+            final int numWords = 1 + random.nextInt(3);
+            for (int w = 0; w < numWords; w++) {
+                if (w > 0) {
+                    sb.append(' ');
+                }
+                sb.append(inputWords.get(random.nextInt(inputWords.size())));
+            }
+            sb.append(" =>\n");
+
+            sb.append("  SYNONYM: ").append(inputWords.get(random.nextInt(inputWords.size()))).append('\n');
+
+            switch (random.nextInt(4)) {
+                case 0:
+                    sb.append("  UP(").append(10 + random.nextInt(90)).append("): ")
+                            .append(otherWords.get(random.nextInt(otherWords.size()))).append('\n');
+                    break;
+                case 1:
+                    sb.append("  DOWN(").append(10 + random.nextInt(90)).append("): ")
+                            .append(otherWords.get(random.nextInt(otherWords.size()))).append('\n');
+                    break;
+                case 2:
+                    sb.append("  FILTER: ").append(otherWords.get(random.nextInt(otherWords.size()))).append('\n');
+                    break;
+                default:
+                    sb.append("  DECORATE: deco").append(i).append('\n');
+            }
+
+            if (random.nextInt(5) == 0) {
+                sb.append("  @\"_id\":\"rule").append(i).append("\"\n");
+                sb.append("  @\"group\":\"g").append(random.nextInt(10)).append("\"\n");
+                sb.append("  @\"priority\":").append(random.nextInt(10)).append('\n');
+            }
+
+            sb.append('\n');
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Create queries with one to five words.
+     *
+     * @param numQueries The number of queries
+     * @return The queries
+     */
+    public List<String> createQueries(final int numQueries) {
+
+        final Random random = new Random(seed + 2);
+        final List<String> queries = new ArrayList<>(numQueries);
+
+        for (int i = 0; i < numQueries; i++) {
+            final StringBuilder sb = new StringBuilder();
+            final int numWords = 1 + random.nextInt(5);
+            for (int w = 0; w < numWords; w++) {
+                if (w > 0) {
+                    sb.append(' ');
+                }
+                final List<String> words = random.nextDouble() < MATCHING_WORD_RATIO ? inputWords : otherWords;
+                sb.append(words.get(random.nextInt(words.size())));
+            }
+            queries.add(sb.toString());
+        }
+
+        return queries;
+    }
+
+    public List<String> getInputWords() {
+        return inputWords;
+    }
+
+    public List<String> getOtherWords() {
+        return otherWords;
+    }
+
+    private static List<String> createWords(final int numWords, final Random random) {
+        final Set<String> words = new LinkedHashSet<>(numWords * 2);
+        final char[] buffer = new char[10];
+        while (words.size() < numWords) {
+            final int length = 3 + random.nextInt(buffer.length - 3);
+            for (int i = 0; i < length; i++) {
+                buffer[i] = LETTERS[random.nextInt(LETTERS.length)];
+            }
+            words.add(new String(buffer, 0, length));
+        }
+        return new ArrayList<>(words);
+    }
+}
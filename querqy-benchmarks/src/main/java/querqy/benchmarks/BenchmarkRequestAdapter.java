@@ -0,0 +1,73 @@
+package querqy.benchmarks;
+
+import querqy.infologging.InfoLoggingContext;
+import querqy.rewrite.RewriteChain;
+import querqy.rewrite.SearchEngineRequestAdapter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A {@link SearchEngineRequestAdapter} without request parameters, debug or info logging. Create a new instance per
+ * query as it holds the request context.
+ */
+public class BenchmarkRequestAdapter implements SearchEngineRequestAdapter {
+
+    private final RewriteChain rewriteChain;
+    private final Map<String, Object> context = new HashMap<>();
+
+    public BenchmarkRequestAdapter(final RewriteChain rewriteChain) {
+        this.rewriteChain = rewriteChain;
+    }
+
+    @Override
+    public RewriteChain getRewriteChain() {
+        return rewriteChain;
+    }
+
+    @Override
+    public Map<String, Object> getContext() {
+        return context;
+    }
+
+    @Override
+    public Optional<String> getRequestParam(final String name) {
+        return Optional.empty();
+    }
+
+    @Override
+    public String[] getRequestParams(final String name) {
+        return new String[0];
+    }
+
+    @Override
+    public Optional<Boolean> getBooleanRequestParam(final String name) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Integer> getIntegerRequestParam(final String name) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Float> getFloatRequestParam(final String name) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Double> getDoubleRequestParam(final String name) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<InfoLoggingContext> getInfoLoggingContext() {
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean isDebugQuery() {
+        return false;
+    }
+}
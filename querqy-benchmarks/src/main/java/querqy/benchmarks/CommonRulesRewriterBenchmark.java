@@ -0,0 +1,86 @@
+package querqy.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import querqy.model.ExpandedQuery;
+import querqy.parser.WhiteSpaceQuerqyParser;
+import querqy.rewrite.ContextAwareQueryRewriter;
+import querqy.rewrite.QueryRewriter;
+import querqy.rewrite.RewriteChain;
+import querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory;
+import querqy.rewrite.commonrules.WhiteSpaceQuerqyParserFactory;
+import querqy.rewrite.commonrules.model.RulesIndexType;
+import querqy.rewrite.commonrules.select.ExpressionCriteriaSelectionStrategyFactory;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rewrites a single query per invocation using the rewriter of a {@link SimpleCommonRulesRewriterFactory}, including
+ * the creation of the rewriter, which is done per request in the search engine integrations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class CommonRulesRewriterBenchmark {
+
+    static final int NUM_QUERIES = 1024;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int numRules;
+
+    @Param({"CHAR_TRIE", "TOKEN_ID"})
+    public RulesIndexType indexType;
+
+    private SimpleCommonRulesRewriterFactory factory;
+    private RewriteChain rewriteChain;
+    private String[] queries;
+
+    @Setup
+    public void setUp() throws Exception {
+        final BenchmarkData data = BenchmarkData.forRules(numRules);
+        factory = createFactory(data, numRules, indexType);
+        rewriteChain = new RewriteChain(Collections.singletonList(factory));
+        queries = data.createQueries(NUM_QUERIES).toArray(new String[0]);
+    }
+
+    @Benchmark
+    public ExpandedQuery rewrite(final QueryCursor cursor) {
+        final ExpandedQuery query = new ExpandedQuery(
+                new WhiteSpaceQuerqyParser().parse(queries[cursor.next(NUM_QUERIES)]));
+        final BenchmarkRequestAdapter requestAdapter = new BenchmarkRequestAdapter(rewriteChain);
+        final QueryRewriter rewriter = factory.createRewriter(query, requestAdapter);
+        return rewriter instanceof ContextAwareQueryRewriter
+                ? ((ContextAwareQueryRewriter) rewriter).rewrite(query, requestAdapter)
+                : rewriter.rewrite(query);
+    }
+
+    static SimpleCommonRulesRewriterFactory createFactory(final BenchmarkData data, final int numRules)
+            throws Exception {
+        return createFactory(data, numRules, RulesIndexType.CHAR_TRIE);
+    }
+
+    static SimpleCommonRulesRewriterFactory createFactory(final BenchmarkData data, final int numRules,
+                                                          final RulesIndexType indexType) throws Exception {
+        return SimpleCommonRulesRewriterFactory.builder("common_rules", new StringReader(data.createRules(numRules)),
+                new WhiteSpaceQuerqyParserFactory())
+                .setDefaultSelectionStrategyFactory(new ExpressionCriteriaSelectionStrategyFactory())
+                .setBuildTermCache(false)
+                .setIndexType(indexType)
+                .build();
+    }
+
+}
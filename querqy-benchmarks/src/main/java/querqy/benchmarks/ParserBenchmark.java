@@ -0,0 +1,45 @@
+package querqy.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import querqy.model.Query;
+import querqy.parser.WhiteSpaceQuerqyParser;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses query strings of one to five words with the {@link WhiteSpaceQuerqyParser}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    static final int NUM_QUERIES = 1024;
+
+    private final WhiteSpaceQuerqyParser parser = new WhiteSpaceQuerqyParser();
+    private String[] queries;
+
+    @Setup
+    public void setUp() {
+        queries = new BenchmarkData(10000, 10000, BenchmarkData.DEFAULT_SEED).createQueries(NUM_QUERIES)
+                .toArray(new String[0]);
+    }
+
+    @Benchmark
+    public Query parse(final QueryCursor cursor) {
+        return parser.parse(queries[cursor.next(NUM_QUERIES)]);
+    }
+
+}
@@ -0,0 +1,20 @@
+package querqy.benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cycles through the indexes of the benchmark queries, one cursor per thread.
+ */
+@State(Scope.Thread)
+public class QueryCursor {
+
+    private int next = 0;
+
+    public int next(final int numQueries) {
+        final int current = next;
+        next = current + 1 == numQueries ? 0 : current + 1;
+        return current;
+    }
+
+}
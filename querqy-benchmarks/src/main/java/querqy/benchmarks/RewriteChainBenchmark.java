@@ -0,0 +1,64 @@
+package querqy.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import querqy.model.ExpandedQuery;
+import querqy.parser.WhiteSpaceQuerqyParser;
+import querqy.rewrite.RewriteChain;
+import querqy.rewrite.RewriterFactory;
+import querqy.rewrite.contrib.ShingleRewriterFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses and rewrites a single query per invocation using a {@link RewriteChain} of a common rules rewriter followed
+ * by a shingle rewriter. The chain is run with and without a result cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class RewriteChainBenchmark {
+
+    static final int NUM_QUERIES = 1024;
+
+    @Param({"10000", "100000"})
+    public int numRules;
+
+    @Param({"0", "10000"})
+    public int resultCacheSize;
+
+    private RewriteChain rewriteChain;
+    private String[] queries;
+
+    @Setup
+    public void setUp() throws Exception {
+        final BenchmarkData data = BenchmarkData.forRules(numRules);
+        final List<RewriterFactory> factories = Arrays.asList(
+                CommonRulesRewriterBenchmark.createFactory(data, numRules),
+                new ShingleRewriterFactory("shingles"));
+        rewriteChain = new RewriteChain(factories, resultCacheSize);
+        queries = data.createQueries(NUM_QUERIES).toArray(new String[0]);
+    }
+
+    @Benchmark
+    public ExpandedQuery rewrite(final QueryCursor cursor) {
+        final ExpandedQuery query = new ExpandedQuery(
+                new WhiteSpaceQuerqyParser().parse(queries[cursor.next(NUM_QUERIES)]));
+        return rewriteChain.rewrite(query, new BenchmarkRequestAdapter(rewriteChain));
+    }
+
+}
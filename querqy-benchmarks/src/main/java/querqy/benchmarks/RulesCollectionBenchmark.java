@@ -0,0 +1,89 @@
+package querqy.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.InputSequenceElement;
+import querqy.model.Query;
+import querqy.model.Term;
+import querqy.parser.WhiteSpaceQuerqyParser;
+import querqy.rewrite.commonrules.SimpleCommonRulesParser;
+import querqy.rewrite.commonrules.WhiteSpaceQuerqyParserFactory;
+import querqy.rewrite.commonrules.model.PositionSequence;
+import querqy.rewrite.commonrules.model.RulesCollection;
+import querqy.rewrite.commonrules.select.SelectionStrategyFactory;
+import querqy.rewrite.commonrules.select.TopRewritingActionCollector;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up the rules for pre-built input sequences in a {@link RulesCollection}, isolating the trie matching from
+ * query parsing and from applying the instructions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class RulesCollectionBenchmark {
+
+    static final int NUM_QUERIES = 256;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int numRules;
+
+    private RulesCollection rules;
+    private List<PositionSequence<InputSequenceElement>> sequences;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        final BenchmarkData data = BenchmarkData.forRules(numRules);
+
+        rules = new SimpleCommonRulesParser(new StringReader(data.createRules(numRules)),
+                new WhiteSpaceQuerqyParserFactory(), true).parse();
+
+        sequences = new ArrayList<>(NUM_QUERIES);
+        for (final String query : data.createQueries(NUM_QUERIES)) {
+            sequences.add(toSequence(new WhiteSpaceQuerqyParser().parse(query)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_QUERIES)
+    public void collectRewriteActions(final Blackhole blackhole) {
+        for (final PositionSequence<InputSequenceElement> sequence : sequences) {
+            final TopRewritingActionCollector collector = SelectionStrategyFactory.DEFAULT_SELECTION_STRATEGY
+                    .createTopRewritingActionCollector();
+            rules.collectRewriteActions(sequence, collector);
+            blackhole.consume(collector.createActions());
+        }
+    }
+
+    static PositionSequence<InputSequenceElement> toSequence(final Query query) {
+        final PositionSequence<InputSequenceElement> sequence = new PositionSequence<>();
+        for (final DisjunctionMaxQuery dmq : query.getClauses(DisjunctionMaxQuery.class)) {
+            sequence.nextPosition();
+            for (final Term term : dmq.getTerms()) {
+                sequence.addElement(term);
+            }
+        }
+        return sequence;
+    }
+
+}
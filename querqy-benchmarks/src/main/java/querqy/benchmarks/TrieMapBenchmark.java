@@ -0,0 +1,119 @@
+package querqy.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import querqy.trie.FrozenTrieMap;
+import querqy.trie.MatchCallback;
+import querqy.trie.TrieCursor;
+import querqy.trie.TrieMap;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups of single words in a {@link TrieMap}, in the {@link FrozenTrieMap} that was created from it and using a
+ * {@link TrieCursor}. Half of the looked up words are in the trie.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrieMapBenchmark {
+
+    static final int NUM_LOOKUPS = 1024;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private TrieMap<String> trieMap;
+    private FrozenTrieMap<String> frozenTrieMap;
+    private String[] lookups;
+
+    @Setup
+    public void setUp() {
+
+        final BenchmarkData data = new BenchmarkData(size, size, BenchmarkData.DEFAULT_SEED);
+
+        trieMap = new TrieMap<>();
+        for (final String word : data.getInputWords()) {
+            trieMap.put(word, word);
+        }
+        frozenTrieMap = trieMap.freeze();
+
+        final List<String> queries = data.createQueries(NUM_LOOKUPS);
+        lookups = new String[NUM_LOOKUPS];
+        for (int i = 0; i < NUM_LOOKUPS; i++) {
+            final String query = queries.get(i);
+            final int space = query.indexOf(' ');
+            lookups[i] = space < 0 ? query : query.substring(0, space);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_LOOKUPS)
+    public void trieMapGet(final Blackhole blackhole) {
+        for (final String lookup : lookups) {
+            blackhole.consume(trieMap.get(lookup));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_LOOKUPS)
+    public void frozenTrieMapGet(final Blackhole blackhole) {
+        for (final String lookup : lookups) {
+            blackhole.consume(frozenTrieMap.get(lookup));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_LOOKUPS)
+    public void trieCursor(final CursorState state, final Blackhole blackhole) {
+        final TrieCursor<String> cursor = state.cursor;
+        for (final String lookup : lookups) {
+            cursor.start(FrozenTrieMap.ROOT);
+            cursor.step(lookup);
+            blackhole.consume(cursor.finish(state));
+        }
+        blackhole.consume(state.matches);
+    }
+
+    /**
+     * Holds the per-thread cursor. Counting the matches keeps the callback from being optimized away without
+     * creating garbage.
+     */
+    @State(Scope.Thread)
+    public static class CursorState implements MatchCallback<String> {
+
+        TrieCursor<String> cursor;
+        int matches = 0;
+
+        @Setup
+        public void setUp(final TrieMapBenchmark benchmark) {
+            cursor = benchmark.frozenTrieMap.cursor();
+        }
+
+        @Override
+        public void onCompleteMatch(final String value, final int node) {
+            matches++;
+        }
+
+        @Override
+        public void onPrefixMatch(final String value, final int node, final int index) {
+            matches++;
+        }
+    }
+
+}
@@ -0,0 +1,223 @@
+package querqy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * <p>A size-bounded, thread-safe cache that evicts the least recently used entries.</p>
+ *
+ * <p>The cache is split into segments by the hash code of the key. Each segment is an access-ordered
+ * {@link LinkedHashMap} that is guarded by its own lock, so that threads only compete for a lock if they access keys
+ * of the same segment. The LRU order is maintained per segment, which makes the eviction order approximate.</p>
+ *
+ * <p>Hits, misses and evictions are counted without locking.</p>
+ *
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class ConcurrentLRUCache<K, V> {
+
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    /**
+     * The minimum capacity of a segment. Caches that are smaller than twice this size use a single segment, so that
+     * they can hold maxSize entries regardless of how the keys are distributed over the segments.
+     */
+    static final int MIN_SEGMENT_SIZE = 64;
+
+    private final Segment<K, V>[] segments;
+    private final int maxSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize The maximum number of entries. Must be greater than 0.
+     */
+    public ConcurrentLRUCache(final int maxSize) {
+        this(maxSize, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * @param maxSize The maximum number of entries. Must be greater than 0.
+     * @param concurrencyLevel The maximum number of segments. It will be reduced so that each segment can hold at
+     *                         least {@link #MIN_SEGMENT_SIZE} entries.
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLRUCache(final int maxSize, final int concurrencyLevel) {
+
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize > 0 expected");
+        }
+        if (concurrencyLevel < 1) {
+            throw new IllegalArgumentException("concurrencyLevel > 0 expected");
+        }
+
+        this.maxSize = maxSize;
+
+        final int numSegments = Math.max(1, Math.min(concurrencyLevel, maxSize / MIN_SEGMENT_SIZE));
+        segments = new Segment[numSegments];
+
+        // distribute maxSize over the segments
+        final int sizePerSegment = maxSize / numSegments;
+        final int remainder = maxSize % numSegments;
+        for (int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment<>(i < remainder ? sizePerSegment + 1 : sizePerSegment, evictions);
+        }
+    }
+
+    /**
+     * Get the value for a key
+     *
+     * @param key The key
+     * @return The value or null if the key is not in the cache
+     */
+    public V get(final K key) {
+        final Segment<K, V> segment = segmentFor(key);
+        final V value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Put a value into the cache, possibly evicting the least recently used entry of the key's segment.
+     *
+     * @param key The key
+     * @param value The value, must not be null
+     */
+    public void put(final K key, final V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value must not be null");
+        }
+        final Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    /**
+     * <p>Get the value for a key or compute and add it if the key is not in the cache.</p>
+     *
+     * <p>The value is computed outside of the lock. If two threads miss the same key at the same time, both compute
+     * the value and the value of the thread that finishes first is kept and returned to both threads. Exceptions
+     * thrown from the mapping function are passed to the caller and nothing will be cached.</p>
+     *
+     * @param key The key
+     * @param mappingFunction The function to compute the value. It must not return null.
+     * @return The cached or the computed value
+     */
+    public V computeIfAbsent(final K key, final Function<? super K, ? extends V> mappingFunction) {
+        final V value = get(key);
+        if (value != null) {
+            return value;
+        }
+
+        final V newValue = mappingFunction.apply(key);
+        if (newValue == null) {
+            throw new IllegalArgumentException("mappingFunction must not return null");
+        }
+
+        final Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            final V existing = segment.putIfAbsent(key, newValue);
+            return existing != null ? existing : newValue;
+        }
+    }
+
+    /**
+     * Remove all entries. The statistics will not be reset.
+     */
+    public void clear() {
+        for (final Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (final Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return The ratio of hits to lookups or 0 if there were no lookups yet.
+     */
+    public double getHitRatio() {
+        final long h = hits.sum();
+        final long lookups = h + misses.sum();
+        return lookups == 0L ? 0.0 : (double) h / (double) lookups;
+    }
+
+    private Segment<K, V> segmentFor(final K key) {
+        final int h = key.hashCode();
+        // spread the higher bits like HashMap does
+        return segments[((h ^ (h >>> 16)) & 0x7fffffff) % segments.length];
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrentLRUCache{" +
+                "maxSize=" + maxSize +
+                ", size=" + size() +
+                ", hits=" + getHitCount() +
+                ", misses=" + getMissCount() +
+                ", evictions=" + getEvictionCount() +
+                '}';
+    }
+
+    private static class Segment<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+        private final transient LongAdder evictions;
+
+        Segment(final int maxSize, final LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+            if (size() > maxSize) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+}
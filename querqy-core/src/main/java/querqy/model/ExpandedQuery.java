@@ -62,6 +62,12 @@ public class ExpandedQuery {
       filterQueries.add(filterQuery);
    }
 
+   /**
+    * Boost queries can be shared between ExpandedQuery objects (see
+    * querqy.rewrite.commonrules.model.BoostInstruction) and must not be modified.
+    *
+    * @return The boost up queries or null if there are none
+    */
    public Collection<BoostQuery> getBoostUpQueries() {
       return boostUpQueries;
    }
@@ -73,6 +79,11 @@ public class ExpandedQuery {
       boostUpQueries.add(boostUpQuery);
    }
 
+   /**
+    * Boost queries can be shared between ExpandedQuery objects and must not be modified.
+    *
+    * @return The boost down queries or null if there are none
+    */
    public Collection<BoostQuery> getBoostDownQueries() {
       return boostDownQueries;
    }
@@ -3,49 +3,93 @@
  */
 package querqy.rewrite;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import querqy.model.ExpandedQuery;
 import querqy.model.Query;
 import querqy.infologging.InfoLoggingContext;
+import querqy.timing.TimingListener;
 
 /**
- * The chain of rewriters to manipulate a {@link Query}.
+ * <p>The chain of rewriters to manipulate a {@link Query}.</p>
+ *
+ * <p>The results of the chain can optionally be kept in a {@link RewriteResultCache}. The cache is invalidated
+ * whenever a factory is replaced using {@link #replaceRewriterFactory(RewriterFactory)}.</p>
+ *
+ * <p>Rewriters are only created and applied if {@link RewriterFactory#mightRewrite(ExpandedQuery,
+ * SearchEngineRequestAdapter)} returns true for the current query.</p>
+ *
+ * <p>If the request provides a {@link TimingListener}, the time for creating and for applying each rewriter will be
+ * reported to the listener under the names 'rewriter.&lt;rewriter id&gt;.create' and
+ * 'rewriter.&lt;rewriter id&gt;.rewrite'.</p>
  * 
  * @author rene
  *
  */
 public class RewriteChain {
 
-    final List<RewriterFactory> factories;
+    private final int resultCacheSize;
 
-    @Deprecated
-    final Map<String, RewriterFactory> factoriesByName;
+    private volatile State state;
 
     public RewriteChain() {
         this(Collections.emptyList());
     }
 
     public RewriteChain(final List<RewriterFactory> factories) {
-        this.factories = factories;
-        factoriesByName = new HashMap<>(factories.size());
-        factories.forEach(factory -> {
-            final String rewriterId = factory.getRewriterId();
-            if (rewriterId == null || rewriterId.trim().isEmpty()) {
-                throw new IllegalArgumentException("Missing rewriter id for factory: " + factory.getClass().getName());
-            }
-            if (factoriesByName.put(rewriterId, factory) != null) {
-                throw new IllegalArgumentException("Duplicate rewriter id: " + rewriterId);
-            }
-        });
+        this(factories, 0);
+    }
+
+    /**
+     * @param factories The rewriter factories
+     * @param resultCacheSize The maximum number of rewrite results to cache. Set this to 0 to disable caching.
+     */
+    public RewriteChain(final List<RewriterFactory> factories, final int resultCacheSize) {
+        if (resultCacheSize < 0) {
+            throw new IllegalArgumentException("resultCacheSize >= 0 expected");
+        }
+        this.resultCacheSize = resultCacheSize;
+        state = new State(factories, resultCacheSize);
     }
 
     public ExpandedQuery rewrite(final ExpandedQuery query,
                                  final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+
+        final State currentState = state;
+        final RewriteResultCache cache = currentState.resultCache;
+
+        if (cache == null) {
+            return rewrite(query, searchEngineRequestAdapter, currentState);
+        }
+
+        final List<Object> key = cache.createKey(query, currentState.factories, searchEngineRequestAdapter)
+                .orElse(null);
+        if (key == null) {
+            return rewrite(query, searchEngineRequestAdapter, currentState);
+        }
+
+        final ExpandedQuery cachedResult = cache.get(key, searchEngineRequestAdapter);
+        if (cachedResult != null) {
+            return cachedResult;
+        }
+
+        final Set<String> contextKeysBeforeRewriting = new HashSet<>(searchEngineRequestAdapter.getContext().keySet());
+        final ExpandedQuery result = rewrite(query, searchEngineRequestAdapter, currentState);
+        cache.put(key, result, contextKeysBeforeRewriting, searchEngineRequestAdapter);
+
+        return result;
+    }
+
+    private ExpandedQuery rewrite(final ExpandedQuery query,
+                                  final SearchEngineRequestAdapter searchEngineRequestAdapter,
+                                  final State currentState) {
       
         ExpandedQuery work = query;
 
@@ -53,18 +97,38 @@ public class RewriteChain {
 
         final String oldRewriterId = loggingContext.map(InfoLoggingContext::getRewriterId).orElse(null);
 
+        final TimingListener timingListener = searchEngineRequestAdapter.getTimingListener().orElse(null);
+
         try {
 
-            for (final RewriterFactory factory : factories) {
+            int i = 0;
+
+            for (final RewriterFactory factory : currentState.factories) {
+
+                if (!factory.mightRewrite(work, searchEngineRequestAdapter)) {
+                    i++;
+                    continue;
+                }
 
                 loggingContext.ifPresent(context -> context.setRewriterId(factory.getRewriterId()));
 
+                final long start = timingListener == null ? 0L : System.nanoTime();
+
                 final QueryRewriter rewriter = factory.createRewriter(work, searchEngineRequestAdapter);
 
+                final long created = timingListener == null ? 0L : System.nanoTime();
+
                 work = (rewriter instanceof ContextAwareQueryRewriter)
                         ? ((ContextAwareQueryRewriter) rewriter).rewrite(work, searchEngineRequestAdapter)
                         : rewriter.rewrite(work);
 
+                if (timingListener != null) {
+                    timingListener.onTiming(currentState.createTimingNames[i], created - start);
+                    timingListener.onTiming(currentState.rewriteTimingNames[i], System.nanoTime() - created);
+                }
+
+                i++;
+
             }
 
         } finally {
@@ -74,13 +138,83 @@ public class RewriteChain {
         return work;
     }
 
+    /**
+     * <p>Replace the factory that has the same rewriter id as the given factory.</p>
+     *
+     * <p>Requests that are already being rewritten will finish with the old factory. The rewrite result cache will be
+     * replaced by an empty cache.</p>
+     *
+     * @param factory The new factory
+     * @throws IllegalArgumentException if the chain doesn't contain a factory for the rewriter id of the factory
+     */
+    public synchronized void replaceRewriterFactory(final RewriterFactory factory) {
+
+        final List<RewriterFactory> factories = new ArrayList<>(state.factories);
+
+        final String rewriterId = factory.getRewriterId();
+        boolean replaced = false;
+        for (int i = 0; i < factories.size() && !replaced; i++) {
+            if (factories.get(i).getRewriterId().equals(rewriterId)) {
+                factories.set(i, factory);
+                replaced = true;
+            }
+        }
+
+        if (!replaced) {
+            throw new IllegalArgumentException("No rewriter for id " + rewriterId);
+        }
+
+        state = new State(Collections.unmodifiableList(factories), resultCacheSize);
+
+    }
+
+    /**
+     * @return The cache for rewrite results or an empty Optional if caching is disabled.
+     */
+    public Optional<RewriteResultCache> getResultCache() {
+        return Optional.ofNullable(state.resultCache);
+    }
+
     @Deprecated
     public List<RewriterFactory> getRewriterFactories() {
-        return factories;
+        return state.factories;
     }
 
     @Deprecated
     public RewriterFactory getFactory(final String rewriterId) {
-        return factoriesByName.get(rewriterId);
+        return state.factoriesByName.get(rewriterId);
+    }
+
+    private static class State {
+
+        final List<RewriterFactory> factories;
+        final Map<String, RewriterFactory> factoriesByName;
+        final RewriteResultCache resultCache;
+        // names for the TimingListener, created once to avoid String concatenation per request
+        final String[] createTimingNames;
+        final String[] rewriteTimingNames;
+
+        State(final List<RewriterFactory> factories, final int resultCacheSize) {
+            this.factories = factories;
+            factoriesByName = new HashMap<>(factories.size());
+            factories.forEach(factory -> {
+                final String rewriterId = factory.getRewriterId();
+                if (rewriterId == null || rewriterId.trim().isEmpty()) {
+                    throw new IllegalArgumentException("Missing rewriter id for factory: "
+                            + factory.getClass().getName());
+                }
+                if (factoriesByName.put(rewriterId, factory) != null) {
+                    throw new IllegalArgumentException("Duplicate rewriter id: " + rewriterId);
+                }
+            });
+            createTimingNames = new String[factories.size()];
+            rewriteTimingNames = new String[factories.size()];
+            int i = 0;
+            for (final RewriterFactory factory : factories) {
+                createTimingNames[i] = "rewriter." + factory.getRewriterId() + ".create";
+                rewriteTimingNames[i++] = "rewriter." + factory.getRewriterId() + ".rewrite";
+            }
+            resultCache = resultCacheSize > 0 ? new RewriteResultCache(resultCacheSize) : null;
+        }
     }
 }
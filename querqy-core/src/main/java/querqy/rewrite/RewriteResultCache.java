@@ -0,0 +1,421 @@
+package querqy.rewrite;
+
+import querqy.ConcurrentLRUCache;
+import querqy.model.BooleanClause;
+import querqy.model.BooleanParent;
+import querqy.model.BooleanQuery;
+import querqy.model.BoostQuery;
+import querqy.model.BoostedTerm;
+import querqy.model.Clause;
+import querqy.model.DisjunctionMaxClause;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.ExpandedQuery;
+import querqy.model.MatchAllQuery;
+import querqy.model.ParametrizedRawQuery;
+import querqy.model.QuerqyQuery;
+import querqy.model.Query;
+import querqy.model.StringRawQuery;
+import querqy.model.Term;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * <p>A size-bounded cache for the results of a {@link RewriteChain}.</p>
+ *
+ * <p>Results are cached under a normalized form of the input {@link ExpandedQuery} together with the keys returned
+ * from {@link RewriterFactory#getRewriteResultCacheKey(SearchEngineRequestAdapter)} for all factories of the chain.
+ * Results will only be cached if all factories provide such a key, if debug is not enabled for the request and if no
+ * info logging is active for the request. The cache keeps a private copy of the rewritten query and of the entries
+ * that were added to the request context while rewriting. Each hit returns a new copy of the query and adds copies
+ * of the context entries to the context of the request.</p>
+ *
+ * <p>Only queries that consist of the node types of the querqy.model package can be cached.</p>
+ */
+public class RewriteResultCache {
+
+    private final ConcurrentLRUCache<List<Object>, CachedResult> cache;
+
+    /**
+     * @param maxSize The maximum number of cached results. Must be greater than 0.
+     */
+    public RewriteResultCache(final int maxSize) {
+        cache = new ConcurrentLRUCache<>(maxSize);
+    }
+
+    /**
+     * Create the cache key for a rewrite request.
+     *
+     * @param query The input query
+     * @param factories The rewriter factories of the chain
+     * @param searchEngineRequestAdapter The request adapter
+     * @return The key or an empty Optional if the rewrite result for this request must not be cached
+     */
+    public Optional<List<Object>> createKey(final ExpandedQuery query, final List<RewriterFactory> factories,
+                                            final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+
+        if (searchEngineRequestAdapter.isDebugQuery()
+                || searchEngineRequestAdapter.getInfoLoggingContext().isPresent()) {
+            return Optional.empty();
+        }
+
+        final String normalizedQuery = normalize(query);
+        if (normalizedQuery == null) {
+            return Optional.empty();
+        }
+
+        final Object[] key = new Object[factories.size() + 1];
+        key[0] = normalizedQuery;
+
+        for (int i = 0; i < factories.size(); i++) {
+            final Optional<Object> factoryKey = factories.get(i).getRewriteResultCacheKey(searchEngineRequestAdapter);
+            if (!factoryKey.isPresent()) {
+                return Optional.empty();
+            }
+            key[i + 1] = factoryKey.get();
+        }
+
+        return Optional.of(Arrays.asList(key));
+
+    }
+
+    /**
+     * Look up a cached result. If the result is found, the cached context entries will be copied to the context of
+     * the request.
+     *
+     * @param key The key as returned by {@link #createKey(ExpandedQuery, List, SearchEngineRequestAdapter)}
+     * @param searchEngineRequestAdapter The request adapter
+     * @return A copy of the cached query or null if there is no cached result for this key.
+     */
+    public ExpandedQuery get(final List<Object> key, final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+
+        final CachedResult result = cache.get(key);
+        if (result == null) {
+            return null;
+        }
+
+        if (!result.contextEntries.isEmpty()) {
+            final Map<String, Object> context = searchEngineRequestAdapter.getContext();
+            result.contextEntries.forEach((name, value) -> context.put(name, copyContextValue(value)));
+        }
+
+        return copy(result.query);
+    }
+
+    /**
+     * Put a rewrite result into the cache. Nothing will be cached if the query contains nodes that cannot be copied.
+     *
+     * @param key The key as returned by {@link #createKey(ExpandedQuery, List, SearchEngineRequestAdapter)}
+     * @param query The rewritten query. A copy of the query will be cached.
+     * @param contextKeysBeforeRewriting The keys of the request context before the query was rewritten.
+     * @param searchEngineRequestAdapter The request adapter
+     */
+    public void put(final List<Object> key, final ExpandedQuery query, final Set<String> contextKeysBeforeRewriting,
+                    final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+
+        if (normalize(query) == null) {
+            return;
+        }
+
+        final Map<String, Object> contextEntries = new HashMap<>();
+        searchEngineRequestAdapter.getContext().forEach((name, value) -> {
+            if (!contextKeysBeforeRewriting.contains(name)) {
+                contextEntries.put(name, copyContextValue(value));
+            }
+        });
+
+        cache.put(key, new CachedResult(copy(query),
+                contextEntries.isEmpty() ? Collections.emptyMap() : contextEntries));
+
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public int getMaxSize() {
+        return cache.getMaxSize();
+    }
+
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    public double getHitRatio() {
+        return cache.getHitRatio();
+    }
+
+    @Override
+    public String toString() {
+        return "RewriteResultCache{" + cache + '}';
+    }
+
+    /**
+     * Create a deep copy of an ExpandedQuery. Unlike cloning the nodes, copying keeps the 'generated' flag of every
+     * node. The query must only contain nodes that are accepted by
+     * {@link #normalize(ExpandedQuery)}.
+     *
+     * @param query The query
+     * @return The copy
+     */
+    static ExpandedQuery copy(final ExpandedQuery query) {
+
+        final ExpandedQuery copy = new ExpandedQuery(copy(query.getUserQuery()));
+
+        final Collection<QuerqyQuery<?>> filterQueries = query.getFilterQueries();
+        if (filterQueries != null) {
+            filterQueries.forEach(filterQuery -> copy.addFilterQuery(copy(filterQuery)));
+        }
+
+        final Collection<BoostQuery> boostUpQueries = query.getBoostUpQueries();
+        if (boostUpQueries != null) {
+            boostUpQueries.forEach(boostQuery -> copy.addBoostUpQuery(
+                    new BoostQuery(copy(boostQuery.getQuery()), boostQuery.getBoost())));
+        }
+
+        final Collection<BoostQuery> boostDownQueries = query.getBoostDownQueries();
+        if (boostDownQueries != null) {
+            boostDownQueries.forEach(boostQuery -> copy.addBoostDownQuery(
+                    new BoostQuery(copy(boostQuery.getQuery()), boostQuery.getBoost())));
+        }
+
+        return copy;
+    }
+
+    private static QuerqyQuery<?> copy(final QuerqyQuery<?> query) {
+
+        if (query instanceof Query) {
+            final Query copy = new Query(((Query) query).isGenerated());
+            copyClauses((Query) query, copy);
+            return copy;
+        }
+        if (query instanceof BooleanQuery) {
+            return copy((BooleanQuery) query, null);
+        }
+        if (query instanceof StringRawQuery) {
+            final StringRawQuery rawQuery = (StringRawQuery) query;
+            return new StringRawQuery(null, rawQuery.getQueryString(), rawQuery.getOccur(), rawQuery.isGenerated());
+        }
+        if (query instanceof ParametrizedRawQuery) {
+            final ParametrizedRawQuery rawQuery = (ParametrizedRawQuery) query;
+            return new ParametrizedRawQuery(null, rawQuery.getParts(), rawQuery.getOccur(), rawQuery.isGenerated());
+        }
+        if (query instanceof MatchAllQuery) {
+            final MatchAllQuery matchAllQuery = (MatchAllQuery) query;
+            return new MatchAllQuery(null, matchAllQuery.getOccur(), matchAllQuery.isGenerated());
+        }
+        throw new IllegalArgumentException("Cannot copy " + query.getClass().getName());
+    }
+
+    private static BooleanQuery copy(final BooleanQuery query, final BooleanParent parent) {
+        final BooleanQuery copy = new BooleanQuery(parent, query.getOccur(), query.isGenerated());
+        copyClauses(query, copy);
+        return copy;
+    }
+
+    private static void copyClauses(final BooleanQuery query, final BooleanQuery copy) {
+
+        for (final BooleanClause clause : query.getClauses()) {
+
+            if (clause instanceof DisjunctionMaxQuery) {
+
+                final DisjunctionMaxQuery dmq = (DisjunctionMaxQuery) clause;
+                final DisjunctionMaxQuery dmqCopy = new DisjunctionMaxQuery(copy, dmq.getOccur(), dmq.isGenerated());
+
+                for (final DisjunctionMaxClause dmqClause : dmq.getClauses()) {
+                    if (dmqClause instanceof BoostedTerm) {
+                        final BoostedTerm term = (BoostedTerm) dmqClause;
+                        dmqCopy.addClause(new BoostedTerm(dmqCopy, term.getField(), term.getValue(), term.getBoost()));
+                    } else if (dmqClause instanceof Term) {
+                        final Term term = (Term) dmqClause;
+                        dmqCopy.addClause(new Term(dmqCopy, term.getField(), term.getValue(), term.isGenerated()));
+                    } else {
+                        dmqCopy.addClause(copy((BooleanQuery) dmqClause, dmqCopy));
+                    }
+                }
+
+                copy.addClause(dmqCopy);
+
+            } else {
+                copy.addClause(copy((BooleanQuery) clause, copy));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static Object copyContextValue(final Object value) {
+        if (value instanceof List) {
+            final List<Object> copy = new ArrayList<>(((List<?>) value).size());
+            ((List<?>) value).forEach(element -> copy.add(copyContextValue(element)));
+            return copy;
+        }
+        if (value instanceof Set) {
+            final Set<Object> copy = value instanceof LinkedHashSet ? new LinkedHashSet<>() : new HashSet<>();
+            ((Set<?>) value).forEach(element -> copy.add(copyContextValue(element)));
+            return copy;
+        }
+        if (value instanceof Map) {
+            final Map<Object, Object> copy = value instanceof LinkedHashMap ? new LinkedHashMap<>() : new HashMap<>();
+            ((Map<Object, ?>) value).forEach((k, v) -> copy.put(k, copyContextValue(v)));
+            return copy;
+        }
+        return value;
+    }
+
+    /**
+     * Create a normalized String representation of an ExpandedQuery.
+     *
+     * @param query The query
+     * @return The normalized String or null if the query contains nodes of unknown types
+     */
+    static String normalize(final ExpandedQuery query) {
+        final StringBuilder sb = new StringBuilder(64);
+        if (!appendQuerqyQuery(sb.append('U'), query.getUserQuery())) {
+            return null;
+        }
+        final Collection<QuerqyQuery<?>> filterQueries = query.getFilterQueries();
+        if (filterQueries != null) {
+            for (final QuerqyQuery<?> filterQuery : filterQueries) {
+                if (!appendQuerqyQuery(sb.append('F'), filterQuery)) {
+                    return null;
+                }
+            }
+        }
+        return appendBoostQueries(sb, 'B', query.getBoostUpQueries())
+                && appendBoostQueries(sb, 'D', query.getBoostDownQueries()) ? sb.toString() : null;
+    }
+
+    private static boolean appendBoostQueries(final StringBuilder sb, final char type,
+                                              final Collection<BoostQuery> boostQueries) {
+        if (boostQueries != null) {
+            for (final BoostQuery boostQuery : boostQueries) {
+                sb.append(type).append(boostQuery.getBoost());
+                if (!appendQuerqyQuery(sb, boostQuery.getQuery())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean appendQuerqyQuery(final StringBuilder sb, final QuerqyQuery<?> query) {
+        final Class<?> type = query.getClass();
+        if (type == Query.class || type == BooleanQuery.class) {
+            return appendBooleanQuery(sb, (BooleanQuery) query);
+        }
+        if (type == StringRawQuery.class) {
+            appendClauseHeader(sb, 'S', (StringRawQuery) query);
+            appendString(sb, ((StringRawQuery) query).getQueryString());
+            return true;
+        }
+        if (type == ParametrizedRawQuery.class) {
+            appendClauseHeader(sb, 'P', (ParametrizedRawQuery) query);
+            final List<ParametrizedRawQuery.Part> parts = ((ParametrizedRawQuery) query).getParts();
+            sb.append(parts.size());
+            for (final ParametrizedRawQuery.Part part : parts) {
+                sb.append(part.type.ordinal());
+                appendString(sb, part.part);
+            }
+            return true;
+        }
+        if (type == MatchAllQuery.class) {
+            appendClauseHeader(sb, 'A', (MatchAllQuery) query);
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean appendBooleanQuery(final StringBuilder sb, final BooleanQuery query) {
+        appendClauseHeader(sb, query instanceof Query ? 'Q' : 'O', query);
+        sb.append('(');
+        for (final BooleanClause clause : query.getClauses()) {
+            if (clause.getClass() == DisjunctionMaxQuery.class) {
+                final DisjunctionMaxQuery dmq = (DisjunctionMaxQuery) clause;
+                appendClauseHeader(sb, 'M', dmq);
+                sb.append('(');
+                for (final DisjunctionMaxClause dmqClause : dmq.getClauses()) {
+                    if (dmqClause instanceof Term) {
+                        if (!appendTerm(sb, (Term) dmqClause)) {
+                            return false;
+                        }
+                    } else if (dmqClause.getClass() == BooleanQuery.class) {
+                        if (!appendBooleanQuery(sb, (BooleanQuery) dmqClause)) {
+                            return false;
+                        }
+                    } else {
+                        return false;
+                    }
+                }
+                sb.append(')');
+            } else if (clause.getClass() == BooleanQuery.class) {
+                if (!appendBooleanQuery(sb, (BooleanQuery) clause)) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+        sb.append(')');
+        return true;
+    }
+
+    private static boolean appendTerm(final StringBuilder sb, final Term term) {
+        final Class<?> type = term.getClass();
+        if (type == Term.class) {
+            sb.append(term.isGenerated() ? 'T' : 't');
+        } else if (type == BoostedTerm.class) {
+            sb.append('W').append(((BoostedTerm) term).getBoost());
+        } else {
+            return false;
+        }
+        appendString(sb, term.getField());
+        appendString(sb, term.getValue());
+        return true;
+    }
+
+    private static void appendClauseHeader(final StringBuilder sb, final char type, final Clause<?> clause) {
+        sb.append(type).append(clause.getOccur().ordinal()).append(clause.isGenerated() ? 'g' : 'u');
+    }
+
+    private static void appendString(final StringBuilder sb, final CharSequence s) {
+        // prefix with the length so that Strings cannot be confused with the structure
+        if (s == null) {
+            sb.append('-');
+        } else {
+            sb.append(s.length()).append(':').append(s);
+        }
+    }
+
+    private static class CachedResult {
+
+        final ExpandedQuery query;
+        final Map<String, Object> contextEntries;
+
+        CachedResult(final ExpandedQuery query, final Map<String, Object> contextEntries) {
+            this.query = query;
+            this.contextEntries = contextEntries;
+        }
+    }
+}
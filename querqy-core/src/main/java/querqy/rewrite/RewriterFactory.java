@@ -4,6 +4,7 @@
 package querqy.rewrite;
 
 import java.util.Collections;
+import java.util.Optional;
 import java.util.Set;
 
 import querqy.model.ExpandedQuery;
@@ -47,6 +48,38 @@ public abstract class RewriterFactory {
         return getGenerableTerms();
     }
 
+    /**
+     * <p>Get the request-specific part of the key under which the results of a {@link RewriteChain} can be cached
+     * (see {@link RewriteResultCache}).</p>
+     * <p>Factories should only return a key if the rewriters that they create always produce the same output for the
+     * same input query and the same key and if the rewriters only add new entries to the request context but don't
+     * change existing ones. The key must implement equals() and hashCode().</p>
+     * <p>The default implementation returns an empty Optional, which disables caching for the whole chain.</p>
+     *
+     * @param searchEngineRequestAdapter The request adapter
+     * @return The cache key or an empty Optional if rewrite results must not be cached for this request
+     */
+    public Optional<Object> getRewriteResultCacheKey(final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+        return Optional.empty();
+    }
+
+    /**
+     * <p>A cheap check whether a rewriter created by this factory might change the query or the request context.</p>
+     * <p>The {@link RewriteChain} calls this method before {@link #createRewriter(ExpandedQuery,
+     * SearchEngineRequestAdapter)} and skips the rewriter if false is returned. The check must be conservative: it
+     * may return true for queries that will not be rewritten but it must never return false for a query that would be
+     * rewritten. See {@link TriggerTerms} for an implementation helper.</p>
+     * <p>The default implementation returns true.</p>
+     *
+     * @param query The query that would be passed to the rewriter
+     * @param searchEngineRequestAdapter The request adapter
+     * @return false if the rewriter would not change the query or the context, true if it might.
+     */
+    public boolean mightRewrite(final ExpandedQuery query,
+                                final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+        return true;
+    }
+
     public String getRewriterId() {
         return rewriterId;
     }
@@ -1,6 +1,7 @@
 package querqy.rewrite;
 
 import querqy.infologging.InfoLoggingContext;
+import querqy.timing.TimingListener;
 
 import java.util.Map;
 import java.util.Optional;
@@ -95,4 +96,14 @@ public interface SearchEngineRequestAdapter {
      */
     boolean isDebugQuery();
 
+    /**
+     * <p>Get the listener for the timings of the query processing stages of this request. Timings will only be measured
+     * if a listener is returned.</p>
+     *
+     * @return The timing listener or an empty Optional if timings shall not be measured
+     */
+    default Optional<TimingListener> getTimingListener() {
+        return Optional.empty();
+    }
+
 }
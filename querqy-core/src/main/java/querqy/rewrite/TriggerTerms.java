@@ -0,0 +1,275 @@
+package querqy.rewrite;
+
+import querqy.model.BooleanClause;
+import querqy.model.BooleanQuery;
+import querqy.model.DisjunctionMaxClause;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.Term;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * <p>A compact set of the terms that can trigger a rewriter, for example the first terms of the rule inputs of a
+ * rewriter. Rewriter factories can use it to implement {@link RewriterFactory#mightRewrite(querqy.model.ExpandedQuery,
+ * SearchEngineRequestAdapter)}.</p>
+ *
+ * <p>The terms are kept in a Bloom filter. A lookup never returns a false negative but it can return a false positive
+ * for about 1% of the terms that were not added. Besides exact terms, prefixes and suffixes can be added. A term
+ * matches a prefix/suffix if it starts/ends with it.</p>
+ *
+ * <p>Lookups don't create any objects. Instances are immutable and can be shared between threads.</p>
+ */
+public final class TriggerTerms {
+
+    private static final int BITS_PER_ENTRY = 10;
+    private static final int NUM_HASHES = 7;
+    private static final long MAX_BITS = 1L << 30;
+
+    // results of matching a (sub)query, ordered so that we can combine them using max()
+    private static final int NO_TERMS = 0;
+    private static final int NO_MATCH = 1;
+    private static final int MIGHT_MATCH = 2;
+
+    private static final long SEED_EXACT = 0xcbf29ce484222325L;
+    private static final long SEED_PREFIX = 0x84222325cbf29ce4L;
+    private static final long SEED_SUFFIX = 0x9ce484222325cbf2L;
+
+    private final boolean ignoreCase;
+    private final long[] bits;
+    private final int mask;
+    private final int[] prefixLengths;
+    private final int[] suffixLengths;
+
+    private TriggerTerms(final boolean ignoreCase, final long[] bits, final int[] prefixLengths,
+                         final int[] suffixLengths) {
+        this.ignoreCase = ignoreCase;
+        this.bits = bits;
+        this.mask = bits.length * 64 - 1;
+        this.prefixLengths = prefixLengths;
+        this.suffixLengths = suffixLengths;
+    }
+
+    /**
+     * @param term The term
+     * @return false if the term and none of its prefixes and suffixes were added, true if they might have been added.
+     */
+    public boolean mightContain(final CharSequence term) {
+
+        final int length = term.length();
+
+        if (contains(hash(SEED_EXACT, term, 0, length))) {
+            return true;
+        }
+
+        for (final int prefixLength : prefixLengths) {
+            if (prefixLength > length) {
+                break;
+            }
+            if (contains(hash(SEED_PREFIX, term, 0, prefixLength))) {
+                return true;
+            }
+        }
+
+        for (final int suffixLength : suffixLengths) {
+            if (suffixLength > length) {
+                break;
+            }
+            if (contains(hash(SEED_SUFFIX, term, length - suffixLength, length))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Check whether a query contains a term that might be a trigger term. Field names are ignored and generated terms
+     * are included. As rewriters usually treat queries without terms specially, true is also returned if the query
+     * doesn't contain any term.
+     *
+     * @param query The query
+     * @return false if the query contains terms and if none of them was added, true otherwise.
+     */
+    public boolean mightMatch(final BooleanQuery query) {
+        return match(query) != NO_MATCH;
+    }
+
+    private int match(final BooleanQuery query) {
+        int result = NO_TERMS;
+        for (final BooleanClause clause : query.getClauses()) {
+            if (clause instanceof DisjunctionMaxQuery) {
+                for (final DisjunctionMaxClause dmqClause : ((DisjunctionMaxQuery) clause).getClauses()) {
+                    final int clauseResult;
+                    if (dmqClause instanceof Term) {
+                        clauseResult = mightContain((Term) dmqClause) ? MIGHT_MATCH : NO_MATCH;
+                    } else if (dmqClause instanceof BooleanQuery) {
+                        clauseResult = match((BooleanQuery) dmqClause);
+                    } else {
+                        clauseResult = NO_TERMS;
+                    }
+                    if (clauseResult == MIGHT_MATCH) {
+                        return MIGHT_MATCH;
+                    }
+                    result = Math.max(result, clauseResult);
+                }
+            } else if (clause instanceof BooleanQuery) {
+                final int clauseResult = match((BooleanQuery) clause);
+                if (clauseResult == MIGHT_MATCH) {
+                    return MIGHT_MATCH;
+                }
+                result = Math.max(result, clauseResult);
+            }
+        }
+        return result;
+    }
+
+    private boolean contains(final long hash) {
+        final int h1 = (int) hash;
+        final int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < NUM_HASHES; i++) {
+            final int bit = (h1 + i * h2) & mask;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long hash(final long seed, final CharSequence seq, final int start, final int end) {
+        long h = seed;
+        for (int i = start; i < end; i++) {
+            final char ch = ignoreCase ? Character.toLowerCase(seq.charAt(i)) : seq.charAt(i);
+            h = (h ^ ch) * 0x100000001b3L;
+        }
+        // final mix (from MurmurHash3's fmix64) to spread the bits for double hashing
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    /**
+     * @return The size of the Bloom filter in bits
+     */
+    public int getNumBits() {
+        return bits.length * 64;
+    }
+
+    public void writeTo(final DataOutput out) throws IOException {
+        out.writeBoolean(ignoreCase);
+        writeInts(prefixLengths, out);
+        writeInts(suffixLengths, out);
+        out.writeInt(bits.length);
+        for (final long word : bits) {
+            out.writeLong(word);
+        }
+    }
+
+    public static TriggerTerms readFrom(final DataInput in) throws IOException {
+        final boolean ignoreCase = in.readBoolean();
+        final int[] prefixLengths = readInts(in);
+        final int[] suffixLengths = readInts(in);
+        final int numWords = in.readInt();
+        if (numWords < 1 || Integer.bitCount(numWords) != 1 || numWords > (MAX_BITS >>> 6)) {
+            throw new IOException("Invalid number of words in Bloom filter: " + numWords);
+        }
+        final long[] bits = new long[numWords];
+        for (int i = 0; i < numWords; i++) {
+            bits[i] = in.readLong();
+        }
+        return new TriggerTerms(ignoreCase, bits, prefixLengths, suffixLengths);
+    }
+
+    private static void writeInts(final int[] ints, final DataOutput out) throws IOException {
+        out.writeInt(ints.length);
+        for (final int i : ints) {
+            out.writeInt(i);
+        }
+    }
+
+    private static int[] readInts(final DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0 || length > 0xffff) {
+            throw new IOException("Invalid length: " + length);
+        }
+        final int[] ints = new int[length];
+        for (int i = 0; i < length; i++) {
+            ints[i] = in.readInt();
+        }
+        return ints;
+    }
+
+    public static Builder builder(final boolean ignoreCase) {
+        return new Builder(ignoreCase);
+    }
+
+    public static class Builder {
+
+        private final TriggerTerms hasher;
+        private long[] hashes = new long[64];
+        private int numHashes = 0;
+        private final TreeSet<Integer> prefixLengths = new TreeSet<>();
+        private final TreeSet<Integer> suffixLengths = new TreeSet<>();
+
+        private Builder(final boolean ignoreCase) {
+            hasher = new TriggerTerms(ignoreCase, new long[1], new int[0], new int[0]);
+        }
+
+        public Builder addTerm(final CharSequence term) {
+            add(hasher.hash(SEED_EXACT, term, 0, term.length()));
+            return this;
+        }
+
+        public Builder addPrefix(final CharSequence prefix) {
+            add(hasher.hash(SEED_PREFIX, prefix, 0, prefix.length()));
+            prefixLengths.add(prefix.length());
+            return this;
+        }
+
+        public Builder addSuffix(final CharSequence suffix) {
+            add(hasher.hash(SEED_SUFFIX, suffix, 0, suffix.length()));
+            suffixLengths.add(suffix.length());
+            return this;
+        }
+
+        private void add(final long hash) {
+            if (numHashes == hashes.length) {
+                hashes = Arrays.copyOf(hashes, hashes.length * 2);
+            }
+            hashes[numHashes++] = hash;
+        }
+
+        public TriggerTerms build() {
+
+            final long numBits = Math.max(64L, (long) numHashes * BITS_PER_ENTRY);
+            final int numWords = (int) Math.min(MAX_BITS, Long.highestOneBit(numBits - 1) << 1) >>> 6;
+
+            final TriggerTerms triggerTerms = new TriggerTerms(hasher.ignoreCase, new long[Math.max(1, numWords)],
+                    prefixLengths.stream().mapToInt(Integer::intValue).toArray(),
+                    suffixLengths.stream().mapToInt(Integer::intValue).toArray());
+
+            for (int i = 0; i < numHashes; i++) {
+                final long hash = hashes[i];
+                final int h1 = (int) hash;
+                final int h2 = (int) (hash >>> 32);
+                for (int j = 0; j < NUM_HASHES; j++) {
+                    final int bit = (h1 + j * h2) & triggerTerms.mask;
+                    triggerTerms.bits[bit >>> 6] |= 1L << bit;
+                }
+            }
+
+            return triggerTerms;
+        }
+    }
+
+}
@@ -31,9 +31,11 @@ public class CommonRulesRewriter extends AbstractNodeVisitor<Node> implements Co
     protected ExpandedQuery expandedQuery;
     protected SearchEngineRequestAdapter searchEngineRequestAdapter;
     protected SelectionStrategy selectionStrategy;
+    protected final PropertyIndex propertyIndex;
 
     public CommonRulesRewriter(final RulesCollection rules,  final SelectionStrategy selectionStrategy) {
         this.rules = rules;
+        propertyIndex = rules.getPropertyIndex().orElse(null);
         sequencesStack = new LinkedList<>();
         this.selectionStrategy = selectionStrategy;
     }
@@ -98,7 +100,9 @@ public class CommonRulesRewriter extends AbstractNodeVisitor<Node> implements Co
            searchEngineRequestAdapter.getContext().put(CONTEXT_KEY_DEBUG_DATA, actionsDebugInfo);
        }
 
-       final TopRewritingActionCollector collector = selectionStrategy.createTopRewritingActionCollector();
+       final TopRewritingActionCollector collector = propertyIndex == null
+               ? selectionStrategy.createTopRewritingActionCollector()
+               : selectionStrategy.createTopRewritingActionCollector(propertyIndex);
        rules.collectRewriteActions(sequenceForLookUp, collector);
 
        final List<Action> actions = collector.createActions();
@@ -39,16 +39,27 @@ public class PropertiesBuilder {
 
 
 
-        jsonPathConfiguration = Configuration.builder()
-                .jsonProvider(new JacksonJsonProvider())
-                .mappingProvider(new JacksonMappingProvider()).build();
-        jsonPathConfiguration.addOptions(Option.ALWAYS_RETURN_LIST);
+        jsonPathConfiguration = createJsonPathConfiguration();
 
         primitiveProperties = new HashMap<>();
         jsonObjectString =  new StringBuilder();
 
     }
 
+    /**
+     * Creates the JsonPath configuration that is used for the {@link InstructionsProperties} built by a
+     * PropertiesBuilder.
+     *
+     * @return The JsonPath configuration
+     */
+    public static Configuration createJsonPathConfiguration() {
+        final Configuration jsonPathConfiguration = Configuration.builder()
+                .jsonProvider(new JacksonJsonProvider())
+                .mappingProvider(new JacksonMappingProvider()).build();
+        jsonPathConfiguration.addOptions(Option.ALWAYS_RETURN_LIST);
+        return jsonPathConfiguration;
+    }
+
     /**
      * Consumes the next line and returns an optional validation error.
      *
@@ -0,0 +1,212 @@
+package querqy.rewrite.commonrules;
+
+import querqy.rewrite.QuerqyTemplateEngine;
+import querqy.rewrite.TemplateParseException;
+import querqy.rewrite.commonrules.model.RulesCollection;
+import querqy.rewrite.commonrules.model.TrieMapRulesCollection;
+import querqy.rewrite.commonrules.model.TrieMapRulesCollectionSerializer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * <p>Compiles rules for the {@link SimpleCommonRulesRewriterFactory} into a binary snapshot of the fully built
+ * {@link RulesCollection}, including all instructions and their properties.</p>
+ *
+ * <p>Loading the snapshot avoids rendering templates, parsing the rules and building the trie. The snapshot stores a
+ * format version and a SHA-256 checksum of the rules text from which it was compiled, together with the ignoreCase
+ * setting and the class of the {@link QuerqyParserFactory}. {@link #load(String, QuerqyParserFactory, boolean,
+ * InputStream)} only accepts a snapshot if all of them match so that a stale snapshot will never be used in place of
+ * the current rules.</p>
+ *
+ * <p>The compiler can be run from the command line:</p>
+ * <pre>
+ *     java querqy.rewrite.commonrules.SimpleCommonRulesCompiler &lt;rules file&gt; &lt;output file&gt; \
+ *         [ignoreCase] [querqy parser factory class]
+ * </pre>
+ * <p>The rules file must be UTF-8 encoded. ignoreCase defaults to true and the parser factory to
+ * {@link WhiteSpaceQuerqyParserFactory}, which are the defaults of the Solr configuration.</p>
+ */
+public class SimpleCommonRulesCompiler {
+
+    /**
+     * The version of the binary format. Snapshots of other versions will not be loaded.
+     */
+    public static final int FORMAT_VERSION = 2;
+
+    private static final int MAGIC = 0x51525243; // QRRC
+
+    private SimpleCommonRulesCompiler() {
+    }
+
+    /**
+     * Parse the rules and write the snapshot of the resulting rules collection.
+     *
+     * @param rules The rules. The reader will not be closed.
+     * @param querqyParserFactory A parser for the right-hand side of rules
+     * @param ignoreCase Iff true, rule input matching is case insensitive.
+     * @param out The output for the snapshot. The stream will be flushed but not closed.
+     * @throws IOException if the rules cannot be read or parsed or if the snapshot cannot be written
+     */
+    public static void compile(final Reader rules, final QuerqyParserFactory querqyParserFactory,
+                               final boolean ignoreCase, final OutputStream out) throws IOException {
+
+        final String rulesText = read(rules);
+
+        final RulesCollection rulesCollection = parse(new StringReader(rulesText), querqyParserFactory, ignoreCase);
+        if (!(rulesCollection instanceof TrieMapRulesCollection)) {
+            throw new IllegalStateException("Cannot compile rules collection of type "
+                    + rulesCollection.getClass().getName());
+        }
+
+        final DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out));
+        dataOut.writeInt(MAGIC);
+        dataOut.writeInt(FORMAT_VERSION);
+        final byte[] checksum = checksum(rulesText);
+        dataOut.writeInt(checksum.length);
+        dataOut.write(checksum);
+        dataOut.writeBoolean(ignoreCase);
+        dataOut.writeUTF(querqyParserFactory.getClass().getName());
+
+        TrieMapRulesCollectionSerializer.write((TrieMapRulesCollection) rulesCollection, dataOut);
+        dataOut.flush();
+
+    }
+
+    /**
+     * Load the rules collection from a snapshot if the snapshot was compiled from the given rules with the same
+     * settings and format version.
+     *
+     * @param rules The rules text from which the snapshot is expected to be compiled
+     * @param querqyParserFactory A parser for the right-hand side of rules
+     * @param ignoreCase Iff true, rule input matching is case insensitive.
+     * @param in The snapshot. The stream will not be closed.
+     * @return The rules collection or an empty Optional if the snapshot doesn't match the rules, the settings or the
+     * format version
+     * @throws IOException if the snapshot cannot be read or if it is invalid
+     */
+    public static Optional<RulesCollection> load(final String rules, final QuerqyParserFactory querqyParserFactory,
+                                                 final boolean ignoreCase, final InputStream in)
+            throws IOException {
+
+        final DataInputStream dataIn = new DataInputStream(new BufferedInputStream(in));
+
+        if (dataIn.readInt() != MAGIC) {
+            throw new IOException("Not a compiled rules file");
+        }
+
+        if (dataIn.readInt() != FORMAT_VERSION) {
+            return Optional.empty();
+        }
+
+        final int checksumLength = dataIn.readInt();
+        if (checksumLength < 0 || checksumLength > 64) {
+            throw new IOException("Invalid checksum length: " + checksumLength);
+        }
+        final byte[] checksum = new byte[checksumLength];
+        dataIn.readFully(checksum);
+
+        if (!Arrays.equals(checksum, checksum(rules))
+                || dataIn.readBoolean() != ignoreCase
+                || !dataIn.readUTF().equals(querqyParserFactory.getClass().getName())) {
+            return Optional.empty();
+        }
+
+        return Optional.of(TrieMapRulesCollectionSerializer.read(dataIn,
+                PropertiesBuilder.createJsonPathConfiguration()));
+
+    }
+
+    /**
+     * Render the templates in the rules and parse the result.
+     *
+     * @param rules The rules
+     * @param querqyParserFactory A parser for the right-hand side of rules
+     * @param ignoreCase Iff true, rule input matching is case insensitive.
+     * @return The rules collection
+     * @throws IOException if the rules cannot be read or parsed
+     */
+    static RulesCollection parse(final Reader rules, final QuerqyParserFactory querqyParserFactory,
+                                 final boolean ignoreCase) throws IOException {
+        return parse(rules, querqyParserFactory, ignoreCase, null);
+    }
+
+    /**
+     * Render the templates in the rules and parse the result, optionally in parallel.
+     *
+     * @param rules The rules
+     * @param querqyParserFactory A parser for the right-hand side of rules
+     * @param ignoreCase Iff true, rule input matching is case insensitive.
+     * @param executor The executor for parsing chunks of the rules in parallel or null to parse on the calling thread
+     * @return The rules collection
+     * @throws IOException if the rules cannot be read or parsed
+     */
+    static RulesCollection parse(final Reader rules, final QuerqyParserFactory querqyParserFactory,
+                                 final boolean ignoreCase, final ExecutorService executor) throws IOException {
+        try {
+            final QuerqyTemplateEngine querqyTemplateEngine = new QuerqyTemplateEngine(rules);
+            return new SimpleCommonRulesParser(querqyTemplateEngine.renderedRules.reader, querqyParserFactory,
+                    ignoreCase)
+                    .setLineNumberMapper(querqyTemplateEngine.renderedRules.lineNumberMapping::get)
+                    .setExecutor(executor)
+                    .parse();
+        } catch (final RuleParseException | TemplateParseException e) {
+            throw new IOException(e);
+        }
+    }
+
+    static String read(final Reader reader) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        final char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            sb.append(buffer, 0, read);
+        }
+        return sb.toString();
+    }
+
+    static byte[] checksum(final String rules) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(rules.getBytes(StandardCharsets.UTF_8));
+        } catch (final NoSuchAlgorithmException e) {
+            // every Java platform must support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+
+        if (args.length < 2 || args.length > 4) {
+            System.err.println("Usage: SimpleCommonRulesCompiler <rules file> <output file> [ignoreCase] "
+                    + "[querqy parser factory class]");
+            System.exit(1);
+        }
+
+        final boolean ignoreCase = args.length < 3 || Boolean.parseBoolean(args[2]);
+        final QuerqyParserFactory querqyParserFactory = args.length < 4
+                ? new WhiteSpaceQuerqyParserFactory()
+                : (QuerqyParserFactory) Class.forName(args[3]).getDeclaredConstructor().newInstance();
+
+        try (final Reader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8);
+             final OutputStream out = Files.newOutputStream(Paths.get(args[1]))) {
+            compile(reader, querqyParserFactory, ignoreCase, out);
+        }
+
+    }
+
+}
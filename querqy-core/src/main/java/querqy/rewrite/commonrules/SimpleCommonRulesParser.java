@@ -6,16 +6,26 @@ import static querqy.rewrite.commonrules.model.Instructions.StandardPropertyName
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.IntUnaryOperator;
 
 import querqy.rewrite.commonrules.model.*;
 
 /**
- * This parser reads a set of rules in the Common Rules format and creates a {@link RulesCollection}.
+ * <p>This parser reads a set of rules in the Common Rules format and creates a {@link RulesCollection}.</p>
+ *
+ * <p>If an {@link ExecutorService} is set using {@link #setExecutor(ExecutorService)}, the input will be split into
+ * chunks at rule boundaries (lines that end with '=&gt;'). The chunks are parsed in parallel and the rules are then
+ * added to the {@link RulesCollectionBuilder} in the order of the input. The result, including the ord of the
+ * instructions and the errors that are reported for invalid input, is the same as when parsing on a single thread.
+ * The {@link QuerqyParserFactory} must be thread-safe in this case.</p>
  *
  * @author rene
  */
@@ -23,6 +33,8 @@ public class SimpleCommonRulesParser {
 
     private static final String EMPTY = "";
 
+    public static final int DEFAULT_CHUNK_SIZE = 2000;
+
     private final BufferedReader reader;
     private final QuerqyParserFactory querqyParserFactory;
     private int lineNumber = 0;
@@ -34,6 +46,9 @@ public class SimpleCommonRulesParser {
 
     private IntUnaryOperator lineNumberMapper = lineNumb -> lineNumb;
 
+    private ExecutorService executor = null;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
     public SimpleCommonRulesParser(final Reader in, final QuerqyParserFactory querqyParserFactory,
                                    final boolean ignoreCase) {
         this(in, querqyParserFactory, new TrieMapRulesCollectionBuilder(ignoreCase));
@@ -47,20 +62,64 @@ public class SimpleCommonRulesParser {
         this.propertiesBuilder = new PropertiesBuilder();
     }
 
+    /**
+     * Creates a parser for a chunk of the input.
+     */
+    private SimpleCommonRulesParser(final SimpleCommonRulesParser parent, final RulesCollectionBuilder builder,
+                                    final int lineNumber, final int instructionsCount) {
+        this.reader = null;
+        this.querqyParserFactory = parent.querqyParserFactory;
+        this.builder = builder;
+        this.propertiesBuilder = new PropertiesBuilder();
+        this.lineNumberMapper = parent.lineNumberMapper;
+        this.lineNumber = lineNumber;
+        this.instructionsCount = instructionsCount;
+    }
+
     public SimpleCommonRulesParser setLineNumberMapper(final IntUnaryOperator lineNumberMapper) {
         this.lineNumberMapper = lineNumberMapper;
         return this;
     }
 
+    /**
+     * Parse chunks of the input in parallel using the given executor.
+     *
+     * @param executor The executor or null to parse on the calling thread
+     * @return This parser
+     */
+    public SimpleCommonRulesParser setExecutor(final ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Set the minimum number of lines per chunk if rules are parsed in parallel. Chunks are only split at rule
+     * boundaries. Default: {@value #DEFAULT_CHUNK_SIZE}.
+     *
+     * @param chunkSize The minimum number of lines per chunk
+     * @return This parser
+     */
+    public SimpleCommonRulesParser setChunkSize(final int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize > 0 expected. Actual value: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
     public RulesCollection parse() throws IOException, RuleParseException {
         try {
             lineNumber = 0;
-            String line;
-            while ((line = reader.readLine()) != null) {
-                lineNumber++;
-                nextLine(line);
+            if (executor == null) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    nextLine(line);
+                }
+                putRule();
+            } else {
+                parseChunks();
             }
-            putRule();
             return builder.build();
         } finally {
             try {
@@ -71,6 +130,94 @@ public class SimpleCommonRulesParser {
         }
     }
 
+    private void parseChunks() throws IOException, RuleParseException {
+
+        final List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+
+        // Every line that ends with '=>' starts a rule, so that we know the ord of the first rule in each chunk
+        // before parsing it
+        final List<Chunk> chunks = new ArrayList<>();
+        int chunkStart = 0;
+        int rulesBeforeChunk = 0;
+        int rulesInChunk = 0;
+        for (int i = 0, len = lines.size(); i < len; i++) {
+            if (stripLine(lines.get(i)).endsWith("=>")) {
+                if (i - chunkStart >= chunkSize) {
+                    chunks.add(new Chunk(lines.subList(chunkStart, i), chunkStart, rulesBeforeChunk));
+                    chunkStart = i;
+                    rulesBeforeChunk += rulesInChunk;
+                    rulesInChunk = 0;
+                }
+                rulesInChunk++;
+            }
+        }
+        chunks.add(new Chunk(lines.subList(chunkStart, lines.size()), chunkStart, rulesBeforeChunk));
+
+        final List<Future<?>> futures = new ArrayList<>(chunks.size());
+        for (final Chunk chunk : chunks) {
+            futures.add(executor.submit(chunk::parse));
+        }
+
+        try {
+
+            Chunk previous = null;
+
+            for (int i = 0, len = chunks.size(); i < len; i++) {
+
+                final Chunk chunk = chunks.get(i);
+                await(futures.get(i));
+
+                // The rule at the end of the previous chunk is completed by the first line of this chunk, unless
+                // this line cannot be parsed
+                if (previous != null) {
+                    if (chunk.error != null && chunk.errorLineIndex == 0) {
+                        chunk.throwError();
+                    }
+                    previous.parser.lineNumber = chunk.firstLineIndex + 1;
+                    previous.parser.putRule();
+                    previous.addRulesTo(builder);
+                }
+
+                chunk.addRulesTo(builder);
+                if (chunk.error != null) {
+                    chunk.throwError();
+                }
+
+                previous = chunk;
+
+            }
+
+            previous.parser.lineNumber = lines.size();
+            previous.parser.putRule();
+            previous.addRulesTo(builder);
+
+        } finally {
+            for (final Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+    }
+
+    private static void await(final Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing rules", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
     private void putRule() throws RuleParseException {
         if (input != null) {
             if (instructionList.isEmpty()) {
@@ -123,7 +270,7 @@ public class SimpleCommonRulesParser {
         }
     }
 
-    String stripLine(String line) {
+    static String stripLine(String line) {
         line = line.trim();
         if (line.length() > 0) {
             int pos = line.indexOf('#');
@@ -137,4 +284,70 @@ public class SimpleCommonRulesParser {
         return line;
     }
     
+    /**
+     * A chunk of lines that starts at a rule boundary and that is parsed by its own parser. The rules are collected
+     * and only added to the target {@link RulesCollectionBuilder} after all previous chunks have been added.
+     */
+    private class Chunk {
+
+        final List<String> lines;
+        final int firstLineIndex;
+        final SimpleCommonRulesParser parser;
+        final List<Input> inputs = new ArrayList<>();
+        final List<Instructions> instructions = new ArrayList<>();
+        int numRulesAdded = 0;
+
+        Exception error = null;
+        int errorLineIndex = -1;
+
+        Chunk(final List<String> lines, final int firstLineIndex, final int rulesBeforeChunk) {
+            this.lines = lines;
+            this.firstLineIndex = firstLineIndex;
+            this.parser = new SimpleCommonRulesParser(SimpleCommonRulesParser.this, new RulesCollectionBuilder() {
+
+                @Override
+                public void addRule(final Input input, final Instructions rule) {
+                    inputs.add(input);
+                    instructions.add(rule);
+                }
+
+                @Override
+                public RulesCollection build() {
+                    throw new UnsupportedOperationException();
+                }
+
+            }, firstLineIndex, rulesBeforeChunk);
+        }
+
+        void parse() {
+            for (int i = 0, len = lines.size(); i < len; i++) {
+                parser.lineNumber++;
+                try {
+                    parser.nextLine(lines.get(i));
+                } catch (final RuleParseException | RuntimeException e) {
+                    error = e;
+                    errorLineIndex = i;
+                    return;
+                }
+            }
+        }
+
+        void addRulesTo(final RulesCollectionBuilder target) throws RuleParseException {
+            for (int len = inputs.size(); numRulesAdded < len; numRulesAdded++) {
+                try {
+                    target.addRule(inputs.get(numRulesAdded), instructions.get(numRulesAdded));
+                } catch (final Exception e) {
+                    throw new RuleParseException(e);
+                }
+            }
+        }
+
+        void throwError() throws RuleParseException {
+            if (error instanceof RuleParseException) {
+                throw (RuleParseException) error;
+            }
+            throw (RuntimeException) error;
+        }
+    }
+
 }
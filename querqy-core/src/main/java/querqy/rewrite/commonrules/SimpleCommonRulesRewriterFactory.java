@@ -1,35 +1,73 @@
 package querqy.rewrite.commonrules;
 
+import static querqy.rewrite.ContextAwareQueryRewriter.CONTEXT_KEY_DEBUG_ENABLED;
+
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import querqy.model.ExpandedQuery;
+import querqy.model.QuerqyQuery;
+import querqy.model.Query;
 import querqy.model.Term;
-import querqy.rewrite.QuerqyTemplateEngine;
 import querqy.rewrite.QueryRewriter;
 import querqy.rewrite.RewriterFactory;
 import querqy.rewrite.SearchEngineRequestAdapter;
-import querqy.rewrite.TemplateParseException;
 import querqy.rewrite.commonrules.model.RulesCollection;
+import querqy.rewrite.commonrules.model.RulesIndexType;
+import querqy.rewrite.commonrules.model.TrieMapRulesCollection;
 import querqy.rewrite.commonrules.select.SelectionStrategy;
 import querqy.rewrite.commonrules.select.RuleSelectionParams;
 import querqy.rewrite.commonrules.select.SelectionStrategyFactory;
 
 /**
+ * <p>A factory for {@link CommonRulesRewriter}s.</p>
+ *
+ * <p>The rules can be replaced at runtime using {@link #reload(Reader)} or {@link #reloadIfChanged(Reader)}. The new
+ * {@link RulesCollection} is built on the calling thread, which should be a background thread, while the factory keeps
+ * serving the current rules. It is then published with a single volatile write. Rewriters that were created before the
+ * swap keep using the rules that were current when they were created.</p>
+ *
+ * <p>The rules that are used for a request are pinned in the request context when the factory is first called for
+ * the request, so that {@link #getRewriteResultCacheKey(SearchEngineRequestAdapter)},
+ * {@link #mightRewrite(ExpandedQuery, SearchEngineRequestAdapter)} and
+ * {@link #createRewriter(ExpandedQuery, SearchEngineRequestAdapter)} all see the same rules, even if the rules are
+ * reloaded in between.</p>
+ *
  * @author René Kriegler, @renekrie
  */
 public class SimpleCommonRulesRewriterFactory extends RewriterFactory {
 
-    private final RulesCollection rules;
+    private static final Logger LOG = Logger.getLogger(SimpleCommonRulesRewriterFactory.class.getName());
+
+    /**
+     * The prefix of the request context key under which the rules for the current request are kept. The key ends with
+     * the rewriter id.
+     */
+    public static final String CONTEXT_KEY_RULES_PREFIX = "querqy.commonrules.rules.";
+
+    private final QuerqyParserFactory querqyParserFactory;
+    private final boolean ignoreCase;
+    private volatile Rules rules;
     private final Map<String, SelectionStrategyFactory> selectionStrategyFactories;
     private final String strategyParam;
     private final SelectionStrategyFactory defaultSelectionStrategyFactory;
     private final boolean buildTermCache;
+    private final RulesIndexType indexType;
+    private final int maxCombinationsPerPosition;
+    private final String rulesContextKey;
 
 
     /**
@@ -42,6 +80,7 @@ public class SimpleCommonRulesRewriterFactory extends RewriterFactory {
      * @param defaultSelectionStrategyFactory The default {@link SelectionStrategyFactory} to be used if no strategy is
      *                                       specified as a request parameter
      * @throws IOException if rules cannot be read or parsed
+     * @see #builder(String, Reader, QuerqyParserFactory)
      */
     public SimpleCommonRulesRewriterFactory(final String rewriterId,
                                             final Reader reader, final QuerqyParserFactory querqyParserFactory,
@@ -50,38 +89,191 @@ public class SimpleCommonRulesRewriterFactory extends RewriterFactory {
                                             final SelectionStrategyFactory defaultSelectionStrategyFactory,
                                             final boolean buildTermCache)
             throws IOException {
+        this(builder(rewriterId, reader, querqyParserFactory)
+                .setIgnoreCase(ignoreCase)
+                .setSelectionStrategyFactories(selectionStrategyFactories)
+                .setDefaultSelectionStrategyFactory(defaultSelectionStrategyFactory)
+                .setBuildTermCache(buildTermCache));
+    }
 
-        super(rewriterId);
+    private SimpleCommonRulesRewriterFactory(final Builder builder) throws IOException {
 
-        this.strategyParam = RuleSelectionParams.getStrategyParamName(rewriterId);
+        super(builder.rewriterId);
 
-        this.selectionStrategyFactories = new HashMap<>(selectionStrategyFactories);
+        this.indexType = Objects.requireNonNull(builder.indexType);
+
+        if (builder.maxCombinationsPerPosition < 1) {
+            throw new IllegalArgumentException("maxCombinationsPerPosition must be > 0");
+        }
+        this.maxCombinationsPerPosition = builder.maxCombinationsPerPosition;
 
-        this.defaultSelectionStrategyFactory = Objects.requireNonNull(defaultSelectionStrategyFactory);
+        this.strategyParam = RuleSelectionParams.getStrategyParamName(builder.rewriterId);
 
-        this.buildTermCache = buildTermCache;
+        this.selectionStrategyFactories = new HashMap<>(builder.selectionStrategyFactories);
 
+        this.defaultSelectionStrategyFactory = Objects.requireNonNull(builder.defaultSelectionStrategyFactory);
+
+        this.buildTermCache = builder.buildTermCache;
+
+        this.querqyParserFactory = builder.querqyParserFactory;
+
+        this.ignoreCase = builder.ignoreCase;
+
+        this.rulesContextKey = CONTEXT_KEY_RULES_PREFIX + builder.rewriterId;
+
+        final Reader reader = builder.reader;
+        final InputStream compiledRules = builder.compiledRules;
         try {
-            final QuerqyTemplateEngine querqyTemplateEngine = new QuerqyTemplateEngine(reader);
-            rules = new SimpleCommonRulesParser(querqyTemplateEngine.renderedRules.reader, querqyParserFactory, ignoreCase)
-                    .setLineNumberMapper(querqyTemplateEngine.renderedRules.lineNumberMapping::get)
-                    .parse();
-        } catch (final RuleParseException | TemplateParseException e) {
-            throw new IOException(e);
+            final String rulesText = SimpleCommonRulesCompiler.read(reader);
+            final Optional<RulesCollection> compiled = compiledRules == null
+                    ? Optional.empty()
+                    : SimpleCommonRulesCompiler.load(rulesText, querqyParserFactory, ignoreCase, compiledRules);
+            rules = compiled.isPresent()
+                    ? new Rules(indexType.createIndex(compiled.get(), maxCombinationsPerPosition), rulesText, true, 0)
+                    : parse(rulesText, 0, builder.parserExecutor);
         } finally {
-            try {
-                reader.close();
-            } catch (final IOException e) {
-                // TODO: log
+            closeQuietly(reader);
+            if (compiledRules != null) {
+                closeQuietly(compiledRules);
             }
         }
     }
 
+    /**
+     * @param rewriterId The id of this rewriter
+     * @param reader The reader to access the rewriter configuration. It will be closed by {@link Builder#build()}.
+     * @param querqyParserFactory A parser for the right-hand side of rules
+     * @return A builder for a factory
+     */
+    public static Builder builder(final String rewriterId, final Reader reader,
+                                  final QuerqyParserFactory querqyParserFactory) {
+        return new Builder(rewriterId, reader, querqyParserFactory);
+    }
+
     @Override
     public QueryRewriter createRewriter(final ExpandedQuery input,
                                         final SearchEngineRequestAdapter searchEngineRequestAdapter) {
 
-        final SelectionStrategy selectionStrategy = searchEngineRequestAdapter
+        final SelectionStrategy selectionStrategy = getSelectionStrategyFactory(searchEngineRequestAdapter)
+                .createSelectionStrategy(getRewriterId(), searchEngineRequestAdapter);
+
+        return new CommonRulesRewriter(getRules(searchEngineRequestAdapter).rulesCollection, selectionStrategy);
+    }
+
+    /**
+     * A rule can only match if the query contains the first input term of the rule. The rewriter will not change
+     * queries that are not of type {@link Query}.
+     */
+    @Override
+    public boolean mightRewrite(final ExpandedQuery query,
+                                final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+
+        final QuerqyQuery<?> userQuery = query.getUserQuery();
+        if (!(userQuery instanceof Query)) {
+            return false;
+        }
+
+        // the rewriter adds an entry for debug information to the context, even if no rule matches
+        if (Boolean.TRUE.equals(searchEngineRequestAdapter.getContext().get(CONTEXT_KEY_DEBUG_ENABLED))) {
+            return true;
+        }
+
+        return getRules(searchEngineRequestAdapter).rulesCollection.getTriggerTerms()
+                .map(triggerTerms -> triggerTerms.mightMatch((Query) userQuery))
+                .orElse(true);
+    }
+
+    /**
+     * <p>Parse the rules and replace the current rules by the result.</p>
+     *
+     * <p>The current rules stay in use while the new rules are being parsed. They will not be replaced if the new rules
+     * cannot be parsed.</p>
+     *
+     * @param reader The reader to access the new rules. The reader will be closed.
+     * @throws IOException if the rules cannot be read or parsed
+     */
+    public void reload(final Reader reader) throws IOException {
+        reload(reader, false);
+    }
+
+    /**
+     * <p>Parse the rules and replace the current rules by the result unless the rules text is the same as the text of
+     * the current rules.</p>
+     *
+     * @param reader The reader to access the new rules. The reader will be closed.
+     * @return true iff the rules were replaced
+     * @throws IOException if the rules cannot be read or parsed
+     * @see #reload(Reader)
+     */
+    public boolean reloadIfChanged(final Reader reader) throws IOException {
+        return reload(reader, true);
+    }
+
+    private synchronized boolean reload(final Reader reader, final boolean onlyIfChanged) throws IOException {
+
+        final String rulesText;
+        try {
+            rulesText = SimpleCommonRulesCompiler.read(reader);
+        } finally {
+            closeQuietly(reader);
+        }
+
+        final Rules current = rules;
+        if (onlyIfChanged && Arrays.equals(current.checksum, SimpleCommonRulesCompiler.checksum(rulesText))) {
+            return false;
+        }
+
+        rules = parse(rulesText, current.version + 1, null);
+        return true;
+
+    }
+
+    private Rules parse(final String rulesText, final long version, final ExecutorService executor)
+            throws IOException {
+        return new Rules(indexType.createIndex(SimpleCommonRulesCompiler.parse(new StringReader(rulesText),
+                querqyParserFactory, ignoreCase, executor), maxCombinationsPerPosition), rulesText, false, version);
+    }
+
+    /**
+     * The rewrite result depends on the selection strategy, on its params and on the version of the rules.
+     */
+    @Override
+    public Optional<Object> getRewriteResultCacheKey(final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+        final String strategyName = searchEngineRequestAdapter.getRequestParam(strategyParam).orElse(null);
+        if (strategyName != null && !selectionStrategyFactories.containsKey(strategyName)) {
+            // createRewriter() will fail
+            return Optional.empty();
+        }
+        final long version = getRules(searchEngineRequestAdapter).version;
+        return getSelectionStrategyFactory(searchEngineRequestAdapter)
+                .getRewriteResultCacheKey(getRewriterId(), searchEngineRequestAdapter)
+                .map(key -> Arrays.asList(version, strategyName, key));
+    }
+
+    /**
+     * Get the rules for a request. The current rules are pinned in the request context on the first call for the
+     * request and returned for all further calls.
+     *
+     * @param searchEngineRequestAdapter The request adapter
+     * @return The rules for the request
+     */
+    private Rules getRules(final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+        final Map<String, Object> context = searchEngineRequestAdapter.getContext();
+        if (context == null) {
+            return rules;
+        }
+        final Rules pinned = (Rules) context.get(rulesContextKey);
+        if (pinned != null) {
+            return pinned;
+        }
+        final Rules current = rules;
+        context.put(rulesContextKey, current);
+        return current;
+    }
+
+    private SelectionStrategyFactory getSelectionStrategyFactory(
+            final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+        return searchEngineRequestAdapter
                 .getRequestParam(strategyParam)
                 .map(name -> {
                     final SelectionStrategyFactory factory = selectionStrategyFactories.get(name);
@@ -89,23 +281,189 @@ public class SimpleCommonRulesRewriterFactory extends RewriterFactory {
                         throw new IllegalArgumentException("No selection strategy for name " + name);
                     }
                     return factory;
-                }).orElse(defaultSelectionStrategyFactory) // strategy not specified in params
-                .createSelectionStrategy(getRewriterId(), searchEngineRequestAdapter);
-
-        return new CommonRulesRewriter(rules, selectionStrategy);
+                }).orElse(defaultSelectionStrategyFactory); // strategy not specified in params
     }
 
     @Override
     public Set<Term> getCacheableGenerableTerms() {
         if (buildTermCache) {
-            return rules.getGenerableTerms();
+            return rules.rulesCollection.getGenerableTerms();
         }
 
         return Collections.emptySet();
     }
 
+    /**
+     * @return true iff the current rules were loaded from compiled rules instead of parsing them
+     */
+    public boolean isLoadedFromCompiledRules() {
+        return rules.loadedFromCompiledRules;
+    }
+
+    /**
+     * @return The version of the current rules. It is 0 for the rules that were passed to the constructor and it will
+     * be incremented whenever the rules are replaced.
+     */
+    public long getRulesVersion() {
+        return rules.version;
+    }
+
+    /**
+     * @return The number of combinations of query terms that were not looked up in the current rules because a query
+     * position had more than maxCombinationsPerPosition combinations
+     */
+    public long getPrunedCombinationsCount() {
+        return rules.rulesCollection.getPrunedCombinationsCount();
+    }
+
     RulesCollection getRules() {
-        return rules;
+        return rules.rulesCollection;
+    }
+
+    private static void closeQuietly(final Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (final IOException e) {
+            LOG.log(Level.WARNING, "Could not close rules input", e);
+        }
+    }
+
+    public static class Builder {
+
+        private final String rewriterId;
+        private final Reader reader;
+        private final QuerqyParserFactory querqyParserFactory;
+        private boolean ignoreCase = true;
+        private Map<String, SelectionStrategyFactory> selectionStrategyFactories = Collections.emptyMap();
+        private SelectionStrategyFactory defaultSelectionStrategyFactory;
+        private boolean buildTermCache = true;
+        private InputStream compiledRules = null;
+        private ExecutorService parserExecutor = null;
+        private RulesIndexType indexType = RulesIndexType.CHAR_TRIE;
+        private int maxCombinationsPerPosition = TrieMapRulesCollection.DEFAULT_MAX_COMBINATIONS_PER_POSITION;
+
+        private Builder(final String rewriterId, final Reader reader, final QuerqyParserFactory querqyParserFactory) {
+            this.rewriterId = rewriterId;
+            this.reader = reader;
+            this.querqyParserFactory = querqyParserFactory;
+        }
+
+        /**
+         * @param ignoreCase Iff true, rule input matching is case insensitive. Default: true
+         * @return This builder
+         */
+        public Builder setIgnoreCase(final boolean ignoreCase) {
+            this.ignoreCase = ignoreCase;
+            return this;
+        }
+
+        /**
+         * @param selectionStrategyFactories A mapping between names of rule selection strategies and their factories.
+         *                                   Default: no named strategies
+         * @return This builder
+         */
+        public Builder setSelectionStrategyFactories(
+                final Map<String, SelectionStrategyFactory> selectionStrategyFactories) {
+            this.selectionStrategyFactories = selectionStrategyFactories;
+            return this;
+        }
+
+        /**
+         * @param defaultSelectionStrategyFactory The default {@link SelectionStrategyFactory} to be used if no
+         *                                        strategy is specified as a request parameter. Required.
+         * @return This builder
+         */
+        public Builder setDefaultSelectionStrategyFactory(
+                final SelectionStrategyFactory defaultSelectionStrategyFactory) {
+            this.defaultSelectionStrategyFactory = defaultSelectionStrategyFactory;
+            return this;
+        }
+
+        /**
+         * @param buildTermCache Iff true, the terms that can be generated by the rules will be cacheable. Default: true
+         * @return This builder
+         */
+        public Builder setBuildTermCache(final boolean buildTermCache) {
+            this.buildTermCache = buildTermCache;
+            return this;
+        }
+
+        /**
+         * <p>Set a snapshot of the rules that was created by the {@link SimpleCommonRulesCompiler}. The snapshot is
+         * only used if it was compiled from the rules of the reader with the same querqyParserFactory class and
+         * ignoreCase setting. Otherwise the rules are parsed.</p>
+         *
+         * @param compiledRules The compiled rules or null if the rules should always be parsed. The stream will be
+         *                      closed by {@link #build()}. Default: null
+         * @return This builder
+         */
+        public Builder setCompiledRules(final InputStream compiledRules) {
+            this.compiledRules = compiledRules;
+            return this;
+        }
+
+        /**
+         * @param parserExecutor The executor for parsing chunks of the rules in parallel or null to parse the rules on
+         *                       the calling thread. It is only used by {@link #build()} and it will not be shut down.
+         *                       The querqyParserFactory must be thread-safe if an executor is set. Default: null
+         * @return This builder
+         * @see SimpleCommonRulesParser#setExecutor(ExecutorService)
+         */
+        public Builder setParserExecutor(final ExecutorService parserExecutor) {
+            this.parserExecutor = parserExecutor;
+            return this;
+        }
+
+        /**
+         * @param indexType The type of the index for the rules input. It will also be used for reloaded rules.
+         *                  Default: {@link RulesIndexType#CHAR_TRIE}
+         * @return This builder
+         */
+        public Builder setIndexType(final RulesIndexType indexType) {
+            this.indexType = indexType;
+            return this;
+        }
+
+        /**
+         * @param maxCombinationsPerPosition The maximum number of combinations of query terms that match the beginning
+         *                                   of a rules input and that are continued at the next query position. This
+         *                                   bounds the number of lookups for queries with many alternatives per
+         *                                   position. Default: no limit
+         * @return This builder
+         * @see TrieMapRulesCollection#withMaxCombinationsPerPosition(int)
+         */
+        public Builder setMaxCombinationsPerPosition(final int maxCombinationsPerPosition) {
+            this.maxCombinationsPerPosition = maxCombinationsPerPosition;
+            return this;
+        }
+
+        /**
+         * @return The factory
+         * @throws IOException if rules cannot be read or parsed or if the compiled rules are invalid
+         */
+        public SimpleCommonRulesRewriterFactory build() throws IOException {
+            return new SimpleCommonRulesRewriterFactory(this);
+        }
+
+    }
+
+    /**
+     * An immutable snapshot of the rules, which is published as a whole.
+     */
+    private static class Rules {
+
+        final RulesCollection rulesCollection;
+        final byte[] checksum;
+        final boolean loadedFromCompiledRules;
+        final long version;
+
+        Rules(final RulesCollection rulesCollection, final String rulesText, final boolean loadedFromCompiledRules,
+              final long version) {
+            this.rulesCollection = rulesCollection;
+            this.checksum = SimpleCommonRulesCompiler.checksum(rulesText);
+            this.loadedFromCompiledRules = loadedFromCompiledRules;
+            this.version = version;
+        }
     }
 
 }
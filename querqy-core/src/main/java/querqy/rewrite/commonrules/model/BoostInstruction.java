@@ -7,13 +7,20 @@ import static querqy.model.Clause.Occur.*;
 
 import java.util.*;
 
-import querqy.ComparableCharSequence;
 import querqy.model.*;
 import querqy.model.Term;
 import querqy.rewrite.QueryRewriter;
 import querqy.rewrite.SearchEngineRequestAdapter;
 
 /**
+ * <p>Adds a boost query to the {@link ExpandedQuery}.</p>
+ *
+ * <p>Boost queries are prepared when the instruction is created. A boost query without place holders is created only
+ * once and the same {@link BoostQuery} object is added to every query to which the instruction is applied. Boost
+ * queries in an ExpandedQuery must thus be treated as read-only. A boost query with place holders is compiled into a
+ * {@link QueryTemplate}, which creates the query for the current term matches without walking the query tree with a
+ * visitor.</p>
+ *
  * @author René Kriegler, @renekrie
  */
 public class BoostInstruction implements Instruction {
@@ -26,6 +33,10 @@ public class BoostInstruction implements Instruction {
     final BoostDirection direction;
     final boolean hasPlaceHolder;
     final float boost;
+    // the shared boost query if the query doesn't contain a place holder
+    private final BoostQuery boostQuery;
+    // the template for creating the query if it contains a place holder
+    private final QueryTemplate template;
 
     public BoostInstruction(final QuerqyQuery<?> query, final BoostDirection direction, final float boost) {
         if (query == null) {
@@ -47,6 +58,14 @@ public class BoostInstruction implements Instruction {
 
         this.direction = direction;
         this.boost = boost;
+
+        if (hasPlaceHolder) {
+            template = new QueryTemplate((Query) this.query);
+            boostQuery = null;
+        } else {
+            template = null;
+            boostQuery = new BoostQuery(this.query.clone(null, true), boost);
+        }
     }
 
     /* (non-Javadoc)
@@ -59,12 +78,7 @@ public class BoostInstruction implements Instruction {
                       final int startPosition, final int endPosition, final ExpandedQuery expandedQuery,
                       final SearchEngineRequestAdapter searchEngineRequestAdapter) {
 
-        // TODO: we might not need to clone here, if we already cloned all queries in the constructor
-        final QuerqyQuery<?> q = (hasPlaceHolder)
-                ? new CloneAndReplacePlaceHolderRewriter(termMatches).cloneAndReplace(query)
-                : query.clone(null, true);
-
-        final BoostQuery bq = new BoostQuery(q, boost);
+        final BoostQuery bq = (hasPlaceHolder) ? new BoostQuery(template.fill(termMatches), boost) : boostQuery;
         if (direction == BoostDirection.DOWN) {
             expandedQuery.addBoostDownQuery(bq);
         } else {
@@ -123,92 +137,6 @@ public class BoostInstruction implements Instruction {
                 + ", boost=" + boost + "]";
     }
 
-    class CloneAndReplacePlaceHolderRewriter extends AbstractNodeVisitor<Node> {
-
-        final TermMatches termMatches;
-        final LinkedList<Node> newParentStack = new LinkedList<>();
-
-        CloneAndReplacePlaceHolderRewriter(TermMatches termMatches) {
-            this.termMatches = termMatches;
-        }
-
-        public QuerqyQuery<?> cloneAndReplace(QuerqyQuery<?> querqyQuery) {
-            if (querqyQuery instanceof Query) {
-                return (QuerqyQuery<?>) visit((Query) query);
-            } else {
-                return (QuerqyQuery) querqyQuery.accept(this);
-            }
-        }
-
-        protected Node getNewParent() {
-            return newParentStack.isEmpty() ? null : newParentStack.getLast();
-        }
-
-
-        @Override
-        public Node visit(final Query query) {
-            Query clone = new Query();
-            newParentStack.add(clone);
-            for (final BooleanClause clause : query.getClauses()) {
-                clone.addClause((BooleanClause) clause.accept(this));
-            }
-            newParentStack.removeLast();
-            return clone;
-        }
-
-        @Override
-        public DisjunctionMaxQuery visit(final DisjunctionMaxQuery disjunctionMaxQuery) {
-
-
-            final DisjunctionMaxQuery newDMQ
-                    = new DisjunctionMaxQuery((BooleanQuery) getNewParent(), disjunctionMaxQuery.occur, true);
-            newParentStack.add(newDMQ);
-
-            for (final DisjunctionMaxClause clause : disjunctionMaxQuery.getClauses()) {
-                newDMQ.addClause((DisjunctionMaxClause) clause.accept(this));
-            }
-
-            newParentStack.removeLast();
-
-            return newDMQ;
-
-        }
-
-        @Override
-        public Node visit(final Term term) {
-            final ComparableCharSequence value = term.getValue();
-            if (value instanceof querqy.rewrite.commonrules.model.Term) {
-                querqy.rewrite.commonrules.model.Term termValue = (querqy.rewrite.commonrules.model.Term) value;
-                final ComparableCharSequence newValue = termValue.fillPlaceholders(termMatches);
-                return new Term((DisjunctionMaxQuery) getNewParent(), term.getField(), newValue, true);
-            } else {
-                return term.clone((DisjunctionMaxQuery) getNewParent(), true);
-            }
-        }
-
-        @Override
-        public Node visit(final BooleanQuery booleanQuery) {
-
-            final BooleanQuery newBQ
-                    = new BooleanQuery((BooleanParent) getNewParent(), booleanQuery.occur, true);
-            newParentStack.add(newBQ);
-
-            for (final BooleanClause clause : booleanQuery.getClauses()) {
-                newBQ.addClause((BooleanClause) clause.accept(this));
-            }
-            newParentStack.removeLast();
-
-            return newBQ;
-
-        }
-
-        @Override
-        public Node visit(final RawQuery rawQuery) {
-            return rawQuery.clone((BooleanParent) getNewParent(), true);
-        }
-
-    }
-
     class ToPlaceHolderTermRewriter extends AbstractNodeVisitor<Node> {
 
         private boolean hasPlaceHolder = false;
@@ -31,4 +31,19 @@ public class InstructionsProperties {
         final List read = documentContext.read(jsonPath);
         return read.size() > 0;
     }
+
+    /**
+     * Same as {@link #matches(String)} but for a JsonPath that was compiled once for all Instructions.
+     *
+     * @param jsonPath The compiled JsonPath
+     * @return true iff the JsonPath selects at least one element from the properties
+     */
+    public boolean matches(final JsonPath jsonPath) {
+        final List read = documentContext.read(jsonPath);
+        return read.size() > 0;
+    }
+
+    Map<String, Object> getPropertyMap() {
+        return propertyMap;
+    }
 }
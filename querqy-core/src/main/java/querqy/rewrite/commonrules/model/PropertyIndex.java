@@ -0,0 +1,362 @@
+package querqy.rewrite.commonrules.model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * <p>An inverted index from the top-level properties of {@link Instructions} to their {@link Instructions#getOrd()}
+ * values. It is built once when the rules are loaded and allows to answer simple equality and membership filters
+ * without evaluating a JsonPath expression per rule and request.</p>
+ *
+ * <p>Only String and Number values are indexed. Numbers are compared by their numeric value, so that 2 and 2.0 are
+ * considered equal. For properties that have a value of another type (for example, a nested object or a list that
+ * mixes Strings and Numbers), the index only records that the property exists so that the caller can fall back to a
+ * full evaluation for these rules.</p>
+ *
+ * <p>If all values of a property are Strings or if all values are Numbers, the index also holds a sort key per ord,
+ * which is the rank of the value among all values of the property. Comparing sort keys gives the same order as
+ * comparing the values themselves.</p>
+ *
+ * <p>The index requires that the ord values of the indexed Instructions are unique and not negative. Instances are
+ * immutable and can be shared between threads.</p>
+ */
+public class PropertyIndex {
+
+    /**
+     * The types of property values that are indexed.
+     */
+    public enum ValueType { STRING, NUMBER }
+
+    private static final int[] NO_ORDS = new int[0];
+
+    private final Map<String, Property> properties;
+
+    private PropertyIndex(final Map<String, Property> properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Get the index data for a property name
+     *
+     * @param name The property name
+     * @return The indexed property or an empty Optional if none of the Instructions had this property.
+     */
+    public Optional<Property> getProperty(final String name) {
+        return Optional.ofNullable(properties.get(name));
+    }
+
+    public int size() {
+        return properties.size();
+    }
+
+    /**
+     * Converts a property value into the representation that is used as a key in the index.
+     *
+     * @param value The value
+     * @return The value itself if it is a String, a BigDecimal without trailing zeros if it is a finite Number or null
+     * if the value cannot be indexed.
+     */
+    public static Object normalizeValue(final Object value) {
+        if (value instanceof String) {
+            return value;
+        }
+        if (value instanceof Number) {
+            try {
+                final BigDecimal decimal = value instanceof BigDecimal
+                        ? (BigDecimal) value : new BigDecimal(value.toString());
+                return decimal.signum() == 0 ? BigDecimal.ZERO : decimal.stripTrailingZeros();
+            } catch (final NumberFormatException e) {
+                // NaN or Infinity
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the type of a normalized value.
+     *
+     * @param normalizedValue A value as returned by {@link #normalizeValue(Object)}
+     * @return The value type or null if the value cannot be indexed.
+     */
+    public static ValueType getValueType(final Object normalizedValue) {
+        if (normalizedValue instanceof String) {
+            return ValueType.STRING;
+        }
+        if (normalizedValue instanceof BigDecimal) {
+            return ValueType.NUMBER;
+        }
+        return null;
+    }
+
+    /**
+     * The index data of a single property.
+     */
+    public static class Property {
+
+        private final BitSet present;
+        private final BitSet[] scalarsByType;
+        private final BitSet[] listsByType;
+        private final Map<Object, int[]> ordsByValue;
+        private final Map<Object, int[]> ordsByElement;
+        private final int[] sortKeys;
+
+        private Property(final BitSet present, final BitSet[] scalarsByType, final BitSet[] listsByType,
+                         final Map<Object, int[]> ordsByValue, final Map<Object, int[]> ordsByElement,
+                         final int[] sortKeys) {
+            this.present = present;
+            this.scalarsByType = scalarsByType;
+            this.listsByType = listsByType;
+            this.ordsByValue = ordsByValue;
+            this.ordsByElement = ordsByElement;
+            this.sortKeys = sortKeys;
+        }
+
+        /**
+         * Get the ords of the Instructions that have a String or Number property value that equals the given value.
+         *
+         * @param normalizedValue A value as returned by {@link #normalizeValue(Object)}
+         * @return The ords in ascending order. The array must not be modified.
+         */
+        public int[] getOrdsWithValue(final Object normalizedValue) {
+            return ordsByValue.getOrDefault(normalizedValue, NO_ORDS);
+        }
+
+        /**
+         * Get the ords of the Instructions that have a list property value that contains the given value.
+         *
+         * @param normalizedValue A value as returned by {@link #normalizeValue(Object)}
+         * @return The ords in ascending order. The array must not be modified.
+         */
+        public int[] getOrdsWithElement(final Object normalizedValue) {
+            return ordsByElement.getOrDefault(normalizedValue, NO_ORDS);
+        }
+
+        /**
+         * @param ord The Instructions ord
+         * @return true iff the Instructions have a non-null value for this property
+         */
+        public boolean isPresent(final int ord) {
+            return present.get(ord);
+        }
+
+        /**
+         * @param ord The Instructions ord
+         * @param type The value type
+         * @return true iff the property value of the Instructions is a single value of the given type
+         */
+        public boolean isValueOfType(final int ord, final ValueType type) {
+            return scalarsByType[type.ordinal()].get(ord);
+        }
+
+        /**
+         * @param ord The Instructions ord
+         * @param type The value type
+         * @return true iff the property value of the Instructions is a list and all its elements are of the given type
+         */
+        public boolean isListOfType(final int ord, final ValueType type) {
+            return listsByType[type.ordinal()].get(ord);
+        }
+
+        /**
+         * @return true iff all values of this property are Strings or all values are Numbers so that there is a
+         * sort key for each Instructions that have this property
+         */
+        public boolean hasSortKeys() {
+            return sortKeys != null;
+        }
+
+        /**
+         * @param ord The Instructions ord
+         * @return The rank of the property value of the Instructions among all values of this property or -1 if the
+         * Instructions don't have this property or if there are no sort keys.
+         */
+        public int getSortKey(final int ord) {
+            return (sortKeys != null && ord < sortKeys.length) ? sortKeys[ord] : -1;
+        }
+
+    }
+
+    public static class Builder {
+
+        private final Map<String, PropertyBuilder> properties = new HashMap<>();
+        private final BitSet seenOrds = new BitSet();
+        private boolean valid = true;
+
+        /**
+         * Add the properties of the Instructions to the index.
+         *
+         * @param instructions The Instructions
+         */
+        public void add(final Instructions instructions) {
+
+            if (!valid) {
+                return;
+            }
+
+            final int ord = instructions.getOrd();
+            if (ord < 0 || seenOrds.get(ord)) {
+                // we can't reference these Instructions in the index
+                valid = false;
+                properties.clear();
+                return;
+            }
+            seenOrds.set(ord);
+
+            for (final Map.Entry<String, Object> entry : instructions.getProperties().getPropertyMap().entrySet()) {
+                final Object value = entry.getValue();
+                if (value != null) {
+                    properties.computeIfAbsent(entry.getKey(), name -> new PropertyBuilder()).add(ord, value);
+                }
+            }
+        }
+
+        /**
+         * @return The index or an empty Optional if the added Instructions can't be indexed because of non-unique or
+         * negative ord values.
+         */
+        public Optional<PropertyIndex> build() {
+            if (!valid) {
+                return Optional.empty();
+            }
+            final Map<String, Property> index = new HashMap<>(properties.size());
+            properties.forEach((name, builder) -> index.put(name, builder.build()));
+            return Optional.of(new PropertyIndex(Collections.unmodifiableMap(index)));
+        }
+
+    }
+
+    private static class PropertyBuilder {
+
+        final BitSet present = new BitSet();
+        final BitSet[] scalarsByType = newBitSets();
+        final BitSet[] listsByType = newBitSets();
+        final Map<Object, OrdList> ordsByValue = new HashMap<>();
+        final Map<Object, OrdList> ordsByElement = new HashMap<>();
+
+        void add(final int ord, final Object value) {
+
+            present.set(ord);
+
+            if (value instanceof List) {
+
+                ValueType listType = null;
+                boolean mixed = false;
+
+                for (final Object element : (List<?>) value) {
+                    final Object normalized = normalizeValue(element);
+                    final ValueType type = getValueType(normalized);
+                    if (type == null || (listType != null && type != listType)) {
+                        mixed = true;
+                    } else {
+                        listType = type;
+                    }
+                    if (normalized != null) {
+                        ordsByElement.computeIfAbsent(normalized, k -> new OrdList()).add(ord);
+                    }
+                }
+
+                if (!mixed) {
+                    if (listType == null) {
+                        // empty list
+                        for (final BitSet bitSet : listsByType) {
+                            bitSet.set(ord);
+                        }
+                    } else {
+                        listsByType[listType.ordinal()].set(ord);
+                    }
+                }
+
+            } else {
+
+                final Object normalized = normalizeValue(value);
+                final ValueType type = getValueType(normalized);
+                if (type != null) {
+                    scalarsByType[type.ordinal()].set(ord);
+                    ordsByValue.computeIfAbsent(normalized, k -> new OrdList()).add(ord);
+                }
+
+            }
+        }
+
+        Property build() {
+            return new Property(present, scalarsByType, listsByType, toArrays(ordsByValue), toArrays(ordsByElement),
+                    buildSortKeys());
+        }
+
+        private int[] buildSortKeys() {
+
+            boolean singleType = false;
+            for (final BitSet scalars : scalarsByType) {
+                singleType |= scalars.equals(present);
+            }
+            if (!singleType) {
+                return null;
+            }
+
+            // all values are of the same type and thus mutually comparable
+            @SuppressWarnings("unchecked")
+            final List<Comparable<Object>> values = new ArrayList<>((Set<Comparable<Object>>) (Set<?>)
+                    ordsByValue.keySet());
+            values.sort(Comparator.naturalOrder());
+
+            final int[] sortKeys = new int[present.length()];
+            Arrays.fill(sortKeys, -1);
+            for (int rank = 0; rank < values.size(); rank++) {
+                final OrdList ordList = ordsByValue.get(values.get(rank));
+                for (int i = 0; i < ordList.size; i++) {
+                    sortKeys[ordList.ords[i]] = rank;
+                }
+            }
+            return sortKeys;
+        }
+
+        private static Map<Object, int[]> toArrays(final Map<Object, OrdList> ordLists) {
+            final Map<Object, int[]> result = new HashMap<>(ordLists.size());
+            ordLists.forEach((value, ordList) -> result.put(value, ordList.toSortedArray()));
+            return result;
+        }
+
+        private static BitSet[] newBitSets() {
+            final BitSet[] bitSets = new BitSet[ValueType.values().length];
+            for (int i = 0; i < bitSets.length; i++) {
+                bitSets[i] = new BitSet();
+            }
+            return bitSets;
+        }
+
+    }
+
+    private static class OrdList {
+
+        int[] ords = new int[1];
+        int size = 0;
+
+        void add(final int ord) {
+            // the same ord can be added more than once if a list contains the same element more than once
+            if (size > 0 && ords[size - 1] == ord) {
+                return;
+            }
+            if (size == ords.length) {
+                ords = Arrays.copyOf(ords, size * 2);
+            }
+            ords[size++] = ord;
+        }
+
+        int[] toSortedArray() {
+            final int[] result = Arrays.copyOf(ords, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+package querqy.rewrite.commonrules.model;
+
+import querqy.model.BooleanClause;
+import querqy.model.BooleanParent;
+import querqy.model.BooleanQuery;
+import querqy.model.DisjunctionMaxClause;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.Query;
+
+import java.util.List;
+
+/**
+ * <p>A query with place holders, for example the query of a boost instruction, that has been compiled into a tree of
+ * node factories. Filling the template creates a new query in a single pass. The place holder terms already know their
+ * slots and sub-trees without place holders are cloned directly.</p>
+ *
+ * <p>Templates are immutable and can be shared between threads.</p>
+ */
+class QueryTemplate {
+
+    private final BooleanClauseTemplate[] clauses;
+
+    /**
+     * @param query The query. Place holders must have been turned into {@link Term}s.
+     */
+    QueryTemplate(final Query query) {
+        clauses = compileClauses(query.getClauses());
+    }
+
+    /**
+     * Create a new query and fill in the place holders from the term matches.
+     *
+     * @param termMatches The matches that provide the place holder values
+     * @return The new query
+     */
+    Query fill(final TermMatches termMatches) {
+        final Query query = new Query();
+        for (final BooleanClauseTemplate clause : clauses) {
+            query.addClause(clause.create(query, termMatches));
+        }
+        return query;
+    }
+
+    private static BooleanClauseTemplate[] compileClauses(final List<BooleanClause> clauses) {
+        final BooleanClauseTemplate[] templates = new BooleanClauseTemplate[clauses.size()];
+        for (int i = 0; i < templates.length; i++) {
+            templates[i] = compileBooleanClause(clauses.get(i));
+        }
+        return templates;
+    }
+
+    private static BooleanClauseTemplate compileBooleanClause(final BooleanClause clause) {
+
+        if (!hasPlaceHolder(clause)) {
+            return (parent, termMatches) -> clause.clone(parent, true);
+        }
+
+        if (clause instanceof DisjunctionMaxQuery) {
+
+            final DisjunctionMaxQuery dmq = (DisjunctionMaxQuery) clause;
+            final List<DisjunctionMaxClause> dmqClauses = dmq.getClauses();
+            final DisjunctionMaxClauseTemplate[] templates = new DisjunctionMaxClauseTemplate[dmqClauses.size()];
+            for (int i = 0; i < templates.length; i++) {
+                templates[i] = compileDisjunctionMaxClause(dmqClauses.get(i));
+            }
+
+            return (parent, termMatches) -> {
+                final DisjunctionMaxQuery newDmq = new DisjunctionMaxQuery(parent, dmq.getOccur(), true);
+                for (final DisjunctionMaxClauseTemplate template : templates) {
+                    newDmq.addClause(template.create(newDmq, termMatches));
+                }
+                return newDmq;
+            };
+
+        } else if (clause instanceof BooleanQuery) {
+
+            return compileBooleanQuery((BooleanQuery) clause)::create;
+
+        } else {
+            throw new IllegalArgumentException("Cannot create template for clause " + clause);
+        }
+
+    }
+
+    private static DisjunctionMaxClauseTemplate compileDisjunctionMaxClause(final DisjunctionMaxClause clause) {
+
+        if (clause instanceof querqy.model.Term) {
+
+            final querqy.model.Term term = (querqy.model.Term) clause;
+            if (term.getValue() instanceof Term) {
+                final Term value = (Term) term.getValue();
+                final String field = term.getField();
+                return (parent, termMatches) -> new querqy.model.Term(parent, field,
+                        value.fillPlaceholders(termMatches), true);
+            }
+
+            return (parent, termMatches) -> term.clone(parent, true);
+
+        } else if (clause instanceof BooleanQuery) {
+
+            return compileBooleanQuery((BooleanQuery) clause)::create;
+
+        } else {
+            throw new IllegalArgumentException("Cannot create template for clause " + clause);
+        }
+    }
+
+    private static BooleanQueryTemplate compileBooleanQuery(final BooleanQuery bq) {
+
+        final BooleanClauseTemplate[] templates = compileClauses(bq.getClauses());
+
+        return (parent, termMatches) -> {
+            final BooleanQuery newBq = new BooleanQuery(parent, bq.getOccur(), true);
+            for (final BooleanClauseTemplate template : templates) {
+                newBq.addClause(template.create(newBq, termMatches));
+            }
+            return newBq;
+        };
+    }
+
+    private static boolean hasPlaceHolder(final BooleanClause clause) {
+        if (clause instanceof DisjunctionMaxQuery) {
+            for (final DisjunctionMaxClause dmqClause : ((DisjunctionMaxQuery) clause).getClauses()) {
+                if (dmqClause instanceof querqy.model.Term) {
+                    if (((querqy.model.Term) dmqClause).getValue() instanceof Term) {
+                        return true;
+                    }
+                } else if (dmqClause instanceof BooleanQuery && hasPlaceHolder((BooleanQuery) dmqClause)) {
+                    return true;
+                }
+            }
+        } else if (clause instanceof BooleanQuery) {
+            for (final BooleanClause child : ((BooleanQuery) clause).getClauses()) {
+                if (hasPlaceHolder(child)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @FunctionalInterface
+    private interface BooleanClauseTemplate {
+        BooleanClause create(BooleanQuery parent, TermMatches termMatches);
+    }
+
+    @FunctionalInterface
+    private interface BooleanQueryTemplate {
+        BooleanQuery create(BooleanParent parent, TermMatches termMatches);
+    }
+
+    @FunctionalInterface
+    private interface DisjunctionMaxClauseTemplate {
+        DisjunctionMaxClause create(DisjunctionMaxQuery parent, TermMatches termMatches);
+    }
+
+}
@@ -1,9 +1,11 @@
 package querqy.rewrite.commonrules.model;
 
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import querqy.model.InputSequenceElement;
+import querqy.rewrite.TriggerTerms;
 import querqy.rewrite.commonrules.select.TopRewritingActionCollector;
 
 public interface RulesCollection {
@@ -36,6 +38,37 @@ public interface RulesCollection {
                 .collect(Collectors.toSet());
 
     }
-    
+
+    /**
+     * <p>Get an index over the properties of the instructions in this RulesCollection. It can be used to filter
+     * rules by their properties without evaluating JsonPath expressions per rule.</p>
+     *
+     * @return The property index or an empty Optional if this RulesCollection doesn't provide one.
+     */
+    default Optional<PropertyIndex> getPropertyIndex() {
+        return Optional.empty();
+    }
+
+    /**
+     * <p>Get the terms that can trigger a rule. A rule can only match a query if one of the query terms is contained in
+     * the trigger terms.</p>
+     *
+     * @return The trigger terms or an empty Optional if this RulesCollection doesn't provide them.
+     */
+    default Optional<TriggerTerms> getTriggerTerms() {
+        return Optional.empty();
+    }
+
+    /**
+     * <p>Get the number of combinations of query terms that were not looked up because a query position had more
+     * combinations than the configured maximum. The count is accumulated over all calls to
+     * {@link #collectRewriteActions(PositionSequence, TopRewritingActionCollector)}.</p>
+     *
+     * @return The number of pruned combinations or 0 if this RulesCollection doesn't limit the combinations.
+     */
+    default long getPrunedCombinationsCount() {
+        return 0L;
+    }
+
 
 }
\ No newline at end of file
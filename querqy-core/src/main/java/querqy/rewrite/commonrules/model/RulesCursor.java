@@ -0,0 +1,306 @@
+package querqy.rewrite.commonrules.model;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import querqy.model.InputSequenceElement;
+import querqy.model.Term;
+import querqy.rewrite.commonrules.model.TrieMapRulesCollection.Prefix;
+import querqy.rewrite.commonrules.select.TopRewritingActionCollector;
+import querqy.trie.MatchCallback;
+
+/**
+ * <p>Walks the rules index of a {@link RulesCollection} along the elements of an input sequence. The index is a tree
+ * of nodes, which are referenced by int positions. A walk starts at the {@link #ROOT} or continues from a node that
+ * was reached by a previous walk. The combinations of the elements at the different positions of the input sequence
+ * are the same for all indexes, they are found by {@link #collectRewriteActions(PositionSequence,
+ * TopRewritingActionCollector, boolean, int, LongAdder)}.</p>
+ *
+ * <p>Matches for rules whose last input term is a {@link PrefixTerm} are reported as if the index was a trie over the
+ * chars of the rule inputs (see {@link TrieMapRulesCollection}): their index is the position of the last char of the
+ * prefix, counting from the first char after the start node, including the ' ' that separates the element from the
+ * previous element.</p>
+ *
+ * <p>A cursor keeps state between the calls and must not be shared between threads.</p>
+ */
+abstract class RulesCursor {
+
+    /**
+     * The position of the root node
+     */
+    static final int ROOT = 0;
+
+    private static final int INITIAL_PREFIXES_CAPACITY = 16;
+
+    private static final Comparator<Prefix> BY_NUM_MATCHES_DESC =
+            Comparator.comparingInt((Prefix prefix) -> prefix.numMatches).reversed();
+
+    /**
+     * Positions the cursor at a node and forgets all matches found so far.
+     *
+     * @param node The node position, either {@link #ROOT} or a position that was returned by
+     *             {@link #finish(MatchCallback)}
+     * @param continued true iff the walk continues after the element that led to the node. The next element will then
+     *                  be treated as if it was separated from the previous element by a ' '.
+     */
+    abstract void start(int node, boolean continued);
+
+    /**
+     * Moves the cursor along an element.
+     *
+     * @param element The element, a {@link Term} or an {@link InputBoundary}
+     * @param isTerm true iff the element is a {@link Term}
+     */
+    abstract void step(InputSequenceElement element, boolean isTerm);
+
+    /**
+     * Reports the complete match and the prefix matches (longest first) to the callback.
+     *
+     * @param callback The callback
+     * @return The node position that was reached or -1 if the element didn't match
+     */
+    abstract int finish(MatchCallback<List<Instructions>> callback);
+
+    /**
+     * <p>Find the rewrite actions for all combinations of the elements at subsequent positions of the sequence.</p>
+     *
+     * <p>The combinations that match the beginning of a rules input are continued at the next position. If there are
+     * more than maxCombinationsPerPosition of them, the combinations that match the most terms are kept. These are
+     * the partial matches of the longer, more specific rules inputs, which would otherwise be crowded out by the
+     * single terms that start a new combination at each position. Combinations with the same number of terms are kept
+     * in the order in which they were found, so that the result doesn't depend on anything but the input sequence and
+     * the rules. The other combinations are counted in prunedCombinations.</p>
+     *
+     * @param sequence The input sequence
+     * @param collector The collector of rewriting actions
+     * @param sortedByOrd true iff all Instructions lists are sorted by ascending ord
+     * @param maxCombinationsPerPosition The maximum number of combinations that are continued at the next position
+     * @param prunedCombinations The counter for combinations that were not continued
+     */
+    void collectRewriteActions(final PositionSequence<InputSequenceElement> sequence,
+                               final TopRewritingActionCollector collector, final boolean sortedByOrd,
+                               final int maxCombinationsPerPosition, final LongAdder prunedCombinations) {
+
+        if (sequence.isEmpty()) {
+            return;
+        }
+
+        // The cursor and the matcher are reused for all lookups so that we don't create any garbage per lookup
+        // unless we find a match
+        final Matcher matcher = new Matcher(collector, sortedByOrd);
+
+        // We have a list of terms (resulting from DisMax alternatives) per
+        // position. We now find all the combinations of terms in different
+        // positions and look them up as rules input in the dictionary
+        if (sequence.size() == 1) {
+            for (final Term term : new ClassFilter<>(sequence.getFirst(), Term.class)) {
+
+                start(ROOT, false);
+                step(term, true);
+                matcher.reset(null, term, true, 0, 1, 0);
+                finish(matcher);
+
+            }
+        } else {
+
+            // the prefixes of the current and of the next position, swapped after each position
+            Prefix[] prefixes = new Prefix[INITIAL_PREFIXES_CAPACITY];
+            int numPrefixes = 0;
+            Prefix[] newPrefixes = new Prefix[INITIAL_PREFIXES_CAPACITY];
+            int numNewPrefixes = 0;
+
+            int pos = 0;
+
+            for (final List<InputSequenceElement> position : sequence) {
+
+                boolean anyTermAtPosition = false;
+
+                for (final InputSequenceElement element : position) {
+
+                    final boolean isTerm = element instanceof Term;
+                    anyTermAtPosition |= isTerm;
+
+                    if (!(isTerm || element instanceof InputBoundary)) {
+                        throw new IllegalArgumentException("Cannot handle type of element in sequence " + element);
+                    }
+
+                    final int ofs = isTerm ? 1 : 0;
+
+                    // combine term with prefixes (= sequences of terms) that brought us here
+                    for (int i = 0; i < numPrefixes; i++) {
+
+                        final Prefix prefix = prefixes[i];
+
+                        start(prefix.node, true);
+                        step(element, isTerm);
+
+                        // exact matches and matches for prefixes (= beginnings of terms)
+                        // TODO: continue with next match after prefix match
+                        matcher.reset(prefix, element, isTerm, pos - prefix.numMatches, pos + ofs, 1);
+                        final int node = finish(matcher);
+
+                        if (node > -1) {
+                            if (numNewPrefixes == newPrefixes.length) {
+                                newPrefixes = Arrays.copyOf(newPrefixes, numNewPrefixes * 2);
+                            }
+                            newPrefixes[numNewPrefixes++] = isTerm
+                                    ? new Prefix(prefix, new TermMatch((Term) element), node)
+                                    : new Prefix(prefix, node);
+                        }
+
+                    }
+
+                    // now see whether the term matches on its own...
+                    // we do not let match the boundary on its own
+                    start(ROOT, false);
+                    step(element, isTerm);
+                    matcher.reset(null, element, isTerm, pos, pos + 1, 0);
+                    final int node = finish(matcher);
+
+                    if (node > -1) {
+                        // ... and save it as a prefix to the following term
+                        if (numNewPrefixes == newPrefixes.length) {
+                            newPrefixes = Arrays.copyOf(newPrefixes, numNewPrefixes * 2);
+                        }
+                        newPrefixes[numNewPrefixes++] = isTerm
+                                ? new Prefix(new TermMatch((Term) element), node) : new Prefix(node);
+                    }
+
+                }
+
+                if (numNewPrefixes > maxCombinationsPerPosition) {
+                    // the sort is stable
+                    Arrays.sort(newPrefixes, 0, numNewPrefixes, BY_NUM_MATCHES_DESC);
+                    prunedCombinations.add(numNewPrefixes - maxCombinationsPerPosition);
+                    numNewPrefixes = maxCombinationsPerPosition;
+                }
+
+                final Prefix[] tmp = prefixes;
+                prefixes = newPrefixes;
+                numPrefixes = numNewPrefixes;
+                newPrefixes = tmp;
+                numNewPrefixes = 0;
+
+                if (anyTermAtPosition) {
+                    pos++;
+                }
+            }
+
+        }
+
+    }
+
+    /**
+     * Receives the matches of a lookup and offers the corresponding actions to the collector. The matcher is reset
+     * and reused for each lookup. The action creators are evaluated later, so they must only capture copies of the
+     * matcher's fields.
+     */
+    private static class Matcher implements MatchCallback<List<Instructions>> {
+
+        final TopRewritingActionCollector collector;
+        final boolean sortedByOrd;
+
+        Prefix prefix;
+        InputSequenceElement element;
+        boolean isTerm;
+        int start;
+        int end;
+        int indexOffset;
+
+        Matcher(final TopRewritingActionCollector collector, final boolean sortedByOrd) {
+            this.collector = collector;
+            this.sortedByOrd = sortedByOrd;
+        }
+
+        void offer(final List<Instructions> value, final Function<Instructions, Action> actionCreator) {
+            if (sortedByOrd) {
+                collector.offerSortedByOrd(value, actionCreator);
+            } else {
+                collector.offer(value, actionCreator);
+            }
+        }
+
+        /**
+         * @param prefix The prefix from which the lookup continued or null if the lookup started at the root.
+         * @param element The element that was looked up
+         * @param isTerm true iff the element is a {@link Term}
+         * @param start The start position of the matches
+         * @param end The end position of the matches (exclusive)
+         * @param indexOffset The number of chars that were stepped before the chars of the element
+         */
+        void reset(final Prefix prefix, final InputSequenceElement element, final boolean isTerm, final int start,
+                   final int end, final int indexOffset) {
+            this.prefix = prefix;
+            this.element = element;
+            this.isTerm = isTerm;
+            this.start = start;
+            this.end = end;
+            this.indexOffset = indexOffset;
+        }
+
+        @Override
+        public void onCompleteMatch(final List<Instructions> value, final int node) {
+
+            if (prefix == null) {
+                // we do not let match the boundary on its own:
+                if (isTerm) {
+                    final Term term = (Term) element;
+                    final int matchStart = start;
+                    final int matchEnd = end;
+                    offer(value,
+                            instructions -> new Action(instructions, new TermMatches(new TermMatch(term)), matchStart,
+                                    matchEnd));
+                }
+            } else {
+                final Prefix matchedPrefix = prefix;
+                final InputSequenceElement matchedElement = element;
+                final boolean matchedTerm = isTerm;
+                final int matchStart = start;
+                final int matchEnd = end;
+                offer(value, instructions -> {
+                    final TermMatches matches = matchedPrefix.toTermMatches();
+                    if (matchedTerm) {
+                        matches.add(new TermMatch((Term) matchedElement));
+                    }
+                    return new Action(instructions, matches, matchStart, matchEnd);
+                });
+            }
+
+        }
+
+        @Override
+        public void onPrefixMatch(final List<Instructions> value, final int node, final int index) {
+
+            final int wildcardStart = index + 1 - indexOffset;
+
+            if (prefix == null) {
+                if (isTerm) {
+                    final Term term = (Term) element;
+                    final int matchStart = start;
+                    final int matchEnd = end;
+                    offer(value, instructions -> new Action(instructions,
+                            new TermMatches(new TermMatch(term, true, term.subSequence(wildcardStart, term.length()))),
+                            matchStart, matchEnd));
+                }
+            } else {
+                final Prefix matchedPrefix = prefix;
+                final InputSequenceElement matchedElement = element;
+                final boolean matchedTerm = isTerm;
+                final int matchStart = start;
+                final int matchEnd = end;
+                offer(value, instructions -> {
+                    final TermMatches matches = matchedPrefix.toTermMatches();
+                    if (matchedTerm) {
+                        final Term term = (Term) matchedElement;
+                        matches.add(new TermMatch(term, true, term.subSequence(wildcardStart, term.length())));
+                    }
+                    return new Action(instructions, matches, matchStart, matchEnd);
+                });
+            }
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package querqy.rewrite.commonrules.model;
+
+/**
+ * <p>The data structure that is used to look up the rules input at query time.</p>
+ */
+public enum RulesIndexType {
+
+    /**
+     * A trie over the chars of the rules input ({@link TrieMapRulesCollection})
+     */
+    CHAR_TRIE {
+        @Override
+        RulesCollection index(final TrieMapRulesCollection rules) {
+            return rules;
+        }
+    },
+
+    /**
+     * A trie over int ids of the tokens of the rules input ({@link TokenIdRulesCollection}). It avoids walking the
+     * chars of the same query terms again for each combination of terms and it is usually faster for long queries and
+     * many rules.
+     */
+    TOKEN_ID {
+        @Override
+        RulesCollection index(final TrieMapRulesCollection rules) {
+            return TokenIdRulesCollection.of(rules);
+        }
+    };
+
+    abstract RulesCollection index(TrieMapRulesCollection rules);
+
+    /**
+     * Create the index of this type for rules that were built by a {@link TrieMapRulesCollectionBuilder} or
+     * restored from compiled rules.
+     *
+     * @param rules The rules
+     * @return A RulesCollection that matches the same rules
+     * @throws IllegalArgumentException if the rules are not a {@link TrieMapRulesCollection} and this type is not
+     * {@link #CHAR_TRIE}
+     */
+    public RulesCollection createIndex(final RulesCollection rules) {
+        return createIndex(rules, TrieMapRulesCollection.DEFAULT_MAX_COMBINATIONS_PER_POSITION);
+    }
+
+    /**
+     * Create the index of this type for rules that were built by a {@link TrieMapRulesCollectionBuilder} or
+     * restored from compiled rules and limit the number of combinations of query terms per position.
+     *
+     * @param rules The rules
+     * @param maxCombinationsPerPosition The maximum number of combinations that are continued at each position of the
+     *                                   input sequence
+     * @return A RulesCollection that matches the same rules
+     * @throws IllegalArgumentException if the rules are not a {@link TrieMapRulesCollection} and this type is not
+     * {@link #CHAR_TRIE}
+     * @see TrieMapRulesCollection#withMaxCombinationsPerPosition(int)
+     */
+    public RulesCollection createIndex(final RulesCollection rules, final int maxCombinationsPerPosition) {
+        if (rules instanceof TrieMapRulesCollection) {
+            final TrieMapRulesCollection trieMapRules = (TrieMapRulesCollection) rules;
+            return index(trieMapRules.getMaxCombinationsPerPosition() == maxCombinationsPerPosition
+                    ? trieMapRules : trieMapRules.withMaxCombinationsPerPosition(maxCombinationsPerPosition));
+        }
+        if (this == CHAR_TRIE) {
+            return rules;
+        }
+        throw new IllegalArgumentException("Cannot create " + this + " index for " + rules.getClass().getName());
+    }
+
+}
@@ -1,6 +1,8 @@
 package querqy.rewrite.commonrules.model;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -18,6 +20,10 @@ public class Term implements ComparableCharSequence, ComparableCharSequenceConta
     protected final int length;
     protected final List<String> fieldNames;
     protected final LinkedList<PlaceHolder> placeHolders;
+    // the static parts and place holder slots in the order of their position (slots are null in parts), so that
+    // filling the place holders doesn't have to walk and cut the value again
+    private final ComparableCharSequence[] fillParts;
+    private final int[] fillRefs;
 
     public Term(char[] value, int start, int length, List<String> fieldNames) {
         if (start + length > value.length) {
@@ -28,6 +34,31 @@ public class Term implements ComparableCharSequence, ComparableCharSequenceConta
         this.length = length;
         this.fieldNames = (fieldNames != null && fieldNames.isEmpty()) ? null : fieldNames;
         this.placeHolders = parsePlaceHolders();
+        if (placeHolders == null) {
+            fillParts = null;
+            fillRefs = null;
+        } else {
+            final List<PlaceHolder> byPosition = new ArrayList<>(placeHolders);
+            byPosition.sort(Comparator.comparingInt(placeHolder -> placeHolder.start));
+            final List<ComparableCharSequence> parts = new ArrayList<>();
+            final List<Integer> refs = new ArrayList<>();
+            int pos = start;
+            for (final PlaceHolder placeHolder : byPosition) {
+                if (placeHolder.start > pos) {
+                    parts.add(new SimpleComparableCharSequence(value, pos, placeHolder.start - pos));
+                    refs.add(-1);
+                }
+                parts.add(null);
+                refs.add(placeHolder.ref);
+                pos = placeHolder.start + placeHolder.length;
+            }
+            if (pos < start + length) {
+                parts.add(new SimpleComparableCharSequence(value, pos, start + length - pos));
+                refs.add(-1);
+            }
+            fillParts = parts.toArray(new ComparableCharSequence[0]);
+            fillRefs = refs.stream().mapToInt(Integer::intValue).toArray();
+        }
     }
 
     private enum ParseState {None, Started, InRef}
@@ -42,24 +73,15 @@ public class Term implements ComparableCharSequence, ComparableCharSequenceConta
 
 
     public ComparableCharSequence fillPlaceholders(final TermMatches termMatches) {
-        if (placeHolders == null || placeHolders.isEmpty()) {
+        if (fillParts == null) {
             return this;
         }
 
-        final List<ComparableCharSequence> parts = new LinkedList<>();
-        int pos = 0;
-
-        for (final PlaceHolder placeHolder : placeHolders) {
-            if (placeHolder.start > pos) {
-                parts.add(subSequence(pos, placeHolder.start));
-            }
-            parts.add(termMatches.getReplacement(placeHolder.ref));
-            pos = placeHolder.start + placeHolder.length;
-        }
-        if (pos < length) {
-            parts.add(subSequence(pos, start + length));
+        final CharSequence[] parts = new CharSequence[fillParts.length];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = fillRefs[i] < 0 ? fillParts[i] : termMatches.getReplacement(fillRefs[i]);
         }
-        return new CompoundCharSequence(parts);
+        return new CompoundCharSequence(null, parts);
     }
 
     protected LinkedList<PlaceHolder> parsePlaceHolders() {
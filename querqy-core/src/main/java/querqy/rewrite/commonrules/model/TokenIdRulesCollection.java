@@ -0,0 +1,479 @@
+package querqy.rewrite.commonrules.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import querqy.model.InputSequenceElement;
+import querqy.model.Term;
+import querqy.rewrite.TriggerTerms;
+import querqy.rewrite.commonrules.select.TopRewritingActionCollector;
+import querqy.trie.MatchCallback;
+
+/**
+ * <p>A {@link RulesCollection} that matches the rules input token by token instead of char by char.</p>
+ *
+ * <p>Every distinct token of the rule inputs ("field:value" or "value", lower-cased if the rules ignore case, or the
+ * {@link TrieMapRulesCollection#BOUNDARY_WORD}) is mapped to an int id. The rule inputs are stored as a trie over
+ * these ids. At query time, each query term is mapped to its id by a single hash lookup and all combinations of terms
+ * and boundaries are then looked up by int transitions, instead of walking the chars of the same terms again for each
+ * combination.</p>
+ *
+ * <p>Rules whose last input term is a {@link PrefixTerm} are kept at the node of the preceding tokens. A term matches
+ * such a rule if it starts with the prefix and has at least one more char. The matches are the same as the matches of
+ * the {@link TrieMapRulesCollection} from which this collection was created.</p>
+ *
+ * <p>Instances of this class are immutable and can be shared between threads.</p>
+ */
+public class TokenIdRulesCollection implements RulesCollection {
+
+    private static final PrefixEntry[] NO_PREFIXES = new PrefixEntry[0];
+
+    final boolean ignoreCase;
+    final PropertyIndex propertyIndex;
+    final TriggerTerms triggerTerms;
+    final boolean instructionsSortedByOrd;
+    final int maxCombinationsPerPosition;
+    private final LongAdder prunedCombinations = new LongAdder();
+
+    private final TokenDictionary dictionary;
+    private final TermTokens boundaryTokens;
+
+    // open addressing hash table for the transitions, key = (node << 32) | (tokenId + 1), 0 marks an empty slot
+    private final long[] transitionKeys;
+    private final int[] transitionTargets;
+    private final int transitionMask;
+
+    private final List<Instructions>[] values;
+    private final PrefixEntry[][] prefixes;
+
+    @SuppressWarnings("unchecked")
+    private TokenIdRulesCollection(final TrieMapRulesCollection rules) {
+
+        this.ignoreCase = rules.ignoreCase;
+        this.propertyIndex = rules.propertyIndex;
+        this.triggerTerms = rules.triggerTerms;
+        this.instructionsSortedByOrd = rules.instructionsSortedByOrd;
+        this.maxCombinationsPerPosition = rules.maxCombinationsPerPosition;
+
+        final Map<String, Integer> tokenIds = new HashMap<>();
+        final Map<Long, Integer> transitions = new HashMap<>();
+        final List<List<Instructions>> nodeValues = new ArrayList<>();
+        final List<List<PrefixEntry>> nodePrefixes = new ArrayList<>();
+        nodeValues.add(null); // root
+        nodePrefixes.add(null);
+
+        rules.trieMap.forEachEntry((key, value, prefixValue) -> {
+
+            final String[] tokens = key.toString().split(" ", -1);
+
+            int node = RulesCursor.ROOT;
+            for (int i = 0; i < tokens.length - 1; i++) {
+                node = addTransition(node, tokens[i], tokenIds, transitions, nodeValues, nodePrefixes);
+            }
+
+            final String lastToken = tokens[tokens.length - 1];
+
+            if (prefixValue != null) {
+                List<PrefixEntry> entries = nodePrefixes.get(node);
+                if (entries == null) {
+                    entries = new ArrayList<>(2);
+                    nodePrefixes.set(node, entries);
+                }
+                entries.add(new PrefixEntry(lastToken.toCharArray(), prefixValue));
+            }
+
+            if (value != null) {
+                nodeValues.set(addTransition(node, lastToken, tokenIds, transitions, nodeValues, nodePrefixes),
+                        value);
+            }
+
+        });
+
+        final String[] tokens = new String[tokenIds.size()];
+        tokenIds.forEach((token, id) -> tokens[id] = token);
+        dictionary = new TokenDictionary(tokens);
+        // the boundary gets id -1 if no rule requires a boundary
+        boundaryTokens = new TermTokens(TrieMapRulesCollection.BOUNDARY_WORD.toCharArray(), dictionary);
+
+        final int capacity = tableSize(transitions.size());
+        transitionKeys = new long[capacity];
+        transitionTargets = new int[capacity];
+        transitionMask = capacity - 1;
+        transitions.forEach((transition, target) -> {
+            int slot = hash(transition) & transitionMask;
+            while (transitionKeys[slot] != 0L) {
+                slot = (slot + 1) & transitionMask;
+            }
+            transitionKeys[slot] = transition;
+            transitionTargets[slot] = target;
+        });
+
+        final int numNodes = nodeValues.size();
+        values = nodeValues.toArray(new List[numNodes]);
+        prefixes = new PrefixEntry[numNodes][];
+        for (int node = 0; node < numNodes; node++) {
+            final List<PrefixEntry> entries = nodePrefixes.get(node);
+            if (entries == null) {
+                prefixes[node] = NO_PREFIXES;
+            } else {
+                // shorter prefixes are passed first when walking the chars of a term
+                entries.sort((entry1, entry2) -> Integer.compare(entry1.chars.length, entry2.chars.length));
+                prefixes[node] = entries.toArray(NO_PREFIXES);
+            }
+        }
+
+    }
+
+    /**
+     * Create a TokenIdRulesCollection that matches the same rules as a {@link TrieMapRulesCollection}. The
+     * Instructions, the {@link PropertyIndex} and the {@link TriggerTerms} are shared with the source collection,
+     * which also provides the maximum number of combinations per position.
+     *
+     * @param rules The source rules
+     * @return The TokenIdRulesCollection
+     */
+    public static TokenIdRulesCollection of(final TrieMapRulesCollection rules) {
+        return new TokenIdRulesCollection(rules);
+    }
+
+    private static int addTransition(final int node, final String token, final Map<String, Integer> tokenIds,
+                                     final Map<Long, Integer> transitions, final List<List<Instructions>> nodeValues,
+                                     final List<List<PrefixEntry>> nodePrefixes) {
+        final Integer tokenId = tokenIds.computeIfAbsent(token, t -> tokenIds.size());
+        return transitions.computeIfAbsent(transitionKey(node, tokenId), key -> {
+            nodeValues.add(null);
+            nodePrefixes.add(null);
+            return nodeValues.size() - 1;
+        });
+    }
+
+    private static long transitionKey(final int node, final int tokenId) {
+        return ((long) node << 32) | (tokenId + 1L);
+    }
+
+    private static int hash(final long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSize(final int numEntries) {
+        // keep the load factor at or below 0.5
+        return Integer.highestOneBit(Math.max(2, numEntries * 2 - 1)) << 1;
+    }
+
+    /**
+     * @param node The parent node
+     * @param tokenId The token id
+     * @return The child node or -1 if there is no transition for the token
+     */
+    int findChild(final int node, final int tokenId) {
+        if (tokenId < 0) {
+            return -1;
+        }
+        final long key = transitionKey(node, tokenId);
+        int slot = hash(key) & transitionMask;
+        long slotKey;
+        while ((slotKey = transitionKeys[slot]) != 0L) {
+            if (slotKey == key) {
+                return transitionTargets[slot];
+            }
+            slot = (slot + 1) & transitionMask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return The number of nodes, including the root node
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @return The number of distinct tokens in the rule inputs
+     */
+    public int getNumTokens() {
+        return dictionary.size();
+    }
+
+    @Override
+    public void collectRewriteActions(final PositionSequence<InputSequenceElement> sequence,
+                                      final TopRewritingActionCollector collector) {
+        new TokenCursor().collectRewriteActions(sequence, collector, instructionsSortedByOrd,
+                maxCombinationsPerPosition, prunedCombinations);
+    }
+
+    @Override
+    public Set<Instruction> getInstructions() {
+
+        final Set<Instruction> result = new HashSet<>();
+
+        for (final List<Instructions> instructionsList : values) {
+            if (instructionsList != null) {
+                instructionsList.forEach(result::addAll);
+            }
+        }
+        for (final PrefixEntry[] entries : prefixes) {
+            for (final PrefixEntry entry : entries) {
+                entry.value.forEach(result::addAll);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public Optional<PropertyIndex> getPropertyIndex() {
+        return Optional.ofNullable(propertyIndex);
+    }
+
+    @Override
+    public Optional<TriggerTerms> getTriggerTerms() {
+        return Optional.ofNullable(triggerTerms);
+    }
+
+    @Override
+    public long getPrunedCombinationsCount() {
+        return prunedCombinations.sum();
+    }
+
+    /**
+     * Creates the tokens of a term from the same chars as {@link Term#toCharSequenceWithField(boolean)} would produce.
+     */
+    private TermTokens tokenize(final Term term) {
+
+        final String field = term.getField();
+        final int fieldLength = field == null ? 0 : field.length() + 1;
+        final int length = term.length();
+
+        final char[] chars = new char[fieldLength + length];
+        if (field != null) {
+            field.getChars(0, field.length(), chars, 0);
+            chars[fieldLength - 1] = ':';
+        }
+        for (int i = 0; i < length; i++) {
+            final char ch = term.charAt(i);
+            chars[fieldLength + i] = ignoreCase && !Character.isLowerCase(ch) ? Character.toLowerCase(ch) : ch;
+        }
+
+        return new TermTokens(chars, dictionary);
+    }
+
+    /**
+     * Walks the id trie token by token. The cursor maps every term to its tokens only once per input sequence.
+     */
+    private class TokenCursor extends RulesCursor {
+
+        final Map<Term, TermTokens> termTokens = new IdentityHashMap<>();
+
+        int node = -1;
+        // the number of chars that a char trie would have stepped so far, used for the index of prefix matches
+        int numChars = 0;
+
+        PrefixEntry[] prefixMatches = new PrefixEntry[4];
+        int[] prefixIndexes = new int[4];
+        int numPrefixMatches = 0;
+
+        @Override
+        void start(final int node, final boolean continued) {
+            this.node = node;
+            numChars = continued ? 1 : 0;
+            numPrefixMatches = 0;
+        }
+
+        @Override
+        void step(final InputSequenceElement element, final boolean isTerm) {
+            step(isTerm ? termTokens.computeIfAbsent((Term) element, TokenIdRulesCollection.this::tokenize)
+                    : boundaryTokens);
+        }
+
+        private void step(final TermTokens tokens) {
+
+            final int numTokens = tokens.ids.length;
+
+            for (int i = 0; i < numTokens && node > -1; i++) {
+
+                if (i > 0) {
+                    numChars++; // ' '
+                }
+
+                final int from = tokens.starts[i];
+                final int to = i + 1 < numTokens ? tokens.starts[i + 1] - 1 : tokens.chars.length;
+                // a prefix that is as long as the token only matches if the token is followed by another token
+                final int maxPrefixLength = i + 1 < numTokens ? to - from : to - from - 1;
+
+                for (final PrefixEntry entry : prefixes[node]) {
+                    final int prefixLength = entry.chars.length;
+                    if (prefixLength > maxPrefixLength) {
+                        break;
+                    }
+                    if (numChars + prefixLength > 0 && entry.isPrefixOf(tokens.chars, from)) {
+                        addPrefixMatch(entry, numChars + prefixLength - 1);
+                    }
+                }
+
+                node = findChild(node, tokens.ids[i]);
+                numChars += to - from;
+            }
+
+        }
+
+        private void addPrefixMatch(final PrefixEntry entry, final int index) {
+            if (numPrefixMatches == prefixMatches.length) {
+                prefixMatches = Arrays.copyOf(prefixMatches, numPrefixMatches * 2);
+                prefixIndexes = Arrays.copyOf(prefixIndexes, numPrefixMatches * 2);
+            }
+            prefixMatches[numPrefixMatches] = entry;
+            prefixIndexes[numPrefixMatches++] = index;
+        }
+
+        @Override
+        int finish(final MatchCallback<List<Instructions>> callback) {
+
+            if (node > -1 && numChars > 0) {
+                final List<Instructions> value = values[node];
+                if (value != null) {
+                    callback.onCompleteMatch(value, node);
+                }
+            }
+
+            for (int i = numPrefixMatches - 1; i >= 0; i--) {
+                // prefix matches don't have a node of their own, they cannot be continued
+                callback.onPrefixMatch(prefixMatches[i].value, -1, prefixIndexes[i]);
+            }
+
+            numPrefixMatches = 0;
+
+            return numChars > 0 ? node : -1;
+        }
+    }
+
+    /**
+     * The chars of a term, split into tokens at ' ', and the ids of the tokens (-1 for unknown tokens).
+     */
+    private static class TermTokens {
+
+        final char[] chars;
+        final int[] starts;
+        final int[] ids;
+
+        TermTokens(final char[] chars, final TokenDictionary dictionary) {
+
+            this.chars = chars;
+
+            int numTokens = 1;
+            for (final char ch : chars) {
+                if (ch == ' ') {
+                    numTokens++;
+                }
+            }
+
+            starts = new int[numTokens];
+            ids = new int[numTokens];
+
+            int token = 0;
+            int from = 0;
+            for (int i = 0; i <= chars.length; i++) {
+                if (i == chars.length || chars[i] == ' ') {
+                    starts[token] = from;
+                    ids[token++] = dictionary.get(chars, from, i);
+                    from = i + 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * The input tokens of the rules that have the same prefix term as their last term
+     */
+    private static class PrefixEntry {
+
+        final char[] chars;
+        final List<Instructions> value;
+
+        PrefixEntry(final char[] chars, final List<Instructions> value) {
+            this.chars = chars;
+            this.value = value;
+        }
+
+        boolean isPrefixOf(final char[] token, final int offset) {
+            for (int i = 0; i < chars.length; i++) {
+                if (token[offset + i] != chars[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * An open addressing hash table from token chars to token ids that can be queried with a slice of a char array.
+     */
+    private static class TokenDictionary {
+
+        private final char[][] tokens;
+        private final int[] slots; // token id + 1, 0 = empty
+        private final int mask;
+
+        TokenDictionary(final String[] tokens) {
+            this.tokens = new char[tokens.length][];
+            slots = new int[tableSize(tokens.length)];
+            mask = slots.length - 1;
+            for (int id = 0; id < tokens.length; id++) {
+                final char[] chars = tokens[id].toCharArray();
+                this.tokens[id] = chars;
+                int slot = hash(chars, 0, chars.length) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = id + 1;
+            }
+        }
+
+        int size() {
+            return tokens.length;
+        }
+
+        /**
+         * @return The id of the token in chars[from..to) or -1 if the token is unknown
+         */
+        int get(final char[] chars, final int from, final int to) {
+            int slot = hash(chars, from, to) & mask;
+            int entry;
+            while ((entry = slots[slot]) != 0) {
+                final char[] token = tokens[entry - 1];
+                if (token.length == to - from && equals(token, chars, from)) {
+                    return entry - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private static boolean equals(final char[] token, final char[] chars, final int from) {
+            for (int i = 0; i < token.length; i++) {
+                if (token[i] != chars[from + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int hash(final char[] chars, final int from, final int to) {
+            int h = 0;
+            for (int i = from; i < to; i++) {
+                h = 31 * h + chars[i];
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+
+}
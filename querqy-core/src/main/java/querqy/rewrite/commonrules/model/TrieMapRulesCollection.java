@@ -4,16 +4,18 @@
 package querqy.rewrite.commonrules.model;
 
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
-import querqy.CompoundCharSequence;
 import querqy.model.InputSequenceElement;
 import querqy.model.Term;
+import querqy.rewrite.TriggerTerms;
 import querqy.rewrite.commonrules.select.TopRewritingActionCollector;
-import querqy.trie.State;
-import querqy.trie.States;
+import querqy.trie.FrozenTrieMap;
+import querqy.trie.MatchCallback;
+import querqy.trie.TrieCursor;
 import querqy.trie.TrieMap;
 
 /**
@@ -23,211 +25,152 @@ import querqy.trie.TrieMap;
 public class TrieMapRulesCollection implements RulesCollection {
     
     public static final String BOUNDARY_WORD = "\u0002";
+
+    /**
+     * The default maximum number of combinations of elements that are continued at each position of the input sequence.
+     * Combinations are not pruned by default.
+     */
+    public static final int DEFAULT_MAX_COMBINATIONS_PER_POSITION = Integer.MAX_VALUE;
     
-    final TrieMap<List<Instructions>> trieMap;
+    final FrozenTrieMap<List<Instructions>> trieMap;
     final boolean ignoreCase;
+    final PropertyIndex propertyIndex;
+    final TriggerTerms triggerTerms;
+    // true iff all Instructions lists are sorted by ascending ord so that the collector can stop early
+    final boolean instructionsSortedByOrd;
+    final int maxCombinationsPerPosition;
+    private final LongAdder prunedCombinations = new LongAdder();
     
     public TrieMapRulesCollection(TrieMap<List<Instructions>> trieMap, boolean ignoreCase) {
+        this(trieMap == null ? null : trieMap.freeze(), ignoreCase);
+    }
+
+    public TrieMapRulesCollection(FrozenTrieMap<List<Instructions>> trieMap, boolean ignoreCase) {
+        this(trieMap, ignoreCase, null);
+    }
+
+    /**
+     * @param trieMap The rules
+     * @param ignoreCase Iff true, terms will be lower-cased before they are looked up in the trieMap
+     * @param propertyIndex The index over the properties of all Instructions in the trieMap or null if the
+     *                      properties are not indexed
+     */
+    public TrieMapRulesCollection(FrozenTrieMap<List<Instructions>> trieMap, boolean ignoreCase,
+                                  PropertyIndex propertyIndex) {
+        this(trieMap, ignoreCase, propertyIndex, null);
+    }
+
+    /**
+     * @param trieMap The rules
+     * @param ignoreCase Iff true, terms will be lower-cased before they are looked up in the trieMap
+     * @param propertyIndex The index over the properties of all Instructions in the trieMap or null if the
+     *                      properties are not indexed
+     * @param triggerTerms The first input terms of all rules or null if they are not known
+     */
+    public TrieMapRulesCollection(FrozenTrieMap<List<Instructions>> trieMap, boolean ignoreCase,
+                                  PropertyIndex propertyIndex, TriggerTerms triggerTerms) {
+        this(trieMap, ignoreCase, propertyIndex, triggerTerms, DEFAULT_MAX_COMBINATIONS_PER_POSITION);
+    }
+
+    /**
+     * @param trieMap The rules
+     * @param ignoreCase Iff true, terms will be lower-cased before they are looked up in the trieMap
+     * @param propertyIndex The index over the properties of all Instructions in the trieMap or null if the
+     *                      properties are not indexed
+     * @param triggerTerms The first input terms of all rules or null if they are not known
+     * @param maxCombinationsPerPosition The maximum number of combinations of elements that match the beginning of a
+     *                                   rules input and that are continued at the next position. The combinations
+     *                                   that match the most terms are kept if there are more combinations.
+     */
+    public TrieMapRulesCollection(FrozenTrieMap<List<Instructions>> trieMap, boolean ignoreCase,
+                                  PropertyIndex propertyIndex, TriggerTerms triggerTerms,
+                                  int maxCombinationsPerPosition) {
         if (trieMap == null) {
             throw new IllegalArgumentException("trieMap must not be null");
         }
+        if (triggerTerms != null && triggerTerms.isIgnoreCase() != ignoreCase) {
+            throw new IllegalArgumentException("triggerTerms must use the same ignoreCase setting");
+        }
         this.trieMap = trieMap;
         this.ignoreCase = ignoreCase;
+        this.propertyIndex = propertyIndex;
+        this.triggerTerms = triggerTerms;
+        this.instructionsSortedByOrd = isSortedByOrd(trieMap);
+        this.maxCombinationsPerPosition = checkMaxCombinationsPerPosition(maxCombinationsPerPosition);
     }
 
-    /* (non-Javadoc)
-     * @see querqy.rewrite.commonrules.model.RulesCollection#collectRewriteActions(querqy.rewrite.commonrules.model.PositionSequence, querqy.rewrite.commonrules.select.FlatTopRewritingActionCollector)
-     */
-    @Override
-    public void collectRewriteActions(final PositionSequence<InputSequenceElement> sequence,
-                                      final TopRewritingActionCollector collector) {
+    private TrieMapRulesCollection(final TrieMapRulesCollection rules, final int maxCombinationsPerPosition) {
+        this.trieMap = rules.trieMap;
+        this.ignoreCase = rules.ignoreCase;
+        this.propertyIndex = rules.propertyIndex;
+        this.triggerTerms = rules.triggerTerms;
+        this.instructionsSortedByOrd = rules.instructionsSortedByOrd;
+        this.maxCombinationsPerPosition = checkMaxCombinationsPerPosition(maxCombinationsPerPosition);
+    }
 
-        if (sequence.isEmpty()) {
-            return;
+    static int checkMaxCombinationsPerPosition(final int maxCombinationsPerPosition) {
+        if (maxCombinationsPerPosition < 1) {
+            throw new IllegalArgumentException("maxCombinationsPerPosition must be > 0");
         }
+        return maxCombinationsPerPosition;
+    }
 
-        // We have a list of terms (resulting from DisMax alternatives) per
-        // position. We now find all the combinations of terms in different 
-        // positions and look them up as rules input in the dictionary
-        // LinkedList<List<Term>> positions = sequence.getPositions();
-        if (sequence.size() == 1) {
-            for (final Term term : new ClassFilter<>(sequence.getFirst(), Term.class)) {
-
-                final States<List<Instructions>> states = trieMap.get(term.toCharSequenceWithField(ignoreCase));
-
-                final State<List<Instructions>> stateExactMatch = states.getStateForCompleteSequence();
-                if (stateExactMatch.isFinal() && stateExactMatch.value != null) {
+    /**
+     * Create a collection that shares the rules with this collection but that continues at most
+     * maxCombinationsPerPosition combinations of elements at each position of the input sequence. The combinations
+     * that match the most terms are continued, so that longer rules inputs are preferred over rules inputs that only
+     * start at the current position.
+     *
+     * @param maxCombinationsPerPosition The maximum number of combinations per position
+     * @return The new collection
+     */
+    public TrieMapRulesCollection withMaxCombinationsPerPosition(final int maxCombinationsPerPosition) {
+        return new TrieMapRulesCollection(this, maxCombinationsPerPosition);
+    }
 
-                    collector.offer(stateExactMatch.value,
-                            instructions -> new Action(instructions, new TermMatches(new TermMatch(term)), 0, 1));
+    public int getMaxCombinationsPerPosition() {
+        return maxCombinationsPerPosition;
+    }
 
-                }
+    @Override
+    public long getPrunedCombinationsCount() {
+        return prunedCombinations.sum();
+    }
 
-                final List<State<List<Instructions>>> statesForPrefixes = states.getPrefixes();
-                if (statesForPrefixes != null) {
-                    for (final State<List<Instructions>> stateForPrefix: statesForPrefixes) {
-                        
-                        if (stateForPrefix.isFinal() && stateForPrefix.value != null) {
-                            collector.offer(stateForPrefix.value,
-                                    instructions -> new Action(instructions, new TermMatches(
-                                            new TermMatch(term, true,
-                                            term.subSequence(stateForPrefix.index + 1, term.length()))), 0, 1));
-
-                        }
-                    }
+    private static boolean isSortedByOrd(final FrozenTrieMap<List<Instructions>> trieMap) {
+        for (final List<Instructions> instructionsList : trieMap) {
+            int previousOrd = Integer.MIN_VALUE;
+            for (final Instructions instructions : instructionsList) {
+                if (instructions.getOrd() < previousOrd) {
+                    return false;
                 }
-                
+                previousOrd = instructions.getOrd();
             }
-        } else {
-
-            List<Prefix<List<Instructions>>> prefixes = new LinkedList<>();
-            List<Prefix<List<Instructions>>> newPrefixes = new LinkedList<>();
-
-            int pos = 0;
-
-            for (final List<InputSequenceElement> position : sequence) {
-
-                final int pos1 = pos;
-                
-                boolean anyTermAtPosition = false;
-
-                for (final InputSequenceElement element : position) {
-
-                    final boolean isTerm = element instanceof Term;
-                    anyTermAtPosition |= isTerm;
-
-                    final CharSequence charSequenceForLookup;
-                    if (isTerm) {
-                        charSequenceForLookup = ((Term) element).toCharSequenceWithField(ignoreCase);
-                    } else if (element instanceof InputBoundary) {
-                        charSequenceForLookup = BOUNDARY_WORD;
-                    } else {
-                        throw new IllegalArgumentException("Cannot handle type of element in sequence " + element);
-                    }
-
-                    // combine term with prefixes (= sequences of terms) that brought us here
-                    for (final Prefix<List<Instructions>> prefix : prefixes) {
-
-                        final States<List<Instructions>> states = trieMap.get(
-                                new CompoundCharSequence(null, " ", charSequenceForLookup), prefix.stateInfo);
-
-                        final int ofs = isTerm ? 1 : 0;
-                        
-                        // exact matches 
-                        final State<List<Instructions>> stateExactMatch = states.getStateForCompleteSequence();
-                        if (stateExactMatch.isKnown()) {
-                            if (stateExactMatch.isFinal()) {
-                                final int start;
-                                if (isTerm) {
-                                    start = pos - (prefix.matches.size() + 1) + ofs;
-                                } else {
-                                    start = pos - prefix.matches.size() + ofs;
-                                }
-
-                                collector.offer(stateExactMatch.value, instructions -> {
-                                    final TermMatches matches = new TermMatches(prefix.matches);
-                                    if (isTerm) {
-                                        matches.add(new TermMatch((Term) element));
-                                    }
-                                    return new Action(instructions, matches, start, pos1 + ofs);
-                                });
-
-                            }
-                            final Prefix<List<Instructions>> newPrefix = new Prefix<List<Instructions>>(prefix, stateExactMatch);
-                            if (isTerm) {
-                                newPrefix.addTerm(new TermMatch((Term) element));
-                            }
-                            newPrefixes.add(newPrefix);
-                            
-                        }
-                        
-                        // matches for prefixes (= beginnings of terms)
-                        final List<State<List<Instructions>>> statesForPrefixes = states.getPrefixes();
-                        if (statesForPrefixes != null) {
-                            for (final State<List<Instructions>> stateForPrefix: statesForPrefixes) {
-                                
-                                if (stateForPrefix.isFinal() && stateForPrefix.value != null) {
-                                    final int start;
-                                    if (isTerm) {
-                                        start = pos - (prefix.matches.size() + 1) + ofs;
-                                    } else {
-                                        start = pos - prefix.matches.size() + ofs;
-                                    }
-
-
-                                    collector.offer(stateForPrefix.value, instructions -> {
-                                        final TermMatches matches = new TermMatches(prefix.matches);
-                                        if (isTerm) {
-                                            final Term term = (Term) element;
-                                            matches.add(
-                                                    new TermMatch(term,
-                                                            true,
-                                                            term.subSequence(stateForPrefix.index + 1, term.length())));
-                                        }
-                                        return new Action(instructions, matches, start, pos1 + ofs);
-                                    });
-
-                                }
-                                
-                                // TODO: continue with next match after prefix match
-                            }
-                        }
-                    }
-
-                    // now see whether the term matches on its own...
-                    final States<List<Instructions>> states = trieMap.get(charSequenceForLookup);
-
-                    final State<List<Instructions>> stateExactMatch = states.getStateForCompleteSequence();
-                    if (stateExactMatch.isKnown()) {
-                        if (stateExactMatch.isFinal()) {
-                            // we do not let match the boundary on its own:
-                            if (isTerm) {
-                                collector.offer(stateExactMatch.value,
-                                        instructions ->
-                                                new Action(instructions, new TermMatches(new TermMatch((Term) element)),
-                                                        pos1, pos1 + 1));
-                            }
-                        }
-                        // ... and save it as a prefix to the following term
-                        final Prefix<List<Instructions>> newPrefix = isTerm
-                                ? new Prefix<>(new TermMatch((Term) element), stateExactMatch)
-                                : new Prefix<>(stateExactMatch);
-                        newPrefixes.add(new Prefix<>(newPrefix, stateExactMatch));
-                    }
-
-                    final List<State<List<Instructions>>> statesForPrefixes = states.getPrefixes();
-                    if (statesForPrefixes != null) {
-                        for (final State<List<Instructions>> stateForPrefix: statesForPrefixes) {
-                            if (stateForPrefix.isFinal() && stateForPrefix.value != null) {
-                                if (isTerm) {
-                                    collector.offer(stateForPrefix.value, instructions -> {
-                                                final Term term = (Term) element;
-                                                return new Action(instructions,
-                                                        new TermMatches(
-                                                                new TermMatch(term, true,
-                                                                term.subSequence(stateForPrefix.index + 1,
-                                                                        term.length()))), pos1, pos1 + 1);
-                                            });
-                                    // TODO: continue with next match after prefix match
-                                }
-                            }
-                        }
-                    }
-
-                }
-
-                prefixes = newPrefixes;
-                newPrefixes = new LinkedList<>();
+        }
+        return true;
+    }
 
-                if (anyTermAtPosition) {
-                    pos++;
-                }
-            }
+    @Override
+    public Optional<TriggerTerms> getTriggerTerms() {
+        return Optional.ofNullable(triggerTerms);
+    }
 
-        }
+    @Override
+    public Optional<PropertyIndex> getPropertyIndex() {
+        return Optional.ofNullable(propertyIndex);
+    }
 
+    /* (non-Javadoc)
+     * @see querqy.rewrite.commonrules.model.RulesCollection#collectRewriteActions(querqy.rewrite.commonrules.model.PositionSequence, querqy.rewrite.commonrules.select.FlatTopRewritingActionCollector)
+     */
+    @Override
+    public void collectRewriteActions(final PositionSequence<InputSequenceElement> sequence,
+                                      final TopRewritingActionCollector collector) {
+        new CharCursor(trieMap.cursor(), ignoreCase)
+                .collectRewriteActions(sequence, collector, instructionsSortedByOrd, maxCombinationsPerPosition,
+                        prunedCombinations);
     }
-    
+
     @Override
     public Set<Instruction> getInstructions() {
 
@@ -242,37 +185,115 @@ public class TrieMapRulesCollection implements RulesCollection {
         return result;
     }
 
-    public static class Prefix<T> {
-        final State<T> stateInfo;
-        final List<TermMatch> matches;
-
-        public Prefix(final Prefix<T> prefix, final TermMatch match, final State<T> stateInfo) {
-            matches = new LinkedList<>(prefix.matches);
-            addTerm(match);
-            this.stateInfo = stateInfo;
+    /**
+     * <p>A sequence of elements that matched the beginning of a rules input. Prefixes that continue a prefix share the
+     * matches of the prefix instead of copying them. The {@link TermMatches} are only created if an action is created
+     * for a match.</p>
+     */
+    static class Prefix {
+        final int node;
+        // the prefix that was continued by this prefix or null
+        final Prefix parent;
+        // the match of the last element or null if the last element wasn't a term
+        final TermMatch match;
+        final int numMatches;
+
+        Prefix(final Prefix prefix, final TermMatch match, final int node) {
+            this.parent = prefix;
+            this.match = match;
+            this.numMatches = prefix.numMatches + 1;
+            this.node = node;
         }
         
-        public Prefix(final Prefix<T> prefix, final State<T> stateInfo) {
-            matches = new LinkedList<>(prefix.matches);
-            this.stateInfo = stateInfo;
+        Prefix(final Prefix prefix, final int node) {
+            this.parent = prefix;
+            this.match = null;
+            this.numMatches = prefix.numMatches;
+            this.node = node;
         }
 
-        public Prefix(final TermMatch match, final State<T> stateInfo) {
-            matches = new LinkedList<>();
-            matches.add(match);
-            this.stateInfo = stateInfo;
+        Prefix(final TermMatch match, final int node) {
+            this.parent = null;
+            this.match = match;
+            this.numMatches = 1;
+            this.node = node;
         }
         
-        public Prefix(final State<T> stateInfo) {
-            matches = new LinkedList<>();
-            this.stateInfo = stateInfo;
+        Prefix(final int node) {
+            this.parent = null;
+            this.match = null;
+            this.numMatches = 0;
+            this.node = node;
         }
 
-
-        private void addTerm(final TermMatch term) {
-            matches.add(term);
+        /**
+         * @return A new TermMatches object holding the matches of this prefix in the order of the input sequence
+         */
+        TermMatches toTermMatches() {
+            final TermMatch[] matches = new TermMatch[numMatches];
+            int i = numMatches;
+            for (Prefix prefix = this; prefix != null; prefix = prefix.parent) {
+                if (prefix.match != null) {
+                    matches[--i] = prefix.match;
+                }
+            }
+            final TermMatches termMatches = new TermMatches();
+            for (final TermMatch match : matches) {
+                termMatches.add(match);
+            }
+            return termMatches;
         }
 
      }
 
+    /**
+     * Walks the trie char by char. Elements are separated by a ' '.
+     */
+    private static class CharCursor extends RulesCursor {
+
+        final TrieCursor<List<Instructions>> cursor;
+        final boolean ignoreCase;
+
+        CharCursor(final TrieCursor<List<Instructions>> cursor, final boolean ignoreCase) {
+            this.cursor = cursor;
+            this.ignoreCase = ignoreCase;
+        }
+
+        @Override
+        void start(final int node, final boolean continued) {
+            cursor.start(node);
+            if (continued) {
+                cursor.step(' ');
+            }
+        }
+
+        @Override
+        void step(final InputSequenceElement element, final boolean isTerm) {
+            if (isTerm) {
+                stepTerm((Term) element);
+            } else {
+                cursor.step(BOUNDARY_WORD);
+            }
+        }
+
+        /**
+         * Steps the cursor along the same chars as {@link Term#toCharSequenceWithField(boolean)} would produce but
+         * without creating a CharSequence for the lookup
+         */
+        private void stepTerm(final Term term) {
+            final String field = term.getField();
+            if (field != null) {
+                if (!(cursor.step(field) && cursor.step(':'))) {
+                    return;
+                }
+            }
+            cursor.step(term, ignoreCase);
+        }
+
+        @Override
+        int finish(final MatchCallback<List<Instructions>> callback) {
+            return cursor.finish(callback);
+        }
+    }
+
 }
@@ -3,6 +3,9 @@
  */
 package querqy.rewrite.commonrules.model;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -10,6 +13,8 @@ import java.util.Set;
 
 import querqy.ComparableCharSequence;
 import querqy.CompoundCharSequence;
+import querqy.rewrite.TriggerTerms;
+import querqy.trie.FrozenTrieMap;
 import querqy.trie.State;
 import querqy.trie.States;
 import querqy.trie.TrieMap;
@@ -22,11 +27,14 @@ public class TrieMapRulesCollectionBuilder implements RulesCollectionBuilder {
     
     final TrieMap<List<Instructions>> map = new TrieMap<>();
     private final Set<Object> seenInstructionIds = new HashSet<>();
+    private final PropertyIndex.Builder propertyIndexBuilder = new PropertyIndex.Builder();
+    private final TriggerTerms.Builder triggerTermsBuilder;
     
     final boolean ignoreCase;
     
     public TrieMapRulesCollectionBuilder(boolean ignoreCase) {
         this.ignoreCase = ignoreCase;
+        this.triggerTermsBuilder = TriggerTerms.builder(ignoreCase);
     }
 
     /* (non-Javadoc)
@@ -157,6 +165,17 @@ public class TrieMapRulesCollectionBuilder implements RulesCollectionBuilder {
         }
 
         seenInstructionIds.add(instructions.getId());
+        propertyIndexBuilder.add(instructions);
+
+        // only the first term is needed to decide whether a query can match any rule
+        if (!inputTerms.isEmpty()) {
+            final Term firstTerm = inputTerms.get(0);
+            if (firstTerm instanceof PrefixTerm) {
+                triggerTermsBuilder.addPrefix(firstTerm);
+            } else {
+                triggerTermsBuilder.addTerm(firstTerm);
+            }
+        }
 
     }
     
@@ -175,12 +194,26 @@ public class TrieMapRulesCollectionBuilder implements RulesCollectionBuilder {
     }
     
 
-    /* (non-Javadoc)
+    /**
+     * Creates a {@link TrieMapRulesCollection} that is backed by a read-only, array-packed copy of the trie that was
+     * built by this builder. The instructions lists of the frozen trie cannot be modified and they are sorted by
+     * ascending {@link Instructions#getOrd()}, which allows the collectors to stop early. The collection also gets a
+     * {@link PropertyIndex} over the properties of all instructions unless their ord values are not unique and the
+     * {@link TriggerTerms} of the first input terms of all rules.
+     *
      * @see querqy.rewrite.commonrules.model.RulesCollectionBuilder#build()
      */
     @Override
     public RulesCollection build() {
-        return new TrieMapRulesCollection(map, ignoreCase);
+        return new TrieMapRulesCollection(
+                FrozenTrieMap.of(map, instructionsList -> {
+                    final List<Instructions> sorted = new ArrayList<>(instructionsList);
+                    sorted.sort(Comparator.comparingInt(Instructions::getOrd));
+                    return Collections.unmodifiableList(sorted);
+                }),
+                ignoreCase,
+                propertyIndexBuilder.build().orElse(null),
+                triggerTermsBuilder.build());
     }
 
 }
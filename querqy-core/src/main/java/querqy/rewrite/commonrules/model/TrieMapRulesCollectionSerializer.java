@@ -0,0 +1,629 @@
+package querqy.rewrite.commonrules.model;
+
+import com.jayway.jsonpath.Configuration;
+import querqy.model.BooleanClause;
+import querqy.model.BooleanParent;
+import querqy.model.BooleanQuery;
+import querqy.model.BoostedTerm;
+import querqy.model.Clause.Occur;
+import querqy.model.DisjunctionMaxClause;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.MatchAllQuery;
+import querqy.model.ParametrizedRawQuery;
+import querqy.model.QuerqyQuery;
+import querqy.model.Query;
+import querqy.model.StringRawQuery;
+import querqy.rewrite.commonrules.model.BoostInstruction.BoostDirection;
+import querqy.rewrite.TriggerTerms;
+import querqy.trie.FrozenTrieMap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Writes a {@link TrieMapRulesCollection} to a compact binary representation and reads it back, so that a rules
+ * collection can be restored without parsing the rules again.</p>
+ *
+ * <p>The trie is written as it is, the {@link Instructions} are written once and referenced by their position from
+ * the trie values. Instruction queries are written in the form that results from creating the instruction, they
+ * are passed through the instruction constructors again when they are read. The {@link PropertyIndex} is rebuilt from
+ * the properties of the Instructions. The {@link querqy.rewrite.TriggerTerms} are written as they are.</p>
+ *
+ * <p>Only the instruction types and query node types of this library are supported. Property values and decoration
+ * values can be Strings, Numbers, Booleans, null and Lists or Maps of these.</p>
+ */
+public class TrieMapRulesCollectionSerializer {
+
+    private static final byte SYNONYM = 1;
+    private static final byte DELETE = 2;
+    private static final byte FILTER = 3;
+    private static final byte BOOST = 4;
+    private static final byte DECORATE = 5;
+
+    private static final byte TERM = 1;
+    private static final byte PREFIX_TERM = 2;
+
+    private static final byte QUERY = 1;
+    private static final byte BOOLEAN_QUERY = 2;
+    private static final byte DISJUNCTION_MAX_QUERY = 3;
+    private static final byte QUERQY_TERM = 4;
+    private static final byte BOOSTED_TERM = 5;
+    private static final byte STRING_RAW_QUERY = 6;
+    private static final byte PARAMETRIZED_RAW_QUERY = 7;
+    private static final byte MATCH_ALL_QUERY = 8;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte BIG_INTEGER = 6;
+    private static final byte BIG_DECIMAL = 7;
+    private static final byte BOOLEAN = 8;
+    private static final byte LIST = 9;
+    private static final byte MAP = 10;
+
+    private TrieMapRulesCollectionSerializer() {
+    }
+
+    /**
+     * Write a rules collection.
+     *
+     * @param rules The rules collection
+     * @param out The output
+     * @throws IOException if the data cannot be written
+     * @throws IllegalArgumentException if the rules contain an instruction, a query or a value of an unsupported type
+     */
+    public static void write(final TrieMapRulesCollection rules, final DataOutput out) throws IOException {
+
+        final Map<Instructions, Integer> positions = new IdentityHashMap<>();
+        final List<Instructions> distinctInstructions = new ArrayList<>();
+        for (final List<Instructions> instructionsList : rules.trieMap) {
+            for (final Instructions instructions : instructionsList) {
+                if (positions.putIfAbsent(instructions, distinctInstructions.size()) == null) {
+                    distinctInstructions.add(instructions);
+                }
+            }
+        }
+
+        out.writeBoolean(rules.ignoreCase);
+        out.writeBoolean(rules.propertyIndex != null);
+        out.writeBoolean(rules.triggerTerms != null);
+        if (rules.triggerTerms != null) {
+            rules.triggerTerms.writeTo(out);
+        }
+
+        out.writeInt(distinctInstructions.size());
+        for (final Instructions instructions : distinctInstructions) {
+            writeInstructions(instructions, out);
+        }
+
+        rules.trieMap.writeTo(out, (output, instructionsList) -> {
+            output.writeInt(instructionsList.size());
+            for (final Instructions instructions : instructionsList) {
+                output.writeInt(positions.get(instructions));
+            }
+        });
+
+    }
+
+    /**
+     * Read a rules collection that was written using {@link #write(TrieMapRulesCollection, DataOutput)}.
+     *
+     * @param in The input
+     * @param jsonPathConfig The JsonPath configuration for the {@link InstructionsProperties}
+     * @return The rules collection
+     * @throws IOException if the data cannot be read or if it is invalid
+     */
+    public static TrieMapRulesCollection read(final DataInput in, final Configuration jsonPathConfig)
+            throws IOException {
+
+        final boolean ignoreCase = in.readBoolean();
+        final boolean hasPropertyIndex = in.readBoolean();
+        final TriggerTerms triggerTerms = in.readBoolean() ? TriggerTerms.readFrom(in) : null;
+        if (triggerTerms != null && triggerTerms.isIgnoreCase() != ignoreCase) {
+            throw new IOException("Inconsistent ignoreCase setting of trigger terms");
+        }
+
+        final int numInstructions = in.readInt();
+        final Instructions[] instructionsArray = new Instructions[numInstructions];
+        final PropertyIndex.Builder propertyIndexBuilder = hasPropertyIndex ? new PropertyIndex.Builder() : null;
+
+        for (int i = 0; i < numInstructions; i++) {
+            instructionsArray[i] = readInstructions(in, jsonPathConfig);
+            if (propertyIndexBuilder != null) {
+                propertyIndexBuilder.add(instructionsArray[i]);
+            }
+        }
+
+        final FrozenTrieMap<List<Instructions>> trieMap = FrozenTrieMap.readFrom(in, input -> {
+            final int size = input.readInt();
+            final List<Instructions> instructionsList = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                final int position = input.readInt();
+                if (position < 0 || position >= instructionsArray.length) {
+                    throw new IOException("Invalid Instructions reference: " + position);
+                }
+                instructionsList.add(instructionsArray[position]);
+            }
+            return Collections.unmodifiableList(instructionsList);
+        });
+
+        return new TrieMapRulesCollection(trieMap, ignoreCase,
+                propertyIndexBuilder == null ? null : propertyIndexBuilder.build().orElse(null), triggerTerms);
+
+    }
+
+    private static void writeInstructions(final Instructions instructions, final DataOutput out) throws IOException {
+
+        out.writeInt(instructions.getOrd());
+        writeValue(instructions.getId(), out);
+        writeValue(instructions.getProperties().getPropertyMap(), out);
+
+        out.writeInt(instructions.size());
+        for (final Instruction instruction : instructions) {
+            writeInstruction(instruction, out);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Instructions readInstructions(final DataInput in, final Configuration jsonPathConfig)
+            throws IOException {
+
+        final int ord = in.readInt();
+        final Object id = readValue(in);
+        final Object propertyMap = readValue(in);
+        if (!(propertyMap instanceof Map)) {
+            throw new IOException("Property map expected");
+        }
+
+        final int size = in.readInt();
+        final List<Instruction> instructionList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            instructionList.add(readInstruction(in));
+        }
+
+        final Instructions instructions = new Instructions(ord, id, Collections.emptyList(),
+                new InstructionsProperties((Map<String, Object>) propertyMap, jsonPathConfig));
+        // keep the order in which the Instructions were written instead of letting the constructor re-arrange them
+        instructions.addAll(instructionList);
+        return instructions;
+    }
+
+    private static void writeInstruction(final Instruction instruction, final DataOutput out) throws IOException {
+
+        final Class<?> type = instruction.getClass();
+
+        if (type == SynonymInstruction.class) {
+            final SynonymInstruction synonymInstruction = (SynonymInstruction) instruction;
+            out.writeByte(SYNONYM);
+            out.writeFloat(synonymInstruction.boost);
+            writeTerms(synonymInstruction.synonym, out);
+        } else if (type == DeleteInstruction.class) {
+            out.writeByte(DELETE);
+            writeTerms(((DeleteInstruction) instruction).termsToDelete, out);
+        } else if (type == FilterInstruction.class) {
+            out.writeByte(FILTER);
+            writeQuerqyQuery(((FilterInstruction) instruction).filterQuery, out);
+        } else if (type == BoostInstruction.class) {
+            final BoostInstruction boostInstruction = (BoostInstruction) instruction;
+            out.writeByte(BOOST);
+            out.writeByte(boostInstruction.direction.ordinal());
+            out.writeFloat(boostInstruction.boost);
+            writeQuerqyQuery(boostInstruction.query, out);
+        } else if (type == DecorateInstruction.class) {
+            final DecorateInstruction decorateInstruction = (DecorateInstruction) instruction;
+            out.writeByte(DECORATE);
+            writeValue(decorateInstruction.decorationKey, out);
+            writeValue(decorateInstruction.decorationValue, out);
+        } else {
+            throw new IllegalArgumentException("Cannot serialize instruction of type " + type.getName());
+        }
+    }
+
+    private static Instruction readInstruction(final DataInput in) throws IOException {
+
+        final byte type = in.readByte();
+        switch (type) {
+            case SYNONYM: {
+                final float boost = in.readFloat();
+                return new SynonymInstruction(readTerms(in), boost);
+            }
+            case DELETE:
+                return new DeleteInstruction(readTerms(in));
+            case FILTER:
+                return new FilterInstruction(readQuerqyQuery(in));
+            case BOOST: {
+                final int direction = in.readByte();
+                if (direction < 0 || direction >= BoostDirection.values().length) {
+                    throw new IOException("Invalid boost direction: " + direction);
+                }
+                final float boost = in.readFloat();
+                return new BoostInstruction(readQuerqyQuery(in), BoostDirection.values()[direction], boost);
+            }
+            case DECORATE: {
+                final Object key = readValue(in);
+                if (key != null && !(key instanceof String)) {
+                    throw new IOException("Invalid decoration key: " + key);
+                }
+                return new DecorateInstruction((String) key, readValue(in));
+            }
+            default:
+                throw new IOException("Unknown instruction type: " + type);
+        }
+    }
+
+    private static void writeTerms(final List<? extends Term> terms, final DataOutput out) throws IOException {
+        out.writeInt(terms.size());
+        for (final Term term : terms) {
+            final Class<?> type = term.getClass();
+            if (type == Term.class) {
+                out.writeByte(TERM);
+            } else if (type == PrefixTerm.class) {
+                out.writeByte(PREFIX_TERM);
+            } else {
+                throw new IllegalArgumentException("Cannot serialize term of type " + type.getName());
+            }
+            writeString(new String(term.value, term.start, term.length), out);
+            writeStrings(term.fieldNames, out);
+        }
+    }
+
+    private static List<Term> readTerms(final DataInput in) throws IOException {
+        final int size = in.readInt();
+        final List<Term> terms = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final byte type = in.readByte();
+            final char[] value = readString(in).toCharArray();
+            final List<String> fieldNames = readStrings(in);
+            switch (type) {
+                case TERM:
+                    terms.add(new Term(value, 0, value.length, fieldNames));
+                    break;
+                case PREFIX_TERM:
+                    terms.add(new PrefixTerm(value, 0, value.length, fieldNames));
+                    break;
+                default:
+                    throw new IOException("Unknown term type: " + type);
+            }
+        }
+        return terms;
+    }
+
+    private static void writeQuerqyQuery(final QuerqyQuery<?> query, final DataOutput out) throws IOException {
+
+        if (query instanceof Query) {
+            out.writeByte(QUERY);
+            out.writeBoolean(query.isGenerated());
+            writeClauses((BooleanQuery) query, out);
+        } else if (query instanceof BooleanQuery) {
+            writeBooleanQuery((BooleanQuery) query, out);
+        } else if (query instanceof StringRawQuery) {
+            final StringRawQuery rawQuery = (StringRawQuery) query;
+            out.writeByte(STRING_RAW_QUERY);
+            out.writeByte(rawQuery.getOccur().ordinal());
+            out.writeBoolean(rawQuery.isGenerated());
+            writeString(rawQuery.getQueryString(), out);
+        } else if (query instanceof ParametrizedRawQuery) {
+            final ParametrizedRawQuery rawQuery = (ParametrizedRawQuery) query;
+            out.writeByte(PARAMETRIZED_RAW_QUERY);
+            out.writeByte(rawQuery.getOccur().ordinal());
+            out.writeBoolean(rawQuery.isGenerated());
+            out.writeInt(rawQuery.getParts().size());
+            for (final ParametrizedRawQuery.Part part : rawQuery.getParts()) {
+                out.writeByte(part.type.ordinal());
+                writeString(part.part, out);
+            }
+        } else if (query instanceof MatchAllQuery) {
+            final MatchAllQuery matchAllQuery = (MatchAllQuery) query;
+            out.writeByte(MATCH_ALL_QUERY);
+            out.writeByte(matchAllQuery.getOccur().ordinal());
+            out.writeBoolean(matchAllQuery.isGenerated());
+        } else {
+            throw new IllegalArgumentException("Cannot serialize query of type " + query.getClass().getName());
+        }
+    }
+
+    private static QuerqyQuery<?> readQuerqyQuery(final DataInput in) throws IOException {
+
+        final byte type = in.readByte();
+        switch (type) {
+            case QUERY: {
+                final Query query = new Query(in.readBoolean());
+                readClauses(query, in);
+                return query;
+            }
+            case BOOLEAN_QUERY:
+                return readBooleanQuery(null, in);
+            case STRING_RAW_QUERY: {
+                final Occur occur = readOccur(in);
+                final boolean generated = in.readBoolean();
+                return new StringRawQuery(null, readString(in), occur, generated);
+            }
+            case PARAMETRIZED_RAW_QUERY: {
+                final Occur occur = readOccur(in);
+                final boolean generated = in.readBoolean();
+                final int size = in.readInt();
+                final List<ParametrizedRawQuery.Part> parts = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    final int partType = in.readByte();
+                    if (partType < 0 || partType >= ParametrizedRawQuery.Part.Type.values().length) {
+                        throw new IOException("Invalid raw query part type: " + partType);
+                    }
+                    parts.add(new ParametrizedRawQuery.Part(readString(in),
+                            ParametrizedRawQuery.Part.Type.values()[partType]));
+                }
+                return new ParametrizedRawQuery(null, parts, occur, generated);
+            }
+            case MATCH_ALL_QUERY: {
+                final Occur occur = readOccur(in);
+                return new MatchAllQuery(null, occur, in.readBoolean());
+            }
+            default:
+                throw new IOException("Unknown query type: " + type);
+        }
+    }
+
+    private static void writeBooleanQuery(final BooleanQuery query, final DataOutput out) throws IOException {
+        out.writeByte(BOOLEAN_QUERY);
+        out.writeByte(query.getOccur().ordinal());
+        out.writeBoolean(query.isGenerated());
+        writeClauses(query, out);
+    }
+
+    private static BooleanQuery readBooleanQuery(final BooleanParent parent, final DataInput in) throws IOException {
+        final Occur occur = readOccur(in);
+        final BooleanQuery query = new BooleanQuery(parent, occur, in.readBoolean());
+        readClauses(query, in);
+        return query;
+    }
+
+    private static void writeClauses(final BooleanQuery query, final DataOutput out) throws IOException {
+
+        out.writeInt(query.getClauses().size());
+
+        for (final BooleanClause clause : query.getClauses()) {
+
+            if (clause instanceof BooleanQuery) {
+                writeBooleanQuery((BooleanQuery) clause, out);
+            } else if (clause instanceof DisjunctionMaxQuery) {
+
+                final DisjunctionMaxQuery dmq = (DisjunctionMaxQuery) clause;
+                out.writeByte(DISJUNCTION_MAX_QUERY);
+                out.writeByte(dmq.getOccur().ordinal());
+                out.writeBoolean(dmq.isGenerated());
+                out.writeInt(dmq.getClauses().size());
+
+                for (final DisjunctionMaxClause dmqClause : dmq.getClauses()) {
+                    if (dmqClause instanceof BoostedTerm) {
+                        final BoostedTerm term = (BoostedTerm) dmqClause;
+                        out.writeByte(BOOSTED_TERM);
+                        writeString(term.getField(), out);
+                        writeString(toString(term.getValue()), out);
+                        out.writeFloat(term.getBoost());
+                    } else if (dmqClause instanceof querqy.model.Term) {
+                        final querqy.model.Term term = (querqy.model.Term) dmqClause;
+                        out.writeByte(QUERQY_TERM);
+                        writeString(term.getField(), out);
+                        writeString(toString(term.getValue()), out);
+                        out.writeBoolean(term.isGenerated());
+                    } else if (dmqClause instanceof BooleanQuery) {
+                        writeBooleanQuery((BooleanQuery) dmqClause, out);
+                    } else {
+                        throw new IllegalArgumentException("Cannot serialize clause of type "
+                                + dmqClause.getClass().getName());
+                    }
+                }
+
+            } else {
+                throw new IllegalArgumentException("Cannot serialize clause of type " + clause.getClass().getName());
+            }
+        }
+    }
+
+    private static void readClauses(final BooleanQuery query, final DataInput in) throws IOException {
+
+        final int size = in.readInt();
+
+        for (int i = 0; i < size; i++) {
+
+            final byte type = in.readByte();
+            switch (type) {
+
+                case BOOLEAN_QUERY:
+                    query.addClause(readBooleanQuery(query, in));
+                    break;
+
+                case DISJUNCTION_MAX_QUERY: {
+                    final Occur occur = readOccur(in);
+                    final DisjunctionMaxQuery dmq = new DisjunctionMaxQuery(query, occur, in.readBoolean());
+                    final int numClauses = in.readInt();
+                    for (int j = 0; j < numClauses; j++) {
+                        final byte clauseType = in.readByte();
+                        switch (clauseType) {
+                            case BOOSTED_TERM: {
+                                final String field = readString(in);
+                                final String value = readString(in);
+                                dmq.addClause(new BoostedTerm(dmq, field, value, in.readFloat()));
+                                break;
+                            }
+                            case QUERQY_TERM: {
+                                final String field = readString(in);
+                                final String value = readString(in);
+                                dmq.addClause(new querqy.model.Term(dmq, field, value, in.readBoolean()));
+                                break;
+                            }
+                            case BOOLEAN_QUERY:
+                                dmq.addClause(readBooleanQuery(dmq, in));
+                                break;
+                            default:
+                                throw new IOException("Unknown clause type: " + clauseType);
+                        }
+                    }
+                    query.addClause(dmq);
+                    break;
+                }
+
+                default:
+                    throw new IOException("Unknown clause type: " + type);
+            }
+        }
+    }
+
+    private static Occur readOccur(final DataInput in) throws IOException {
+        final int occur = in.readByte();
+        if (occur < 0 || occur >= Occur.values().length) {
+            throw new IOException("Invalid occur: " + occur);
+        }
+        return Occur.values()[occur];
+    }
+
+    private static void writeValue(final Object value, final DataOutput out) throws IOException {
+
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString((String) value, out);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            writeString(value.toString(), out);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(BIG_DECIMAL);
+            writeString(value.toString(), out);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof List) {
+            final List<?> list = (List<?>) value;
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (final Object element : list) {
+                writeValue(element, out);
+            }
+        } else if (value instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(MAP);
+            out.writeInt(map.size());
+            for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!(entry.getKey() instanceof String)) {
+                    throw new IllegalArgumentException("Cannot serialize map key " + entry.getKey());
+                }
+                writeString((String) entry.getKey(), out);
+                writeValue(entry.getValue(), out);
+            }
+        } else {
+            throw new IllegalArgumentException("Cannot serialize value of type " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(final DataInput in) throws IOException {
+
+        final byte type = in.readByte();
+        switch (type) {
+            case NULL: return null;
+            case STRING: return readString(in);
+            case INTEGER: return in.readInt();
+            case LONG: return in.readLong();
+            case DOUBLE: return in.readDouble();
+            case FLOAT: return in.readFloat();
+            case BIG_INTEGER: return new BigInteger(readString(in));
+            case BIG_DECIMAL: return new BigDecimal(readString(in));
+            case BOOLEAN: return in.readBoolean();
+            case LIST: {
+                final int size = in.readInt();
+                final List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case MAP: {
+                final int size = in.readInt();
+                final Map<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    final String key = readString(in);
+                    map.put(key, readValue(in));
+                }
+                return map;
+            }
+            default:
+                throw new IOException("Unknown value type: " + type);
+        }
+    }
+
+    private static void writeStrings(final List<String> strings, final DataOutput out) throws IOException {
+        if (strings == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(strings.size());
+            for (final String string : strings) {
+                writeString(string, out);
+            }
+        }
+    }
+
+    private static List<String> readStrings(final DataInput in) throws IOException {
+        final int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        final List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            strings.add(readString(in));
+        }
+        return strings;
+    }
+
+    /*
+     * Unlike DataOutput.writeUTF(), this doesn't limit the String length to 64k bytes
+     */
+    private static void writeString(final String string, final DataOutput out) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+        } else {
+            final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(final DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String toString(final CharSequence charSequence) {
+        // the value can be a querqy.rewrite.commonrules.model.Term, which doesn't return its value from toString()
+        return new StringBuilder(charSequence.length()).append(charSequence).toString();
+    }
+
+}
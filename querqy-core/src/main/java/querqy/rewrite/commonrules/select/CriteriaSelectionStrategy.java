@@ -1,11 +1,16 @@
 package querqy.rewrite.commonrules.select;
 
+import querqy.rewrite.commonrules.model.Instructions;
 import querqy.rewrite.commonrules.model.Limit;
+import querqy.rewrite.commonrules.model.PropertyIndex;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 /**
- * Select rules based on {@link Criteria}.
+ * Select rules based on {@link Criteria}. Instances are immutable and can be shared between requests.
  *
  * @author René Kriegler, @renekrie
  */
@@ -14,23 +19,43 @@ public class CriteriaSelectionStrategy implements SelectionStrategy {
     private final Sorting sorting;
     private final Limit limit;
     private final List<FilterCriterion> filters;
+    private final List<Comparator<Instructions>> comparators;
 
 
     public CriteriaSelectionStrategy(final Criteria criteria) {
         sorting = criteria.getSorting();
         limit = criteria.getLimit();
-        filters = criteria.getFilters();
+        filters = Collections.unmodifiableList(criteria.getFilters());
+        comparators = Collections.unmodifiableList(sorting.getComparators());
 
     }
 
     @Override
     public TopRewritingActionCollector createTopRewritingActionCollector() {
+        return createTopRewritingActionCollector(comparators, filters);
+    }
+
+    @Override
+    public TopRewritingActionCollector createTopRewritingActionCollector(final PropertyIndex propertyIndex) {
+        final List<Comparator<Instructions>> indexedComparators = sorting.getComparators(propertyIndex);
+        if (filters.isEmpty()) {
+            return createTopRewritingActionCollector(indexedComparators, filters);
+        }
+        final List<FilterCriterion> indexedFilters = new ArrayList<>(filters.size());
+        for (final FilterCriterion filter : filters) {
+            indexedFilters.add(filter.forPropertyIndex(propertyIndex));
+        }
+        return createTopRewritingActionCollector(indexedComparators, indexedFilters);
+    }
+
+    private TopRewritingActionCollector createTopRewritingActionCollector(
+            final List<Comparator<Instructions>> comparators, final List<FilterCriterion> filters) {
 
         final int count = limit.getCount();
         if (count < 1 || !limit.isUseLevels()) {
-            return new FlatTopRewritingActionCollector(sorting.getComparators(), count, filters);
+            return new FlatTopRewritingActionCollector(comparators, count, filters);
         } else {
-            return new TopLevelRewritingActionCollector(sorting.getComparators(), count, filters);
+            return new TopLevelRewritingActionCollector(comparators, count, filters);
         }
     }
 
@@ -1,23 +1,116 @@
 package querqy.rewrite.commonrules.select;
 
+import querqy.ConcurrentLRUCache;
 import querqy.rewrite.SearchEngineRequestAdapter;
 import querqy.rewrite.commonrules.model.*;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+/**
+ * <p>Creates {@link CriteriaSelectionStrategy} objects from the querqy.&lt;rewriterId&gt;.criteria.* request
+ * parameters.</p>
+ *
+ * <p>As requests tend to use only a few distinct combinations of criteria, the selection strategies are cached by
+ * the raw values of the criteria parameters. The selection strategies are immutable and shared between requests.
+ * The cache can be disabled by setting its size to 0.</p>
+ */
 public class ExpressionCriteriaSelectionStrategyFactory implements SelectionStrategyFactory {
 
     public static final Limit DEFAULT_LIMIT = new Limit(-1, false);
 
+    public static final int DEFAULT_CACHE_SIZE = 256;
+
     private final Pattern SORT_SPLIT_PARAM_PATTERN = Pattern.compile("[ ]+");
 
+    private final ConcurrentLRUCache<List<Object>, SelectionStrategy> cache;
+
+    public ExpressionCriteriaSelectionStrategyFactory() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize The max. number of distinct criteria combinations for which the selection strategy will be
+     *                  cached. Set to 0 to disable caching.
+     */
+    public ExpressionCriteriaSelectionStrategyFactory(final int cacheSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("cacheSize >= 0 expected");
+        }
+        cache = cacheSize == 0 ? null : new ConcurrentLRUCache<>(cacheSize);
+    }
+
     @Override
     public SelectionStrategy createSelectionStrategy(final String rewriterId,
                                                      final SearchEngineRequestAdapter searchEngineRequestAdapter) {
-        return new CriteriaSelectionStrategy(retrieveCriteriaFromRequest(rewriterId, searchEngineRequestAdapter));
+        if (cache == null) {
+            return new CriteriaSelectionStrategy(retrieveCriteriaFromRequest(rewriterId, searchEngineRequestAdapter));
+        }
+
+        return cache.computeIfAbsent(getCacheKey(rewriterId, searchEngineRequestAdapter),
+                key -> new CriteriaSelectionStrategy(retrieveCriteriaFromRequest(rewriterId,
+                        searchEngineRequestAdapter)));
+    }
+
+    /**
+     * <p>Create the key under which the selection strategy for this request will be cached.</p>
+     *
+     * <p>The key consists of the rewriter id and the unparsed values of the sort, limit, limitByLevel and filter
+     * params. Subclasses that read further request parameters in {@link #retrieveCriteriaFromRequest} must add them
+     * to the key.</p>
+     *
+     * @param rewriterId The rewriter id
+     * @param searchEngineRequestAdapter The request adapter
+     * @return The cache key
+     */
+    protected List<Object> getCacheKey(final String rewriterId,
+                                       final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+
+        final Integer limit = searchEngineRequestAdapter
+                .getIntegerRequestParam(RuleSelectionParams.getLimitParamName(rewriterId)).orElse(null);
+        final Boolean useLevels = limit == null
+                ? null
+                : searchEngineRequestAdapter.getBooleanRequestParam(
+                        RuleSelectionParams.getIsUseLevelsForLimitParamName(rewriterId)).orElse(null);
+
+        return Arrays.asList(rewriterId,
+                searchEngineRequestAdapter.getRequestParam(RuleSelectionParams.getSortParamName(rewriterId))
+                        .orElse(null),
+                limit,
+                useLevels,
+                Arrays.asList(searchEngineRequestAdapter.getRequestParams(
+                        RuleSelectionParams.getFilterParamName(rewriterId))));
+    }
+
+    /**
+     * The selected rules only depend on the criteria params, which are described by
+     * {@link #getCacheKey(String, SearchEngineRequestAdapter)}.
+     */
+    @Override
+    public Optional<Object> getRewriteResultCacheKey(final String rewriterId,
+                                                     final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+        return Optional.of(getCacheKey(rewriterId, searchEngineRequestAdapter));
+    }
+
+    /**
+     * Get the number of requests for which the selection strategy could be taken from the cache.
+     *
+     * @return The number of cache hits or 0 if the cache is disabled.
+     */
+    public long getCacheHitCount() {
+        return cache == null ? 0L : cache.getHitCount();
+    }
+
+    /**
+     * Get the number of requests for which the selection strategy had to be created from the request params.
+     *
+     * @return The number of cache misses or 0 if the cache is disabled.
+     */
+    public long getCacheMissCount() {
+        return cache == null ? 0L : cache.getMissCount();
     }
 
     protected Criteria retrieveCriteriaFromRequest(final String rewriterId,
@@ -1,20 +1,78 @@
 package querqy.rewrite.commonrules.select;
 
+import com.jayway.jsonpath.InvalidPathException;
+import com.jayway.jsonpath.JsonPath;
 import querqy.rewrite.commonrules.model.Instructions;
+import querqy.rewrite.commonrules.model.PropertyIndex;
 
 import java.util.Objects;
 
+/**
+ * <p>A {@link FilterCriterion} that accepts {@link Instructions} if a JsonPath expression selects at least one element
+ * from their properties.</p>
+ *
+ * <p>The expression is compiled once. Simple equality and membership filters are additionally compiled into a
+ * {@link PropertyPredicate}, which is evaluated directly against the property values or against a
+ * {@link PropertyIndex} if one is available. The JsonPath expression is only evaluated for rules for which the
+ * PropertyPredicate cannot decide.</p>
+ */
 public class ExpressionFilterCriterion implements FilterCriterion {
 
     private final String expression;
+    private final JsonPath jsonPath;
+    private final PropertyPredicate predicate;
+
+    private volatile IndexedFilterCriterion indexedFilterCriterion = null;
 
     public ExpressionFilterCriterion(final String expression) {
         this.expression = expression;
+        predicate = PropertyPredicate.parse(expression).orElse(null);
+        JsonPath path;
+        try {
+            path = JsonPath.compile(expression);
+        } catch (final InvalidPathException e) {
+            // keep the old behaviour and fail when the expression is evaluated
+            path = null;
+        }
+        jsonPath = path;
     }
 
     @Override
     public boolean isValid(final Instructions instructions) {
-        return instructions.getProperties().matches(expression);
+        if (predicate != null) {
+            switch (predicate.test(instructions.getProperty(predicate.getPropertyName()).orElse(null))) {
+                case TRUE: return true;
+                case FALSE: return false;
+                default: break;
+            }
+        }
+        return evaluateExpression(instructions);
+    }
+
+    boolean evaluateExpression(final Instructions instructions) {
+        return jsonPath != null
+                ? instructions.getProperties().matches(jsonPath)
+                : instructions.getProperties().matches(expression);
+    }
+
+    /**
+     * Get a version of this criterion that answers the predicate from the index if this criterion has a
+     * {@link PropertyPredicate}.
+     *
+     * @param propertyIndex The index of the rules to which the criterion will be applied
+     * @return The criterion
+     */
+    @Override
+    public FilterCriterion forPropertyIndex(final PropertyIndex propertyIndex) {
+        if (predicate == null) {
+            return this;
+        }
+        IndexedFilterCriterion criterion = indexedFilterCriterion;
+        if (criterion == null || criterion.propertyIndex != propertyIndex) {
+            criterion = new IndexedFilterCriterion(this, propertyIndex);
+            indexedFilterCriterion = criterion;
+        }
+        return criterion;
     }
 
     public String getExpression() {
@@ -39,4 +97,39 @@ public class ExpressionFilterCriterion implements FilterCriterion {
     public int hashCode() {
         return 811 + expression.hashCode();
     }
+
+    static class IndexedFilterCriterion implements FilterCriterion {
+
+        final ExpressionFilterCriterion delegate;
+        final PropertyIndex propertyIndex;
+        final PropertyIndex.Property property;
+        final int[] matchingOrds;
+
+        IndexedFilterCriterion(final ExpressionFilterCriterion delegate, final PropertyIndex propertyIndex) {
+            this.delegate = delegate;
+            this.propertyIndex = propertyIndex;
+            property = propertyIndex.getProperty(delegate.predicate.getPropertyName()).orElse(null);
+            matchingOrds = property == null ? null : delegate.predicate.getMatchingOrds(property);
+        }
+
+        @Override
+        public boolean isValid(final Instructions instructions) {
+            if (property == null) {
+                // none of the rules has the property
+                return false;
+            }
+            switch (delegate.predicate.test(property, matchingOrds, instructions.getOrd())) {
+                case TRUE: return true;
+                case FALSE: return false;
+                default: return delegate.evaluateExpression(instructions);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "IndexedFilterCriterion{" +
+                    "delegate=" + delegate +
+                    '}';
+        }
+    }
 }
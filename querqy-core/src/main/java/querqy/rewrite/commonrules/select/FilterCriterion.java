@@ -1,9 +1,22 @@
 package querqy.rewrite.commonrules.select;
 
 import querqy.rewrite.commonrules.model.Instructions;
+import querqy.rewrite.commonrules.model.PropertyIndex;
 
 public interface FilterCriterion {
 
     boolean isValid(final Instructions instructions);
 
-}
\ No newline at end of file
+    /**
+     * Get a version of this criterion that can use the {@link PropertyIndex} of the rules to which it will be applied.
+     * The returned criterion must only be used for Instructions from these rules.
+     *
+     * @param propertyIndex The property index
+     * @return A criterion that makes the same decisions as this criterion. The default implementation returns this
+     * criterion.
+     */
+    default FilterCriterion forPropertyIndex(final PropertyIndex propertyIndex) {
+        return this;
+    }
+
+}
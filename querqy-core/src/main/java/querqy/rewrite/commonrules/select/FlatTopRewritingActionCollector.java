@@ -5,26 +5,46 @@ import querqy.rewrite.commonrules.model.Action;
 import querqy.rewrite.commonrules.model.Instructions;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
-import java.util.TreeMap;
+import java.util.ListIterator;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
+/**
+ * <p>Collects the actions of the top {@link #getLimit()} Instructions in the order of the comparators. All
+ * Instructions are collected if the limit is negative.</p>
+ *
+ * <p>For a positive limit, the collected Instructions are kept in a sorted array that never holds more than limit
+ * entries, so that Instructions that cannot make it into the top entries are rejected after a binary search. For a
+ * negative limit, Instructions are just appended and sorted once when the actions are created. If the Instructions
+ * are ordered by ord only, lists that are offered via {@link #offerSortedByOrd(List, Function)} are only iterated until
+ * the first Instructions that cannot make it into the top entries anymore.</p>
+ */
 public class FlatTopRewritingActionCollector implements TopRewritingActionCollector {
 
-    private final TreeMap<Instructions, List<Function<Instructions, Action>>> topN;
+    private static final int INITIAL_CAPACITY = 8;
+
     private final int limit;
-    private List<? extends FilterCriterion> filters;
+    private final List<? extends FilterCriterion> filters;
     private final Comparator<Instructions> comparator;
+    private final Comparator<Entry> entryComparator;
+    // 1 (ascending) or -1 (descending) if the Instructions are ordered by ord only, 0 otherwise
+    private final int ordFactor;
+
+    private Entry[] entries;
+    private int size = 0;
+    private boolean sorted = true;
 
     public FlatTopRewritingActionCollector(final List<Comparator<Instructions>> comparators, final int limit,
                                            final List<? extends FilterCriterion> filters) {
-        comparator = new PriorityComparator<>(comparators);
-        topN = new TreeMap<>(comparator);
+        comparator = comparators.size() == 1 ? comparators.get(0) : new PriorityComparator<>(comparators);
+        entryComparator = (entry1, entry2) -> comparator.compare(entry1.instructions, entry2.instructions);
+        ordFactor = (comparators.size() == 1 && comparator instanceof Sorting.ConfigOrderComparator)
+                ? ((Sorting.ConfigOrderComparator) comparator).getFactor() : 0;
         this.limit = limit;
         this.filters = filters;
+        entries = new Entry[limit > 0 ? Math.min(limit, INITIAL_CAPACITY) : INITIAL_CAPACITY];
     }
 
 
@@ -35,60 +55,133 @@ public class FlatTopRewritingActionCollector implements TopRewritingActionCollec
             return;
         }
 
-        instructions.stream()
-                .filter(instr -> {
-                    for (final FilterCriterion filter : filters) {
-                        if (!filter.isValid(instr)) {
-                            return false;
-                        }
-                    }
-                    return true;
-                }).forEach( instr -> {
-
-            if (limit < 0) {
-                collectEntry(instr, actionCreator);
-            } else if (topN.size() < limit) {
+        for (final Instructions instr : instructions) {
+            if (isValid(instr)) {
                 collectEntry(instr, actionCreator);
-            } else {
-                final Instructions lastInstructions = topN.lastKey();
-                if (comparator.compare(lastInstructions, instr) > 0) {
+            }
+        }
+
+    }
+
+    @Override
+    public void offerSortedByOrd(final List<Instructions> instructions,
+                                 final Function<Instructions, Action> actionCreator) {
+
+        if (limit < 0 || ordFactor == 0) {
+            offer(instructions, actionCreator);
+            return;
+        }
+
+        if (limit == 0) {
+            return;
+        }
+
+        if (ordFactor > 0) {
+            for (final Instructions instr : instructions) {
+                if (cannotEnterTopN(instr)) {
+                    return;
+                }
+                if (isValid(instr)) {
+                    collectEntry(instr, actionCreator);
+                }
+            }
+        } else {
+            final ListIterator<Instructions> iterator = instructions.listIterator(instructions.size());
+            while (iterator.hasPrevious()) {
+                final Instructions instr = iterator.previous();
+                if (cannotEnterTopN(instr)) {
+                    return;
+                }
+                if (isValid(instr)) {
                     collectEntry(instr, actionCreator);
-                    if (topN.size() > limit) {
-                        topN.remove(lastInstructions);
-                    }
                 }
             }
+        }
 
-        });
+    }
+
+    private boolean cannotEnterTopN(final Instructions instructions) {
+        return size == limit && comparator.compare(entries[size - 1].instructions, instructions) < 0;
+    }
 
+    private boolean isValid(final Instructions instructions) {
+        for (final FilterCriterion filter : filters) {
+            if (!filter.isValid(instructions)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private void collectEntry(final Instructions instructions, final Function<Instructions, Action> actionCreator) {
 
-        if (!topN.containsKey(instructions)) {
-            topN.put(instructions, Collections.singletonList(actionCreator));
+        if (limit < 0) {
+            ensureCapacity(size + 1);
+            entries[size++] = new Entry(instructions, actionCreator);
+            sorted = false;
+            return;
+        }
+
+        final int idx = search(instructions);
+        if (idx >= 0) {
+            // only applied in case of duplicate input
+            entries[idx].addActionCreator(actionCreator);
+            return;
+        }
 
+        final int insertAt = -idx - 1;
+        if (size < limit) {
+            ensureCapacity(size + 1);
+            System.arraycopy(entries, insertAt, entries, insertAt + 1, size - insertAt);
+            size++;
+        } else if (insertAt < size) {
+            // drop the last entry
+            System.arraycopy(entries, insertAt, entries, insertAt + 1, size - insertAt - 1);
         } else {
+            return;
+        }
+        entries[insertAt] = new Entry(instructions, actionCreator);
 
-            // only applied in case of duplicate input - we can be inefficient here as this should be an edge case
-            // and the overhead for the regular cases should be kept as small as possible
-            final List<Function<Instructions, Action>> existingActionCreators = topN.get(instructions);
+    }
 
-            final List<Function<Instructions, Action>> allActionCreators = new ArrayList<>(existingActionCreators);
-            allActionCreators.add(actionCreator);
-            topN.put(instructions, allActionCreators);
+    private int search(final Instructions instructions) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int c = comparator.compare(entries[mid].instructions, instructions);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
 
+    private void ensureCapacity(final int capacity) {
+        if (capacity > entries.length) {
+            entries = Arrays.copyOf(entries, Math.max(capacity, entries.length * 2));
         }
     }
 
     @Override
     public List<Action> createActions() {
 
-        return topN.entrySet().stream()
-                .map(entry -> entry.getValue().stream()
-                        .map(value -> value.apply(entry.getKey())))
-                .flatMap(stream -> stream)
-                .collect(Collectors.toList());
+        if (!sorted) {
+            // the sort is stable, so that the actions of duplicate Instructions keep the order in which they were
+            // offered
+            Arrays.sort(entries, 0, size, entryComparator);
+            sorted = true;
+        }
+
+        final List<Action> actions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries[i].createActions(actions);
+        }
+        return actions;
 
     }
 
@@ -102,4 +195,33 @@ public class FlatTopRewritingActionCollector implements TopRewritingActionCollec
         return filters;
     }
 
+    private static class Entry {
+
+        final Instructions instructions;
+        final Function<Instructions, Action> actionCreator;
+        // null unless the same Instructions were offered more than once
+        List<Function<Instructions, Action>> moreActionCreators = null;
+
+        Entry(final Instructions instructions, final Function<Instructions, Action> actionCreator) {
+            this.instructions = instructions;
+            this.actionCreator = actionCreator;
+        }
+
+        void addActionCreator(final Function<Instructions, Action> creator) {
+            if (moreActionCreators == null) {
+                moreActionCreators = new ArrayList<>(2);
+            }
+            moreActionCreators.add(creator);
+        }
+
+        void createActions(final List<Action> actions) {
+            actions.add(actionCreator.apply(instructions));
+            if (moreActionCreators != null) {
+                for (final Function<Instructions, Action> creator : moreActionCreators) {
+                    actions.add(creator.apply(instructions));
+                }
+            }
+        }
+    }
+
 }
@@ -5,6 +5,18 @@ package querqy.rewrite.commonrules.select;
  */
 public class PrimitiveValueSelectionStrategyFactory extends ExpressionCriteriaSelectionStrategyFactory {
 
+    public PrimitiveValueSelectionStrategyFactory() {
+        super();
+    }
+
+    /**
+     * @param cacheSize The max. number of distinct criteria combinations for which the selection strategy will be
+     *                  cached. Set to 0 to disable caching.
+     */
+    public PrimitiveValueSelectionStrategyFactory(final int cacheSize) {
+        super(cacheSize);
+    }
+
     @Override
     public FilterCriterion stringToFilterCriterion(final String s) {
 
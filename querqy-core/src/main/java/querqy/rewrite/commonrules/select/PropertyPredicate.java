@@ -0,0 +1,181 @@
+package querqy.rewrite.commonrules.select;
+
+import querqy.rewrite.commonrules.model.PropertyIndex;
+import querqy.rewrite.commonrules.model.PropertyIndex.ValueType;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>A typed predicate over a single top-level property of {@link querqy.rewrite.commonrules.model.Instructions}. It
+ * is compiled from a JsonPath filter expression of one of the forms</p>
+ * <pre>
+ *     $[?(@.name == 'value')]
+ *     $[?(@.name == 42)]
+ *     $[?('value' IN @.name)]
+ * </pre>
+ * <p>(optionally starting with '$.[') with a single-quoted String or a decimal Number literal, which covers the
+ * filters that are most commonly used for selecting rules.</p>
+ *
+ * <p>The predicate only decides cases for which the result is known to be the same as that of the JsonPath
+ * expression, that is, if the property is missing or if the property value has the same type as the literal of the
+ * expression. All other cases are left {@link Result#UNDECIDED undecided} so that the caller can fall back to
+ * evaluating the JsonPath expression.</p>
+ */
+public class PropertyPredicate {
+
+    public enum Operator { EQUALS, IN }
+
+    public enum Result { TRUE, FALSE, UNDECIDED }
+
+    private static final String PATH_START = "^\\$\\.?\\[\\?\\(\\s*";
+    private static final String PATH_END = "\\s*\\)\\]$";
+    private static final String PROPERTY = "@\\.([A-Za-z_$][A-Za-z0-9_$]*)";
+    private static final String LITERAL = "(?:'([^'\\\\]*)'|(-?\\d+(?:\\.\\d+)?))";
+
+    private static final Pattern EQUALS_PATTERN = Pattern.compile(PATH_START + PROPERTY + "\\s*==\\s*" + LITERAL
+            + PATH_END);
+    private static final Pattern IN_PATTERN = Pattern.compile(PATH_START + LITERAL + "\\s+IN\\s+" + PROPERTY
+            + PATH_END);
+
+    private final String propertyName;
+    private final Operator operator;
+    private final Object value;
+    private final ValueType valueType;
+
+    public PropertyPredicate(final String propertyName, final Operator operator, final Object value) {
+        this.propertyName = propertyName;
+        this.operator = operator;
+        this.value = PropertyIndex.normalizeValue(value);
+        this.valueType = PropertyIndex.getValueType(this.value);
+        if (valueType == null) {
+            throw new IllegalArgumentException("String or finite Number value expected: " + value);
+        }
+    }
+
+    /**
+     * Try to compile a JsonPath filter expression into a PropertyPredicate.
+     *
+     * @param expression The JsonPath filter expression
+     * @return The predicate or an empty Optional if the expression doesn't have one of the supported forms.
+     */
+    public static Optional<PropertyPredicate> parse(final String expression) {
+
+        final Matcher equalsMatcher = EQUALS_PATTERN.matcher(expression);
+        if (equalsMatcher.matches()) {
+            return Optional.of(new PropertyPredicate(equalsMatcher.group(1), Operator.EQUALS,
+                    literal(equalsMatcher, 2)));
+        }
+
+        final Matcher inMatcher = IN_PATTERN.matcher(expression);
+        if (inMatcher.matches()) {
+            return Optional.of(new PropertyPredicate(inMatcher.group(3), Operator.IN, literal(inMatcher, 1)));
+        }
+
+        return Optional.empty();
+
+    }
+
+    private static Object literal(final Matcher matcher, final int firstGroup) {
+        final String string = matcher.group(firstGroup);
+        return string != null ? string : new BigDecimal(matcher.group(firstGroup + 1));
+    }
+
+    /**
+     * Evaluate the predicate against a property value.
+     *
+     * @param propertyValue The property value or null if the property is not set
+     * @return The result
+     */
+    public Result test(final Object propertyValue) {
+
+        if (propertyValue == null) {
+            return Result.FALSE;
+        }
+
+        switch (operator) {
+
+            case EQUALS: {
+                final Object normalized = PropertyIndex.normalizeValue(propertyValue);
+                if (PropertyIndex.getValueType(normalized) != valueType) {
+                    return Result.UNDECIDED;
+                }
+                return value.equals(normalized) ? Result.TRUE : Result.FALSE;
+            }
+
+            case IN: {
+                if (!(propertyValue instanceof List)) {
+                    return Result.UNDECIDED;
+                }
+                boolean otherType = false;
+                for (final Object element : (List<?>) propertyValue) {
+                    final Object normalized = PropertyIndex.normalizeValue(element);
+                    if (value.equals(normalized)) {
+                        return Result.TRUE;
+                    }
+                    otherType |= PropertyIndex.getValueType(normalized) != valueType;
+                }
+                return otherType ? Result.UNDECIDED : Result.FALSE;
+            }
+
+            default:
+                throw new IllegalStateException("Unknown operator " + operator);
+        }
+
+    }
+
+    /**
+     * Evaluate the predicate for the Instructions with the given ord using an index.
+     *
+     * @param property The index data for the property of this predicate
+     * @param ords The ords of the Instructions that match this predicate, as returned by
+     *             {@link #getMatchingOrds(PropertyIndex.Property)}
+     * @param ord The ord of the Instructions
+     * @return The result
+     */
+    Result test(final PropertyIndex.Property property, final int[] ords, final int ord) {
+
+        if (Arrays.binarySearch(ords, ord) > -1) {
+            return Result.TRUE;
+        }
+
+        if (!property.isPresent(ord)) {
+            return Result.FALSE;
+        }
+
+        final boolean sameType = operator == Operator.EQUALS
+                ? property.isValueOfType(ord, valueType)
+                : property.isListOfType(ord, valueType);
+
+        return sameType ? Result.FALSE : Result.UNDECIDED;
+    }
+
+    int[] getMatchingOrds(final PropertyIndex.Property property) {
+        return operator == Operator.EQUALS ? property.getOrdsWithValue(value) : property.getOrdsWithElement(value);
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "PropertyPredicate{" +
+                "propertyName='" + propertyName + '\'' +
+                ", operator=" + operator +
+                ", value=" + value +
+                '}';
+    }
+}
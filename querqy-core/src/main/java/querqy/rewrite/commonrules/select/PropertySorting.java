@@ -1,6 +1,7 @@
 package querqy.rewrite.commonrules.select;
 
 import querqy.rewrite.commonrules.model.Instructions;
+import querqy.rewrite.commonrules.model.PropertyIndex;
 
 import java.util.Arrays;
 import java.util.Comparator;
@@ -28,6 +29,15 @@ public class PropertySorting implements Sorting {
                 new Sorting.ConfigOrderComparator(order));
     }
 
+    @Override
+    public List<Comparator<Instructions>> getComparators(final PropertyIndex propertyIndex) {
+        return propertyIndex.getProperty(name)
+                .filter(PropertyIndex.Property::hasSortKeys)
+                .map(property -> Arrays.<Comparator<Instructions>>asList(
+                        new IndexedPropertyComparator(property, order), new Sorting.ConfigOrderComparator(order)))
+                .orElseGet(this::getComparators);
+    }
+
     @Override
     public String toString() {
         return "PropertySorting{" +
@@ -87,5 +97,32 @@ public class PropertySorting implements Sorting {
         }
     }
 
+    /**
+     * Compares Instructions by the sort keys of a property in the {@link PropertyIndex}. It produces the same order as
+     * the {@link PropertyComparator} without looking up the property values.
+     */
+    static class IndexedPropertyComparator implements Comparator<Instructions> {
+
+        private final PropertyIndex.Property property;
+        private final int factor;
+
+        IndexedPropertyComparator(final PropertyIndex.Property property, final SortOrder sortOrder) {
+            this.property = property;
+            this.factor = sortOrder.factor;
+        }
+
+        @Override
+        public int compare(final Instructions instructions1, final Instructions instructions2) {
+            final int key1 = property.getSortKey(instructions1.getOrd());
+            final int key2 = property.getSortKey(instructions2.getOrd());
+
+            // Instructions without the property sort last
+            if (key1 < 0) {
+                return key2 < 0 ? 0 : 1;
+            }
+            return key2 < 0 ? -1 : Integer.compare(key1, key2) * factor;
+        }
+    }
+
 
 }
@@ -1,8 +1,20 @@
 package querqy.rewrite.commonrules.select;
 
+import querqy.rewrite.commonrules.model.PropertyIndex;
+
 public interface SelectionStrategy {
 
     TopRewritingActionCollector createTopRewritingActionCollector();
 
+    /**
+     * Create a collector for rules that have a {@link PropertyIndex}. Strategies that filter rules by their
+     * properties can use the index to avoid evaluating the filters per rule.
+     *
+     * @param propertyIndex The property index of the rules from which actions will be collected
+     * @return The collector. The default implementation ignores the index.
+     */
+    default TopRewritingActionCollector createTopRewritingActionCollector(final PropertyIndex propertyIndex) {
+        return createTopRewritingActionCollector();
+    }
 
-}
\ No newline at end of file
+}
@@ -2,11 +2,28 @@ package querqy.rewrite.commonrules.select;
 
 import querqy.rewrite.SearchEngineRequestAdapter;
 
+import java.util.Optional;
+
 public interface SelectionStrategyFactory {
 
     SelectionStrategy DEFAULT_SELECTION_STRATEGY = new ConfigurationOrderSelectionStrategy();
 
     SelectionStrategy createSelectionStrategy(String rewriterId, SearchEngineRequestAdapter searchEngineRequestAdapter);
 
+    /**
+     * Get a key that identifies the request parameters on which the selection strategy depends so that rewrite
+     * results can be cached. The same key must always lead to a selection strategy that selects the same rules.
+     *
+     * @param rewriterId The rewriter ID
+     * @param searchEngineRequestAdapter The request adapter
+     * @return The key or an empty Optional if the rewrite results must not be cached. The default implementation
+     * returns an empty Optional.
+     * @see querqy.rewrite.RewriterFactory#getRewriteResultCacheKey(SearchEngineRequestAdapter)
+     */
+    default Optional<Object> getRewriteResultCacheKey(final String rewriterId,
+                                                      final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+        return Optional.empty();
+    }
+
 
 }
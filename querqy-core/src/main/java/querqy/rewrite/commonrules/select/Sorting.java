@@ -1,6 +1,7 @@
 package querqy.rewrite.commonrules.select;
 
 import querqy.rewrite.commonrules.model.Instructions;
+import querqy.rewrite.commonrules.model.PropertyIndex;
 
 import java.util.Collections;
 import java.util.Comparator;
@@ -54,6 +55,18 @@ public interface Sorting {
 
     List<Comparator<Instructions>> getComparators();
 
+    /**
+     * Get comparators that can use the {@link PropertyIndex} of the rules to which they will be applied. The returned
+     * comparators must only be used for Instructions from these rules.
+     *
+     * @param propertyIndex The property index
+     * @return Comparators that produce the same order as {@link #getComparators()}. The default implementation
+     * returns {@link #getComparators()}.
+     */
+    default List<Comparator<Instructions>> getComparators(final PropertyIndex propertyIndex) {
+        return getComparators();
+    }
+
 
     class ConfigOrderComparator implements Comparator<Instructions> {
 
@@ -69,6 +82,13 @@ public interface Sorting {
             return (instructions1.getOrd() - instructions2.getOrd()) * factor;
         }
 
+        /**
+         * @return 1 for ascending and -1 for descending order
+         */
+        int getFactor() {
+            return factor;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
@@ -8,6 +8,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.function.Function;
@@ -24,6 +25,10 @@ import java.util.stream.Collectors;
  * (or ternary etc.) sort order to sort the rules that fall within the limit. If only one comparator is passed to
  * the constructor, the rule definition order will serve as a secondary criterion.</p>
  *
+ * <p>If the levels are defined by the rule definition order, lists that are offered via
+ * {@link #offerSortedByOrd(List, Function)} are only iterated until the first Instructions that fall outside the
+ * limit.</p>
+ *
  * @author René Kriegler, @renekrie
  *
  */
@@ -37,6 +42,8 @@ public class TopLevelRewritingActionCollector implements TopRewritingActionColle
     private List<? extends FilterCriterion> filters;
     private final Comparator<Instructions> primaryComparator;
     private final List<Comparator<Instructions>> secondaryComparators;
+    // 1 (ascending) or -1 (descending) if the levels are defined by ord, 0 otherwise
+    private final int ordFactor;
 
     // TODO: check if redundant query input is handled properly
     public TopLevelRewritingActionCollector(final List<Comparator<Instructions>> comparators, final int limit,
@@ -55,6 +62,9 @@ public class TopLevelRewritingActionCollector implements TopRewritingActionColle
                 ? DEFAULT_SECONDARY_COMPARATORS
                 : comparators.subList(1, numComparators);
 
+        ordFactor = primaryComparator instanceof Sorting.ConfigOrderComparator
+                ? ((Sorting.ConfigOrderComparator) primaryComparator).getFactor() : 0;
+
         topN = new TreeMap<>(primaryComparator);
         this.limit = limit;
         this.filters = filters;
@@ -68,43 +78,91 @@ public class TopLevelRewritingActionCollector implements TopRewritingActionColle
             return;
         }
 
-        instructions.stream()
-                .filter(instr -> {
-                    for (final FilterCriterion filter : filters) {
-                        if (!filter.isValid(instr)) {
-                            return false;
-                        }
-                    }
-                    return true;
-                }).forEach( instr -> {
+        for (final Instructions instr : instructions) {
+            if (isValid(instr)) {
+                collectEntry(instr, actionCreator);
+            }
+        }
 
-            final TreeSet<Element> elementsSoFar = topN.get(instr);
-            if (elementsSoFar != null) {
+    }
 
-                elementsSoFar.add(new Element(instr, actionCreator));
+    @Override
+    public void offerSortedByOrd(final List<Instructions> instructions,
+                                 final Function<Instructions, Action> actionCreator) {
 
-            } else if (topN.size() < limit) {
+        if (ordFactor == 0) {
+            offer(instructions, actionCreator);
+            return;
+        }
 
-                final TreeSet<Element> newElements = new TreeSet<>();
-                newElements.add(new Element(instr, actionCreator));
-                topN.put(instr, newElements);
+        if (limit == 0) {
+            return;
+        }
+
+        if (ordFactor > 0) {
+            for (final Instructions instr : instructions) {
+                if (cannotEnterTopN(instr)) {
+                    return;
+                }
+                if (isValid(instr)) {
+                    collectEntry(instr, actionCreator);
+                }
+            }
+        } else {
+            final ListIterator<Instructions> iterator = instructions.listIterator(instructions.size());
+            while (iterator.hasPrevious()) {
+                final Instructions instr = iterator.previous();
+                if (cannotEnterTopN(instr)) {
+                    return;
+                }
+                if (isValid(instr)) {
+                    collectEntry(instr, actionCreator);
+                }
+            }
+        }
+
+    }
+
+    private boolean cannotEnterTopN(final Instructions instructions) {
+        return topN.size() == limit && primaryComparator.compare(topN.lastKey(), instructions) < 0;
+    }
+
+    private boolean isValid(final Instructions instructions) {
+        for (final FilterCriterion filter : filters) {
+            if (!filter.isValid(instructions)) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-            } else {
-                final Instructions lastInstructions = topN.lastKey();
+    private void collectEntry(final Instructions instr, final Function<Instructions, Action> actionCreator) {
 
-                if (primaryComparator.compare(lastInstructions, instr) > 0) {
+        final TreeSet<Element> elementsSoFar = topN.get(instr);
+        if (elementsSoFar != null) {
 
-                    final TreeSet<Element> newElements = new TreeSet<>();
-                    newElements.add(new Element(instr, actionCreator));
-                    topN.put(instr, newElements);
+            elementsSoFar.add(new Element(instr, actionCreator));
 
-                    if (topN.size() > limit) {
-                        topN.remove(lastInstructions);
-                    }
+        } else if (topN.size() < limit) {
+
+            final TreeSet<Element> newElements = new TreeSet<>();
+            newElements.add(new Element(instr, actionCreator));
+            topN.put(instr, newElements);
+
+        } else {
+            final Instructions lastInstructions = topN.lastKey();
+
+            if (primaryComparator.compare(lastInstructions, instr) > 0) {
+
+                final TreeSet<Element> newElements = new TreeSet<>();
+                newElements.add(new Element(instr, actionCreator));
+                topN.put(instr, newElements);
+
+                if (topN.size() > limit) {
+                    topN.remove(lastInstructions);
                 }
             }
-
-        });
+        }
 
     }
 
@@ -10,6 +10,19 @@ public interface TopRewritingActionCollector {
 
     void offer(List<Instructions> instructions, Function<Instructions, Action> actionCreator);
 
+    /**
+     * Same as {@link #offer(List, Function)} but the caller guarantees that the instructions are sorted by ascending
+     * {@link Instructions#getOrd()}. Collectors that select Instructions by ord can stop iterating over the list once
+     * the remaining Instructions cannot make it into the top entries anymore.
+     *
+     * @param instructions The Instructions, sorted by ascending ord
+     * @param actionCreator Creates the action for the selected Instructions
+     */
+    default void offerSortedByOrd(final List<Instructions> instructions,
+                                  final Function<Instructions, Action> actionCreator) {
+        offer(instructions, actionCreator);
+    }
+
     List<Action> createActions();
 
     int getLimit();
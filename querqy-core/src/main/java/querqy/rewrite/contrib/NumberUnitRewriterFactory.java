@@ -1,6 +1,12 @@
 package querqy.rewrite.contrib;
 
+import querqy.model.BooleanClause;
+import querqy.model.BooleanQuery;
+import querqy.model.DisjunctionMaxClause;
+import querqy.model.DisjunctionMaxQuery;
 import querqy.model.ExpandedQuery;
+import querqy.model.QuerqyQuery;
+import querqy.model.Query;
 import querqy.model.Term;
 import querqy.rewrite.QueryRewriter;
 import querqy.rewrite.RewriterFactory;
@@ -13,6 +19,7 @@ import querqy.trie.TrieMap;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 public class NumberUnitRewriterFactory extends RewriterFactory {
@@ -61,8 +68,54 @@ public class NumberUnitRewriterFactory extends RewriterFactory {
         return new NumberUnitRewriter(numberUnitMap, numberUnitQueryCreator);
     }
 
+    /**
+     * The rewriter can only change queries that contain a term that starts with a number. Instead of looking up
+     * trigger terms, we check the first character of each term. Queries without clauses will be changed into
+     * a {@link querqy.model.MatchAllQuery} by the rewriter.
+     */
+    @Override
+    public boolean mightRewrite(final ExpandedQuery query,
+                                final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+        final QuerqyQuery<?> userQuery = query.getUserQuery();
+        if (!(userQuery instanceof Query)) {
+            return false;
+        }
+        return ((Query) userQuery).getClauses().isEmpty() || mightContainNumber((Query) userQuery);
+    }
+
+    private static boolean mightContainNumber(final BooleanQuery query) {
+        for (final BooleanClause clause : query.getClauses()) {
+            if (clause instanceof DisjunctionMaxQuery) {
+                for (final DisjunctionMaxClause dmqClause : ((DisjunctionMaxQuery) clause).getClauses()) {
+                    if (dmqClause instanceof Term) {
+                        final Term term = (Term) dmqClause;
+                        if (term.length() > 0 && !term.isGenerated()) {
+                            final char ch = term.charAt(0);
+                            if (Character.isDigit(ch) || NumberUnitRewriter.isFloatDelimiter(ch)) {
+                                return true;
+                            }
+                        }
+                    } else if (dmqClause instanceof BooleanQuery && mightContainNumber((BooleanQuery) dmqClause)) {
+                        return true;
+                    }
+                }
+            } else if (clause instanceof BooleanQuery && mightContainNumber((BooleanQuery) clause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public Set<Term> getCacheableGenerableTerms() {
         return QueryRewriter.EMPTY_GENERABLE_TERMS;
     }
+
+    /**
+     * The rewriter doesn't depend on request parameters or on the request context.
+     */
+    @Override
+    public Optional<Object> getRewriteResultCacheKey(final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+        return Optional.of(getRewriterId());
+    }
 }
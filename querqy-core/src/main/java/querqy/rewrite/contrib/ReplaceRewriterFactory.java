@@ -1,21 +1,27 @@
 package querqy.rewrite.contrib;
 
 import querqy.model.ExpandedQuery;
+import querqy.model.QuerqyQuery;
+import querqy.model.Query;
 import querqy.model.Term;
 import querqy.parser.QuerqyParser;
 import querqy.rewrite.QueryRewriter;
 import querqy.rewrite.RewriterFactory;
 import querqy.rewrite.SearchEngineRequestAdapter;
+import querqy.rewrite.TriggerTerms;
 import querqy.rewrite.contrib.replace.ReplaceInstruction;
+import querqy.rewrite.contrib.replace.ReplaceRewriterParser;
 import querqy.trie.SequenceLookup;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.Optional;
 import java.util.Set;
 
 public class ReplaceRewriterFactory extends RewriterFactory {
 
     private final SequenceLookup<ReplaceInstruction> sequenceLookup;
+    private final TriggerTerms triggerTerms;
     private final boolean ignoreCase;
 
     public ReplaceRewriterFactory(final String id,
@@ -25,7 +31,20 @@ public class ReplaceRewriterFactory extends RewriterFactory {
                                   final QuerqyParser querqyParser) throws IOException {
         super(id);
         this.ignoreCase = ignoreCase;
-        sequenceLookup = new querqy.rewrite.contrib.replace.ReplaceRewriterParser(reader, this.ignoreCase, inputDelimiter, querqyParser).parseConfig();
+        final ReplaceRewriterParser parser = new ReplaceRewriterParser(reader, this.ignoreCase, inputDelimiter,
+                querqyParser);
+        sequenceLookup = parser.parseConfig();
+        triggerTerms = parser.getTriggerTerms();
+    }
+
+    /**
+     * A rule can only match if the query contains the first input term, the prefix or the suffix of the rule.
+     */
+    @Override
+    public boolean mightRewrite(final ExpandedQuery query,
+                                final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+        final QuerqyQuery<?> userQuery = query.getUserQuery();
+        return (userQuery instanceof Query) && triggerTerms.mightMatch((Query) userQuery);
     }
 
     @Override
@@ -37,4 +56,12 @@ public class ReplaceRewriterFactory extends RewriterFactory {
     public Set<Term> getCacheableGenerableTerms() {
         return QueryRewriter.EMPTY_GENERABLE_TERMS;
     }
+
+    /**
+     * The rewriter doesn't depend on request parameters or on the request context.
+     */
+    @Override
+    public Optional<Object> getRewriteResultCacheKey(final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+        return Optional.of(getRewriterId());
+    }
 }
@@ -7,6 +7,7 @@ import querqy.rewrite.RewriterFactory;
 import querqy.rewrite.SearchEngineRequestAdapter;
 
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -36,6 +37,14 @@ public class ShingleRewriterFactory extends RewriterFactory {
         return QueryRewriter.EMPTY_GENERABLE_TERMS;
     }
 
+    /**
+     * The rewriter doesn't depend on request parameters or on the request context.
+     */
+    @Override
+    public Optional<Object> getRewriteResultCacheKey(final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+        return Optional.of(getRewriterId());
+    }
+
     public boolean isAcceptGeneratedTerms() {
         return acceptGeneratedTerms;
     }
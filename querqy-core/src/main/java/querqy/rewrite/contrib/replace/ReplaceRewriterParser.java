@@ -6,6 +6,7 @@ import querqy.model.DisjunctionMaxQuery;
 import querqy.model.Query;
 import querqy.model.Term;
 import querqy.parser.QuerqyParser;
+import querqy.rewrite.TriggerTerms;
 import querqy.rewrite.commonrules.RuleParseException;
 import querqy.trie.SequenceLookup;
 
@@ -43,6 +44,9 @@ public class ReplaceRewriterParser {
     private String errorMessageImproperInput = "";
     private String errorMessageDuplicateInput = "";
 
+    private final TriggerTerms.Builder triggerTermsBuilder;
+    private TriggerTerms triggerTerms = null;
+
     public ReplaceRewriterParser(final InputStreamReader inputStreamReader,
                                  final boolean ignoreCase,
                                  final String inputDelimiter,
@@ -52,6 +56,7 @@ public class ReplaceRewriterParser {
         this.ignoreCase = ignoreCase;
         this.inputDelimiter = inputDelimiter;
         this.querqyParser = querqyParser;
+        this.triggerTermsBuilder = TriggerTerms.builder(ignoreCase);
     }
 
     public SequenceLookup<ReplaceInstruction> parseConfig() throws IOException {
@@ -97,10 +102,9 @@ public class ReplaceRewriterParser {
                         throwIfTrue(checkForDuplicateInput.contains(seq), errorMessageDuplicateInput);
                         checkForDuplicateInput.add(seq);
 
-                        sequenceLookup.putSuffix(
-                                seq.subSequence(1, seq.length()),
-                                new WildcardReplaceInstruction(outputList)
-                        );
+                        final CharSequence suffix = seq.subSequence(1, seq.length());
+                        sequenceLookup.putSuffix(suffix, new WildcardReplaceInstruction(outputList));
+                        triggerTermsBuilder.addSuffix(suffix);
 
                     } else if (fullInput.endsWith(WILDCARD) && fullInput.length() > 1) {
 
@@ -110,10 +114,9 @@ public class ReplaceRewriterParser {
                         throwIfTrue(checkForDuplicateInput.contains(seq), errorMessageDuplicateInput);
                         checkForDuplicateInput.add(seq);
 
-                        sequenceLookup.putPrefix(
-                                seq.subSequence(0, fullInput.length() - 1),
-                                new WildcardReplaceInstruction(outputList)
-                        );
+                        final CharSequence prefix = seq.subSequence(0, fullInput.length() - 1);
+                        sequenceLookup.putPrefix(prefix, new WildcardReplaceInstruction(outputList));
+                        triggerTermsBuilder.addPrefix(prefix);
 
                     } else {
 
@@ -129,6 +132,7 @@ public class ReplaceRewriterParser {
                                 seqList,
                                 new TermsReplaceInstruction(outputList)
                         );
+                        triggerTermsBuilder.addTerm(seqList.get(0));
                     }
                 }
             }
@@ -137,9 +141,24 @@ public class ReplaceRewriterParser {
             throw new IOException(e);
         }
 
+        triggerTerms = triggerTermsBuilder.build();
+
         return sequenceLookup;
     }
 
+    /**
+     * Get the first input terms and the prefixes and suffixes of all rules. This is only available after
+     * {@link #parseConfig()} was called.
+     *
+     * @return The trigger terms
+     */
+    public TriggerTerms getTriggerTerms() {
+        if (triggerTerms == null) {
+            throw new IllegalStateException("Config has not been parsed yet");
+        }
+        return triggerTerms;
+    }
+
     private CharSequence lc(final String seq) {
         return ignoreCase ? new LowerCaseCharSequence(seq) : seq;
     }
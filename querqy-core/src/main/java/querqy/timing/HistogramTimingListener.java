@@ -0,0 +1,47 @@
+package querqy.timing;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>A {@link TimingListener} that records the timings in a {@link TimingHistogram} per stage name. It is meant to be
+ * shared between requests in order to find out which stage consumes the latency budget.</p>
+ */
+public class HistogramTimingListener implements TimingListener {
+
+    private final Map<String, TimingHistogram> histograms = new ConcurrentHashMap<>();
+
+    @Override
+    public void onTiming(final String name, final long elapsedNanos) {
+        TimingHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(name, k -> new TimingHistogram());
+        }
+        histogram.recordValue(elapsedNanos);
+    }
+
+    /**
+     * @param name The stage name
+     * @return The histogram of the stage or an empty Optional if no timing has been recorded for this stage
+     */
+    public Optional<TimingHistogram> getHistogram(final String name) {
+        return Optional.ofNullable(histograms.get(name));
+    }
+
+    /**
+     * @return The histograms by stage name. The values are recorded in nanoseconds.
+     */
+    public Map<String, TimingHistogram> getHistograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * Remove all histograms.
+     */
+    public void reset() {
+        histograms.clear();
+    }
+
+}
@@ -0,0 +1,43 @@
+package querqy.timing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>A {@link TimingListener} that collects the timings of a single request, for example, to add them to the debug
+ * output. Timings of stages with the same name are summed up.</p>
+ *
+ * <p>Instances are not thread-safe and must only be used for one request. The instance for the request can be found
+ * in the context map under the {@link #CONTEXT_KEY} key.</p>
+ *
+ * @see querqy.rewrite.SearchEngineRequestAdapter#getContext()
+ */
+public class RequestTimings implements TimingListener {
+
+    public static final String CONTEXT_KEY = "querqy.timing";
+
+    private final Map<String, Long> timings = new LinkedHashMap<>();
+
+    @Override
+    public void onTiming(final String name, final long elapsedNanos) {
+        timings.merge(name, elapsedNanos, Long::sum);
+    }
+
+    /**
+     * @param name The stage name
+     * @return The elapsed nanoseconds of the stage or 0 if the stage wasn't timed
+     */
+    public long getNanos(final String name) {
+        return timings.getOrDefault(name, 0L);
+    }
+
+    /**
+     * @return The elapsed time in milliseconds by stage name, in the order in which the stages were first timed
+     */
+    public Map<String, Double> toMillis() {
+        final Map<String, Double> millis = new LinkedHashMap<>(timings.size());
+        timings.forEach((name, nanos) -> millis.put(name, nanos / 1_000_000d));
+        return millis;
+    }
+
+}
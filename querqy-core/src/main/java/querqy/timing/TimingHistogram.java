@@ -0,0 +1,138 @@
+package querqy.timing;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>A histogram of non-negative long values that uses log-linear buckets similar to an HDR histogram.</p>
+ *
+ * <p>Values below 128 are counted exactly. Larger values are counted in buckets whose width is 1/64 of the power of
+ * two below the value, so that the value at a percentile is reported with a relative error of less than 1/64 (about
+ * 1.6%). The histogram has a fixed size of {@value #NUM_BUCKETS} buckets, recording a value doesn't allocate memory.
+ * </p>
+ *
+ * <p>Values can be recorded concurrently. Reading the histogram while values are being recorded returns a result
+ * that might not reflect the very latest values.</p>
+ */
+public class TimingHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // 64
+    private static final int EXACT_VALUES = SUB_BUCKETS << 1; // 128
+
+    static final int NUM_BUCKETS = EXACT_VALUES + (Long.SIZE - 2 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0L);
+
+    /**
+     * Record a value.
+     *
+     * @param value The value. Negative values are recorded as 0.
+     */
+    public void recordValue(final long value) {
+        final long v = value < 0L ? 0L : value;
+        counts.incrementAndGet(bucketIndex(v));
+        totalCount.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    public long getTotalCount() {
+        return totalCount.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return The mean of all recorded values or 0 if no value has been recorded
+     */
+    public double getMean() {
+        final long count = totalCount.sum();
+        return count == 0L ? 0d : (double) sum.sum() / count;
+    }
+
+    /**
+     * Get the value at a percentile.
+     *
+     * @param percentile The percentile between 0 and 100
+     * @return The highest value that falls into the same bucket as the value at the percentile, but never more than
+     * the maximum recorded value. 0 if no value has been recorded.
+     */
+    public long getValueAtPercentile(final double percentile) {
+
+        if (percentile < 0d || percentile > 100d) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+        }
+
+        long total = 0L;
+        final long[] snapshot = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        if (total == 0L) {
+            return 0L;
+        }
+
+        final long rank = Math.max(1L, (long) Math.ceil(percentile / 100d * total));
+
+        long seen = 0L;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValueInBucket(i), getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+    /**
+     * Remove all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts.set(i, 0L);
+        }
+        totalCount.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    static int bucketIndex(final long value) {
+        if (value < EXACT_VALUES) {
+            return (int) value;
+        }
+        final int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        final int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return EXACT_VALUES + (shift - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValueInBucket(final int index) {
+        if (index < EXACT_VALUES) {
+            return index;
+        }
+        final int i = index - EXACT_VALUES;
+        final int shift = i / SUB_BUCKETS + 1;
+        final long subBucket = (i % SUB_BUCKETS) + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "TimingHistogram{" +
+                "count=" + getTotalCount() +
+                ", mean=" + getMean() +
+                ", p50=" + getValueAtPercentile(50) +
+                ", p99=" + getValueAtPercentile(99) +
+                ", max=" + getMax() +
+                '}';
+    }
+}
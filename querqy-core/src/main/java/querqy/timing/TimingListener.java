@@ -0,0 +1,42 @@
+package querqy.timing;
+
+/**
+ * <p>Receives the elapsed time of the stages of query processing, such as creating and applying a single rewriter
+ * of the {@link querqy.rewrite.RewriteChain}.</p>
+ *
+ * <p>Timings are only measured if a listener was provided for the request, see
+ * {@link querqy.rewrite.SearchEngineRequestAdapter#getTimingListener()}. Implementations that are shared between
+ * requests must be thread-safe. They will be called on the request thread and should return quickly.</p>
+ */
+@FunctionalInterface
+public interface TimingListener {
+
+    /**
+     * Called after a stage has finished.
+     *
+     * @param name The name of the stage
+     * @param elapsedNanos The elapsed time in nanoseconds
+     */
+    void onTiming(String name, long elapsedNanos);
+
+    /**
+     * Combine two listeners into a listener that notifies both of them.
+     *
+     * @param first The first listener or null
+     * @param second The second listener or null
+     * @return A listener that notifies both listeners, the only non-null listener or null if both are null
+     */
+    static TimingListener combine(final TimingListener first, final TimingListener second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        return (name, elapsedNanos) -> {
+            first.onTiming(name, elapsedNanos);
+            second.onTiming(name, elapsedNanos);
+        };
+    }
+
+}
@@ -0,0 +1,431 @@
+package querqy.trie;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * <p>A read-only version of a {@link TrieMap} that packs all nodes into a few arrays.</p>
+ *
+ * <p>Nodes are numbered in breadth-first order, starting with a virtual root node at position 0 that doesn't hold a
+ * character. The children of a node are stored in consecutive positions and ordered by their character so that a
+ * transition can be found using a binary search over a slice of a char array instead of walking a linked list of
+ * sibling objects.</p>
+ *
+ * <p>Lookups return the same {@link States} as a lookup in the {@link TrieMap} from which this FrozenTrieMap was
+ * created. The {@link State}s returned from a FrozenTrieMap reference the matching node by
+ * {@link State#nodeIndex}. They can only be used to resume a lookup in the same FrozenTrieMap.</p>
+ *
+ * <p>Instances of this class are immutable and can be shared between threads.</p>
+ *
+ * @param <T> The value type
+ */
+public class FrozenTrieMap<T> implements Iterable<T> {
+
+    /**
+     * The position of the root node. Pass this to {@link TrieCursor#start(int)} to start a lookup from the beginning.
+     */
+    public static final int ROOT = 0;
+
+    // flags for writeTo/readFrom
+    private static final int HAS_VALUE = 1;
+    private static final int HAS_PREFIX_VALUE = 2;
+
+    /**
+     * The character of each node.
+     */
+    final char[] labels;
+
+    /**
+     * The children of node n are found at positions firstChild[n] (inclusive) to firstChild[n + 1] (exclusive)
+     */
+    final int[] firstChild;
+
+    final Object[] values;
+    final Object[] prefixValues;
+
+    private FrozenTrieMap(final char[] labels, final int[] firstChild, final Object[] values,
+                          final Object[] prefixValues) {
+        this.labels = labels;
+        this.firstChild = firstChild;
+        this.values = values;
+        this.prefixValues = prefixValues;
+    }
+
+    /**
+     * Create a FrozenTrieMap from a TrieMap, keeping the values as they are.
+     *
+     * @param trieMap The TrieMap
+     * @param <T> The value type
+     * @return The FrozenTrieMap
+     */
+    public static <T> FrozenTrieMap<T> of(final TrieMap<T> trieMap) {
+        return of(trieMap, Function.identity());
+    }
+
+    /**
+     * Create a FrozenTrieMap from a TrieMap, converting each value using a mapping function. This can be used to
+     * replace values that are mutable at build time by immutable or more compact versions.
+     *
+     * @param trieMap The TrieMap
+     * @param valueMapper A function that will be applied to each non-null value of the TrieMap
+     * @param <T> The value type of the TrieMap
+     * @param <V> The value type of the FrozenTrieMap
+     * @return The FrozenTrieMap
+     */
+    public static <T, V> FrozenTrieMap<V> of(final TrieMap<T> trieMap, final Function<T, V> valueMapper) {
+
+        final List<Node<T>> nodes = new ArrayList<>();
+        nodes.add(null); // virtual root
+
+        int[] firstChild = new int[16];
+
+        final List<Node<T>> children = new ArrayList<>();
+
+        for (int i = 0; i < nodes.size(); i++) {
+
+            if (i + 1 >= firstChild.length) {
+                firstChild = Arrays.copyOf(firstChild, firstChild.length * 2);
+            }
+
+            firstChild[i] = nodes.size();
+
+            final Node<T> node = nodes.get(i);
+            Node<T> child = (node == null) ? trieMap.root : node.firstChild;
+            while (child != null) {
+                children.add(child);
+                child = child.next;
+            }
+
+            if (!children.isEmpty()) {
+                children.sort(Comparator.comparingInt(n -> n.character));
+                nodes.addAll(children);
+                children.clear();
+            }
+        }
+
+        final int size = nodes.size();
+        firstChild[size] = size;
+
+        final char[] labels = new char[size];
+        final Object[] values = new Object[size];
+        final Object[] prefixValues = new Object[size];
+
+        for (int i = 1; i < size; i++) {
+            final Node<T> node = nodes.get(i);
+            labels[i] = node.character;
+            if (node.value != null) {
+                values[i] = valueMapper.apply(node.value);
+            }
+            if (node.hasPrefix && node.prefixValue != null) {
+                prefixValues[i] = valueMapper.apply(node.prefixValue);
+            }
+        }
+
+        return new FrozenTrieMap<>(labels, Arrays.copyOf(firstChild, size + 1), values, prefixValues);
+
+    }
+
+    /**
+     * Writes a value of a FrozenTrieMap to a {@link DataOutput}.
+     *
+     * @param <T> The value type
+     */
+    @FunctionalInterface
+    public interface ValueWriter<T> {
+        void write(DataOutput out, T value) throws IOException;
+    }
+
+    /**
+     * Reads a value of a FrozenTrieMap from a {@link DataInput}.
+     *
+     * @param <T> The value type
+     */
+    @FunctionalInterface
+    public interface ValueReader<T> {
+        T read(DataInput in) throws IOException;
+    }
+
+    /**
+     * <p>Write the nodes and values of this trie to a {@link DataOutput} so that it can be restored using
+     * {@link #readFrom(DataInput, ValueReader)} without building a {@link TrieMap} first.</p>
+     *
+     * <p>The node arrays are written as they are, the values are written by the valueWriter in node order.</p>
+     *
+     * @param out The output
+     * @param valueWriter Writes a single non-null value
+     * @throws IOException if the data cannot be written
+     */
+    @SuppressWarnings("unchecked")
+    public void writeTo(final DataOutput out, final ValueWriter<T> valueWriter) throws IOException {
+
+        final int size = labels.length;
+        out.writeInt(size);
+
+        final ByteBuffer labelBytes = ByteBuffer.allocate(size * Character.BYTES);
+        labelBytes.asCharBuffer().put(labels);
+        out.write(labelBytes.array());
+
+        final ByteBuffer firstChildBytes = ByteBuffer.allocate(firstChild.length * Integer.BYTES);
+        firstChildBytes.asIntBuffer().put(firstChild);
+        out.write(firstChildBytes.array());
+
+        for (int i = 0; i < size; i++) {
+            final int flags = (values[i] != null ? HAS_VALUE : 0) | (prefixValues[i] != null ? HAS_PREFIX_VALUE : 0);
+            out.writeByte(flags);
+            if (values[i] != null) {
+                valueWriter.write(out, (T) values[i]);
+            }
+            if (prefixValues[i] != null) {
+                valueWriter.write(out, (T) prefixValues[i]);
+            }
+        }
+
+    }
+
+    /**
+     * Restore a FrozenTrieMap that was written using {@link #writeTo(DataOutput, ValueWriter)}.
+     *
+     * @param in The input
+     * @param valueReader Reads a single value
+     * @param <T> The value type
+     * @return The FrozenTrieMap
+     * @throws IOException if the data cannot be read or if it is not a valid trie
+     */
+    public static <T> FrozenTrieMap<T> readFrom(final DataInput in, final ValueReader<T> valueReader)
+            throws IOException {
+
+        final int size = in.readInt();
+        if (size < 1) {
+            throw new IOException("Invalid trie size: " + size);
+        }
+
+        final byte[] labelBytes = new byte[size * Character.BYTES];
+        in.readFully(labelBytes);
+        final char[] labels = new char[size];
+        ByteBuffer.wrap(labelBytes).asCharBuffer().get(labels);
+
+        final byte[] firstChildBytes = new byte[(size + 1) * Integer.BYTES];
+        in.readFully(firstChildBytes);
+        final int[] firstChild = new int[size + 1];
+        ByteBuffer.wrap(firstChildBytes).asIntBuffer().get(firstChild);
+
+        final Object[] values = new Object[size];
+        final Object[] prefixValues = new Object[size];
+
+        for (int i = 0; i < size; i++) {
+            if (firstChild[i] > firstChild[i + 1] || firstChild[i + 1] > size) {
+                throw new IOException("Invalid trie node: " + i);
+            }
+            final int flags = in.readByte();
+            if ((flags & HAS_VALUE) != 0) {
+                values[i] = valueReader.read(in);
+            }
+            if ((flags & HAS_PREFIX_VALUE) != 0) {
+                prefixValues[i] = valueReader.read(in);
+            }
+        }
+
+        return new FrozenTrieMap<>(labels, firstChild, values, prefixValues);
+
+    }
+
+    /**
+     * Get the number of nodes in this trie, including the virtual root node.
+     *
+     * @return The number of nodes
+     */
+    public int size() {
+        return labels.length;
+    }
+
+    /**
+     * Create a new {@link TrieCursor} for allocation-free lookups in this trie. The cursor should be reused for
+     * many lookups but it must not be shared between threads.
+     *
+     * @return A new cursor
+     */
+    public TrieCursor<T> cursor() {
+        return new TrieCursor<>(this);
+    }
+
+    public States<T> get(final CharSequence seq) {
+        if (seq.length() == 0) {
+            return new States<>(new State<T>(false, null, null));
+        }
+        return get(seq, ROOT);
+    }
+
+    public States<T> get(final CharSequence seq, final State<T> stateInfo) {
+        if (!stateInfo.isKnown()) {
+            throw new IllegalArgumentException("Known state expected");
+        }
+        if (stateInfo.nodeIndex < 0) {
+            throw new IllegalArgumentException("State was not created by a FrozenTrieMap");
+        }
+        if (seq.length() == 0) {
+            return new States<>(new State<T>(false, null, null));
+        }
+        return get(seq, stateInfo.nodeIndex);
+    }
+
+    @SuppressWarnings("unchecked")
+    private States<T> get(final CharSequence seq, final int startNode) {
+
+        final int length = seq.length();
+        final int prefixOffset = seq.charAt(0) == ' ' ? -1 : 0;
+
+        int[] prefixNodes = null;
+        int[] prefixIndexes = null;
+        int numPrefixes = 0;
+
+        State<T> completeSequence = null;
+
+        int node = startNode;
+        for (int index = 0; index < length; index++) {
+
+            node = findChild(node, seq.charAt(index));
+
+            if (node < 0) {
+                completeSequence = new State<>(false, null, null);
+                break;
+            }
+
+            if (index == length - 1) {
+                // do not add prefix match here, as we should have at least one char matching the wildcard
+                completeSequence = new State<>(true, (T) values[node], node, index);
+            } else if (prefixValues[node] != null) {
+                if (prefixNodes == null) {
+                    prefixNodes = new int[length];
+                    prefixIndexes = new int[length];
+                }
+                prefixNodes[numPrefixes] = node;
+                prefixIndexes[numPrefixes++] = index + prefixOffset;
+            }
+
+        }
+
+        final States<T> states = new States<>(completeSequence);
+
+        // TrieMap reports the longest prefix first
+        for (int i = numPrefixes - 1; i >= 0; i--) {
+            final int prefixNode = prefixNodes[i];
+            states.addPrefix(new State<>(true, (T) prefixValues[prefixNode], prefixNode, prefixIndexes[i]));
+        }
+
+        return states;
+
+    }
+
+    /**
+     * Find the child of a node that holds a given character.
+     *
+     * @param node The position of the parent node
+     * @param ch The character
+     * @return The position of the child node or -1 if the node has no child for this character
+     */
+    int findChild(final int node, final char ch) {
+        final int from = firstChild[node];
+        final int to = firstChild[node + 1];
+        if (from == to) {
+            return -1;
+        }
+        final int pos = Arrays.binarySearch(labels, from, to, ch);
+        return pos < 0 ? -1 : pos;
+    }
+
+    /**
+     * Receives the keys of a FrozenTrieMap together with their values.
+     *
+     * @param <T> The value type
+     */
+    @FunctionalInterface
+    public interface EntryVisitor<T> {
+        /**
+         * @param key The key. The CharSequence is only valid during this call.
+         * @param value The value for the complete key or null
+         * @param prefixValue The value for terms starting with the key or null
+         */
+        void visit(CharSequence key, T value, T prefixValue);
+    }
+
+    /**
+     * Visit all keys that have a value or a prefix value in depth-first order.
+     *
+     * @param visitor The visitor
+     */
+    public void forEachEntry(final EntryVisitor<T> visitor) {
+        visitChildren(ROOT, new StringBuilder(), visitor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void visitChildren(final int node, final StringBuilder key, final EntryVisitor<T> visitor) {
+        for (int child = firstChild[node]; child < firstChild[node + 1]; child++) {
+            key.append(labels[child]);
+            if (values[child] != null || prefixValues[child] != null) {
+                visitor.visit(key, (T) values[child], (T) prefixValues[child]);
+            }
+            visitChildren(child, key, visitor);
+            key.setLength(key.length() - 1);
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+
+        return new Iterator<T>() {
+
+            int node = 0;
+            boolean prefix = true;
+
+            {
+                advance();
+            }
+
+            private void advance() {
+                do {
+                    if (prefix) {
+                        prefix = false;
+                        node++;
+                    } else {
+                        prefix = true;
+                    }
+                } while (node < labels.length && currentValue() == null);
+            }
+
+            private Object currentValue() {
+                return prefix ? prefixValues[node] : values[node];
+            }
+
+            @Override
+            public boolean hasNext() {
+                return node < labels.length;
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final T value = (T) currentValue();
+                advance();
+                return value;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+}
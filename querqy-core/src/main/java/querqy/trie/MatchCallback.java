@@ -0,0 +1,31 @@
+package querqy.trie;
+
+/**
+ * Receives the matches that a {@link TrieCursor} found while stepping through a {@link FrozenTrieMap}. Implementations
+ * are meant to be reused across lookups so that reporting matches doesn't create any garbage.
+ *
+ * @param <T> The value type of the trie
+ */
+public interface MatchCallback<T> {
+
+    /**
+     * Called if all chars that were stepped since {@link TrieCursor#start(int)} matched and the node that was reached
+     * holds a value.
+     *
+     * @param value The value of the node
+     * @param node The position of the node in the FrozenTrieMap
+     */
+    void onCompleteMatch(T value, int node);
+
+    /**
+     * Called for each node on the path of the cursor that holds a prefix value and that was followed by at least one
+     * further char. Prefix matches are reported after the complete match, starting with the longest prefix.
+     *
+     * @param value The prefix value
+     * @param node The position of the node in the FrozenTrieMap
+     * @param index The index of the last char that matched the prefix, counting from the first char that was stepped
+     *              since {@link TrieCursor#start(int)}
+     */
+    void onPrefixMatch(T value, int node, int index);
+
+}
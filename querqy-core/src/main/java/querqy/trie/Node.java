@@ -7,6 +7,12 @@ import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 /**
+ * <p>A node of a {@link TrieMap}.</p>
+ *
+ * <p>Nodes are not thread-safe for writing. A trie must be built by a single thread and then be published safely,
+ * for example by freezing it into a {@link FrozenTrieMap} or by assigning it to a final field. After that, it can be
+ * read concurrently.</p>
+ *
  * @author René Kriegler, @renekrie
  *
  */
@@ -52,21 +58,13 @@ public class Node<T> {
             } else {
                 
                 if (firstChild == null) {
-                    synchronized (this) {
-                        if (firstChild == null) {
-                            firstChild = new Node<T>(seq.charAt(index + 1));
-                        }
-                    }
+                    firstChild = new Node<T>(seq.charAt(index + 1));
                 }
                 firstChild.put(seq, index + 1, value, isPrefix);
             }
         } else {
             if (next == null) {
-                synchronized (this) {
-                    if (next == null) {
-                        next = new Node<>(seq.charAt(index));
-                    }
-                }
+                next = new Node<>(seq.charAt(index));
             }
             next.put(seq, index, value, isPrefix);
         }
@@ -12,6 +12,11 @@ public class State<T> {
     public final T value;
     public final boolean isKnown;
     public final Node<T> node;
+    /**
+     * The position of the matching node in a {@link FrozenTrieMap} or -1 if this state was not created by a
+     * FrozenTrieMap
+     */
+    public final int nodeIndex;
     /**
      * The index of the last matching char
      */
@@ -25,6 +30,15 @@ public class State<T> {
         this.isKnown = isKnown;
         this.value = value;
         this.node = node;
+        this.nodeIndex = -1;
+        this.index = index;
+    }
+
+    public State(boolean isKnown, T value, int nodeIndex, int index) {
+        this.isKnown = isKnown;
+        this.value = value;
+        this.node = null;
+        this.nodeIndex = nodeIndex;
         this.index = index;
     }
     
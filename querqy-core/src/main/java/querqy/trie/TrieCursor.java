@@ -0,0 +1,151 @@
+package querqy.trie;
+
+import java.util.Arrays;
+
+/**
+ * <p>A cursor that walks a {@link FrozenTrieMap} char by char, starting from the root or from a saved node position.
+ * Stepping doesn't create any objects. Matches are reported to a {@link MatchCallback} when the walk is
+ * {@link #finish(MatchCallback) finished}, which makes it possible to look up sequences like "field:value" or
+ * " value" without first creating a CharSequence for them.</p>
+ *
+ * <p>Usage:</p>
+ * <pre>
+ *     cursor.start(FrozenTrieMap.ROOT);
+ *     cursor.step(field);
+ *     cursor.step(':');
+ *     cursor.step(value, true);
+ *     int node = cursor.finish(callback); // node can be passed to start() to continue from here
+ * </pre>
+ *
+ * <p>A TrieCursor keeps state between the calls and must not be shared between threads. It should be reused for
+ * many lookups instead.</p>
+ *
+ * @param <T> The value type of the trie
+ */
+public class TrieCursor<T> {
+
+    private final FrozenTrieMap<T> trieMap;
+
+    private int node = -1;
+    private int numStepped = 0;
+
+    private int[] prefixNodes = new int[8];
+    private int[] prefixIndexes = new int[8];
+    private int numPrefixes = 0;
+
+    public TrieCursor(final FrozenTrieMap<T> trieMap) {
+        this.trieMap = trieMap;
+    }
+
+    /**
+     * Positions the cursor at a node of the trie and forgets all prefix matches found so far.
+     *
+     * @param node The node position, either {@link FrozenTrieMap#ROOT} or a position that was returned by
+     *             {@link #finish(MatchCallback)} or by {@link #getNode()}
+     * @return this cursor
+     */
+    public TrieCursor<T> start(final int node) {
+        if (node < 0 || node >= trieMap.size()) {
+            throw new IllegalArgumentException("Invalid node position: " + node);
+        }
+        this.node = node;
+        numStepped = 0;
+        numPrefixes = 0;
+        return this;
+    }
+
+    /**
+     * Moves the cursor along the transition for the given char.
+     *
+     * @param ch The char
+     * @return true iff the trie has a transition for this char from the current position.
+     */
+    public boolean step(final char ch) {
+
+        if (node < 0) {
+            return false;
+        }
+
+        if (numStepped > 0 && trieMap.prefixValues[node] != null) {
+            // the node is followed by at least one more char: it is a prefix match
+            if (numPrefixes == prefixNodes.length) {
+                prefixNodes = Arrays.copyOf(prefixNodes, numPrefixes * 2);
+                prefixIndexes = Arrays.copyOf(prefixIndexes, numPrefixes * 2);
+            }
+            prefixNodes[numPrefixes] = node;
+            prefixIndexes[numPrefixes++] = numStepped - 1;
+        }
+
+        node = trieMap.findChild(node, ch);
+        numStepped++;
+
+        return node > -1;
+    }
+
+    /**
+     * Moves the cursor along the transitions for all chars of the sequence.
+     *
+     * @param seq The chars
+     * @return true iff the trie has transitions for all chars of the sequence from the current position.
+     */
+    public boolean step(final CharSequence seq) {
+        return step(seq, false);
+    }
+
+    /**
+     * Moves the cursor along the transitions for all chars of the sequence, optionally lower-casing each char.
+     *
+     * @param seq The chars
+     * @param lowerCase Iff true, the chars will be lower-cased before stepping.
+     * @return true iff the trie has transitions for all chars of the sequence from the current position.
+     */
+    public boolean step(final CharSequence seq, final boolean lowerCase) {
+        final int length = seq.length();
+        for (int i = 0; i < length; i++) {
+            final char ch = seq.charAt(i);
+            if (!step(lowerCase && !Character.isLowerCase(ch) ? Character.toLowerCase(ch) : ch)) {
+                // a prefix match at the last matching node has already been recorded by step(char)
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The current node position or -1 if the chars stepped so far didn't match.
+     */
+    public int getNode() {
+        return node;
+    }
+
+    /**
+     * Reports the complete match and the prefix matches to the callback.
+     *
+     * @param callback The callback
+     * @return The node position that was reached or -1 if the stepped chars didn't match. A non-negative value
+     * can be passed to {@link #start(int)} to continue the walk from this position later.
+     */
+    public int finish(final MatchCallback<T> callback) {
+
+        if (node > -1 && numStepped > 0) {
+            @SuppressWarnings("unchecked")
+            final T value = (T) trieMap.values[node];
+            if (value != null) {
+                callback.onCompleteMatch(value, node);
+            }
+        }
+
+        for (int i = numPrefixes - 1; i >= 0; i--) {
+            final int prefixNode = prefixNodes[i];
+            @SuppressWarnings("unchecked")
+            final T prefixValue = (T) trieMap.prefixValues[prefixNode];
+            callback.onPrefixMatch(prefixValue, prefixNode, prefixIndexes[i]);
+        }
+
+        numPrefixes = 0;
+
+        return numStepped > 0 ? node : -1;
+
+    }
+
+}
@@ -8,6 +8,10 @@ import java.util.NoSuchElementException;
 
 
 /**
+ * <p>A trie that maps char sequences to values.</p>
+ *
+ * <p>A TrieMap is not thread-safe for writing. See {@link Node} for publishing it to other threads.</p>
+ *
  * @author René Kriegler, @renekrie
  *
  */
@@ -21,11 +25,7 @@ public class TrieMap<T> implements Iterable<T> {
             throw new IllegalArgumentException("Must not put empty sequence into trie");
         }
         if (root == null) {
-            synchronized (this) {
-                if (root == null) {
-                    root = new Node<T>(seq.charAt(0));
-                }
-            }
+            root = new Node<T>(seq.charAt(0));
         }
         
         root.put(seq, 0, value);
@@ -61,11 +61,7 @@ public class TrieMap<T> implements Iterable<T> {
             throw new IllegalArgumentException("Must not put empty sequence into trie");
         }
         if (root == null) {
-            synchronized (this) {
-                if (root == null) {
-                    root = new Node<T>(seq.charAt(0));
-                }
-            }
+            root = new Node<T>(seq.charAt(0));
         }
         
         root.putPrefix(seq, 0, value);
@@ -83,10 +79,23 @@ public class TrieMap<T> implements Iterable<T> {
         if (!stateInfo.isKnown()) {
             throw new IllegalArgumentException("Known state expected");
         }
+        if (stateInfo.node == null) {
+            throw new IllegalArgumentException("State was not created by a TrieMap");
+        }
         if (seq.length() == 0) {
             return new States<>(new State<T>(false, null, null));
         }
         return stateInfo.node.getNext(seq, 0);
     }
 
+    /**
+     * Create a read-only, array-packed copy of this TrieMap for fast lookups.
+     *
+     * @return The frozen copy of this TrieMap
+     * @see FrozenTrieMap
+     */
+    public FrozenTrieMap<T> freeze() {
+        return FrozenTrieMap.of(this);
+    }
+
 }
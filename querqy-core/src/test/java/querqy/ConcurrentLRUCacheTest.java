@@ -0,0 +1,109 @@
+package querqy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ConcurrentLRUCacheTest {
+
+    @Test
+    public void testPutAndGet() {
+        final ConcurrentLRUCache<String, Integer> cache = new ConcurrentLRUCache<>(10);
+        assertNull(cache.get("a"));
+        cache.put("a", 1);
+        assertEquals((Integer) 1, cache.get("a"));
+        assertEquals(1, cache.size());
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(1L, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRatio(), 0.0001);
+    }
+
+    @Test
+    public void testThatLeastRecentlyUsedEntryIsEvicted() {
+        final ConcurrentLRUCache<String, Integer> cache = new ConcurrentLRUCache<>(2, 1);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+        cache.put("c", 3);
+
+        assertEquals(2, cache.size());
+        assertEquals(1L, cache.getEvictionCount());
+        assertEquals((Integer) 1, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals((Integer) 3, cache.get("c"));
+    }
+
+    @Test
+    public void testThatSizeIsBoundedAcrossSegments() {
+        final ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<>(1000, 4);
+        for (int i = 0; i < 10000; i++) {
+            cache.put(i, i);
+        }
+        assertEquals(1000, cache.size());
+        assertEquals(9000L, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testThatSmallCacheHoldsMaxSizeEntries() {
+        for (int maxSize = 1; maxSize < 2 * ConcurrentLRUCache.MIN_SEGMENT_SIZE; maxSize++) {
+            final ConcurrentLRUCache<String, Integer> cache = new ConcurrentLRUCache<>(maxSize);
+            for (int i = 0; i < maxSize; i++) {
+                cache.put("key" + i, i);
+            }
+            assertEquals(maxSize, cache.size());
+            assertEquals(0L, cache.getEvictionCount());
+            for (int i = 0; i < maxSize; i++) {
+                assertEquals((Integer) i, cache.get("key" + i));
+            }
+        }
+    }
+
+    @Test
+    public void testComputeIfAbsent() {
+        final ConcurrentLRUCache<String, Integer> cache = new ConcurrentLRUCache<>(10);
+        final AtomicInteger calls = new AtomicInteger();
+
+        final Integer value1 = cache.computeIfAbsent("a", key -> 1000 + calls.incrementAndGet());
+        final Integer value2 = cache.computeIfAbsent("a", key -> 1000 + calls.incrementAndGet());
+
+        assertSame(value1, value2);
+        assertEquals(1, calls.get());
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(1L, cache.getMissCount());
+    }
+
+    @Test
+    public void testThatExceptionInComputeIfAbsentIsPassedOnAndNothingIsCached() {
+        final ConcurrentLRUCache<String, Integer> cache = new ConcurrentLRUCache<>(10);
+        try {
+            cache.computeIfAbsent("a", key -> {
+                throw new IllegalStateException("test");
+            });
+            fail("IllegalStateException expected");
+        } catch (final IllegalStateException e) {
+            // expected
+        }
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testClear() {
+        final ConcurrentLRUCache<String, Integer> cache = new ConcurrentLRUCache<>(10);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get("a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatMaxSizeMustBePositive() {
+        new ConcurrentLRUCache<String, Integer>(0);
+    }
+
+}
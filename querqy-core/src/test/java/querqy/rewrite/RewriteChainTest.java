@@ -0,0 +1,264 @@
+package querqy.rewrite;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static querqy.QuerqyMatchers.bq;
+import static querqy.QuerqyMatchers.dmq;
+import static querqy.QuerqyMatchers.term;
+
+import org.junit.Test;
+import querqy.infologging.InfoLoggingContext;
+import querqy.model.BoostedTerm;
+import querqy.model.DisjunctionMaxClause;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.EmptySearchEngineRequestAdapter;
+import querqy.model.ExpandedQuery;
+import querqy.model.Query;
+import querqy.model.StringRawQuery;
+import querqy.model.Term;
+import querqy.parser.WhiteSpaceQuerqyParser;
+import querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory;
+import querqy.rewrite.commonrules.WhiteSpaceQuerqyParserFactory;
+import querqy.rewrite.commonrules.model.DecorateInstruction;
+import querqy.rewrite.commonrules.select.ExpressionCriteriaSelectionStrategyFactory;
+import querqy.timing.RequestTimings;
+import querqy.timing.TimingListener;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+public class RewriteChainTest {
+
+    @Test
+    public void testThatResultIsTakenFromCache() throws IOException {
+
+        final RewriteChain chain = new RewriteChain(Collections.singletonList(rulesFactory("a =>\n SYNONYM: s1")), 10);
+        final RewriteResultCache cache = chain.getResultCache().orElseThrow(AssertionError::new);
+
+        final ExpandedQuery result1 = chain.rewrite(query("a"), new CacheableRequestAdapter());
+        assertEquals(0L, cache.getHitCount());
+        assertEquals(1, cache.size());
+
+        final ExpandedQuery result2 = chain.rewrite(query("a"), new CacheableRequestAdapter());
+        assertEquals(1L, cache.getHitCount());
+        assertNotSame(result1, result2);
+
+        assertThat((Query) result2.getUserQuery(),
+                bq(
+                        dmq(
+                                term("a", false),
+                                term("s1", true)
+                        )
+                ));
+
+    }
+
+    @Test
+    public void testThatCachedResultCannotBeModifiedByCaller() throws IOException {
+
+        final RewriteChain chain = new RewriteChain(Collections.singletonList(rulesFactory("a =>\n SYNONYM: s1")), 10);
+
+        final ExpandedQuery result1 = chain.rewrite(query("a"), new CacheableRequestAdapter());
+        final DisjunctionMaxQuery dmq = (DisjunctionMaxQuery) ((Query) result1.getUserQuery()).getClauses().get(0);
+        dmq.addClause(new Term(dmq, "x"));
+        result1.addFilterQuery(new StringRawQuery(null, "f:x", querqy.model.Clause.Occur.MUST, true));
+
+        final ExpandedQuery result2 = chain.rewrite(query("a"), new CacheableRequestAdapter());
+        assertThat((Query) result2.getUserQuery(),
+                bq(
+                        dmq(
+                                term("a", false),
+                                term("s1", true)
+                        )
+                ));
+        assertEquals(null, result2.getFilterQueries());
+
+    }
+
+    @Test
+    public void testThatContextEntriesAreAddedOnCacheHit() throws IOException {
+
+        final RewriteChain chain = new RewriteChain(Collections.singletonList(rulesFactory("a =>\n DECORATE: d1")), 10);
+
+        final CacheableRequestAdapter adapter1 = new CacheableRequestAdapter();
+        chain.rewrite(query("a"), adapter1);
+
+        final CacheableRequestAdapter adapter2 = new CacheableRequestAdapter();
+        chain.rewrite(query("a"), adapter2);
+        assertEquals(1L, chain.getResultCache().get().getHitCount());
+
+        @SuppressWarnings("unchecked")
+        final Set<Object> decorations = (Set<Object>) adapter2.getContext()
+                .get(DecorateInstruction.DECORATION_CONTEXT_KEY);
+        assertThat(decorations, contains("d1"));
+        assertNotSame(adapter1.getContext().get(DecorateInstruction.DECORATION_CONTEXT_KEY), decorations);
+
+    }
+
+    @Test
+    public void testThatGeneratedFlagAndBoostAreKeptInCachedResult() {
+
+        final Query query = new Query();
+        final DisjunctionMaxQuery dmq = new DisjunctionMaxQuery(query, querqy.model.Clause.Occur.SHOULD, false);
+        query.addClause(dmq);
+        dmq.addClause(new Term(dmq, "f1", "a", false));
+        dmq.addClause(new Term(dmq, "f1", "b", true));
+        dmq.addClause(new BoostedTerm(dmq, "f2", "c", 2f));
+
+        final ExpandedQuery expandedQuery = new ExpandedQuery(query);
+        final ExpandedQuery copy = RewriteResultCache.copy(expandedQuery);
+
+        assertEquals(RewriteResultCache.normalize(expandedQuery), RewriteResultCache.normalize(copy));
+        final List<DisjunctionMaxClause> terms = ((DisjunctionMaxQuery) ((Query) copy.getUserQuery()).getClauses()
+                .get(0)).getClauses();
+        assertFalse(((Term) terms.get(0)).isGenerated());
+        assertTrue(((Term) terms.get(1)).isGenerated());
+        assertEquals(2f, ((BoostedTerm) terms.get(2)).getBoost(), 0.0001f);
+
+    }
+
+    @Test
+    public void testThatCacheIsNotUsedForDebugRequests() throws IOException {
+
+        final RewriteChain chain = new RewriteChain(Collections.singletonList(rulesFactory("a =>\n SYNONYM: s1")), 10);
+
+        final CacheableRequestAdapter adapter = new CacheableRequestAdapter() {
+            @Override
+            public boolean isDebugQuery() {
+                return true;
+            }
+        };
+        chain.rewrite(query("a"), adapter);
+        chain.rewrite(query("a"), adapter);
+        assertEquals(0, chain.getResultCache().get().size());
+        assertEquals(0L, chain.getResultCache().get().getHitCount());
+
+    }
+
+    @Test
+    public void testThatCacheIsNotUsedIfAFactoryDoesNotProvideAKey() throws IOException {
+
+        final RewriterFactory uncacheable = new RewriterFactory("uncacheable") {
+            @Override
+            public QueryRewriter createRewriter(final ExpandedQuery input,
+                                                final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+                return query -> query;
+            }
+        };
+
+        final RewriteChain chain = new RewriteChain(
+                java.util.Arrays.asList(rulesFactory("a =>\n SYNONYM: s1"), uncacheable), 10);
+
+        chain.rewrite(query("a"), new CacheableRequestAdapter());
+        chain.rewrite(query("a"), new CacheableRequestAdapter());
+        assertEquals(0, chain.getResultCache().get().size());
+
+    }
+
+    @Test
+    public void testThatCacheIsInvalidatedWhenFactoryIsReplaced() throws IOException {
+
+        final RewriteChain chain = new RewriteChain(Collections.singletonList(rulesFactory("a =>\n SYNONYM: s1")), 10);
+
+        chain.rewrite(query("a"), new CacheableRequestAdapter());
+        assertEquals(1, chain.getResultCache().get().size());
+
+        chain.replaceRewriterFactory(rulesFactory("a =>\n SYNONYM: s2"));
+        assertEquals(0, chain.getResultCache().get().size());
+
+        final ExpandedQuery result = chain.rewrite(query("a"), new CacheableRequestAdapter());
+        assertThat((Query) result.getUserQuery(),
+                bq(
+                        dmq(
+                                term("a", false),
+                                term("s2", true)
+                        )
+                ));
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatFactoryWithUnknownIdCannotBeReplaced() throws IOException {
+        new RewriteChain(Collections.singletonList(rulesFactory("a =>\n SYNONYM: s1")), 10)
+                .replaceRewriterFactory(new SimpleCommonRulesRewriterFactory("other",
+                        new StringReader("a =>\n SYNONYM: s1"), new WhiteSpaceQuerqyParserFactory(), true,
+                        Collections.emptyMap(), new ExpressionCriteriaSelectionStrategyFactory(), false));
+    }
+
+    @Test
+    public void testThatCacheIsDisabledByDefault() throws IOException {
+        assertFalse(new RewriteChain(Collections.singletonList(rulesFactory("a =>\n SYNONYM: s1")))
+                .getResultCache().isPresent());
+    }
+
+    @Test
+    public void testThatRewritersAreTimed() throws IOException {
+
+        final RewriteChain chain = new RewriteChain(Collections.singletonList(rulesFactory("a =>\n SYNONYM: s1")));
+        final RequestTimings timings = new RequestTimings();
+
+        chain.rewrite(query("a"), new CacheableRequestAdapter() {
+            @Override
+            public Optional<TimingListener> getTimingListener() {
+                return Optional.of(timings);
+            }
+        });
+
+        assertThat(timings.toMillis().keySet(), contains("rewriter.rules.create", "rewriter.rules.rewrite"));
+        assertTrue(timings.getNanos("rewriter.rules.rewrite") > 0L);
+
+    }
+
+    @Test
+    public void testThatRewritersAreSkippedIfTheirTriggerTermsDontOccur() throws IOException {
+
+        final RewriteChain chain = new RewriteChain(Collections.singletonList(rulesFactory("a =>\n SYNONYM: s1")));
+
+        final RequestTimings timings = new RequestTimings();
+        final CacheableRequestAdapter adapter = new CacheableRequestAdapter() {
+            @Override
+            public Optional<TimingListener> getTimingListener() {
+                return Optional.of(timings);
+            }
+        };
+
+        final ExpandedQuery rewritten = chain.rewrite(query("b c"), adapter);
+        assertThat((Query) rewritten.getUserQuery(),
+                bq(
+                        dmq(term("b")),
+                        dmq(term("c"))
+                ));
+        assertTrue(timings.toMillis().isEmpty());
+
+        chain.rewrite(query("b a"), adapter);
+        assertThat(timings.toMillis().keySet(), contains("rewriter.rules.create", "rewriter.rules.rewrite"));
+
+    }
+
+    private static RewriterFactory rulesFactory(final String rules) throws IOException {
+        return new SimpleCommonRulesRewriterFactory("rules", new StringReader(rules),
+                new WhiteSpaceQuerqyParserFactory(), true, Collections.emptyMap(),
+                new ExpressionCriteriaSelectionStrategyFactory(), false);
+    }
+
+    private static ExpandedQuery query(final String input) {
+        return new ExpandedQuery(new WhiteSpaceQuerqyParser().parse(input));
+    }
+
+    static class CacheableRequestAdapter extends EmptySearchEngineRequestAdapter {
+
+        @Override
+        public Optional<InfoLoggingContext> getInfoLoggingContext() {
+            return Optional.empty();
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+package querqy.rewrite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import querqy.model.BooleanQuery;
+import querqy.model.Clause;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.Query;
+import querqy.model.Term;
+import querqy.parser.WhiteSpaceQuerqyParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+public class TriggerTermsTest {
+
+    @Test
+    public void testThatAddedTermsAreContained() {
+
+        final TriggerTerms.Builder builder = TriggerTerms.builder(false);
+        for (int i = 0; i < 10000; i++) {
+            builder.addTerm("term" + i);
+        }
+        final TriggerTerms triggerTerms = builder.build();
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(triggerTerms.mightContain("term" + i));
+            if (triggerTerms.mightContain("other" + i)) {
+                falsePositives++;
+            }
+        }
+
+        // expected rate is about 1%
+        assertTrue("Too many false positives: " + falsePositives, falsePositives < 300);
+    }
+
+    @Test
+    public void testPrefixesAndSuffixes() {
+
+        final TriggerTerms triggerTerms = TriggerTerms.builder(false)
+                .addTerm("exact")
+                .addPrefix("pre")
+                .addSuffix("suf")
+                .build();
+
+        assertTrue(triggerTerms.mightContain("exact"));
+        assertFalse(triggerTerms.mightContain("exactly"));
+        assertTrue(triggerTerms.mightContain("pre"));
+        assertTrue(triggerTerms.mightContain("prefix"));
+        assertFalse(triggerTerms.mightContain("pr"));
+        assertTrue(triggerTerms.mightContain("suf"));
+        assertTrue(triggerTerms.mightContain("insuf"));
+        assertFalse(triggerTerms.mightContain("sufin"));
+    }
+
+    @Test
+    public void testIgnoreCase() {
+
+        final TriggerTerms ignoreCase = TriggerTerms.builder(true).addTerm("Abc").addPrefix("PRE").build();
+        assertTrue(ignoreCase.mightContain("abc"));
+        assertTrue(ignoreCase.mightContain("ABC"));
+        assertTrue(ignoreCase.mightContain("prefix"));
+
+        final TriggerTerms caseSensitive = TriggerTerms.builder(false).addTerm("Abc").build();
+        assertTrue(caseSensitive.mightContain("Abc"));
+        assertFalse(caseSensitive.mightContain("abc"));
+    }
+
+    @Test
+    public void testThatEmptyTriggerTermsDontMatchTerms() {
+        final TriggerTerms triggerTerms = TriggerTerms.builder(true).build();
+        assertFalse(triggerTerms.mightContain("a"));
+        assertFalse(triggerTerms.mightMatch(parse("a b")));
+    }
+
+    @Test
+    public void testMightMatchQuery() {
+
+        final TriggerTerms triggerTerms = TriggerTerms.builder(true).addTerm("b").build();
+
+        assertTrue(triggerTerms.mightMatch(parse("a b c")));
+        assertFalse(triggerTerms.mightMatch(parse("a c")));
+        assertTrue(triggerTerms.mightMatch(new Query()));
+
+        // terms in nested boolean queries and field names
+        final Query query = parse("a");
+        final DisjunctionMaxQuery dmq = (DisjunctionMaxQuery) query.getClauses().get(0);
+        final BooleanQuery nested = new BooleanQuery(dmq, Clause.Occur.SHOULD, true);
+        dmq.addClause(nested);
+        final DisjunctionMaxQuery nestedDmq = new DisjunctionMaxQuery(nested, Clause.Occur.SHOULD, true);
+        nested.addClause(nestedDmq);
+        assertFalse(triggerTerms.mightMatch(query));
+        nestedDmq.addClause(new Term(nestedDmq, "f1", "B"));
+        assertTrue(triggerTerms.mightMatch(query));
+    }
+
+    @Test
+    public void testSerialization() throws IOException {
+
+        final TriggerTerms triggerTerms = TriggerTerms.builder(true)
+                .addTerm("exact")
+                .addPrefix("pre")
+                .addSuffix("suf")
+                .build();
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            triggerTerms.writeTo(out);
+        }
+
+        final TriggerTerms read = TriggerTerms.readFrom(new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertTrue(read.isIgnoreCase());
+        assertEquals(triggerTerms.getNumBits(), read.getNumBits());
+        assertTrue(read.mightContain("EXACT"));
+        assertTrue(read.mightContain("prefix"));
+        assertTrue(read.mightContain("insuf"));
+        assertFalse(read.mightContain("other"));
+    }
+
+    private static Query parse(final String input) {
+        return new WhiteSpaceQuerqyParser().parse(input);
+    }
+
+}
@@ -0,0 +1,181 @@
+package querqy.rewrite.commonrules;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static querqy.rewrite.commonrules.select.SelectionStrategyFactory.DEFAULT_SELECTION_STRATEGY;
+
+import org.junit.Test;
+import querqy.model.EmptySearchEngineRequestAdapter;
+import querqy.model.ExpandedQuery;
+import querqy.model.InputSequenceElement;
+import querqy.model.Term;
+import querqy.rewrite.commonrules.model.Action;
+import querqy.rewrite.commonrules.model.Instructions;
+import querqy.rewrite.commonrules.model.PositionSequence;
+import querqy.rewrite.commonrules.model.RulesCollection;
+import querqy.rewrite.commonrules.select.ExpressionCriteriaSelectionStrategyFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Optional;
+
+public class SimpleCommonRulesCompilerTest extends AbstractCommonRulesTest {
+
+    static final String RULES = "a =>\n" +
+            "  SYNONYM: s1\n" +
+            "  SYNONYM(0.5): f1:s2\n" +
+            "  DELETE: a\n" +
+            "  @_id:\"rule-a\"\n" +
+            "  @{ tags: [\"t1\", 2], weight: 2.5, nested: { flag: true, n: null } }@\n" +
+            "b c =>\n" +
+            "  FILTER: * price:[* TO 100]\n" +
+            "  UP(10): u1 u2\n" +
+            "  DOWN(2): {f2,f3}:d1\n" +
+            "  DECORATE: deco1\n" +
+            "  DECORATE(key1): value1\n" +
+            "  @prio:3\n" +
+            "laptop* =>\n" +
+            "  SYNONYM: notebook$1\n" +
+            "  UP(5): bag$1\n" +
+            "  DELETE: laptop*\n" +
+            "\"exact\" =>\n" +
+            "  FILTER: f4 f5\n";
+
+    final QuerqyParserFactory parserFactory = new WhiteSpaceQuerqyParserFactory();
+
+    @Test
+    public void testThatLoadedRulesRewriteLikeParsedRules() throws IOException {
+
+        final RulesCollection parsed = SimpleCommonRulesCompiler.parse(new StringReader(RULES), parserFactory, true);
+        final RulesCollection loaded = load(compile(RULES, true), RULES, true)
+                .orElseThrow(AssertionError::new);
+
+        assertEquals(parsed.getInstructions(), loaded.getInstructions());
+        assertEquals(parsed.getGenerableTerms(), loaded.getGenerableTerms());
+        assertTrue(loaded.getPropertyIndex().isPresent());
+        assertTrue(loaded.getTriggerTerms().isPresent());
+        assertTrue(loaded.getTriggerTerms().get().mightContain("laptops"));
+
+        for (final String query : new String[] {"a", "A x", "b c", "x b c y", "laptops", "laptop", "exact",
+                "exact x", "q"}) {
+            assertRewritesEqual(parsed, loaded, query);
+        }
+    }
+
+    @Test
+    public void testThatPropertiesAreRestored() throws IOException {
+
+        final RulesCollection loaded = load(compile(RULES, true), RULES, true).orElseThrow(AssertionError::new);
+
+        final List<Action> actions = getActions(loaded, sequence("a"));
+        assertEquals(1, actions.size());
+
+        final Instructions instructions = actions.get(0).getInstructions();
+        assertEquals("rule-a", instructions.getId());
+        assertEquals(Optional.of(2.5), instructions.getProperty("weight"));
+        assertTrue(instructions.getProperties().matches("$[?(@.weight == 2.5)]"));
+        assertTrue(instructions.getProperties().matches("$[?('t1' in @.tags)]"));
+        assertTrue(instructions.getProperties().matches("$.nested[?(@.flag == true)]"));
+        assertFalse(instructions.getProperties().matches("$[?(@.weight == 3)]"));
+
+        final Instructions bcInstructions = getActions(loaded, sequence("b", "c")).get(0).getInstructions();
+        assertEquals(Optional.of(3), bcInstructions.getProperty("prio"));
+
+    }
+
+    @Test
+    public void testThatChangedRulesAreNotLoaded() throws IOException {
+        final byte[] compiled = compile(RULES, true);
+        assertFalse(load(compiled, RULES + "x =>\n  SYNONYM: y\n", true).isPresent());
+    }
+
+    @Test
+    public void testThatDifferentSettingsAreNotLoaded() throws IOException {
+        final byte[] compiled = compile(RULES, true);
+        assertFalse(load(compiled, RULES, false).isPresent());
+        assertFalse(SimpleCommonRulesCompiler.load(RULES, new FieldAwareWhiteSpaceQuerqyParserFactory(), true,
+                new ByteArrayInputStream(compiled)).isPresent());
+    }
+
+    @Test(expected = IOException.class)
+    public void testThatInvalidDataTriggersException() throws IOException {
+        load("a => SYNONYM: b".getBytes(), RULES, true);
+    }
+
+    @Test
+    public void testThatRewriterFactoryLoadsCompiledRules() throws IOException {
+
+        final SimpleCommonRulesRewriterFactory factory = createFactory(RULES, compile(RULES, true));
+        assertTrue(factory.isLoadedFromCompiledRules());
+
+        final RulesCollection parsed = SimpleCommonRulesCompiler.parse(new StringReader(RULES), parserFactory, true);
+        assertEquals(parsed.getInstructions(), factory.getRules().getInstructions());
+
+    }
+
+    @Test
+    public void testThatRewriterFactoryParsesRulesIfCompiledRulesAreStale() throws IOException {
+
+        final String rules = "x =>\n  SYNONYM: y\n";
+        final SimpleCommonRulesRewriterFactory factory = createFactory(rules, compile(RULES, true));
+        assertFalse(factory.isLoadedFromCompiledRules());
+
+        final RulesCollection parsed = SimpleCommonRulesCompiler.parse(new StringReader(rules), parserFactory, true);
+        assertEquals(parsed.getInstructions(), factory.getRules().getInstructions());
+
+    }
+
+    private SimpleCommonRulesRewriterFactory createFactory(final String rules, final byte[] compiled)
+            throws IOException {
+        return SimpleCommonRulesRewriterFactory.builder("rules", new StringReader(rules), parserFactory)
+                .setDefaultSelectionStrategyFactory(new ExpressionCriteriaSelectionStrategyFactory())
+                .setCompiledRules(new ByteArrayInputStream(compiled))
+                .build();
+    }
+
+    private byte[] compile(final String rules, final boolean ignoreCase) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SimpleCommonRulesCompiler.compile(new StringReader(rules), parserFactory, ignoreCase, out);
+        return out.toByteArray();
+    }
+
+    private Optional<RulesCollection> load(final byte[] compiled, final String rules, final boolean ignoreCase)
+            throws IOException {
+        return SimpleCommonRulesCompiler.load(rules, parserFactory, ignoreCase, new ByteArrayInputStream(compiled));
+    }
+
+    private void assertRewritesEqual(final RulesCollection expected, final RulesCollection actual,
+                                     final String query) {
+
+        final EmptySearchEngineRequestAdapter expectedAdapter = new EmptySearchEngineRequestAdapter();
+        final ExpandedQuery expectedQuery = new CommonRulesRewriter(expected, DEFAULT_SELECTION_STRATEGY)
+                .rewrite(makeQuery(query), expectedAdapter);
+
+        final EmptySearchEngineRequestAdapter actualAdapter = new EmptySearchEngineRequestAdapter();
+        final ExpandedQuery actualQuery = new CommonRulesRewriter(actual, DEFAULT_SELECTION_STRATEGY)
+                .rewrite(makeQuery(query), actualAdapter);
+
+        assertEquals(query, expectedQuery.getUserQuery().toString(), actualQuery.getUserQuery().toString());
+        assertEquals(query, String.valueOf(expectedQuery.getFilterQueries()),
+                String.valueOf(actualQuery.getFilterQueries()));
+        assertEquals(query, String.valueOf(expectedQuery.getBoostUpQueries()),
+                String.valueOf(actualQuery.getBoostUpQueries()));
+        assertEquals(query, String.valueOf(expectedQuery.getBoostDownQueries()),
+                String.valueOf(actualQuery.getBoostDownQueries()));
+        assertEquals(query, expectedAdapter.getContext(), actualAdapter.getContext());
+    }
+
+    private static PositionSequence<InputSequenceElement> sequence(final String... terms) {
+        final PositionSequence<InputSequenceElement> sequence = new PositionSequence<>();
+        for (final String term : terms) {
+            sequence.nextPosition();
+            sequence.addElement(new Term(null, term));
+        }
+        return sequence;
+    }
+
+}
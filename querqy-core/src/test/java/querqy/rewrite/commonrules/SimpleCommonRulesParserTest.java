@@ -10,12 +10,15 @@ import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import querqy.rewrite.commonrules.model.Input;
 import querqy.rewrite.commonrules.model.Instructions;
+import querqy.rewrite.commonrules.model.RulesCollection;
 import querqy.rewrite.commonrules.model.RulesCollectionBuilder;
 
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @RunWith(org.mockito.junit.MockitoJUnitRunner.class)
 public class SimpleCommonRulesParserTest {
@@ -160,7 +163,85 @@ public class SimpleCommonRulesParserTest {
 
     }
 
+    static final String PARALLEL_RULES = "# rules\n" +
+            "a =>\n" +
+            "  SYNONYM: s1\n" +
+            "  @{\n" +
+            "     weight: 2,\n" +
+            "     tags: [\"t1\"]\n" +
+            "  }@\n" +
+            "b =>\n" +
+            "  UP(10): u1\n" +
+            "  @_id:\"rule-b\"\n" +
+            "\n" +
+            "c d =>\n" +
+            "  FILTER: f1\n" +
+            "e* =>\n" +
+            "  SYNONYM: e$1\n" +
+            "  DELETE: e*\n" +
+            "\"f\" =>\n" +
+            "  DOWN(2): d1\n";
 
+    @Test
+    public void testThatParallelParsingCreatesSameRulesAsSequentialParsing() throws IOException,
+            RuleParseException {
+
+        final RulesCollection sequential = new SimpleCommonRulesParser(new StringReader(PARALLEL_RULES),
+                parserFactory, true).parse();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (int chunkSize = 1; chunkSize < 20; chunkSize++) {
+                final RulesCollection parallel = new SimpleCommonRulesParser(new StringReader(PARALLEL_RULES),
+                        parserFactory, true).setExecutor(executor).setChunkSize(chunkSize).parse();
+                assertEquals(sequential.getInstructions(), parallel.getInstructions());
+                assertEquals(sequential.getGenerableTerms(), parallel.getGenerableTerms());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testThatParallelParsingReportsSameErrorsAsSequentialParsing() {
+
+        final String[] invalidRules = {
+                PARALLEL_RULES + "g =>\n  UNKNOWN: x\n" + PARALLEL_RULES,
+                PARALLEL_RULES + "g =>\n" + PARALLEL_RULES,
+                PARALLEL_RULES + "g =>\n",
+                PARALLEL_RULES + "g =>\n  SYNONYM: x\n  @_id:\"rule-b\"\n",
+                "  SYNONYM: x\n" + PARALLEL_RULES,
+                PARALLEL_RULES + "g =>\n  SYNONYM: x\n  @{ unclosed: true\n" + PARALLEL_RULES
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (final String rules : invalidRules) {
+
+                final String expectedMessage = parseForErrorMessage(new SimpleCommonRulesParser(
+                        new StringReader(rules), parserFactory, true));
+
+                for (int chunkSize = 1; chunkSize < 20; chunkSize++) {
+                    assertEquals(expectedMessage, parseForErrorMessage(new SimpleCommonRulesParser(
+                            new StringReader(rules), parserFactory, true).setExecutor(executor)
+                            .setChunkSize(chunkSize)));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
 
+    private static String parseForErrorMessage(final SimpleCommonRulesParser parser) {
+        try {
+            parser.parse();
+            fail("RuleParseException expected");
+            return null;
+        } catch (final RuleParseException e) {
+            return e.getMessage();
+        } catch (final IOException e) {
+            throw new AssertionError(e);
+        }
+    }
 
-}
\ No newline at end of file
+}
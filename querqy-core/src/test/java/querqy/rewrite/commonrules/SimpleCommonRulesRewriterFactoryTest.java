@@ -2,6 +2,7 @@ package querqy.rewrite.commonrules;
 
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -13,9 +14,12 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import querqy.model.ExpandedQuery;
 import querqy.model.Term;
+import querqy.parser.WhiteSpaceQuerqyParser;
 import querqy.rewrite.QueryRewriter;
 import querqy.rewrite.SearchEngineRequestAdapter;
 import querqy.rewrite.commonrules.model.RulesCollection;
+import querqy.rewrite.commonrules.model.RulesIndexType;
+import querqy.rewrite.commonrules.model.TokenIdRulesCollection;
 import querqy.rewrite.commonrules.select.SelectionStrategy;
 import querqy.rewrite.commonrules.select.SelectionStrategyFactory;
 
@@ -91,6 +95,22 @@ public class SimpleCommonRulesRewriterFactoryTest {
         assertEquals(1, rules.getInstructions().size());
     }
 
+    @Test
+    public void testThatRulesAreIndexedByTokenIdIfConfigured() throws IOException {
+        final SimpleCommonRulesRewriterFactory factory = SimpleCommonRulesRewriterFactory.builder("someId",
+                new StringReader("input =>\n DECORATE: deco1"), querqyParserFactory)
+                .setSelectionStrategyFactories(namedStrategyFactories)
+                .setDefaultSelectionStrategyFactory(defaultSelectionStrategyFactory)
+                .setIndexType(RulesIndexType.TOKEN_ID)
+                .build();
+        assertTrue(factory.getRules() instanceof TokenIdRulesCollection);
+        assertEquals(1, factory.getRules().getInstructions().size());
+
+        factory.reload(new StringReader("input1 =>\n DECORATE: deco1\ninput2 =>\n DECORATE: deco2"));
+        assertTrue(factory.getRules() instanceof TokenIdRulesCollection);
+        assertEquals(2, factory.getRules().getInstructions().size());
+    }
+
     @Test
     public void testCreateRewriterUsesDefaultSelectionStrategyFactory() throws IOException {
         when(defaultSelectionStrategyFactory.createSelectionStrategy(any(), any())).thenReturn(defaultSelectionStrategy);
@@ -166,4 +186,107 @@ public class SimpleCommonRulesRewriterFactoryTest {
         assertThat(terms, Matchers.empty());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testThatRulesAreReloaded() throws IOException {
+
+        final SimpleCommonRulesRewriterFactory factory = new SimpleCommonRulesRewriterFactory("someId",
+                new StringReader("input =>\n DECORATE: deco1"), querqyParserFactory, true, namedStrategyFactories,
+                defaultSelectionStrategyFactory, true);
+        final RulesCollection rules = factory.getRules();
+        assertEquals(0, factory.getRulesVersion());
+
+        factory.reload(new StringReader("input1 =>\n DECORATE: deco1\ninput2 =>\n DECORATE: deco2"));
+
+        assertNotSame(rules, factory.getRules());
+        assertEquals(1, rules.getInstructions().size());
+        assertEquals(2, factory.getRules().getInstructions().size());
+        assertEquals(1, factory.getRulesVersion());
+    }
+
+    @Test
+    public void testThatUnchangedRulesAreNotReloaded() throws IOException {
+
+        final SimpleCommonRulesRewriterFactory factory = new SimpleCommonRulesRewriterFactory("someId",
+                new StringReader("input =>\n DECORATE: deco1"), querqyParserFactory, true, namedStrategyFactories,
+                defaultSelectionStrategyFactory, true);
+        final RulesCollection rules = factory.getRules();
+
+        assertFalse(factory.reloadIfChanged(new StringReader("input =>\n DECORATE: deco1")));
+        assertSame(rules, factory.getRules());
+        assertEquals(0, factory.getRulesVersion());
+
+        assertTrue(factory.reloadIfChanged(new StringReader("input =>\n DECORATE: deco2")));
+        assertNotSame(rules, factory.getRules());
+        assertEquals(1, factory.getRulesVersion());
+    }
+
+    @Test
+    public void testThatInvalidRulesDoNotReplaceCurrentRules() throws IOException {
+
+        final SimpleCommonRulesRewriterFactory factory = new SimpleCommonRulesRewriterFactory("someId",
+                new StringReader("input =>\n DECORATE: deco1"), querqyParserFactory, true, namedStrategyFactories,
+                defaultSelectionStrategyFactory, true);
+        final RulesCollection rules = factory.getRules();
+
+        try {
+            factory.reload(new StringReader("This is not a parsable rule"));
+            fail("IOException expected");
+        } catch (final IOException e) {
+            assertSame(rules, factory.getRules());
+            assertEquals(0, factory.getRulesVersion());
+        }
+    }
+
+    @Test
+    public void testThatRewriteResultCacheKeyDependsOnRulesVersion() throws IOException {
+        when(defaultSelectionStrategyFactory.getRewriteResultCacheKey(any(), any())).thenReturn(Optional.of("k"));
+        when(requestAdapter.getRequestParam(any())).thenReturn(Optional.empty());
+
+        final SimpleCommonRulesRewriterFactory factory = new SimpleCommonRulesRewriterFactory("someId",
+                new StringReader("input =>\n DECORATE: deco1"), querqyParserFactory, true, namedStrategyFactories,
+                defaultSelectionStrategyFactory, true);
+
+        final Object key = factory.getRewriteResultCacheKey(requestAdapter).orElseThrow(AssertionError::new);
+        assertEquals(key, factory.getRewriteResultCacheKey(requestAdapter).orElseThrow(AssertionError::new));
+
+        factory.reload(new StringReader("input =>\n DECORATE: deco2"));
+        assertNotEquals(key, factory.getRewriteResultCacheKey(requestAdapter).orElseThrow(AssertionError::new));
+    }
+
+    @Test
+    public void testThatRulesArePinnedForTheWholeRequest() throws IOException {
+        when(defaultSelectionStrategyFactory.getRewriteResultCacheKey(any(), any())).thenReturn(Optional.of("k"));
+        when(defaultSelectionStrategyFactory.createSelectionStrategy(any(), any()))
+                .thenReturn(defaultSelectionStrategy);
+        when(requestAdapter.getRequestParam(any())).thenReturn(Optional.empty());
+        when(requestAdapter.getContext()).thenReturn(new HashMap<>());
+
+        final SimpleCommonRulesRewriterFactory factory = new SimpleCommonRulesRewriterFactory("someId",
+                new StringReader("input1 =>\n DECORATE: deco1"), querqyParserFactory, true, namedStrategyFactories,
+                defaultSelectionStrategyFactory, true);
+        final RulesCollection rules = factory.getRules();
+        final ExpandedQuery input2 = new ExpandedQuery(new WhiteSpaceQuerqyParser().parse("input2"));
+
+        final Object key = factory.getRewriteResultCacheKey(requestAdapter).orElseThrow(AssertionError::new);
+
+        // the rules are reloaded while the request is being processed
+        factory.reload(new StringReader("input1 =>\n DECORATE: deco1\ninput2 =>\n DECORATE: deco2"));
+
+        assertFalse(factory.mightRewrite(input2, requestAdapter));
+        final QueryRewriter rewriter = factory.createRewriter(input2, requestAdapter);
+        assertSame(rules, ((CommonRulesRewriter) rewriter).rules);
+        assertEquals(key, factory.getRewriteResultCacheKey(requestAdapter).orElseThrow(AssertionError::new));
+
+        // the next request sees the new rules
+        final SearchEngineRequestAdapter nextRequestAdapter = mock(SearchEngineRequestAdapter.class);
+        when(nextRequestAdapter.getRequestParam(any())).thenReturn(Optional.empty());
+        when(nextRequestAdapter.getContext()).thenReturn(new HashMap<>());
+
+        assertNotEquals(key, factory.getRewriteResultCacheKey(nextRequestAdapter)
+                .orElseThrow(AssertionError::new));
+        assertTrue(factory.mightRewrite(input2, nextRequestAdapter));
+        assertSame(factory.getRules(),
+                ((CommonRulesRewriter) factory.createRewriter(input2, nextRequestAdapter)).rules);
+    }
+
+}
@@ -353,5 +353,43 @@ public class BoostInstructionTest extends AbstractCommonRulesTest {
 
 
 
+    }
+
+    @Test
+    public void testThatBoostQueryWithoutPlaceHolderIsShared() {
+
+        final BoostInstruction boostInstruction = new BoostInstruction(makeQuery("a").getUserQuery(),
+                BoostDirection.UP, 0.5f);
+
+        final ExpandedQuery query1 = makeQuery("x");
+        boostInstruction.apply(null, null, 0, 0, query1, new EmptySearchEngineRequestAdapter());
+        final ExpandedQuery query2 = makeQuery("x");
+        boostInstruction.apply(null, null, 0, 0, query2, new EmptySearchEngineRequestAdapter());
+
+        Assert.assertSame(query1.getBoostUpQueries().iterator().next(), query2.getBoostUpQueries().iterator().next());
+
+    }
+
+    @Test
+    public void testThatBoostQueryWithPlaceHolderIsCreatedPerMatch() {
+
+        final BoostInstruction boostInstruction = new BoostInstruction(makeQuery("a b$1").getUserQuery(),
+                BoostDirection.UP, 0.5f);
+
+        final ExpandedQuery query1 = makeQuery("x");
+        boostInstruction.apply(null, termMatches("c"), 0, 0, query1, new EmptySearchEngineRequestAdapter());
+        final ExpandedQuery query2 = makeQuery("x");
+        boostInstruction.apply(null, termMatches("d"), 0, 0, query2, new EmptySearchEngineRequestAdapter());
+
+        assertThat(query1.getBoostUpQueries(),
+                contains(boostQ(bq(dmq(must(), term("a", true)), dmq(must(), term("bc", true))), 0.5f)));
+        assertThat(query2.getBoostUpQueries(),
+                contains(boostQ(bq(dmq(must(), term("a", true)), dmq(must(), term("bd", true))), 0.5f)));
+
+    }
+
+    private static TermMatches termMatches(final String wildcardMatch) {
+        return new TermMatches(new TermMatch(new querqy.model.Term(null, "k" + wildcardMatch), true,
+                new querqy.SimpleComparableCharSequence(wildcardMatch.toCharArray(), 0, wildcardMatch.length())));
     }
 }
@@ -1,6 +1,8 @@
 package querqy.rewrite.commonrules.model;
 
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -333,6 +335,143 @@ public class RulesCollectionTest {
       return result;
    }
 
+   @Test
+   public void testThatCombinationsArePrunedIfPositionHasTooManyAlternatives() {
+
+      RulesCollectionBuilder builder = new TrieMapRulesCollectionBuilder(false);
+
+      List<Instructions> instructionsList = new LinkedList<>();
+      for (int i = 1; i <= 5; i++) {
+         Input input = new Input(inputTerms(null, "a" + i, "b"), false, false, "a" + i + " b");
+         Instructions instructions = instructions(i, "instruction" + i);
+         builder.addRule(input, instructions);
+         instructionsList.add(instructions);
+      }
+
+      PositionSequence<InputSequenceElement> sequence = new PositionSequence<>();
+      sequence.nextPosition();
+      for (int i = 1; i <= 5; i++) {
+         sequence.addElement(new Term(null, "a" + i));
+      }
+      sequence.nextPosition();
+      sequence.addElement(new Term(null, "b"));
+
+      TrieMapRulesCollection rulesCollection = (TrieMapRulesCollection) builder.build();
+      assertEquals(5, AbstractCommonRulesTest.getActions(rulesCollection, sequence).size());
+      assertEquals(0L, rulesCollection.getPrunedCombinationsCount());
+
+      // only the first two alternatives are combined with the next position
+      TrieMapRulesCollection limited = rulesCollection.withMaxCombinationsPerPosition(2);
+      List<Action> actions = AbstractCommonRulesTest.getActions(limited, sequence);
+      assertThat(actions, contains(
+              new Action(instructionsList.get(0), termMatches("a1", "b"), 0, 2),
+              new Action(instructionsList.get(1), termMatches("a2", "b"), 0, 2)));
+      assertEquals(3L, limited.getPrunedCombinationsCount());
+
+      assertEquals(actions, AbstractCommonRulesTest.getActions(TokenIdRulesCollection.of(limited), sequence));
+
+   }
+
+   @Test
+   public void testThatCombinationsAreNotPrunedByDefault() {
+
+      RulesCollectionBuilder builder = new TrieMapRulesCollectionBuilder(false);
+
+      int numAlternatives = 2000;
+      for (int i = 1; i <= numAlternatives; i++) {
+         builder.addRule(new Input(inputTerms(null, "a" + i, "b"), false, false, "a" + i + " b"),
+                 instructions(i, "instruction" + i));
+      }
+
+      PositionSequence<InputSequenceElement> sequence = new PositionSequence<>();
+      sequence.nextPosition();
+      for (int i = 1; i <= numAlternatives; i++) {
+         sequence.addElement(new Term(null, "a" + i));
+      }
+      sequence.nextPosition();
+      sequence.addElement(new Term(null, "b"));
+
+      TrieMapRulesCollection rulesCollection = (TrieMapRulesCollection) builder.build();
+      assertEquals(Integer.MAX_VALUE, rulesCollection.getMaxCombinationsPerPosition());
+      assertEquals(numAlternatives, AbstractCommonRulesTest.getActions(rulesCollection, sequence).size());
+      assertEquals(0L, rulesCollection.getPrunedCombinationsCount());
+
+      TokenIdRulesCollection tokenIdRules = (TokenIdRulesCollection) RulesIndexType.TOKEN_ID.createIndex(
+              rulesCollection);
+      assertEquals(numAlternatives, AbstractCommonRulesTest.getActions(tokenIdRules, sequence).size());
+
+   }
+
+   @Test
+   public void testThatCombinationsWithMoreTermsAreKeptWhenPruning() {
+
+      RulesCollectionBuilder builder = new TrieMapRulesCollectionBuilder(false);
+
+      Instructions instructions1 = instructions(1, "instruction1");
+      builder.addRule(new Input(inputTerms(null, "x", "a", "c"), false, false, "x a c"), instructions1);
+      Instructions instructions2 = instructions(2, "instruction2");
+      builder.addRule(new Input(inputTerms(null, "a", "c"), false, false, "a c"), instructions2);
+
+      PositionSequence<InputSequenceElement> sequence = new PositionSequence<>();
+      sequence.nextPosition();
+      sequence.addElement(new Term(null, "x"));
+      sequence.nextPosition();
+      sequence.addElement(new Term(null, "a"));
+      sequence.nextPosition();
+      sequence.addElement(new Term(null, "c"));
+
+      TrieMapRulesCollection rulesCollection = ((TrieMapRulesCollection) builder.build())
+              .withMaxCombinationsPerPosition(1);
+
+      List<Action> actions = AbstractCommonRulesTest.getActions(rulesCollection, sequence);
+      assertThat(actions, contains(new Action(instructions1, termMatches("x", "a", "c"), 0, 3)));
+      assertEquals(1L, rulesCollection.getPrunedCombinationsCount());
+
+      assertEquals(actions, AbstractCommonRulesTest.getActions(TokenIdRulesCollection.of(rulesCollection), sequence));
+
+   }
+
+   @Test
+   public void testThatMultiTermRuleSurvivesPruningOfExpandedPosition() {
+
+      RulesCollectionBuilder builder = new TrieMapRulesCollectionBuilder(false);
+
+      Instructions multiTermInstructions = instructions(1, "multiTerm");
+      builder.addRule(new Input(inputTerms(null, "x", "b", "c"), false, false, "x b c"), multiTermInstructions);
+      for (int i = 1; i <= 5; i++) {
+         builder.addRule(new Input(inputTerms(null, "a" + i, "c"), false, false, "a" + i + " c"),
+                 instructions(i + 1, "instruction" + i));
+      }
+
+      // the second position was expanded into alternatives, each of which starts a rule of its own
+      PositionSequence<InputSequenceElement> sequence = new PositionSequence<>();
+      sequence.nextPosition();
+      sequence.addElement(new Term(null, "x"));
+      sequence.nextPosition();
+      for (int i = 1; i <= 5; i++) {
+         sequence.addElement(new Term(null, "a" + i));
+      }
+      sequence.addElement(new Term(null, "b"));
+      sequence.nextPosition();
+      sequence.addElement(new Term(null, "c"));
+
+      TrieMapRulesCollection rulesCollection = ((TrieMapRulesCollection) builder.build())
+              .withMaxCombinationsPerPosition(2);
+
+      List<Action> actions = AbstractCommonRulesTest.getActions(rulesCollection, sequence);
+      assertThat(actions, hasItem(new Action(multiTermInstructions, termMatches("x", "b", "c"), 0, 3)));
+      assertEquals(2, actions.size());
+      assertEquals(4L, rulesCollection.getPrunedCombinationsCount());
+
+      assertEquals(actions, AbstractCommonRulesTest.getActions(TokenIdRulesCollection.of(rulesCollection), sequence));
+
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testThatMaxCombinationsPerPositionMustBePositive() {
+      ((TrieMapRulesCollection) new TrieMapRulesCollectionBuilder(false).build()).withMaxCombinationsPerPosition(0);
+   }
+
    Instructions instructions(int ord, String... names) {
       List<Instruction> instructions = new LinkedList<>();
       for (String name : names) {
@@ -165,4 +165,16 @@ public class TermTest {
        
     }
 
+    @Test
+    public void testReplaceMultiplePlaceHoldersInOrderOfPosition() throws Exception {
+        char[] chars = "a$1b$2c$1".toCharArray();
+        Term outputTerm = new Term(chars, 0, chars.length, null);
+        TermMatches termMatches = new TermMatches();
+        termMatches.add(new TermMatch(new querqy.model.Term(null, "kx"), true,
+                new SimpleComparableCharSequence("x".toCharArray(), 0, 1)));
+        termMatches.add(new TermMatch(new querqy.model.Term(null, "ky"), true,
+                new SimpleComparableCharSequence("y".toCharArray(), 0, 1)));
+        ComparableCharSequence filledPlaceholders = outputTerm.fillPlaceholders(termMatches);
+        assertTrue(filledPlaceholders.toString(), CharSequenceUtil.equals("axbycx", filledPlaceholders));
+    }
 }
@@ -0,0 +1,161 @@
+package querqy.rewrite.commonrules.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static querqy.rewrite.commonrules.AbstractCommonRulesTest.getActions;
+
+import org.junit.Test;
+import querqy.model.InputSequenceElement;
+import querqy.model.Term;
+import querqy.rewrite.commonrules.RuleParseException;
+import querqy.rewrite.commonrules.SimpleCommonRulesParser;
+import querqy.rewrite.commonrules.WhiteSpaceQuerqyParserFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+public class TokenIdRulesCollectionTest {
+
+    static final String RULES = "a =>\n" +
+            "  SYNONYM: s1\n" +
+            "a b =>\n" +
+            "  SYNONYM: s2\n" +
+            "a b c =>\n" +
+            "  SYNONYM: s3\n" +
+            "b c =>\n" +
+            "  SYNONYM: s4\n" +
+            "\"a\" =>\n" +
+            "  SYNONYM: s5\n" +
+            "\"b c =>\n" +
+            "  SYNONYM: s6\n" +
+            "c\" =>\n" +
+            "  SYNONYM: s7\n" +
+            "\"\" =>\n" +
+            "  FILTER: f1\n" +
+            "lap* =>\n" +
+            "  SYNONYM: notebook$1\n" +
+            "la* =>\n" +
+            "  SYNONYM: l$1\n" +
+            "x lap* =>\n" +
+            "  SYNONYM: xnotebook$1\n" +
+            "\"y lap* =>\n" +
+            "  SYNONYM: ynotebook$1\n" +
+            "f1:d =>\n" +
+            "  SYNONYM: s8\n" +
+            "{f1,f2}:e g =>\n" +
+            "  SYNONYM: s9\n" +
+            "Mixed Case =>\n" +
+            "  SYNONYM: s10\n" +
+            "a =>\n" +
+            "  SYNONYM: s11\n";
+
+    @Test
+    public void testThatActionsAreTheSameAsForTrieMapRulesCollection() throws Exception {
+
+        for (final boolean ignoreCase : new boolean[] {true, false}) {
+
+            final TrieMapRulesCollection trieMapRules = parse(RULES, ignoreCase);
+            final TokenIdRulesCollection tokenIdRules = TokenIdRulesCollection.of(trieMapRules);
+
+            for (final String query : new String[] {"a", "a b", "a b c", "x a b c y", "b c", "c", "laptop", "lap",
+                    "la", "l", "x laptop", "y laptop", "x y laptop", "d", "mixed case", "Mixed Case", "z", ""}) {
+                assertActionsEqual(trieMapRules, tokenIdRules, sequence(true, query.split(" ")));
+                assertActionsEqual(trieMapRules, tokenIdRules, sequence(false, query.split(" ")));
+            }
+        }
+
+    }
+
+    @Test
+    public void testThatFieldsAndAlternativesAreMatchedLikeTrieMapRulesCollection() throws Exception {
+
+        final TrieMapRulesCollection trieMapRules = parse(RULES, true);
+        final TokenIdRulesCollection tokenIdRules = TokenIdRulesCollection.of(trieMapRules);
+
+        final PositionSequence<InputSequenceElement> sequence = new PositionSequence<>();
+        sequence.nextPosition();
+        sequence.addElement(new InputBoundary(InputBoundary.Type.LEFT));
+        sequence.nextPosition();
+        sequence.addElement(new Term(null, "f1", "D"));
+        sequence.addElement(new Term(null, "f2", "e"));
+        sequence.addElement(new Term(null, "y"));
+        sequence.nextPosition();
+        sequence.addElement(new Term(null, "g"));
+        sequence.addElement(new Term(null, "LAPTOP"));
+        sequence.addElement(new Term(null, "f1", "lap"));
+        sequence.nextPosition();
+        sequence.addElement(new InputBoundary(InputBoundary.Type.RIGHT));
+
+        final List<Action> expected = getActions(trieMapRules, sequence);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, getActions(tokenIdRules, sequence));
+
+        // a single term that contains a space is matched like a sequence of tokens
+        assertActionsEqual(trieMapRules, tokenIdRules, sequence(false, "a b"));
+        assertActionsEqual(trieMapRules, tokenIdRules, sequence(false, "x", "y laptop"));
+        assertActionsEqual(trieMapRules, tokenIdRules, sequence(false, "la laptop"));
+
+    }
+
+    @Test
+    public void testThatRulesAreShared() throws Exception {
+
+        final TrieMapRulesCollection trieMapRules = parse(RULES, true);
+        final TokenIdRulesCollection tokenIdRules = TokenIdRulesCollection.of(trieMapRules);
+
+        assertEquals(trieMapRules.getInstructions(), tokenIdRules.getInstructions());
+        assertEquals(trieMapRules.getPropertyIndex(), tokenIdRules.getPropertyIndex());
+        assertTrue(tokenIdRules.getTriggerTerms().isPresent());
+        assertEquals(trieMapRules.getTriggerTerms(), tokenIdRules.getTriggerTerms());
+
+    }
+
+    @Test
+    public void testThatEachTokenIsStoredOnce() throws Exception {
+        final TokenIdRulesCollection rules = TokenIdRulesCollection.of(parse("a b =>\n SYNONYM: s1\n" +
+                "b a =>\n SYNONYM: s2\n" +
+                "a b a =>\n SYNONYM: s3\n", true));
+        assertEquals(2, rules.getNumTokens());
+        // root, a, a b, a b a, b, b a
+        assertEquals(6, rules.size());
+    }
+
+    @Test
+    public void testRulesIndexType() throws Exception {
+        final TrieMapRulesCollection rules = parse(RULES, true);
+        assertEquals(rules, RulesIndexType.CHAR_TRIE.createIndex(rules));
+        assertTrue(RulesIndexType.TOKEN_ID.createIndex(rules) instanceof TokenIdRulesCollection);
+    }
+
+    private static void assertActionsEqual(final RulesCollection expected, final RulesCollection actual,
+                                           final PositionSequence<InputSequenceElement> sequence) {
+        assertEquals(getActions(expected, sequence), getActions(actual, sequence));
+    }
+
+    private static TrieMapRulesCollection parse(final String rules, final boolean ignoreCase)
+            throws IOException, RuleParseException {
+        return (TrieMapRulesCollection) new SimpleCommonRulesParser(new StringReader(rules),
+                new WhiteSpaceQuerqyParserFactory(), ignoreCase).parse();
+    }
+
+    private static PositionSequence<InputSequenceElement> sequence(final boolean addBoundaries,
+                                                                   final String... terms) {
+        final PositionSequence<InputSequenceElement> sequence = new PositionSequence<>();
+        if (addBoundaries) {
+            sequence.nextPosition();
+            sequence.addElement(new InputBoundary(InputBoundary.Type.LEFT));
+        }
+        for (final String term : terms) {
+            sequence.nextPosition();
+            sequence.addElement(new Term(null, term));
+        }
+        if (addBoundaries) {
+            sequence.nextPosition();
+            sequence.addElement(new InputBoundary(InputBoundary.Type.RIGHT));
+        }
+        return sequence;
+    }
+
+}
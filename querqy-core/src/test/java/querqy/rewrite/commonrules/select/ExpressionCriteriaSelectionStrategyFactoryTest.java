@@ -167,6 +167,62 @@ public class ExpressionCriteriaSelectionStrategyFactoryTest {
 
     }
 
+    @Test
+    public void testThatSelectionStrategyIsCachedForSameParams() {
+
+        when(requestAdapter.getRequestParam(any())).thenReturn(Optional.of("x desc"));
+        when(requestAdapter.getIntegerRequestParam(eq("querqy.rules1.criteria.limit"))).thenReturn(Optional.of(2));
+        when(requestAdapter.getRequestParams(eq("querqy.rules1.criteria.filter")))
+                .thenReturn(new String[] {"expr1"});
+
+        final SelectionStrategy strategy1 = factory.createSelectionStrategy("rules1", requestAdapter);
+        final SelectionStrategy strategy2 = factory.createSelectionStrategy("rules1", requestAdapter);
+        assertSame(strategy1, strategy2);
+        assertEquals(1L, factory.getCacheHitCount());
+        assertEquals(1L, factory.getCacheMissCount());
+
+        when(requestAdapter.getRequestParams(eq("querqy.rules1.criteria.filter")))
+                .thenReturn(new String[] {"expr2"});
+        final SelectionStrategy strategy3 = factory.createSelectionStrategy("rules1", requestAdapter);
+        assertNotSame(strategy1, strategy3);
+        assertEquals(2L, factory.getCacheMissCount());
+
+    }
+
+    @Test
+    public void testThatSelectionStrategyIsNotCachedIfCacheIsDisabled() {
+
+        factory = new ExpressionCriteriaSelectionStrategyFactory(0);
+
+        when(requestAdapter.getRequestParam(any())).thenReturn(Optional.empty());
+        when(requestAdapter.getRequestParams(any())).thenReturn(new String[] {});
+
+        final SelectionStrategy strategy1 = factory.createSelectionStrategy("rules1", requestAdapter);
+        final SelectionStrategy strategy2 = factory.createSelectionStrategy("rules1", requestAdapter);
+        assertNotSame(strategy1, strategy2);
+        assertEquals(0L, factory.getCacheHitCount());
+
+    }
+
+    @Test
+    public void testThatInvalidParamsAreNotCached() {
+
+        when(requestAdapter.getRequestParam(any())).thenReturn(Optional.of("x"));
+        when(requestAdapter.getRequestParams(any())).thenReturn(new String[] {});
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                factory.createSelectionStrategy("rules1", requestAdapter);
+                fail("Expected IllegalArgumentException");
+            } catch (final IllegalArgumentException e) {
+                // expected
+            }
+        }
+        assertEquals(0L, factory.getCacheHitCount());
+        assertEquals(2L, factory.getCacheMissCount());
+
+    }
+
     static FilterCriterionMatcher filter(final String filterExpression) {
         return new FilterCriterionMatcher(filterExpression);
     }
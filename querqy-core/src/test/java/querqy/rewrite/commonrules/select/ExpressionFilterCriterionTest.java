@@ -0,0 +1,135 @@
+package querqy.rewrite.commonrules.select;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import org.junit.Test;
+import querqy.rewrite.commonrules.model.Instructions;
+import querqy.rewrite.commonrules.model.InstructionsProperties;
+import querqy.rewrite.commonrules.model.PropertyIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ExpressionFilterCriterionTest {
+
+    private static final Configuration JSON_PATH_CONFIG = Configuration.builder()
+            .jsonProvider(new JacksonJsonProvider()).mappingProvider(new JacksonMappingProvider()).build();
+
+    private static final List<String> EXPRESSIONS = Arrays.asList(
+            "$[?(@.group == 'g1')]",
+            "$.[?(@.group == 'g2')]",
+            "$[?(@.group == 2)]",
+            "$[?(@.priority == 2)]",
+            "$[?(@.priority == 2.0)]",
+            "$[?(@.priority == '2')]",
+            "$[?(@._id == 'id3')]",
+            "$[?('a' IN @.tags)]",
+            "$[?('c' IN @.tags)]",
+            "$[?(3 IN @.tags)]",
+            "$[?(@.missing == 'x')]",
+            "$[?(@.priority > 1)]",
+            "$[?(@.tenant)].tenant[?(@.enabled == true)]"
+    );
+
+    @Test
+    public void testThatSimpleExpressionsAreCompiledIntoPredicates() {
+        assertTrue(PropertyPredicate.parse("$[?(@.group == 'g1')]").isPresent());
+        assertTrue(PropertyPredicate.parse("$.[?(@.group == 'g1')]").isPresent());
+        assertTrue(PropertyPredicate.parse("$[?( @.priority == -1.5 )]").isPresent());
+        assertTrue(PropertyPredicate.parse("$[?('a' IN @.tags)]").isPresent());
+
+        assertFalse(PropertyPredicate.parse("$[?(@.priority > 1)]").isPresent());
+        assertFalse(PropertyPredicate.parse("$[?(@.group == 'it\\'s')]").isPresent());
+        assertFalse(PropertyPredicate.parse("$.p3[?(@ == '3')]").isPresent());
+        assertFalse(PropertyPredicate.parse("$[?(@.tenant)].tenant[?(@.enabled == true)]").isPresent());
+    }
+
+    @Test
+    public void testThatPredicatesAndIndexGiveTheSameResultsAsJsonPath() {
+
+        final List<Instructions> rules = createRules();
+
+        final PropertyIndex.Builder builder = new PropertyIndex.Builder();
+        rules.forEach(builder::add);
+        final PropertyIndex index = builder.build().orElseThrow(AssertionError::new);
+
+        for (final String expression : EXPRESSIONS) {
+            final ExpressionFilterCriterion criterion = new ExpressionFilterCriterion(expression);
+            final FilterCriterion indexedCriterion = criterion.forPropertyIndex(index);
+            for (final Instructions instructions : rules) {
+                final boolean expected = instructions.getProperties().matches(expression);
+                final String message = expression + " / " + instructions.getId();
+                assertEquals(message, expected, criterion.isValid(instructions));
+                assertEquals(message, expected, indexedCriterion.isValid(instructions));
+            }
+        }
+    }
+
+    @Test
+    public void testThatIndexedCriterionIsReusedForSameIndex() {
+
+        final PropertyIndex.Builder builder = new PropertyIndex.Builder();
+        createRules().forEach(builder::add);
+        final PropertyIndex index1 = builder.build().orElseThrow(AssertionError::new);
+        final PropertyIndex index2 = builder.build().orElseThrow(AssertionError::new);
+
+        final ExpressionFilterCriterion criterion = new ExpressionFilterCriterion("$[?(@.group == 'g1')]");
+        final FilterCriterion indexed = criterion.forPropertyIndex(index1);
+        assertNotSame(criterion, indexed);
+        assertSame(indexed, criterion.forPropertyIndex(index1));
+        assertNotSame(indexed, criterion.forPropertyIndex(index2));
+
+        final ExpressionFilterCriterion complexCriterion = new ExpressionFilterCriterion("$[?(@.priority > 1)]");
+        assertSame(complexCriterion, complexCriterion.forPropertyIndex(index1));
+    }
+
+    @Test
+    public void testThatIndexIsNotBuiltForDuplicateOrds() {
+        final PropertyIndex.Builder builder = new PropertyIndex.Builder();
+        builder.add(instructions(1, "id1", Collections.singletonMap("group", "g1")));
+        builder.add(instructions(1, "id2", Collections.singletonMap("group", "g2")));
+        assertFalse(builder.build().isPresent());
+    }
+
+    private static List<Instructions> createRules() {
+        final List<Instructions> rules = new ArrayList<>();
+
+        rules.add(instructions(0, "id0", props("group", "g1", "priority", 2, "tags", Arrays.asList("a", "b"))));
+        rules.add(instructions(1, "id1", props("group", "g2", "priority", 2.0, "tags", Arrays.asList("b", 3))));
+        rules.add(instructions(2, "id2", props("group", 2, "priority", "2", "tags", "a")));
+        rules.add(instructions(3, "id3", props("group", Arrays.asList("g1"), "priority", 1,
+                "tags", Collections.emptyList())));
+        rules.add(instructions(4, "id4", props("tenant", Collections.singletonMap("enabled", true))));
+        rules.add(instructions(5, "id5", props("priority", 2L, "tags", Arrays.asList(3, 4))));
+        rules.add(instructions(6, "id6", props("group", Collections.singletonMap("g1", "g1"))));
+
+        return rules;
+    }
+
+    private static Map<String, Object> props(final Object... keyValues) {
+        final Map<String, Object> props = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            props.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return props;
+    }
+
+    private static Instructions instructions(final int ord, final String id, final Map<String, Object> props) {
+        final Map<String, Object> properties = new HashMap<>(props);
+        properties.put(Instructions.StandardPropertyNames.ID, id);
+        return new Instructions(ord, id, Collections.emptyList(),
+                new InstructionsProperties(properties, JSON_PATH_CONFIG));
+    }
+
+}
@@ -8,12 +8,14 @@ import static querqy.rewrite.commonrules.model.InstructionsTestSupport.instructi
 import org.junit.Assert;
 import org.junit.Test;
 import querqy.rewrite.commonrules.model.Action;
+import querqy.rewrite.commonrules.model.Instructions;
 import querqy.rewrite.commonrules.model.TermMatches;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FlatTopRewritingActionCollectorTest {
 
@@ -111,6 +113,64 @@ public class FlatTopRewritingActionCollectorTest {
 
     }
 
+    @Test
+    public void testThatSortedInstructionsAreOnlyIteratedUntilLimitIsReached() {
+
+        final AtomicInteger filterCalls = new AtomicInteger();
+        final TopRewritingActionCollector collector = new FlatTopRewritingActionCollector(COMPARATORS, 2,
+                Collections.singletonList(instructions -> filterCalls.incrementAndGet() > 0));
+
+        collector.offerSortedByOrd(Arrays.asList(instructions(0), instructions(2), instructions(4), instructions(6)),
+                instr -> new Action(instr, new TermMatches(), 0, 1));
+        assertEquals(2, filterCalls.get());
+
+        collector.offerSortedByOrd(Arrays.asList(instructions(1), instructions(3), instructions(5)),
+                instr -> new Action(instr, new TermMatches(), 0, 1));
+        assertEquals(3, filterCalls.get());
+
+        final int[] ords = collector.createActions().stream()
+                .mapToInt(action -> action.getInstructions().getOrd()).toArray();
+        assertTrue(Arrays.equals(new int[] {0, 1}, ords));
+
+    }
+
+    @Test
+    public void testThatSortedInstructionsAreIteratedBackwardsForDescendingOrder() {
+
+        final TopRewritingActionCollector collector = new FlatTopRewritingActionCollector(
+                new PropertySorting("f1", Sorting.SortOrder.DESC).getComparators().subList(1, 2), 2,
+                Collections.emptyList());
+
+        collector.offerSortedByOrd(Arrays.asList(instructions(0), instructions(2), instructions(4), instructions(6)),
+                instr -> new Action(instr, new TermMatches(), 0, 1));
+        collector.offerSortedByOrd(Arrays.asList(instructions(1), instructions(5)),
+                instr -> new Action(instr, new TermMatches(), 0, 1));
 
+        final int[] ords = collector.createActions().stream()
+                .mapToInt(action -> action.getInstructions().getOrd()).toArray();
+        assertTrue(Arrays.equals(new int[] {6, 5}, ords));
+
+    }
+
+    @Test
+    public void testThatActionsOfDuplicateInstructionsAreKept() {
+
+        final Instructions instructions = instructions(1);
+        final TopRewritingActionCollector collector
+                = new FlatTopRewritingActionCollector(COMPARATORS, 2, Collections.emptyList());
+
+        collector.offer(Arrays.asList(instructions(3), instructions), instr -> new Action(instr, new TermMatches(), 0, 1));
+        collector.offer(Collections.singletonList(instructions), instr -> new Action(instr, new TermMatches(), 1, 2));
+        collector.offer(Collections.singletonList(instructions(2)), instr -> new Action(instr, new TermMatches(), 2, 3));
+
+        final List<Action> actions = collector.createActions();
+        assertEquals(3, actions.size());
+        assertEquals(1, actions.get(0).getInstructions().getOrd());
+        assertEquals(0, actions.get(0).getStartPosition());
+        assertEquals(1, actions.get(1).getInstructions().getOrd());
+        assertEquals(1, actions.get(1).getStartPosition());
+        assertEquals(2, actions.get(2).getInstructions().getOrd());
+
+    }
 
 }
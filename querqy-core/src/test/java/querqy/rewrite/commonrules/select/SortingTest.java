@@ -13,9 +13,14 @@ import org.junit.Test;
 import querqy.PriorityComparator;
 import querqy.rewrite.commonrules.model.Instructions;
 import querqy.rewrite.commonrules.model.InstructionsTestSupport;
+import querqy.rewrite.commonrules.model.PropertyIndex;
 import querqy.rewrite.commonrules.select.Sorting.SortOrder;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public class SortingTest {
 
@@ -205,4 +210,48 @@ public class SortingTest {
         SortOrder.fromString("");
     }
 
+    @Test
+    public void testThatIndexedComparatorsSortLikePropertyComparators() {
+
+        final List<Instructions> instructionsList = Arrays.asList(
+                InstructionsTestSupport.instructions(0, "f1", 3),
+                instructions(1),
+                InstructionsTestSupport.instructions(2, "f1", 1),
+                InstructionsTestSupport.instructions(3, "f1", 10),
+                InstructionsTestSupport.instructions(4, "f1", 3),
+                instructions(5),
+                InstructionsTestSupport.instructions(6, "f1", -2));
+
+        final PropertyIndex.Builder builder = new PropertyIndex.Builder();
+        instructionsList.forEach(builder::add);
+        final PropertyIndex propertyIndex = builder.build().orElseThrow(AssertionError::new);
+
+        for (final Sorting sorting : Arrays.asList(sortAsc, sortDesc)) {
+            final List<Comparator<Instructions>> indexed = sorting.getComparators(propertyIndex);
+            assertThat(indexed.get(0), Matchers.instanceOf(PropertySorting.IndexedPropertyComparator.class));
+
+            final List<Instructions> expected = new ArrayList<>(instructionsList);
+            expected.sort(new PriorityComparator<>(sorting.getComparators()));
+            final List<Instructions> actual = new ArrayList<>(instructionsList);
+            actual.sort(new PriorityComparator<>(indexed));
+            assertEquals(expected, actual);
+        }
+
+        final List<Instructions> sorted = new ArrayList<>(instructionsList);
+        sorted.sort(new PriorityComparator<>(sortAsc.getComparators(propertyIndex)));
+        assertEquals(Arrays.asList(6, 2, 0, 4, 3, 1, 5),
+                sorted.stream().map(Instructions::getOrd).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testThatComparatorsAreNotIndexedForMixedValueTypes() {
+
+        final PropertyIndex.Builder builder = new PropertyIndex.Builder();
+        builder.add(InstructionsTestSupport.instructions(0, "f1", 3));
+        builder.add(InstructionsTestSupport.instructions(1, "f1", "a"));
+        final PropertyIndex propertyIndex = builder.build().orElseThrow(AssertionError::new);
+
+        assertEquals(sortAsc.getComparators(), sortAsc.getComparators(propertyIndex));
+    }
+
 }
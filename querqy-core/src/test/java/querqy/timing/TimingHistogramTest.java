@@ -0,0 +1,72 @@
+package querqy.timing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TimingHistogramTest {
+
+    @Test
+    public void testThatSmallValuesAreExact() {
+        final TimingHistogram histogram = new TimingHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.recordValue(i);
+        }
+        assertEquals(100L, histogram.getTotalCount());
+        assertEquals(50L, histogram.getValueAtPercentile(50));
+        assertEquals(99L, histogram.getValueAtPercentile(99));
+        assertEquals(100L, histogram.getValueAtPercentile(100));
+        assertEquals(1L, histogram.getValueAtPercentile(0));
+        assertEquals(50.5, histogram.getMean(), 0.0001);
+        assertEquals(100L, histogram.getMax());
+    }
+
+    @Test
+    public void testThatLargeValuesAreWithinRelativeError() {
+        final TimingHistogram histogram = new TimingHistogram();
+        for (long value = 1_000L; value <= 1_000_000L; value += 1_000L) {
+            histogram.recordValue(value);
+        }
+        final long p50 = histogram.getValueAtPercentile(50);
+        assertTrue(p50 >= 500_000L && p50 <= 500_000L * 65 / 64);
+        final long p99 = histogram.getValueAtPercentile(99);
+        assertTrue(p99 >= 990_000L && p99 <= 990_000L * 65 / 64);
+        assertEquals(1_000_000L, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testThatBucketsAreContiguous() {
+        long expectedLowest = 0L;
+        for (int i = 0; i < TimingHistogram.NUM_BUCKETS; i++) {
+            assertEquals(i, TimingHistogram.bucketIndex(expectedLowest));
+            final long highest = TimingHistogram.highestValueInBucket(i);
+            assertEquals(i, TimingHistogram.bucketIndex(highest));
+            expectedLowest = highest + 1L;
+        }
+        assertEquals(Long.MAX_VALUE, TimingHistogram.highestValueInBucket(TimingHistogram.NUM_BUCKETS - 1));
+    }
+
+    @Test
+    public void testThatEmptyHistogramReturnsZero() {
+        final TimingHistogram histogram = new TimingHistogram();
+        assertEquals(0L, histogram.getValueAtPercentile(99));
+        assertEquals(0d, histogram.getMean(), 0d);
+    }
+
+    @Test
+    public void testReset() {
+        final TimingHistogram histogram = new TimingHistogram();
+        histogram.recordValue(5L);
+        histogram.reset();
+        assertEquals(0L, histogram.getTotalCount());
+        assertEquals(0L, histogram.getMax());
+        assertEquals(0L, histogram.getValueAtPercentile(50));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatPercentileMustNotExceed100() {
+        new TimingHistogram().getValueAtPercentile(100.1);
+    }
+
+}
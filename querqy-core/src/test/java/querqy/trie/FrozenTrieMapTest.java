@@ -0,0 +1,214 @@
+package querqy.trie;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class FrozenTrieMapTest {
+
+    @Test
+    public void testThatEmptyMapAlwaysReturnsUnknownState() {
+        final FrozenTrieMap<Integer> map = new TrieMap<Integer>().freeze();
+        final State<Integer> state = map.get("abc").getStateForCompleteSequence();
+        assertFalse(state.isKnown());
+        assertFalse(state.isFinal());
+        assertEquals(-1, state.getIndex());
+        assertFalse(map.iterator().hasNext());
+    }
+
+    @Test
+    public void testThatBlankLookupSequenceAlwaysReturnsUnknownState() {
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        trieMap.put("abc", 1);
+        final State<Integer> state = trieMap.freeze().get("").getStateForCompleteSequence();
+        assertFalse(state.isKnown());
+        assertEquals(-1, state.getIndex());
+    }
+
+    @Test
+    public void testThatCompleteSequencesMatchLikeInTrieMap() {
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        trieMap.put("abc", 1);
+        trieMap.put("ab", 2);
+        trieMap.put("b", 3);
+        trieMap.put("zab", 4);
+        trieMap.put("aaa", 5);
+
+        final FrozenTrieMap<Integer> frozen = trieMap.freeze();
+
+        for (final String seq : new String[] {"a", "ab", "abc", "abcd", "b", "ba", "z", "za", "zab", "aaa", "aa", "c"}) {
+            assertSameState(trieMap.get(seq).getStateForCompleteSequence(),
+                    frozen.get(seq).getStateForCompleteSequence());
+        }
+    }
+
+    @Test
+    public void testResumingFromKnownState() {
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        trieMap.put("abc", 1);
+        trieMap.put("ab", 2);
+        trieMap.put("ab de", 3);
+
+        final FrozenTrieMap<Integer> frozen = trieMap.freeze();
+
+        final State<Integer> state = frozen.get("ab").getStateForCompleteSequence();
+        assertTrue(state.isFinal());
+        assertEquals((Integer) 2, state.getValue());
+        assertTrue(state.nodeIndex > 0);
+
+        final State<Integer> state2 = frozen.get("c", state).getStateForCompleteSequence();
+        assertTrue(state2.isFinal());
+        assertEquals((Integer) 1, state2.getValue());
+        assertEquals(0, state2.getIndex());
+
+        final State<Integer> state3 = frozen.get(" de", state).getStateForCompleteSequence();
+        assertTrue(state3.isFinal());
+        assertEquals((Integer) 3, state3.getValue());
+
+        assertFalse(frozen.get("x", state).getStateForCompleteSequence().isKnown());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatStateFromTrieMapCannotBeUsedForResuming() {
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        trieMap.put("abc", 1);
+        trieMap.freeze().get("c", trieMap.get("ab").getStateForCompleteSequence());
+    }
+
+    @Test
+    public void testThatPrefixesAreReportedLikeInTrieMap() {
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        trieMap.putPrefix("a", 1);
+        trieMap.putPrefix("abc", 2);
+        trieMap.put("abcd", 3);
+        trieMap.putPrefix("x y", 4);
+
+        final FrozenTrieMap<Integer> frozen = trieMap.freeze();
+
+        for (final String seq : new String[] {"a", "ab", "abc", "abcd", "abcde", "x", "x y", "x yz", "x yzz"}) {
+            final States<Integer> expected = trieMap.get(seq);
+            final States<Integer> actual = frozen.get(seq);
+            assertSameState(expected.getStateForCompleteSequence(), actual.getStateForCompleteSequence());
+            assertSamePrefixes(expected.getPrefixes(), actual.getPrefixes());
+        }
+
+        final State<Integer> xState = frozen.get("x").getStateForCompleteSequence();
+        final States<Integer> resumed = frozen.get(" yzz", xState);
+        final States<Integer> expected = trieMap.get(" yzz", trieMap.get("x").getStateForCompleteSequence());
+        assertSamePrefixes(expected.getPrefixes(), resumed.getPrefixes());
+        assertEquals(0, resumed.getPrefixes().get(0).getIndex());
+    }
+
+    @Test
+    public void testThatValueMapperIsAppliedToAllValues() {
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        trieMap.put("abc", 1);
+        trieMap.putPrefix("ab", 2);
+        trieMap.put("b", 3);
+
+        final FrozenTrieMap<String> frozen = FrozenTrieMap.of(trieMap, i -> "v" + i);
+
+        assertEquals("v1", frozen.get("abc").getStateForCompleteSequence().getValue());
+        assertEquals("v3", frozen.get("b").getStateForCompleteSequence().getValue());
+        assertEquals("v2", frozen.get("abx").getPrefixes().get(0).getValue());
+        assertNull(frozen.get("ab").getStateForCompleteSequence().getValue());
+    }
+
+    @Test
+    public void testIterator() {
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        trieMap.put("abc", 1);
+        trieMap.putPrefix("ab", 2);
+        trieMap.put("ab", 3);
+        trieMap.put("b", 4);
+        trieMap.put("cde", 5);
+
+        final List<Integer> values = new ArrayList<>();
+        trieMap.freeze().forEach(values::add);
+
+        assertThat(values, containsInAnyOrder(1, 2, 3, 4, 5));
+
+    }
+
+    @Test
+    public void testThatChildrenAreSortedByCharacter() {
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        trieMap.put("c", 1);
+        trieMap.put("a", 2);
+        trieMap.put("b", 3);
+
+        final FrozenTrieMap<Integer> frozen = trieMap.freeze();
+        assertEquals(4, frozen.size());
+
+        final List<Character> labels = new ArrayList<>();
+        for (int i = 1; i < frozen.size(); i++) {
+            labels.add(frozen.labels[i]);
+        }
+        assertThat(labels, contains('a', 'b', 'c'));
+
+    }
+
+    @Test
+    public void testThatWrittenTrieCanBeRead() throws IOException {
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        trieMap.put("abc", 1);
+        trieMap.putPrefix("ab", 2);
+        trieMap.put("ab", 3);
+        trieMap.put("b", 4);
+        trieMap.putPrefix("x y", 5);
+
+        final FrozenTrieMap<Integer> frozen = trieMap.freeze();
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        frozen.writeTo(new DataOutputStream(bytes), (out, value) -> out.writeInt(value));
+
+        final FrozenTrieMap<Integer> read = FrozenTrieMap.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), java.io.DataInput::readInt);
+
+        assertEquals(frozen.size(), read.size());
+
+        for (final String seq : new String[] {"a", "ab", "abc", "abcd", "b", "bc", "x", "x y", "x yz"}) {
+            final States<Integer> expected = frozen.get(seq);
+            final States<Integer> actual = read.get(seq);
+            assertSameState(expected.getStateForCompleteSequence(), actual.getStateForCompleteSequence());
+            assertSamePrefixes(expected.getPrefixes(), actual.getPrefixes());
+        }
+    }
+
+    private static void assertSameState(final State<Integer> expected, final State<Integer> actual) {
+        assertEquals(expected.isKnown(), actual.isKnown());
+        assertEquals(expected.isFinal(), actual.isFinal());
+        assertEquals(expected.getValue(), actual.getValue());
+        assertEquals(expected.getIndex(), actual.getIndex());
+    }
+
+    private static void assertSamePrefixes(final List<State<Integer>> expected, final List<State<Integer>> actual) {
+        if (expected == null) {
+            assertTrue(actual == null || actual.isEmpty());
+        } else {
+            assertThat(actual, not(empty()));
+            assertEquals(expected.stream().map(State::getValue).collect(Collectors.toList()),
+                    actual.stream().map(State::getValue).collect(Collectors.toList()));
+            assertEquals(expected.stream().map(State::getIndex).collect(Collectors.toList()),
+                    actual.stream().map(State::getIndex).collect(Collectors.toList()));
+        }
+    }
+
+}
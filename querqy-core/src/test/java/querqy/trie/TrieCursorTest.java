@@ -0,0 +1,171 @@
+package querqy.trie;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TrieCursorTest {
+
+    private RecordingCallback callback;
+
+    @Before
+    public void setUp() {
+        callback = new RecordingCallback();
+    }
+
+    @Test
+    public void testCompleteMatchFromRoot() {
+        final TrieMap<String> trieMap = new TrieMap<>();
+        trieMap.put("abc", "v1");
+        trieMap.put("ab", "v2");
+
+        final TrieCursor<String> cursor = trieMap.freeze().cursor();
+
+        cursor.start(FrozenTrieMap.ROOT);
+        assertTrue(cursor.step("abc"));
+        assertTrue(cursor.finish(callback) > FrozenTrieMap.ROOT);
+        assertThat(callback.completeMatches, contains("v1"));
+        assertThat(callback.prefixMatches, empty());
+
+    }
+
+    @Test
+    public void testThatKnownNonFinalNodeReturnsPositionWithoutMatch() {
+        final TrieMap<String> trieMap = new TrieMap<>();
+        trieMap.put("abc", "v1");
+
+        final TrieCursor<String> cursor = trieMap.freeze().cursor();
+
+        cursor.start(FrozenTrieMap.ROOT);
+        assertTrue(cursor.step("ab"));
+        assertTrue(cursor.finish(callback) > FrozenTrieMap.ROOT);
+        assertThat(callback.completeMatches, empty());
+    }
+
+    @Test
+    public void testThatUnknownSequenceReturnsNoPosition() {
+        final TrieMap<String> trieMap = new TrieMap<>();
+        trieMap.put("abc", "v1");
+
+        final TrieCursor<String> cursor = trieMap.freeze().cursor();
+
+        cursor.start(FrozenTrieMap.ROOT);
+        assertFalse(cursor.step("abx"));
+        assertFalse(cursor.step('c'));
+        assertEquals(-1, cursor.finish(callback));
+        assertThat(callback.completeMatches, empty());
+
+        cursor.start(FrozenTrieMap.ROOT);
+        assertEquals(-1, cursor.finish(callback));
+    }
+
+    @Test
+    public void testContinuingFromSavedNode() {
+        final TrieMap<String> trieMap = new TrieMap<>();
+        trieMap.put("ab", "v1");
+        trieMap.put("ab cd", "v2");
+
+        final TrieCursor<String> cursor = trieMap.freeze().cursor();
+
+        cursor.start(FrozenTrieMap.ROOT);
+        cursor.step("ab");
+        final int node = cursor.finish(callback);
+        assertThat(callback.completeMatches, contains("v1"));
+
+        cursor.start(node);
+        cursor.step(' ');
+        cursor.step("CD", true);
+        assertTrue(cursor.finish(callback) > node);
+        assertThat(callback.completeMatches, contains("v1", "v2"));
+
+    }
+
+    @Test
+    public void testThatPrefixMatchesAreReportedAfterCompleteMatchLongestFirst() {
+        final TrieMap<String> trieMap = new TrieMap<>();
+        trieMap.putPrefix("a", "p1");
+        trieMap.putPrefix("abc", "p2");
+        trieMap.put("abcd", "v1");
+
+        final TrieCursor<String> cursor = trieMap.freeze().cursor();
+
+        cursor.start(FrozenTrieMap.ROOT);
+        cursor.step("abcd");
+        cursor.finish(callback);
+
+        assertThat(callback.events, contains("complete:v1", "prefix:p2:2", "prefix:p1:0"));
+
+    }
+
+    @Test
+    public void testThatPrefixMatchesRemainIfSequenceDoesNotMatchCompletely() {
+        final TrieMap<String> trieMap = new TrieMap<>();
+        trieMap.putPrefix("ab", "p1");
+
+        final TrieCursor<String> cursor = trieMap.freeze().cursor();
+
+        cursor.start(FrozenTrieMap.ROOT);
+        assertFalse(cursor.step("abxyz"));
+        assertEquals(-1, cursor.finish(callback));
+        assertThat(callback.events, contains("prefix:p1:1"));
+
+        // prefix must be followed by at least one char
+        callback.events.clear();
+        cursor.start(FrozenTrieMap.ROOT);
+        cursor.step("ab");
+        cursor.finish(callback);
+        assertThat(callback.events, empty());
+    }
+
+    @Test
+    public void testThatCursorCanBeReused() {
+        final TrieMap<String> trieMap = new TrieMap<>();
+        trieMap.putPrefix("ab", "p1");
+        trieMap.put("xy", "v1");
+
+        final TrieCursor<String> cursor = trieMap.freeze().cursor();
+
+        cursor.start(FrozenTrieMap.ROOT);
+        cursor.step("abc");
+
+        // start again without finishing the previous lookup
+        cursor.start(FrozenTrieMap.ROOT);
+        cursor.step("xy");
+        cursor.finish(callback);
+        assertThat(callback.events, contains("complete:v1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatInvalidNodeCannotBeUsedToStart() {
+        new TrieMap<String>().freeze().cursor().start(1);
+    }
+
+    static class RecordingCallback implements MatchCallback<String> {
+
+        final List<String> completeMatches = new ArrayList<>();
+        final List<String> prefixMatches = new ArrayList<>();
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onCompleteMatch(final String value, final int node) {
+            completeMatches.add(value);
+            events.add("complete:" + value);
+        }
+
+        @Override
+        public void onPrefixMatch(final String value, final int node, final int index) {
+            prefixMatches.add(value);
+            events.add("prefix:" + value + ":" + index);
+        }
+    }
+
+}
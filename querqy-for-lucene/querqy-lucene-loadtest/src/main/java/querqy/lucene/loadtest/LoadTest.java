@@ -0,0 +1,302 @@
+package querqy.lucene.loadtest;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+import querqy.lucene.LuceneQueries;
+import querqy.lucene.QueryParsingController;
+import querqy.lucene.rewrite.TermExistenceFilter;
+import querqy.lucene.rewrite.cache.AnalysisCache;
+import querqy.lucene.rewrite.cache.LRUTermQueryCache;
+import querqy.lucene.rewrite.cache.PRMSFieldProbabilityCache;
+import querqy.lucene.rewrite.cache.TermStatsCache;
+import querqy.rewrite.RewriteChain;
+import querqy.rewrite.RewriterFactory;
+import querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory;
+import querqy.rewrite.commonrules.WhiteSpaceQuerqyParserFactory;
+import querqy.rewrite.commonrules.select.ExpressionCriteriaSelectionStrategyFactory;
+import querqy.timing.RequestTimings;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>Replays a query log against an in-memory Lucene index and reports throughput and latency percentiles.</p>
+ *
+ * <p>Each query is processed like in a search engine integration: the {@link QueryParsingController} parses and
+ * rewrites the query and creates the Lucene query, which is then executed by an {@link IndexSearcher}. The latency is
+ * split into rewriting, query building and searching, so that configurations (for example, DFC vs. plain similarity
+ * scoring, FIXED vs. PRMS field boosting or a term query cache) can be compared on the same data.</p>
+ *
+ * <p>The replay runs on a configurable number of threads. Each thread replays the full query log, starting at a
+ * different offset so that the threads don't process the same query at the same time. Everything runs in-process
+ * and offline.</p>
+ */
+public class LoadTest {
+
+    static final int MAX_SYNTHETIC_QUERY_TERMS = 5_000;
+
+    private final LoadTestConfig config;
+    private final PrintStream out;
+
+    // shared between all requests of a run
+    private LRUTermQueryCache termQueryCache = null;
+    private AnalysisCache analysisCache = null;
+    private TermStatsCache termStatsCache = null;
+    private PRMSFieldProbabilityCache prmsFieldProbabilityCache = null;
+    private TermExistenceFilter termExistenceFilter = null;
+    private Executor searchExecutor = null;
+
+    public LoadTest(final LoadTestConfig config, final PrintStream out) {
+        this.config = config;
+        this.out = out;
+    }
+
+    public static void main(final String[] args) throws Exception {
+
+        for (final String arg : args) {
+            if ("-help".equals(arg) || "-h".equals(arg)) {
+                System.out.println(LoadTestConfig.USAGE);
+                return;
+            }
+        }
+
+        final LoadTestConfig config;
+        try {
+            config = LoadTestConfig.parse(args);
+        } catch (final IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println();
+            System.err.println(LoadTestConfig.USAGE);
+            System.exit(1);
+            return;
+        }
+
+        final LoadTestReport report = new LoadTest(config, System.out).run();
+        System.exit(report.getErrors() == 0L ? 0 : 2);
+    }
+
+    /**
+     * Build the index and the rewrite chain, replay the query log and print the report.
+     *
+     * @return The report of the measured passes
+     * @throws IOException if the corpus, the rules or the query log cannot be read
+     * @throws InterruptedException if the replay was interrupted
+     */
+    public LoadTestReport run() throws IOException, InterruptedException {
+
+        out.println("Config: " + config);
+
+        final Analyzer analyzer = new StandardAnalyzer();
+
+        long start = System.nanoTime();
+        try (final LoadTestIndex index = LoadTestIndex.build(config, analyzer)) {
+
+            out.printf(Locale.ROOT, "Indexed %d documents with fields %s in %.3f s%n", index.numDocs(),
+                    index.getFields(), seconds(start));
+
+            if (config.queryFields.isEmpty()) {
+                for (final String field : index.getFields()) {
+                    config.queryFields.put(field, 1f);
+                }
+            }
+            if (config.queryFields.isEmpty()) {
+                throw new IllegalArgumentException("No query fields");
+            }
+
+            start = System.nanoTime();
+            final RewriteChain rewriteChain = createRewriteChain();
+            out.printf(Locale.ROOT, "Loaded %d rewriter(s) in %.3f s%n", config.rules.size(), seconds(start));
+
+            final List<String> queries = config.queries != null
+                    ? QueryLog.read(config.queries)
+                    : QueryLog.synthetic(index.getFrequentTerms(config.queryFields.keySet(),
+                    MAX_SYNTHETIC_QUERY_TERMS), config.numQueries, config.seed);
+            out.printf(Locale.ROOT, "Replaying %d queries on %d thread(s), %d warmup and %d measured pass(es)%n",
+                    queries.size(), config.threads, config.warmupPasses, config.passes);
+
+            termQueryCache = config.termQueryCacheMB > 0
+                    ? new LRUTermQueryCache(config.termQueryCacheMB * 1024L * 1024L) : null;
+            analysisCache = config.analysisCacheSize > 0 ? new AnalysisCache(config.analysisCacheSize) : null;
+            termStatsCache = config.termStatsCacheSize > 0 ? new TermStatsCache(config.termStatsCacheSize) : null;
+            prmsFieldProbabilityCache = config.prmsCacheSize > 0
+                    ? new PRMSFieldProbabilityCache(config.prmsCacheSize) : null;
+            searchExecutor = index.getSearchExecutor();
+
+            if (!config.termFilterFields.isEmpty()) {
+                start = System.nanoTime();
+                termExistenceFilter = TermExistenceFilter.build(index.getSearcher().getIndexReader(),
+                        config.termFilterFields);
+                out.printf(Locale.ROOT, "Built term existence filter for fields %s (%d bytes) in %.3f s%n",
+                        config.termFilterFields, termExistenceFilter.ramBytesUsed(), seconds(start));
+            }
+
+            if (config.warmupPasses > 0) {
+                replay(queries, config.warmupPasses, index.getSearcher(), rewriteChain, analyzer,
+                        new LoadTestReport());
+            }
+
+            final LoadTestReport report = new LoadTestReport();
+            replay(queries, config.passes, index.getSearcher(), rewriteChain, analyzer, report);
+
+            out.println();
+            report.print(out);
+            if (termQueryCache != null) {
+                out.printf(Locale.ROOT, "%nTerm query cache: size=%d, ramBytesUsed=%d, hits=%d, misses=%d, " +
+                                "evictions=%d%n", termQueryCache.size(), termQueryCache.ramBytesUsed(),
+                        termQueryCache.getHitCount(), termQueryCache.getMissCount(),
+                        termQueryCache.getEvictionCount());
+            }
+            if (analysisCache != null) {
+                out.printf(Locale.ROOT, "%nAnalysis cache: size=%d, hits=%d, misses=%d, evictions=%d%n",
+                        analysisCache.size(), analysisCache.getHitCount(), analysisCache.getMissCount(),
+                        analysisCache.getEvictionCount());
+            }
+            if (termStatsCache != null) {
+                termStatsCache.forContext(index.getSearcher().getTopReaderContext()).ifPresent(readerCache ->
+                        out.printf(Locale.ROOT, "%nTerm stats cache: size=%d, hits=%d, misses=%d, evictions=%d%n",
+                                readerCache.size(), readerCache.getHitCount(), readerCache.getMissCount(),
+                                readerCache.getEvictionCount()));
+            }
+            if (prmsFieldProbabilityCache != null) {
+                prmsFieldProbabilityCache.forReader(index.getSearcher().getIndexReader()).ifPresent(readerCache ->
+                        out.printf(Locale.ROOT, "%nPRMS cache: size=%d, hits=%d, misses=%d, evictions=%d%n",
+                                readerCache.size(), readerCache.getHitCount(), readerCache.getMissCount(),
+                                readerCache.getEvictionCount()));
+            }
+
+            return report;
+
+        }
+    }
+
+    private RewriteChain createRewriteChain() throws IOException {
+
+        final List<RewriterFactory> factories = new ArrayList<>(config.rules.size());
+
+        for (final Path rules : config.rules) {
+            final String id = rules.getFileName().toString();
+            factories.add(new SimpleCommonRulesRewriterFactory(id,
+                    Files.newBufferedReader(rules, StandardCharsets.UTF_8), new WhiteSpaceQuerqyParserFactory(), true,
+                    Collections.emptyMap(), new ExpressionCriteriaSelectionStrategyFactory(), true));
+        }
+
+        return new RewriteChain(factories, config.resultCacheSize);
+    }
+
+    private void replay(final List<String> queries, final int passes, final IndexSearcher searcher,
+                        final RewriteChain rewriteChain, final Analyzer analyzer, final LoadTestReport report)
+            throws InterruptedException {
+
+        final ExecutorService executor = Executors.newFixedThreadPool(config.threads);
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final AtomicReference<Exception> firstError = new AtomicReference<>();
+
+        try {
+
+            final List<Future<?>> futures = new ArrayList<>(config.threads);
+
+            for (int t = 0; t < config.threads; t++) {
+
+                final int offset = (int) ((long) queries.size() * t / config.threads);
+
+                futures.add(executor.submit(() -> {
+
+                    startSignal.await();
+
+                    for (int pass = 0; pass < passes; pass++) {
+                        for (int i = 0; i < queries.size(); i++) {
+                            final String query = queries.get((offset + i) % queries.size());
+                            try {
+                                execute(query, searcher, rewriteChain, analyzer, report);
+                            } catch (final Exception e) {
+                                report.recordError();
+                                if (firstError.compareAndSet(null, e)) {
+                                    out.println("Error for query '" + query + "': " + e);
+                                }
+                            }
+                        }
+                    }
+
+                    return null;
+                }));
+
+            }
+
+            final long start = System.nanoTime();
+            startSignal.countDown();
+
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (final ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+
+            report.setElapsedNanos(System.nanoTime() - start);
+
+        } finally {
+            executor.shutdownNow();
+        }
+
+    }
+
+    private void execute(final String queryString, final IndexSearcher searcher, final RewriteChain rewriteChain,
+                         final Analyzer analyzer, final LoadTestReport report)
+            throws Exception {
+
+        final RequestTimings timings = new RequestTimings();
+
+        final long start = System.nanoTime();
+
+        final LuceneQueries luceneQueries = new QueryParsingController(new LoadTestRequestAdapter(queryString,
+                config, rewriteChain, analyzer, termQueryCache, analysisCache, termStatsCache,
+                prmsFieldProbabilityCache, termExistenceFilter, searchExecutor, timings)).process();
+
+        final Query query;
+        if (luceneQueries.filterQueries == null || luceneQueries.filterQueries.isEmpty()) {
+            query = luceneQueries.mainQuery;
+        } else {
+            final BooleanQuery.Builder builder = new BooleanQuery.Builder();
+            builder.add(luceneQueries.mainQuery, BooleanClause.Occur.MUST);
+            for (final Query filterQuery : luceneQueries.filterQueries) {
+                builder.add(filterQuery, BooleanClause.Occur.FILTER);
+            }
+            query = builder.build();
+        }
+
+        final long searchStart = System.nanoTime();
+
+        final TopDocs topDocs = searcher.search(query, config.rows);
+
+        final long end = System.nanoTime();
+
+        final long rewriteNanos = timings.getNanos(QueryParsingController.TIMING_REWRITE);
+        report.record(rewriteNanos, searchStart - start - rewriteNanos, end - searchStart, topDocs.totalHits.value);
+
+    }
+
+    private static double seconds(final long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000_000d;
+    }
+
+}
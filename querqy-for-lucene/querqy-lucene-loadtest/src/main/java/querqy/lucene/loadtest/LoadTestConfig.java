@@ -0,0 +1,184 @@
+package querqy.lucene.loadtest;
+
+import querqy.lucene.QuerySimilarityScoring;
+import querqy.lucene.rewrite.SearchFieldsAndBoosting.FieldBoostModel;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <p>The configuration of a {@link LoadTest} run, parsed from the command line.</p>
+ */
+public class LoadTestConfig {
+
+    static final String USAGE = "Usage: java -jar querqy-loadtest.jar [options]\n" +
+            "\n" +
+            "Index:\n" +
+            "  -corpus <file>          JSONL file, one document per line. String values of top-level fields\n" +
+            "                          are indexed as text. Default: a synthetic corpus\n" +
+            "  -docs <n>               Number of synthetic documents (default: 100000)\n" +
+            "  -seed <n>               Seed for the synthetic corpus and queries (default: 4711)\n" +
+            "\n" +
+            "Rewriting:\n" +
+            "  -rules <file>           Common rules file, can be repeated. The rewriters are applied in this order\n" +
+            "  -resultCache <n>        Size of the rewrite chain result cache (default: 0 = off)\n" +
+            "\n" +
+            "Query building:\n" +
+            "  -qf <fields>            Query fields and boosts, for example 'title^3 body'. Default: all corpus\n" +
+            "                          fields with boost 1\n" +
+            "  -scoring <s>            DFC, SIMILARITY_SCORE_ON or SIMILARITY_SCORE_OFF (default: DFC)\n" +
+            "  -fieldBoostModel <m>    FIXED or PRMS (default: FIXED)\n" +
+            "  -tie <f>                Tiebreaker (default: 0)\n" +
+            "  -termQueryCache <mb>    Memory budget in MB of the term query cache shared between requests\n" +
+            "                          (default: 0 = off)\n" +
+            "  -analysisCache <n>      Size of the analysis cache shared between requests (default: 0 = off)\n" +
+            "  -termStatsCache <n>     Size of the DFC term statistics cache shared between requests (default: 0 = off)\n" +
+            "  -prmsCache <n>          Size of the PRMS field probability cache shared between requests\n" +
+            "                          (default: 0 = off)\n" +
+            "  -termFilter <fields>    Fields, for example 'title body', for which query terms that don't exist in\n" +
+            "                          the index are pruned (default: none)\n" +
+            "\n" +
+            "Replay:\n" +
+            "  -queries <file>         Query log, one query per line. Default: synthetic queries\n" +
+            "  -numQueries <n>         Number of synthetic queries (default: 10000)\n" +
+            "  -threads <n>            Number of threads replaying the query log (default: 1)\n" +
+            "  -warmup <n>             Number of passes over the query log before measuring (default: 1)\n" +
+            "  -passes <n>             Number of measured passes over the query log (default: 3)\n" +
+            "  -rows <n>               Number of top documents to collect per query (default: 10)\n" +
+            "  -searchThreads <n>      Number of threads for searching segments concurrently. Also used for\n" +
+            "                          reading the DFC term statistics (default: 0 = search on the replay thread)\n";
+
+    Path corpus = null;
+    int numDocs = 100_000;
+    long seed = 4711L;
+
+    final List<Path> rules = new ArrayList<>();
+    int resultCacheSize = 0;
+
+    final Map<String, Float> queryFields = new LinkedHashMap<>();
+    QuerySimilarityScoring scoring = QuerySimilarityScoring.DFC;
+    FieldBoostModel fieldBoostModel = FieldBoostModel.FIXED;
+    float tiebreaker = 0f;
+    int termQueryCacheMB = 0;
+    int analysisCacheSize = 0;
+    int termStatsCacheSize = 0;
+    int prmsCacheSize = 0;
+    final List<String> termFilterFields = new ArrayList<>();
+
+    Path queries = null;
+    int numQueries = 10_000;
+    int threads = 1;
+    int warmupPasses = 1;
+    int passes = 3;
+    int rows = 10;
+    int searchThreads = 0;
+
+    /**
+     * Parse the command line arguments.
+     *
+     * @param args The arguments
+     * @return The configuration
+     * @throws IllegalArgumentException if an argument is unknown or has an invalid value
+     */
+    public static LoadTestConfig parse(final String[] args) {
+
+        final LoadTestConfig config = new LoadTestConfig();
+
+        for (int i = 0; i < args.length; i++) {
+
+            final String name = args[i];
+            if (i == args.length - 1) {
+                throw new IllegalArgumentException("Missing value for " + name);
+            }
+            final String value = args[++i];
+
+            switch (name) {
+                case "-corpus": config.corpus = Paths.get(value); break;
+                case "-docs": config.numDocs = positiveInt(name, value); break;
+                case "-seed": config.seed = Long.parseLong(value); break;
+                case "-rules": config.rules.add(Paths.get(value)); break;
+                case "-resultCache": config.resultCacheSize = Integer.parseInt(value); break;
+                case "-qf": config.queryFields.putAll(parseQueryFields(value)); break;
+                case "-scoring":
+                    config.scoring = QuerySimilarityScoring.valueOf(value.trim().toUpperCase(Locale.ROOT));
+                    break;
+                case "-fieldBoostModel":
+                    config.fieldBoostModel = FieldBoostModel.valueOf(value.trim().toUpperCase(Locale.ROOT));
+                    break;
+                case "-tie": config.tiebreaker = Float.parseFloat(value); break;
+                case "-termQueryCache": config.termQueryCacheMB = Integer.parseInt(value); break;
+                case "-analysisCache": config.analysisCacheSize = Integer.parseInt(value); break;
+                case "-termStatsCache": config.termStatsCacheSize = Integer.parseInt(value); break;
+                case "-prmsCache": config.prmsCacheSize = Integer.parseInt(value); break;
+                case "-termFilter": config.termFilterFields.addAll(parseQueryFields(value).keySet()); break;
+                case "-queries": config.queries = Paths.get(value); break;
+                case "-numQueries": config.numQueries = positiveInt(name, value); break;
+                case "-threads": config.threads = positiveInt(name, value); break;
+                case "-warmup": config.warmupPasses = Integer.parseInt(value); break;
+                case "-passes": config.passes = positiveInt(name, value); break;
+                case "-rows": config.rows = positiveInt(name, value); break;
+                case "-searchThreads": config.searchThreads = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option: " + name);
+            }
+        }
+
+        return config;
+    }
+
+    /**
+     * Parse query fields in the format of the qf parameter (fields separated by whitespace, optional boost after ^).
+     *
+     * @param qf The query fields
+     * @return The boost factors by field name
+     */
+    static Map<String, Float> parseQueryFields(final String qf) {
+        final Map<String, Float> fields = new LinkedHashMap<>();
+        for (final String field : qf.trim().split("\\s+")) {
+            if (field.isEmpty()) {
+                continue;
+            }
+            final int pos = field.indexOf('^');
+            if (pos < 0) {
+                fields.put(field, 1f);
+            } else {
+                fields.put(field.substring(0, pos), Float.parseFloat(field.substring(pos + 1)));
+            }
+        }
+        return fields;
+    }
+
+    private static int positiveInt(final String name, final String value) {
+        final int i = Integer.parseInt(value);
+        if (i < 1) {
+            throw new IllegalArgumentException(name + " must be > 0");
+        }
+        return i;
+    }
+
+    @Override
+    public String toString() {
+        return "corpus=" + (corpus == null ? "synthetic(" + numDocs + ")" : corpus) +
+                ", rules=" + rules +
+                ", resultCache=" + resultCacheSize +
+                ", qf=" + queryFields +
+                ", scoring=" + scoring +
+                ", fieldBoostModel=" + fieldBoostModel +
+                ", tie=" + tiebreaker +
+                ", termQueryCache=" + termQueryCacheMB + "MB" +
+                ", analysisCache=" + analysisCacheSize +
+                ", termStatsCache=" + termStatsCacheSize +
+                ", prmsCache=" + prmsCacheSize +
+                ", termFilter=" + termFilterFields +
+                ", queries=" + (queries == null ? "synthetic(" + numQueries + ")" : queries) +
+                ", threads=" + threads +
+                ", warmup=" + warmupPasses +
+                ", passes=" + passes +
+                ", rows=" + rows +
+                ", searchThreads=" + searchThreads;
+    }
+}
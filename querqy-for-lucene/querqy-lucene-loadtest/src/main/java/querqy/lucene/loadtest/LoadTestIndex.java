@@ -0,0 +1,286 @@
+package querqy.lucene.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiTerms;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>An in-memory Lucene index over a JSONL corpus or over a synthetic corpus.</p>
+ *
+ * <p>The synthetic corpus has a 'title' and a 'body' field. Words are drawn from a fixed vocabulary with a skewed
+ * distribution, so that there are frequent and rare terms like in natural language. The corpus only depends on the
+ * seed and on the number of documents.</p>
+ *
+ * <p>If search threads are configured, the {@link IndexSearcher} searches the segments concurrently on an executor
+ * that is owned by this index.</p>
+ */
+public class LoadTestIndex implements Closeable {
+
+    public static final String FIELD_TITLE = "title";
+    public static final String FIELD_BODY = "body";
+
+    static final int SYNTHETIC_VOCABULARY_SIZE = 20_000;
+
+    private static final char[] LETTERS = "abcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    private final Directory directory;
+    private final DirectoryReader reader;
+    private final IndexSearcher searcher;
+    private final ExecutorService searchExecutor;
+    private final Set<String> fields;
+
+    private LoadTestIndex(final Directory directory, final Set<String> fields, final int searchThreads)
+            throws IOException {
+        this.directory = directory;
+        this.fields = fields;
+        reader = DirectoryReader.open(directory);
+        searchExecutor = searchThreads > 0 ? Executors.newFixedThreadPool(searchThreads) : null;
+        searcher = new IndexSearcher(reader, searchExecutor);
+    }
+
+    /**
+     * Index the corpus of the configuration.
+     *
+     * @param config The configuration
+     * @param analyzer The analyzer for all fields
+     * @return The index
+     * @throws IOException if the corpus cannot be read or indexed
+     */
+    public static LoadTestIndex build(final LoadTestConfig config, final Analyzer analyzer) throws IOException {
+
+        final Directory directory = new ByteBuffersDirectory();
+        final IndexWriterConfig writerConfig = new IndexWriterConfig(analyzer);
+        writerConfig.setRAMBufferSizeMB(256.0);
+
+        final Set<String> fields = new LinkedHashSet<>();
+
+        try (final IndexWriter writer = new IndexWriter(directory, writerConfig)) {
+            if (config.corpus == null) {
+                indexSyntheticCorpus(writer, config.numDocs, config.seed, fields);
+            } else {
+                indexJsonCorpus(writer, config, fields);
+            }
+            writer.commit();
+        }
+
+        return new LoadTestIndex(directory, fields, config.searchThreads);
+    }
+
+    private static void indexJsonCorpus(final IndexWriter writer, final LoadTestConfig config,
+                                        final Set<String> fields) throws IOException {
+
+        final ObjectMapper objectMapper = new ObjectMapper();
+
+        try (final BufferedReader in = Files.newBufferedReader(config.corpus, StandardCharsets.UTF_8)) {
+
+            String line;
+            int lineNumber = 0;
+
+            while ((line = in.readLine()) != null) {
+
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                final JsonNode json;
+                try {
+                    json = objectMapper.readTree(line);
+                } catch (final IOException e) {
+                    throw new IOException("Invalid JSON in line " + lineNumber + " of " + config.corpus, e);
+                }
+
+                final Document doc = new Document();
+                final Iterator<Map.Entry<String, JsonNode>> jsonFields = json.fields();
+                while (jsonFields.hasNext()) {
+                    final Map.Entry<String, JsonNode> field = jsonFields.next();
+                    final JsonNode value = field.getValue();
+                    if (value.isTextual()) {
+                        addText(doc, field.getKey(), value.textValue(), fields);
+                    } else if (value.isArray()) {
+                        for (final JsonNode element : value) {
+                            if (element.isTextual()) {
+                                addText(doc, field.getKey(), element.textValue(), fields);
+                            }
+                        }
+                    }
+                }
+
+                writer.addDocument(doc);
+            }
+        }
+
+    }
+
+    private static void addText(final Document doc, final String name, final String value, final Set<String> fields) {
+        doc.add(new TextField(name, value, Field.Store.NO));
+        fields.add(name);
+    }
+
+    private static void indexSyntheticCorpus(final IndexWriter writer, final int numDocs, final long seed,
+                                             final Set<String> fields) throws IOException {
+
+        final List<String> vocabulary = createWords(SYNTHETIC_VOCABULARY_SIZE, new Random(seed));
+        final Random random = new Random(seed + 1);
+        final StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < numDocs; i++) {
+            final Document doc = new Document();
+            addText(doc, FIELD_TITLE, words(vocabulary, 3 + random.nextInt(6), random, sb), fields);
+            addText(doc, FIELD_BODY, words(vocabulary, 20 + random.nextInt(60), random, sb), fields);
+            writer.addDocument(doc);
+        }
+
+    }
+
+    private static String words(final List<String> vocabulary, final int numWords, final Random random,
+                                final StringBuilder sb) {
+        sb.setLength(0);
+        for (int i = 0; i < numWords; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(vocabulary.get(skewedIndex(vocabulary.size(), random)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Draw an index between 0 (inclusive) and size (exclusive). Small indexes are much more likely than large ones.
+     */
+    static int skewedIndex(final int size, final Random random) {
+        final double r = random.nextDouble();
+        return Math.min(size - 1, (int) (size * r * r * r));
+    }
+
+    static List<String> createWords(final int numWords, final Random random) {
+        final Set<String> words = new LinkedHashSet<>(numWords);
+        final StringBuilder sb = new StringBuilder();
+        while (words.size() < numWords) {
+            sb.setLength(0);
+            final int len = 3 + random.nextInt(8);
+            for (int i = 0; i < len; i++) {
+                sb.append(LETTERS[random.nextInt(LETTERS.length)]);
+            }
+            words.add(sb.toString());
+        }
+        return new ArrayList<>(words);
+    }
+
+    /**
+     * Get the terms of the given fields, ordered by descending document frequency (the order between terms of
+     * the same document frequency is undefined). Terms that occur in a single document only are skipped.
+     *
+     * @param fieldNames The fields
+     * @param maxTerms The maximum number of terms to return
+     * @return The most frequent terms
+     * @throws IOException if the index cannot be read
+     */
+    public List<String> getFrequentTerms(final Collection<String> fieldNames, final int maxTerms)
+            throws IOException {
+
+        final List<TermAndDocFreq> termsAndDocFreqs = new ArrayList<>();
+
+        for (final String fieldName : fieldNames) {
+            final Terms terms = MultiTerms.getTerms(reader, fieldName);
+            if (terms == null) {
+                continue;
+            }
+            final TermsEnum termsEnum = terms.iterator();
+            BytesRef term;
+            while ((term = termsEnum.next()) != null) {
+                final int docFreq = termsEnum.docFreq();
+                if (docFreq > 1) {
+                    termsAndDocFreqs.add(new TermAndDocFreq(term.utf8ToString(), docFreq));
+                }
+            }
+        }
+
+        termsAndDocFreqs.sort((t1, t2) -> Integer.compare(t2.docFreq, t1.docFreq));
+
+        final Set<String> result = new LinkedHashSet<>();
+        for (final TermAndDocFreq termAndDocFreq : termsAndDocFreqs) {
+            if (result.size() == maxTerms) {
+                break;
+            }
+            result.add(termAndDocFreq.term);
+        }
+
+        return new ArrayList<>(result);
+
+    }
+
+    public IndexSearcher getSearcher() {
+        return searcher;
+    }
+
+    /**
+     * @return The executor of the searcher or null if the searcher doesn't search segments concurrently
+     */
+    public ExecutorService getSearchExecutor() {
+        return searchExecutor;
+    }
+
+    /**
+     * @return The names of the indexed text fields
+     */
+    public Set<String> getFields() {
+        return fields;
+    }
+
+    public int numDocs() {
+        return reader.numDocs();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (searchExecutor != null) {
+            searchExecutor.shutdownNow();
+        }
+        try {
+            reader.close();
+        } finally {
+            directory.close();
+        }
+    }
+
+    private static class TermAndDocFreq {
+        final String term;
+        final int docFreq;
+
+        TermAndDocFreq(final String term, final int docFreq) {
+            this.term = term;
+            this.docFreq = docFreq;
+        }
+    }
+
+}
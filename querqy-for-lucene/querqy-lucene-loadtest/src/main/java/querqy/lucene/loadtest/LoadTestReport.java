@@ -0,0 +1,90 @@
+package querqy.lucene.loadtest;
+
+import querqy.timing.TimingHistogram;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Collects the latencies of the measured queries of a {@link LoadTest}. The latency of a query is split into the
+ * time for rewriting, the time for building the Lucene query (parsing, query creation from the rewritten query, DFC
+ * and boosts) and the search time. All methods can be called concurrently.</p>
+ */
+public class LoadTestReport {
+
+    private static final double[] PERCENTILES = {50, 95, 99, 99.9};
+
+    final TimingHistogram total = new TimingHistogram();
+    final TimingHistogram rewrite = new TimingHistogram();
+    final TimingHistogram queryBuild = new TimingHistogram();
+    final TimingHistogram search = new TimingHistogram();
+
+    private final LongAdder totalHits = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    private volatile long elapsedNanos = 0L;
+
+    /**
+     * Record a successful query.
+     *
+     * @param rewriteNanos The time for query rewriting
+     * @param queryBuildNanos The time for building the Lucene query without rewriting
+     * @param searchNanos The time for searching
+     * @param hits The total number of hits
+     */
+    public void record(final long rewriteNanos, final long queryBuildNanos, final long searchNanos, final long hits) {
+        rewrite.recordValue(rewriteNanos);
+        queryBuild.recordValue(queryBuildNanos);
+        search.recordValue(searchNanos);
+        total.recordValue(rewriteNanos + queryBuildNanos + searchNanos);
+        totalHits.add(hits);
+    }
+
+    public void recordError() {
+        errors.increment();
+    }
+
+    /**
+     * @param elapsedNanos The wall clock time of the measured replay
+     */
+    public void setElapsedNanos(final long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return The number of successful queries per second
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0L ? 0d : total.getTotalCount() * 1_000_000_000d / elapsedNanos;
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public void print(final PrintStream out) {
+
+        out.printf(Locale.ROOT, "Queries: %d, errors: %d, avg hits: %.1f%n", total.getTotalCount(), errors.sum(),
+                total.getTotalCount() == 0L ? 0d : (double) totalHits.sum() / total.getTotalCount());
+        out.printf(Locale.ROOT, "Elapsed: %.3f s, throughput: %.1f queries/s%n", elapsedNanos / 1_000_000_000d,
+                getThroughput());
+        out.println();
+        out.printf(Locale.ROOT, "%-12s %10s %10s %10s %10s %10s %10s%n", "Latency (ms)", "mean", "p50", "p95", "p99",
+                "p999", "max");
+        printRow(out, "total", total);
+        printRow(out, "rewrite", rewrite);
+        printRow(out, "queryBuild", queryBuild);
+        printRow(out, "search", search);
+
+    }
+
+    private static void printRow(final PrintStream out, final String name, final TimingHistogram histogram) {
+        out.printf(Locale.ROOT, "%-12s %10.3f", name, histogram.getMean() / 1_000_000d);
+        for (final double percentile : PERCENTILES) {
+            out.printf(Locale.ROOT, " %10.3f", histogram.getValueAtPercentile(percentile) / 1_000_000d);
+        }
+        out.printf(Locale.ROOT, " %10.3f%n", histogram.getMax() / 1_000_000d);
+    }
+
+}
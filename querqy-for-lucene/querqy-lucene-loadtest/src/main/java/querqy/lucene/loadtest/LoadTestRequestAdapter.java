@@ -0,0 +1,305 @@
+package querqy.lucene.loadtest;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import querqy.infologging.InfoLoggingContext;
+import querqy.lucene.LuceneSearchEngineRequestAdapter;
+import querqy.lucene.QuerySimilarityScoring;
+import querqy.lucene.rewrite.SearchFieldsAndBoosting.FieldBoostModel;
+import querqy.lucene.rewrite.TermExistenceFilter;
+import querqy.lucene.rewrite.cache.AnalysisCache;
+import querqy.lucene.rewrite.cache.PRMSFieldProbabilityCache;
+import querqy.lucene.rewrite.cache.TermQueryCache;
+import querqy.lucene.rewrite.cache.TermStatsCache;
+import querqy.model.ParametrizedRawQuery;
+import querqy.model.QuerqyQuery;
+import querqy.model.RawQuery;
+import querqy.model.StringRawQuery;
+import querqy.parser.QuerqyParser;
+import querqy.rewrite.RewriteChain;
+import querqy.timing.TimingListener;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+/**
+ * <p>A {@link LuceneSearchEngineRequestAdapter} for one query of a {@link LoadTest}. It doesn't read any request
+ * parameters, all settings come from the {@link LoadTestConfig}.</p>
+ *
+ * <p>Raw queries are parsed with Lucene's classic {@link QueryParser}, using the first query field as the default
+ * field.</p>
+ */
+public class LoadTestRequestAdapter implements LuceneSearchEngineRequestAdapter {
+
+    private final String queryString;
+    private final RewriteChain rewriteChain;
+    private final Analyzer analyzer;
+    private final Map<String, Float> queryFields;
+    private final QuerySimilarityScoring scoring;
+    private final FieldBoostModel fieldBoostModel;
+    private final float tiebreaker;
+    private final TermQueryCache termQueryCache;
+    private final AnalysisCache analysisCache;
+    private final TermStatsCache termStatsCache;
+    private final PRMSFieldProbabilityCache prmsFieldProbabilityCache;
+    private final TermExistenceFilter termExistenceFilter;
+    private final Executor searchExecutor;
+    private final TimingListener timingListener;
+    private final Map<String, Object> context = new HashMap<>();
+
+    /**
+     * @param queryString The query string
+     * @param config The configuration
+     * @param rewriteChain The rewrite chain
+     * @param analyzer The query analyzer
+     * @param termQueryCache The term query cache that is shared between requests or null
+     * @param analysisCache The analysis cache that is shared between requests or null
+     * @param termStatsCache The DFC term statistics cache that is shared between requests or null
+     * @param prmsFieldProbabilityCache The PRMS field probability cache that is shared between requests or null
+     * @param termExistenceFilter The filter for the terms of the searcher's index or null
+     * @param searchExecutor The executor of the searcher or null
+     * @param timingListener The listener for the timings of this request
+     */
+    public LoadTestRequestAdapter(final String queryString, final LoadTestConfig config,
+                                  final RewriteChain rewriteChain, final Analyzer analyzer,
+                                  final TermQueryCache termQueryCache, final AnalysisCache analysisCache,
+                                  final TermStatsCache termStatsCache,
+                                  final PRMSFieldProbabilityCache prmsFieldProbabilityCache,
+                                  final TermExistenceFilter termExistenceFilter,
+                                  final Executor searchExecutor,
+                                  final TimingListener timingListener) {
+        this.queryString = queryString;
+        this.rewriteChain = rewriteChain;
+        this.analyzer = analyzer;
+        this.queryFields = config.queryFields;
+        this.scoring = config.scoring;
+        this.fieldBoostModel = config.fieldBoostModel;
+        this.tiebreaker = config.tiebreaker;
+        this.termQueryCache = termQueryCache;
+        this.analysisCache = analysisCache;
+        this.termStatsCache = termStatsCache;
+        this.prmsFieldProbabilityCache = prmsFieldProbabilityCache;
+        this.termExistenceFilter = termExistenceFilter;
+        this.searchExecutor = searchExecutor;
+        this.timingListener = timingListener;
+    }
+
+    @Override
+    public String getQueryString() {
+        return queryString;
+    }
+
+    @Override
+    public boolean isMatchAllQuery(final String queryString) {
+        return "*:*".equals(queryString);
+    }
+
+    @Override
+    public boolean needsScores() {
+        return true;
+    }
+
+    @Override
+    public Analyzer getQueryAnalyzer() {
+        return analyzer;
+    }
+
+    @Override
+    public Optional<TermQueryCache> getTermQueryCache() {
+        return Optional.ofNullable(termQueryCache);
+    }
+
+    @Override
+    public Optional<AnalysisCache> getAnalysisCache() {
+        return Optional.ofNullable(analysisCache);
+    }
+
+    @Override
+    public Optional<TermStatsCache> getTermStatsCache() {
+        return Optional.ofNullable(termStatsCache);
+    }
+
+    @Override
+    public Optional<PRMSFieldProbabilityCache> getPRMSFieldProbabilityCache() {
+        return Optional.ofNullable(prmsFieldProbabilityCache);
+    }
+
+    @Override
+    public Optional<TermExistenceFilter> getTermExistenceFilter() {
+        return Optional.ofNullable(termExistenceFilter);
+    }
+
+    @Override
+    public Optional<Executor> getDocumentFrequencyCorrectionExecutor() {
+        return Optional.ofNullable(searchExecutor);
+    }
+
+    @Override
+    public boolean addQuerqyBoostQueriesToMainQuery() {
+        return true;
+    }
+
+    @Override
+    public Optional<QuerySimilarityScoring> getUserQuerySimilarityScoring() {
+        return Optional.of(scoring);
+    }
+
+    @Override
+    public Optional<QuerySimilarityScoring> getBoostQuerySimilarityScoring() {
+        return Optional.of(scoring);
+    }
+
+    @Override
+    public Map<String, Float> getQueryFieldsAndBoostings() {
+        return new HashMap<>(queryFields);
+    }
+
+    @Override
+    public Map<String, Float> getGeneratedQueryFieldsAndBoostings() {
+        return new HashMap<>();
+    }
+
+    @Override
+    public Optional<QuerqyParser> createQuerqyParser() {
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean useFieldBoostingInQuerqyBoostQueries() {
+        return true;
+    }
+
+    @Override
+    public Optional<Float> getTiebreaker() {
+        return Optional.of(tiebreaker);
+    }
+
+    @Override
+    public Query applyMinimumShouldMatch(final BooleanQuery query) {
+        return query;
+    }
+
+    @Override
+    public Optional<Float> getUserQueryWeight() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Float> getGeneratedFieldBoost() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Float> getPositiveQuerqyBoostWeight() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Float> getNegativeQuerqyBoostWeight() {
+        return Optional.empty();
+    }
+
+    @Override
+    public List<Query> getAdditiveBoosts(final QuerqyQuery<?> userQuery) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<Query> getMultiplicativeBoosts(final QuerqyQuery<?> userQuery) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Optional<Query> parseRankQuery() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Query parseRawQuery(final RawQuery rawQuery) throws SyntaxException {
+
+        final String rawQueryString;
+        if (rawQuery instanceof StringRawQuery) {
+            rawQueryString = ((StringRawQuery) rawQuery).getQueryString();
+        } else if (rawQuery instanceof ParametrizedRawQuery) {
+            rawQueryString = ((ParametrizedRawQuery) rawQuery).buildQueryString(QueryParser::escape);
+        } else {
+            throw new IllegalArgumentException("Implementation type of RawQuery is not supported for this adapter: "
+                    + rawQuery.getClass().getName());
+        }
+
+        // QueryParser is not thread-safe
+        final QueryParser parser = new QueryParser(queryFields.keySet().iterator().next(), analyzer);
+        try {
+            return parser.parse(rawQueryString);
+        } catch (final ParseException e) {
+            throw new SyntaxException(e);
+        }
+    }
+
+    @Override
+    public Optional<FieldBoostModel> getFieldBoostModel() {
+        return Optional.of(fieldBoostModel);
+    }
+
+    @Override
+    public RewriteChain getRewriteChain() {
+        return rewriteChain;
+    }
+
+    @Override
+    public Map<String, Object> getContext() {
+        return context;
+    }
+
+    @Override
+    public Optional<String> getRequestParam(final String name) {
+        return Optional.empty();
+    }
+
+    @Override
+    public String[] getRequestParams(final String name) {
+        return new String[0];
+    }
+
+    @Override
+    public Optional<Boolean> getBooleanRequestParam(final String name) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Integer> getIntegerRequestParam(final String name) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Float> getFloatRequestParam(final String name) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Double> getDoubleRequestParam(final String name) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<InfoLoggingContext> getInfoLoggingContext() {
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean isDebugQuery() {
+        return false;
+    }
+
+    @Override
+    public Optional<TimingListener> getTimingListener() {
+        return Optional.ofNullable(timingListener);
+    }
+}
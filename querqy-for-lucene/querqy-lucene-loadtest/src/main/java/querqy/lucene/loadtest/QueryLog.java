@@ -0,0 +1,85 @@
+package querqy.lucene.loadtest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * <p>The queries that are replayed by a {@link LoadTest}.</p>
+ */
+public final class QueryLog {
+
+    private QueryLog() {
+    }
+
+    /**
+     * Read a query log with one query per line. Empty lines and lines starting with '#' are skipped. If a line
+     * contains a tab, only the part before the first tab is used, so that logs with additional columns (like a
+     * count or a timestamp) can be replayed.
+     *
+     * @param path The query log file
+     * @return The queries in the order of the file
+     * @throws IOException if the file cannot be read
+     */
+    public static List<String> read(final Path path) throws IOException {
+
+        final List<String> queries = new ArrayList<>();
+
+        try (final BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                final int tab = line.indexOf('\t');
+                final String query = (tab < 0 ? line : line.substring(0, tab)).trim();
+                if (!query.isEmpty() && query.charAt(0) != '#') {
+                    queries.add(query);
+                }
+            }
+        }
+
+        if (queries.isEmpty()) {
+            throw new IOException("No queries found in " + path);
+        }
+
+        return Collections.unmodifiableList(queries);
+    }
+
+    /**
+     * Create queries with one to three terms. Frequent terms are chosen more often than rare terms.
+     *
+     * @param terms The terms, ordered by descending frequency
+     * @param numQueries The number of queries
+     * @param seed The seed for all random decisions
+     * @return The queries
+     */
+    public static List<String> synthetic(final List<String> terms, final int numQueries, final long seed) {
+
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("Cannot create queries without terms");
+        }
+
+        final Random random = new Random(seed + 2);
+        final List<String> queries = new ArrayList<>(numQueries);
+        final StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < numQueries; i++) {
+            sb.setLength(0);
+            final int numTerms = 1 + random.nextInt(3);
+            for (int t = 0; t < numTerms; t++) {
+                if (t > 0) {
+                    sb.append(' ');
+                }
+                sb.append(terms.get(LoadTestIndex.skewedIndex(terms.size(), random)));
+            }
+            queries.add(sb.toString());
+        }
+
+        return Collections.unmodifiableList(queries);
+    }
+
+}
@@ -0,0 +1,127 @@
+package querqy.lucene.loadtest;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import querqy.lucene.QuerySimilarityScoring;
+import querqy.lucene.rewrite.SearchFieldsAndBoosting.FieldBoostModel;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+public class LoadTestConfigTest {
+
+    @Test
+    public void testDefaults() {
+
+        final LoadTestConfig config = LoadTestConfig.parse(new String[0]);
+
+        assertNull(config.corpus);
+        assertNull(config.queries);
+        assertTrue(config.rules.isEmpty());
+        assertTrue(config.queryFields.isEmpty());
+        assertTrue(config.termFilterFields.isEmpty());
+        assertEquals(QuerySimilarityScoring.DFC, config.scoring);
+        assertEquals(FieldBoostModel.FIXED, config.fieldBoostModel);
+        assertEquals(1, config.threads);
+        assertEquals(1, config.warmupPasses);
+        assertEquals(3, config.passes);
+        assertEquals(10, config.rows);
+        assertEquals(0, config.searchThreads);
+
+    }
+
+    @Test
+    public void testThatAllOptionsAreParsed() {
+
+        final LoadTestConfig config = LoadTestConfig.parse(new String[] {
+                "-corpus", "corpus.jsonl",
+                "-docs", "500",
+                "-seed", "42",
+                "-rules", "rules1.txt",
+                "-rules", "rules2.txt",
+                "-resultCache", "100",
+                "-qf", "title^3 body",
+                "-scoring", "similarity_score_off",
+                "-fieldBoostModel", "PRMS",
+                "-tie", "0.5",
+                "-termQueryCache", "16",
+                "-analysisCache", "1000",
+                "-termStatsCache", "2000",
+                "-prmsCache", "3000",
+                "-termFilter", "title body",
+                "-queries", "queries.txt",
+                "-numQueries", "50",
+                "-threads", "4",
+                "-warmup", "0",
+                "-passes", "2",
+                "-rows", "20",
+                "-searchThreads", "2"
+        });
+
+        assertEquals(Paths.get("corpus.jsonl"), config.corpus);
+        assertEquals(500, config.numDocs);
+        assertEquals(42L, config.seed);
+        assertEquals(Arrays.asList(Paths.get("rules1.txt"), Paths.get("rules2.txt")), config.rules);
+        assertEquals(100, config.resultCacheSize);
+        assertEquals(Arrays.asList("title", "body"), Arrays.asList(config.queryFields.keySet().toArray()));
+        assertEquals(3f, config.queryFields.get("title"), 0f);
+        assertEquals(1f, config.queryFields.get("body"), 0f);
+        assertEquals(QuerySimilarityScoring.SIMILARITY_SCORE_OFF, config.scoring);
+        assertEquals(FieldBoostModel.PRMS, config.fieldBoostModel);
+        assertEquals(0.5f, config.tiebreaker, 0f);
+        assertEquals(16, config.termQueryCacheMB);
+        assertEquals(1000, config.analysisCacheSize);
+        assertEquals(2000, config.termStatsCacheSize);
+        assertEquals(3000, config.prmsCacheSize);
+        assertEquals(Arrays.asList("title", "body"), config.termFilterFields);
+        assertEquals(Paths.get("queries.txt"), config.queries);
+        assertEquals(50, config.numQueries);
+        assertEquals(4, config.threads);
+        assertEquals(0, config.warmupPasses);
+        assertEquals(2, config.passes);
+        assertEquals(20, config.rows);
+        assertEquals(2, config.searchThreads);
+
+    }
+
+    @Test
+    public void testParseQueryFields() {
+
+        final Map<String, Float> fields = LoadTestConfig.parseQueryFields("  f1^2.5   f2 ");
+        assertEquals(2, fields.size());
+        assertEquals(2.5f, fields.get("f1"), 0f);
+        assertEquals(1f, fields.get("f2"), 0f);
+
+        assertEquals(Collections.emptyMap(), LoadTestConfig.parseQueryFields(" "));
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatUnknownOptionIsRejected() {
+        LoadTestConfig.parse(new String[] {"-unknown", "1"});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatMissingValueIsRejected() {
+        LoadTestConfig.parse(new String[] {"-threads"});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatNonPositiveThreadsAreRejected() {
+        LoadTestConfig.parse(new String[] {"-threads", "0"});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatInvalidNumberIsRejected() {
+        LoadTestConfig.parse(new String[] {"-passes", "many"});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatUnknownScoringIsRejected() {
+        LoadTestConfig.parse(new String[] {"-scoring", "bm42"});
+    }
+
+}
@@ -0,0 +1,121 @@
+package querqy.lucene.loadtest;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import querqy.model.RawQuery;
+import querqy.rewrite.RewriteChain;
+import querqy.timing.RequestTimings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class LoadTestTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testReplayOfQueryLog() throws Exception {
+
+        final File corpus = write("corpus.jsonl",
+                "{\"title\": \"laptop bag\", \"body\": \"a bag\"}",
+                "{\"title\": \"notebook\", \"body\": [\"a small notebook\", \"cheap\"]}",
+                "",
+                "{\"title\": \"phone\", \"price\": 100}");
+
+        final File rules = write("rules.txt",
+                "laptop =>",
+                "  SYNONYM: notebook");
+
+        final File queries = write("queries.txt",
+                "# comment",
+                "laptop",
+                "notebook\t17",
+                "",
+                "nothing");
+
+        final LoadTestConfig config = LoadTestConfig.parse(new String[] {
+                "-corpus", corpus.getPath(),
+                "-rules", rules.getPath(),
+                "-queries", queries.getPath(),
+                "-qf", "title^2 body",
+                "-threads", "2",
+                "-warmup", "1",
+                "-passes", "2",
+                "-termQueryCache", "1",
+                "-analysisCache", "10",
+                "-termStatsCache", "10"
+        });
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final LoadTestReport report;
+        try (final PrintStream out = new PrintStream(bytes, true, "UTF-8")) {
+            report = new LoadTest(config, out).run();
+        }
+
+        // 3 queries * 2 threads * 2 measured passes
+        assertEquals(0L, report.getErrors());
+        assertEquals(12L, report.total.getTotalCount());
+        assertEquals(12L, report.rewrite.getTotalCount());
+        assertEquals(12L, report.search.getTotalCount());
+        assertTrue(report.getThroughput() > 0d);
+
+        final String output = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(output, output.contains("Indexed 3 documents with fields [title, body]"));
+        assertTrue(output, output.contains("Replaying 3 queries on 2 thread(s), 1 warmup and 2 measured pass(es)"));
+        // laptop (+ synonym notebook): 2 hits, notebook: 1 hit, nothing: 0 hits
+        assertTrue(output, output.contains("Queries: 12, errors: 0, avg hits: 1.0"));
+        assertTrue(output, output.contains("Term query cache:"));
+        assertTrue(output, output.contains("Analysis cache:"));
+        assertTrue(output, output.contains("Term stats cache:"));
+
+    }
+
+    @Test
+    public void testReplayOfSyntheticQueries() throws Exception {
+
+        final LoadTestConfig config = LoadTestConfig.parse(new String[] {
+                "-docs", "200",
+                "-numQueries", "20",
+                "-warmup", "0",
+                "-passes", "1"
+        });
+
+        final LoadTestReport report = new LoadTest(config, new PrintStream(new ByteArrayOutputStream())).run();
+
+        assertEquals(0L, report.getErrors());
+        assertEquals(20L, report.total.getTotalCount());
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatUnsupportedRawQueryTypeIsRejected() throws Exception {
+
+        final LoadTestConfig config = LoadTestConfig.parse(new String[] {"-qf", "title"});
+
+        final LoadTestRequestAdapter adapter = new LoadTestRequestAdapter("a", config,
+                new RewriteChain(Collections.emptyList()), new StandardAnalyzer(), null, null, null, null, null, null,
+                new RequestTimings());
+
+        adapter.parseRawQuery(mock(RawQuery.class));
+
+    }
+
+    private File write(final String name, final String... lines) throws IOException {
+        final File file = tmp.newFile(name);
+        Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+        return file;
+    }
+
+}
@@ -5,7 +5,11 @@ import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Query;
 import querqy.rewrite.SearchEngineRequestAdapter;
 import querqy.lucene.rewrite.SearchFieldsAndBoosting.FieldBoostModel;
+import querqy.lucene.rewrite.TermExistenceFilter;
+import querqy.lucene.rewrite.cache.AnalysisCache;
 import querqy.lucene.rewrite.cache.TermQueryCache;
+import querqy.lucene.rewrite.cache.PRMSFieldProbabilityCache;
+import querqy.lucene.rewrite.cache.TermStatsCache;
 import querqy.model.ExpandedQuery;
 import querqy.model.QuerqyQuery;
 import querqy.model.RawQuery;
@@ -14,6 +18,7 @@ import querqy.parser.QuerqyParser;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 
 /**
  * This interface defines methods to access the search request in the context of the given search engine
@@ -65,6 +70,69 @@ public interface LuceneSearchEngineRequestAdapter extends SearchEngineRequestAda
      */
     Optional<TermQueryCache> getTermQueryCache();
 
+    /**
+     * <p>Get an optional {@link AnalysisCache} for the results of query-time text analysis.</p>
+     *
+     * <p>The cache should be shared between requests. It is only used for terms that are not found in the
+     * {@link #getTermQueryCache()}.</p>
+     *
+     * @return The optional AnalysisCache
+     */
+    default Optional<AnalysisCache> getAnalysisCache() {
+        return Optional.empty();
+    }
+
+    /**
+     * <p>Get an optional {@link TermStatsCache} for the index statistics of the terms that take part in document
+     * frequency correction ({@link QuerySimilarityScoring#DFC}).</p>
+     *
+     * <p>The cache should be shared between requests. It only keeps the statistics of the most recent searcher.</p>
+     *
+     * @return The optional TermStatsCache
+     */
+    default Optional<TermStatsCache> getTermStatsCache() {
+        return Optional.empty();
+    }
+
+    /**
+     * <p>Get an optional {@link PRMSFieldProbabilityCache} for the field probabilities of the
+     * {@link FieldBoostModel#PRMS} field boost model.</p>
+     *
+     * <p>The cache should be shared between requests. It only keeps the probabilities of the most recent searcher.</p>
+     *
+     * @return The optional PRMSFieldProbabilityCache
+     */
+    default Optional<PRMSFieldProbabilityCache> getPRMSFieldProbabilityCache() {
+        return Optional.empty();
+    }
+
+    /**
+     * <p>Get an optional {@link TermExistenceFilter} for pruning query parts for terms that don't exist in the
+     * index.</p>
+     *
+     * <p>The filter must have been built for the reader of the searcher that will execute the query, see
+     * {@link querqy.lucene.rewrite.cache.TermExistenceFilterCache#forReader(org.apache.lucene.index.IndexReader)}.</p>
+     *
+     * @return The optional TermExistenceFilter
+     */
+    default Optional<TermExistenceFilter> getTermExistenceFilter() {
+        return Optional.empty();
+    }
+
+    /**
+     * <p>Get an optional {@link Executor} for reading the term statistics of document frequency correction
+     * ({@link QuerySimilarityScoring#DFC}) from the index segments in parallel.</p>
+     *
+     * <p>If the {@link org.apache.lucene.search.IndexSearcher} searches segments concurrently, this should normally
+     * return the executor of the searcher. If an empty Optional is returned, the term statistics will be read by the
+     * thread that creates the weights.</p>
+     *
+     * @return The optional Executor
+     */
+    default Optional<Executor> getDocumentFrequencyCorrectionExecutor() {
+        return Optional.empty();
+    }
+
     /**
      * <p>Should Querqy boost queries be added to the main query?</p>
      *
@@ -28,6 +28,8 @@ import querqy.model.RawQuery;
 import querqy.parser.QuerqyParser;
 import querqy.parser.WhiteSpaceQuerqyParser;
 import querqy.rewrite.ContextAwareQueryRewriter;
+import querqy.timing.RequestTimings;
+import querqy.timing.TimingListener;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -38,6 +40,12 @@ import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 /**
+ * <p>Creates the Lucene queries for a request.</p>
+ *
+ * <p>If the request adapter provides a {@link TimingListener}, the elapsed time of each processing phase is reported
+ * to the listener using the TIMING_* names. Timings of the {@link querqy.rewrite.RewriteChain} are reported for each
+ * rewriter in addition to the overall rewrite phase.</p>
+ *
  * Created by rene on 23/05/2017.
  */
 public class QueryParsingController {
@@ -71,6 +79,41 @@ public class QueryParsingController {
      */
     protected static final Class<? extends QuerqyParser> DEFAULT_PARSER_CLASS = WhiteSpaceQuerqyParser.class;
 
+    /**
+     * Timing name for parsing the query string
+     */
+    public static final String TIMING_PARSE = "parse";
+
+    /**
+     * Timing name for applying the rewrite chain
+     */
+    public static final String TIMING_REWRITE = "rewrite";
+
+    /**
+     * Timing name for creating the Lucene query from the rewritten user query
+     */
+    public static final String TIMING_CREATE_QUERY = "createQuery";
+
+    /**
+     * Timing name for finishing the document frequency correction of the user query
+     */
+    public static final String TIMING_DFC = "dfc";
+
+    /**
+     * Timing name for creating the boost queries and for combining them with the user query
+     */
+    public static final String TIMING_BOOSTS = "boosts";
+
+    /**
+     * Timing name for creating the filter queries
+     */
+    public static final String TIMING_FILTERS = "filters";
+
+    /**
+     * Timing name for parsing the rank query
+     */
+    public static final String TIMING_RANK_QUERY = "rankQuery";
+
 
     protected final LuceneSearchEngineRequestAdapter requestAdapter;
     protected final String queryString;
@@ -83,6 +126,7 @@ public class QueryParsingController {
     protected final TermQueryBuilder boostTermQueryBuilder;
     protected final SearchFieldsAndBoosting boostSearchFieldsAndBoostings;
     protected final boolean addQuerqyBoostQueriesToMainQuery;
+    protected final TimingListener timingListener;
     protected String parserDebugInfo = null;
 
     public QueryParsingController(final LuceneSearchEngineRequestAdapter requestAdapter) {
@@ -117,7 +161,8 @@ public class QueryParsingController {
                         : FieldBoostModel.FIXED,
                 queryFieldsAndBoostings,
                 generatedQueryFieldsAndBoostings,
-                gfb);
+                gfb,
+                requestAdapter.getPRMSFieldProbabilityCache().orElse(null));
 
         if (!needsScores) {
             addQuerqyBoostQueriesToMainQuery = true;
@@ -125,19 +170,26 @@ public class QueryParsingController {
             boostTermQueryBuilder = null;
             boostSearchFieldsAndBoostings = null;
             builder = new LuceneQueryBuilder(new LuceneTermQueryBuilder(), queryAnalyzer, searchFieldsAndBoosting, 1f,
-                    requestAdapter.getTermQueryCache().orElse(null));
+                    true, requestAdapter.getTermQueryCache().orElse(null),
+                    requestAdapter.getAnalysisCache().orElse(null),
+                    requestAdapter.getTermExistenceFilter().orElse(null));
         } else {
             addQuerqyBoostQueriesToMainQuery = requestAdapter.addQuerqyBoostQueriesToMainQuery();
 
             final QuerySimilarityScoring userQuerySimilarityScoring = requestAdapter.getUserQuerySimilarityScoring()
                     .orElse(DEFAULT_USER_QUERY_SIMILARITY_SCORING);
-            final TermQueryBuilder userTermQueryBuilder = userQuerySimilarityScoring.createTermQueryBuilder(null);
+            // user query and boost queries share the DFC. It will only be used if one of them applies DFC scoring
+            final DocumentFrequencyCorrection newDfc = new DocumentFrequencyCorrection(
+                    requestAdapter.getTermStatsCache().orElse(null),
+                    requestAdapter.getDocumentFrequencyCorrectionExecutor().orElse(null));
+
+            final TermQueryBuilder userTermQueryBuilder = userQuerySimilarityScoring.createTermQueryBuilder(newDfc);
             dfc = userTermQueryBuilder.getDocumentFrequencyCorrection().orElse(null);
 
             final QuerySimilarityScoring boostQuerySimilarityScoring = requestAdapter.getBoostQuerySimilarityScoring()
                     .orElse(DEFAULT_BOOST_QUERY_SIMILARITY_SCORING);
 
-            boostTermQueryBuilder = boostQuerySimilarityScoring.createTermQueryBuilder(dfc);
+            boostTermQueryBuilder = boostQuerySimilarityScoring.createTermQueryBuilder(newDfc);
 
             boostSearchFieldsAndBoostings = requestAdapter.useFieldBoostingInQuerqyBoostQueries()
                     ? searchFieldsAndBoosting
@@ -148,13 +200,16 @@ public class QueryParsingController {
 
             builder = new LuceneQueryBuilder(userTermQueryBuilder,
                     queryAnalyzer, searchFieldsAndBoosting, requestAdapter.getTiebreaker().orElse(DEFAULT_TIEBREAKER),
-                    requestAdapter.getTermQueryCache().orElse(null));
+                    true, requestAdapter.getTermQueryCache().orElse(null),
+                    requestAdapter.getAnalysisCache().orElse(null),
+                    requestAdapter.getTermExistenceFilter().orElse(null));
 
         }
 
 
         debugQuery = requestAdapter.isDebugQuery();
 
+        timingListener = requestAdapter.getTimingListener().orElse(null);
 
     }
 
@@ -174,8 +229,13 @@ public class QueryParsingController {
     }
 
     public LuceneQueries process() throws SyntaxException {
+
+        long start = timingListener == null ? 0L : System.nanoTime();
+
         final ExpandedQuery parsedInput = createExpandedQuery();
 
+        start = onTiming(TIMING_PARSE, start);
+
         final List<Query> additiveBoosts;
         final List<Query> multiplicativeBoosts;
 
@@ -187,6 +247,9 @@ public class QueryParsingController {
             additiveBoosts = multiplicativeBoosts = null;
         }
 
+        // the boosts phase is interrupted by other phases, we sum up its parts
+        final long boostNanos = timingListener == null ? 0L : System.nanoTime() - start;
+        start += boostNanos;
 
         final Map<String, Object> context = requestAdapter.getContext();
         if (debugQuery) {
@@ -195,12 +258,20 @@ public class QueryParsingController {
 
         final ExpandedQuery rewrittenQuery = requestAdapter.getRewriteChain().rewrite(parsedInput, requestAdapter);
 
+        start = onTiming(TIMING_REWRITE, start);
+
         Query mainQuery = transformUserQuery(rewrittenQuery.getUserQuery(), builder);
 
+        start = onTiming(TIMING_CREATE_QUERY, start);
+
         if (dfc != null) dfc.finishedUserQuery();
 
+        start = onTiming(TIMING_DFC, start);
 
         final List<Query> filterQueries = transformFilterQueries(rewrittenQuery.getFilterQueries());
+
+        start = onTiming(TIMING_FILTERS, start);
+
         final List<Query> querqyBoostQueries = needsScores
                 ? getQuerqyBoostQueries(rewrittenQuery)
                 : Collections.emptyList();
@@ -260,6 +331,12 @@ public class QueryParsingController {
             }
         }
 
+        if (timingListener != null) {
+            final long now = System.nanoTime();
+            timingListener.onTiming(TIMING_BOOSTS, boostNanos + now - start);
+            start = now;
+        }
+
         LuceneQueries luceneQueries;
         if ((!addQuerqyBoostQueriesToMainQuery) && hasQuerqyBoostQueries) {
             // boost queries have not been applied to the main query, they are returned separately here, external rank queries are ignored
@@ -267,12 +344,29 @@ public class QueryParsingController {
                     false);
         } else {
             Query rankQuery = requestAdapter.parseRankQuery().orElse(null);
+            onTiming(TIMING_RANK_QUERY, start);
             luceneQueries = new LuceneQueries(mainQuery, filterQueries, null, userQuery, rankQuery, dfc != null,
                     hasQuerqyBoostQueriesOnMainQuery);
         }
         return luceneQueries;
     }
 
+    /**
+     * Report the time since start to the timing listener.
+     *
+     * @param name The timing name
+     * @param start The start time in nanoseconds
+     * @return The current time in nanoseconds or 0 if there is no timing listener
+     */
+    protected long onTiming(final String name, final long start) {
+        if (timingListener == null) {
+            return 0L;
+        }
+        final long now = System.nanoTime();
+        timingListener.onTiming(name, now - start);
+        return now;
+    }
+
     public List<Query> transformFilterQueries(final Collection<QuerqyQuery<?>> filterQueries) throws SyntaxException {
 
         if (filterQueries != null && !filterQueries.isEmpty()) {
@@ -372,8 +466,10 @@ public class QueryParsingController {
                     final LuceneQueryBuilder luceneQueryBuilder =
                             new LuceneQueryBuilder(boostTermQueryBuilder, queryAnalyzer,
                                     boostSearchFieldsAndBoostings,
-                                    requestAdapter.getTiebreaker().orElse(DEFAULT_TIEBREAKER),
-                                    requestAdapter.getTermQueryCache().orElse(null));
+                                    requestAdapter.getTiebreaker().orElse(DEFAULT_TIEBREAKER), true,
+                                    requestAdapter.getTermQueryCache().orElse(null),
+                                    requestAdapter.getAnalysisCache().orElse(null),
+                                    requestAdapter.getTermExistenceFilter().orElse(null));
 
                     luceneQuery = luceneQueryBuilder.createQuery((querqy.model.Query) boostQuery, factor < 0f);
 
@@ -459,6 +555,10 @@ public class QueryParsingController {
             if (contextDebugInfo != null) {
                 info.put("querqy.rewrite", contextDebugInfo);
             }
+            final Object requestTimings = requestAdapter.getContext().get(RequestTimings.CONTEXT_KEY);
+            if (requestTimings instanceof RequestTimings) {
+                info.put("querqy.timing", ((RequestTimings) requestTimings).toMillis());
+            }
             return info;
 
         } else {
@@ -0,0 +1,139 @@
+package querqy.lucene.contrib.rewrite.wordbreak;
+
+import org.apache.lucene.index.IndexReader;
+import querqy.model.Term;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * <p>A {@link LuceneCompounder} that caches the results of another LuceneCompounder in a {@link WordBreakCache}.</p>
+ *
+ * <p>Results are cached per sequence of term values. As the {@link CompoundTerm}s reference the terms of the current
+ * query, the cache only keeps the compound values and the positions of the original terms and creates new
+ * CompoundTerms for each request.</p>
+ */
+public class CachingCompounder implements LuceneCompounder {
+
+    private final LuceneCompounder delegate;
+    private final WordBreakCache cache;
+
+    public CachingCompounder(final LuceneCompounder delegate, final WordBreakCache cache) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.cache = Objects.requireNonNull(cache);
+    }
+
+    @Override
+    public List<CompoundTerm> combine(final Term[] terms, final IndexReader indexReader, final boolean reverse)
+            throws IOException {
+
+        final Optional<WordBreakCache.ReaderCache> readerCache = cache.forReader(indexReader);
+        if (!readerCache.isPresent()) {
+            return delegate.combine(terms, indexReader, reverse);
+        }
+
+        final String[] values = new String[terms.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = terms[i].getValue().toString();
+        }
+
+        final List<CachedCompound> cachedCompounds;
+        try {
+            cachedCompounds = readerCache.get().computeIfAbsent(new CombineKey(values, reverse), key -> {
+                try {
+                    return toCacheable(delegate.combine(terms, indexReader, reverse), terms);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (cachedCompounds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<CompoundTerm> result = new ArrayList<>(cachedCompounds.size());
+        for (final CachedCompound cachedCompound : cachedCompounds) {
+            final Term[] originalTerms = new Term[cachedCompound.originalTermIndexes.length];
+            for (int i = 0; i < originalTerms.length; i++) {
+                originalTerms[i] = terms[cachedCompound.originalTermIndexes[i]];
+            }
+            result.add(new CompoundTerm(cachedCompound.value, originalTerms));
+        }
+        return result;
+
+    }
+
+    public LuceneCompounder getDelegate() {
+        return delegate;
+    }
+
+    private static List<CachedCompound> toCacheable(final List<CompoundTerm> compoundTerms, final Term[] terms) {
+
+        if (compoundTerms.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<CachedCompound> result = new ArrayList<>(compoundTerms.size());
+        for (final CompoundTerm compoundTerm : compoundTerms) {
+            final int[] originalTermIndexes = new int[compoundTerm.originalTerms.length];
+            for (int i = 0; i < originalTermIndexes.length; i++) {
+                originalTermIndexes[i] = indexOf(terms, compoundTerm.originalTerms[i]);
+            }
+            result.add(new CachedCompound(compoundTerm.value.toString(), originalTermIndexes));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static int indexOf(final Term[] terms, final Term term) {
+        for (int i = 0; i < terms.length; i++) {
+            if (terms[i] == term) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Compound refers to unknown term " + term);
+    }
+
+    private static class CachedCompound {
+
+        final String value;
+        final int[] originalTermIndexes;
+
+        CachedCompound(final String value, final int[] originalTermIndexes) {
+            this.value = value;
+            this.originalTermIndexes = originalTermIndexes;
+        }
+    }
+
+    private static class CombineKey {
+
+        final String[] values;
+        final boolean reverse;
+
+        CombineKey(final String[] values, final boolean reverse) {
+            this.values = values;
+            this.reverse = reverse;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final CombineKey that = (CombineKey) o;
+            return reverse == that.reverse && Arrays.equals(values, that.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(values) + (reverse ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package querqy.lucene.contrib.rewrite.wordbreak;
+
+import org.apache.lucene.index.IndexReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * <p>A {@link LuceneWordBreaker} that caches the results of another LuceneWordBreaker per input word in a
+ * {@link WordBreakCache}.</p>
+ *
+ * <p>The returned lists and arrays are shared between requests and must not be modified.</p>
+ */
+public class CachingWordBreaker implements LuceneWordBreaker {
+
+    private final LuceneWordBreaker delegate;
+    private final WordBreakCache cache;
+
+    public CachingWordBreaker(final LuceneWordBreaker delegate, final WordBreakCache cache) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.cache = Objects.requireNonNull(cache);
+    }
+
+    @Override
+    public List<CharSequence[]> breakWord(final CharSequence word, final IndexReader indexReader,
+                                          final int maxDecompoundExpansions, final boolean verifyCollation)
+            throws IOException {
+
+        final Optional<WordBreakCache.ReaderCache> readerCache = cache.forReader(indexReader);
+        if (!readerCache.isPresent()) {
+            return delegate.breakWord(word, indexReader, maxDecompoundExpansions, verifyCollation);
+        }
+
+        try {
+            return readerCache.get().computeIfAbsent(
+                    new BreakWordKey(word.toString(), maxDecompoundExpansions, verifyCollation), key -> {
+                        try {
+                            return toCacheable(delegate.breakWord(word, indexReader, maxDecompoundExpansions,
+                                    verifyCollation));
+                        } catch (final IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+    }
+
+    public LuceneWordBreaker getDelegate() {
+        return delegate;
+    }
+
+    static List<CharSequence[]> toCacheable(final List<CharSequence[]> decompounds) {
+        if (decompounds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // copy to Strings so that we don't keep references to the chars of the query
+        final List<CharSequence[]> result = new ArrayList<>(decompounds.size());
+        for (final CharSequence[] decompound : decompounds) {
+            if (decompound == null) {
+                result.add(null);
+            } else {
+                final CharSequence[] copy = new CharSequence[decompound.length];
+                for (int i = 0; i < copy.length; i++) {
+                    copy[i] = decompound[i].toString();
+                }
+                result.add(copy);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static class BreakWordKey {
+
+        final String word;
+        final int maxDecompoundExpansions;
+        final boolean verifyCollation;
+
+        BreakWordKey(final String word, final int maxDecompoundExpansions, final boolean verifyCollation) {
+            this.word = word;
+            this.maxDecompoundExpansions = maxDecompoundExpansions;
+            this.verifyCollation = verifyCollation;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final BreakWordKey that = (BreakWordKey) o;
+            return maxDecompoundExpansions == that.maxDecompoundExpansions
+                    && verifyCollation == that.verifyCollation
+                    && word.equals(that.word);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(word, maxDecompoundExpansions, verifyCollation);
+        }
+    }
+}
@@ -116,6 +116,7 @@ public class Collector {
     private final int maxDecompoundExpansions;
     private final IndexSearcher searcher;
     private final int maxEvaluations;
+    private final WordBreakCache.ReaderCache readerCache;
     private int evaluations = 0;
 
     /**
@@ -131,6 +132,24 @@ public class Collector {
     public Collector(final int minSuggestionFrequency,final int maxDecompoundExpansions, final int maxEvaluations,
                      final boolean verifyCollation, final IndexReader indexReader, final String dictionaryField,
                      final float weightDfObservation) {
+        this(minSuggestionFrequency, maxDecompoundExpansions, maxEvaluations, verifyCollation, indexReader,
+                dictionaryField, weightDfObservation, null);
+    }
+
+    /**
+     *
+     * @param minSuggestionFrequency Minimum frequency of each split term in the index
+     * @param maxDecompoundExpansions Maximum number of decompound structures to return
+     * @param maxEvaluations Maximum number of lookups in the index
+     * @param verifyCollation Iff true, the compound parts must co-occur in a document in the index
+     * @param indexReader The index reader
+     * @param dictionaryField The document field to use for the lookup
+     * @param weightDfObservation The weight of the observed document frequencies when combining with the score of the morphological compound pattern.
+     * @param readerCache The cache for document frequencies of the indexReader or null if document frequencies should not be cached
+     */
+    public Collector(final int minSuggestionFrequency,final int maxDecompoundExpansions, final int maxEvaluations,
+                     final boolean verifyCollation, final IndexReader indexReader, final String dictionaryField,
+                     final float weightDfObservation, final WordBreakCache.ReaderCache readerCache) {
 
         final int queueInitialCapacity = Math.min(maxDecompoundExpansions, 10);
         collection = new PriorityQueue<>(queueInitialCapacity);
@@ -143,6 +162,7 @@ public class Collector {
         this.dictionaryField = dictionaryField;
         this.weightDfObservation = weightDfObservation;
         this.maxEvaluations = maxEvaluations;
+        this.readerCache = readerCache;
         this.totalDocsNorm = 2f * (float) Math.log(1 + indexReader.numDocs());
     }
 
@@ -167,7 +187,7 @@ public class Collector {
         final Term leftTerm = new Term(dictionaryField, new BytesRef(left));
         final int leftDf;
         try {
-            leftDf = indexReader.docFreq(leftTerm);
+            leftDf = docFreq(leftTerm);
             if (leftDf >= minSuggestionFrequency) {
 
                 final float score = weightDfObservation == 0f ? weightMorphologicalPattern
@@ -213,6 +233,17 @@ public class Collector {
 
     }
 
+    /**
+     * Get the document frequency of a term, using the reader cache if available.
+     *
+     * @param term The term
+     * @return The document frequency of the term
+     * @throws IOException if the document frequency cannot be read from the index
+     */
+    public int docFreq(final Term term) throws IOException {
+        return readerCache == null ? indexReader.docFreq(term) : readerCache.docFreq(term);
+    }
+
     public boolean maxEvaluationsReached() {
         return evaluations >= maxEvaluations;
     }
@@ -247,12 +278,12 @@ public class Collector {
             return false;
         }
 
-        final int df1 = indexReader.docFreq(term1);
+        final int df1 = docFreq(term1);
         if (minCount > df1) {
             return false;
         }
 
-        final int df2 = indexReader.docFreq(term2);
+        final int df2 = docFreq(term2);
         if (minCount > df2) {
             return false;
         }
@@ -22,6 +22,7 @@ public class MorphologicalWordBreaker implements LuceneWordBreaker {
     private final boolean lowerCaseInput;
     private final String dictionaryField;
     private final int minSuggestionFrequency;
+    private final WordBreakCache cache;
     final float weightDfObservation;
 
     public MorphologicalWordBreaker(final Morphology morphology, final String dictionaryField,
@@ -35,7 +36,26 @@ public class MorphologicalWordBreaker implements LuceneWordBreaker {
                                     final boolean lowerCaseInput, final int minSuggestionFrequency,
                                     final int minBreakLength, final int maxEvaluations,
                                     final float weightMorphologicalPattern) {
+        this(morphology, dictionaryField, lowerCaseInput, minSuggestionFrequency, minBreakLength, maxEvaluations,
+                weightMorphologicalPattern, null);
+    }
 
+    /**
+     * @param morphology The morphology
+     * @param dictionaryField The dictionary field name
+     * @param lowerCaseInput Iff true, lowercase input before matching it against the dictionary field.
+     * @param minSuggestionFrequency The minimum frequency of a word part in the dictionary field
+     * @param minBreakLength The minimum word part length
+     * @param maxEvaluations The maximum number of index lookups per word
+     * @param weightMorphologicalPattern The weight of the morphological pattern in the score of a split
+     * @param cache The cache for document frequencies or null if document frequencies should not be cached
+     */
+    public MorphologicalWordBreaker(final Morphology morphology, final String dictionaryField,
+                                    final boolean lowerCaseInput, final int minSuggestionFrequency,
+                                    final int minBreakLength, final int maxEvaluations,
+                                    final float weightMorphologicalPattern, final WordBreakCache cache) {
+
+        this.cache = cache;
         this.minBreakLength = minBreakLength;
         this.maxEvaluations = maxEvaluations;
         this.lowerCaseInput = lowerCaseInput;
@@ -58,8 +78,11 @@ public class MorphologicalWordBreaker implements LuceneWordBreaker {
             return Collections.emptyList();
         }
 
+        final WordBreakCache.ReaderCache readerCache = cache == null
+                ? null : cache.forReader(indexReader).orElse(null);
+
         final Collector collector = new Collector(minSuggestionFrequency, maxDecompoundExpansions, maxEvaluations,
-                verifyCollation, indexReader, dictionaryField, weightDfObservation);
+                verifyCollation, indexReader, dictionaryField, weightDfObservation, readerCache);
 
         collectSuggestions(word, indexReader, collector);
 
@@ -90,7 +113,7 @@ public class MorphologicalWordBreaker implements LuceneWordBreaker {
 
             final int rightDf;
             try {
-                rightDf = indexReader.docFreq(rightTerm);
+                rightDf = collector.docFreq(rightTerm);
             } catch (final IOException e) {
                 throw new UncheckedIOException(e);
             }
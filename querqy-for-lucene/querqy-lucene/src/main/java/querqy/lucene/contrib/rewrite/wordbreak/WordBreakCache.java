@@ -0,0 +1,152 @@
+package querqy.lucene.contrib.rewrite.wordbreak;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import querqy.ConcurrentLRUCache;
+import querqy.lucene.rewrite.cache.ReaderScopedCaches;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * <p>A cache for document frequencies and for (de)compounding results of the word break rewriter.</p>
+ *
+ * <p>All cached data depends on the index, so the cache is scoped to an {@link IndexReader}: entries are kept per
+ * reader, identified by the key of its {@link IndexReader.CacheHelper}. Old and new searchers serve requests side by
+ * side while a new searcher is warmed up, so the caches of up to {@link #MAX_READERS} readers are kept at the same
+ * time. The cache of a reader is dropped when the reader is closed or, if more readers are open, when it is the oldest
+ * cache (see {@link ReaderScopedCaches}). Readers that don't provide a cache helper are never cached.</p>
+ *
+ * <p>The number of entries per reader is bounded, least recently used entries will be evicted. Instances are
+ * thread-safe.</p>
+ */
+public class WordBreakCache {
+
+    /**
+     * The maximum number of readers for which caches are kept at the same time
+     */
+    public static final int MAX_READERS = ReaderScopedCaches.DEFAULT_MAX_READERS;
+
+    private final int maxSize;
+    private final ReaderScopedCaches<ReaderCache> readerCaches = new ReaderScopedCaches<>(MAX_READERS);
+
+    /**
+     * @param maxSize The maximum number of entries per reader. Must be greater than 0.
+     */
+    public WordBreakCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize > 0 expected. Actual value: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the cache for an IndexReader.
+     *
+     * @param indexReader The reader
+     * @return The cache for the reader or an empty Optional if the reader doesn't support caching.
+     */
+    public Optional<ReaderCache> forReader(final IndexReader indexReader) {
+        return readerCaches.get(indexReader, () -> new ReaderCache(indexReader, maxSize));
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return The number of readers for which a cache is kept
+     */
+    public int getNumberOfReaders() {
+        return readerCaches.getNumberOfReaders();
+    }
+
+    /**
+     * The cached entries for a single IndexReader.
+     */
+    public static class ReaderCache {
+
+        private final IndexReader indexReader;
+        private final ConcurrentLRUCache<Object, Object> cache;
+
+        private ReaderCache(final IndexReader indexReader, final int maxSize) {
+            this.indexReader = indexReader;
+            this.cache = new ConcurrentLRUCache<>(maxSize);
+        }
+
+        /**
+         * Get the document frequency of a term in the reader of this cache.
+         *
+         * @param term The term
+         * @return The document frequency
+         * @throws IOException if the document frequency cannot be read from the index
+         */
+        public int docFreq(final Term term) throws IOException {
+            try {
+                return (Integer) cache.computeIfAbsent(new DocFreqKey(term), k -> {
+                    try {
+                        return indexReader.docFreq(term);
+                    } catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (final UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Get a cached (de)compounding result or compute and cache it.
+         *
+         * @param key The key. Keys must implement equals() and hashCode() and they must be different from the keys of
+         *            other result types.
+         * @param mappingFunction The function to compute the result. It must not return null.
+         * @param <T> The result type
+         * @return The result
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T computeIfAbsent(final Object key, final Function<Object, T> mappingFunction) {
+            return (T) cache.computeIfAbsent(key, mappingFunction);
+        }
+
+        public int size() {
+            return cache.size();
+        }
+
+        public long getHitCount() {
+            return cache.getHitCount();
+        }
+
+        public long getMissCount() {
+            return cache.getMissCount();
+        }
+
+    }
+
+    /**
+     * Wraps the term so that docFreq entries cannot be confused with result entries.
+     */
+    private static class DocFreqKey {
+
+        final Term term;
+
+        DocFreqKey(final Term term) {
+            this.term = term;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return term.equals(((DocFreqKey) o).term);
+        }
+
+        @Override
+        public int hashCode() {
+            return term.hashCode();
+        }
+    }
+
+}
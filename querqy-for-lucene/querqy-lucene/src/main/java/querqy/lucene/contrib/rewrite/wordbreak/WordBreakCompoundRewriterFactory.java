@@ -11,6 +11,7 @@ import querqy.trie.TrieMap;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.Supplier;
 
@@ -37,6 +38,7 @@ public class WordBreakCompoundRewriterFactory extends RewriterFactory {
     final LuceneWordBreaker wordBreaker; // package visible for testing
     private final LuceneCompounder compounder;
     private final TrieMap<Boolean> protectedWords;
+    private final WordBreakCache cache;
 
     /**
      * @param rewriterId The id of the rewriter
@@ -51,6 +53,7 @@ public class WordBreakCompoundRewriterFactory extends RewriterFactory {
      * @param alwaysAddReverseCompounds Iff true, reverse shingles will be added to the query
      * @param maxDecompoundExpansions The maximum number of decompounds to add to the query
      * @param verifyDecompoundCollation   Iff true, verify that all parts of the compound cooccur in dictionaryField after decompounding
+     * @param protectedWords Words that should never be split and never be the result of a combination
      */
     public WordBreakCompoundRewriterFactory(final String rewriterId,
                                             final Supplier<IndexReader> indexReaderSupplier,
@@ -65,6 +68,42 @@ public class WordBreakCompoundRewriterFactory extends RewriterFactory {
                                             final int maxDecompoundExpansions,
                                             final boolean verifyDecompoundCollation,
                                             final List<String> protectedWords) {
+        this(rewriterId, indexReaderSupplier, morphology, dictionaryField, lowerCaseInput, minSuggestionFreq,
+                maxCombineLength, minBreakLength, reverseCompoundTriggerWords, alwaysAddReverseCompounds,
+                maxDecompoundExpansions, verifyDecompoundCollation, protectedWords, 0);
+    }
+
+    /**
+     * @param rewriterId The id of the rewriter
+     * @param indexReaderSupplier Access to an IndexReader
+     * @param morphology The (de)compounding morphology to use
+     * @param dictionaryField The dictionary field name
+     * @param lowerCaseInput Iff true, lowercase input before matching it against the dictionary field.
+     * @param minSuggestionFreq The minimum frequency of a suggestion in the dictionary field (see {@link WordBreakSpellChecker}.setMinSuggestionFrequency())
+     * @param maxCombineLength The maximum length of a suggestion when combining tokens (see {@link WordBreakSpellChecker}.setMaxCombineWordLength())
+     * @param minBreakLength The minimum word part length for decompounding (see {@link WordBreakSpellChecker}.setMinBreakWordLength())
+     * @param reverseCompoundTriggerWords Query tokens in this list will trigger the creation of a reverse compound of the surrounding tokens.
+     * @param alwaysAddReverseCompounds Iff true, reverse shingles will be added to the query
+     * @param maxDecompoundExpansions The maximum number of decompounds to add to the query
+     * @param verifyDecompoundCollation   Iff true, verify that all parts of the compound cooccur in dictionaryField after decompounding
+     * @param protectedWords Words that should never be split and never be the result of a combination
+     * @param cacheSize The maximum number of document frequencies and (de)compounding results to cache for the
+     *                  IndexReader (see {@link WordBreakCache}). 0 disables caching.
+     */
+    public WordBreakCompoundRewriterFactory(final String rewriterId,
+                                            final Supplier<IndexReader> indexReaderSupplier,
+                                            final Morphology morphology,
+                                            final String dictionaryField,
+                                            final boolean lowerCaseInput,
+                                            final int minSuggestionFreq,
+                                            final int maxCombineLength,
+                                            final int minBreakLength,
+                                            final List<String> reverseCompoundTriggerWords,
+                                            final boolean alwaysAddReverseCompounds,
+                                            final int maxDecompoundExpansions,
+                                            final boolean verifyDecompoundCollation,
+                                            final List<String> protectedWords,
+                                            final int cacheSize) {
         super(rewriterId);
         this.indexReaderSupplier = indexReaderSupplier;
         this.lowerCaseInput = lowerCaseInput;
@@ -86,12 +125,27 @@ public class WordBreakCompoundRewriterFactory extends RewriterFactory {
         spellChecker.setMaxCombineWordLength(maxCombineLength);
         spellChecker.setMinBreakWordLength(minBreakLength);
         spellChecker.setMaxEvaluations(100);
-        compounder = new SpellCheckerCompounder(spellChecker, dictionaryField, lowerCaseInput);
+        final LuceneCompounder spellCheckerCompounder = new SpellCheckerCompounder(spellChecker, dictionaryField,
+                lowerCaseInput);
 
-        // TODO: configure weight of strategy
-        wordBreaker = new MorphologicalWordBreaker(morphology, dictionaryField, lowerCaseInput, minSuggestionFreq,
-                minBreakLength, MAX_EVALUATIONS);
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("cacheSize >= 0 required. Actual value: " + cacheSize);
+        }
+
+        cache = cacheSize > 0 ? new WordBreakCache(cacheSize) : null;
 
+        // TODO: configure weight of strategy
+        final LuceneWordBreaker morphologicalWordBreaker = new MorphologicalWordBreaker(morphology, dictionaryField,
+                lowerCaseInput, minSuggestionFreq, minBreakLength, MAX_EVALUATIONS,
+                MorphologicalWordBreaker.DEFAULT_WEIGHT_MORPHOLOGICAL_PATTERN, cache);
+
+        if (cache != null) {
+            compounder = new CachingCompounder(spellCheckerCompounder, cache);
+            wordBreaker = new CachingWordBreaker(morphologicalWordBreaker, cache);
+        } else {
+            compounder = spellCheckerCompounder;
+            wordBreaker = morphologicalWordBreaker;
+        }
 
     }
 
@@ -116,6 +170,13 @@ public class WordBreakCompoundRewriterFactory extends RewriterFactory {
         return protectedWords;
     }
 
+    /**
+     * @return The cache or an empty Optional if caching is disabled
+     */
+    public Optional<WordBreakCache> getCache() {
+        return Optional.ofNullable(cache);
+    }
+
     private static TrieMap<Boolean> buildWordLookup(Collection<String> words, boolean lowerCase) {
         TrieMap<Boolean> result = new TrieMap<>();
         if (words != null) {
@@ -26,8 +26,13 @@ import java.util.Optional;
 import java.util.Set;
 
 /**
- * This {@link TermQueryBuilder} creates a {@link DependentTermQuery}, which takes part in {@link DocumentFrequencyCorrection}
- * and thus depends on other {@link TermQuery}s for scoring.
+ * <p>This {@link TermQueryBuilder} creates a {@link DependentTermQuery}, which takes part in {@link DocumentFrequencyCorrection}
+ * and thus depends on other {@link TermQuery}s for scoring.</p>
+ *
+ * <p>A {@link DependentTermQuery} gets its document frequency and its per-segment term states from the
+ * {@link DocumentFrequencyCorrection}, which can take them from a
+ * {@link querqy.lucene.rewrite.cache.TermStatsCache}. The weight only reads the terms dictionary if the term states
+ * are not available (i.e. if scores are not needed).</p>
  */
 public class DependentTermQueryBuilder implements TermQueryBuilder {
 
@@ -166,6 +171,8 @@ public class DependentTermQueryBuilder implements TermQueryBuilder {
         /**
          * Copied from inner class in {@link TermQuery}
          *
+         * The weight is immutable, it can be shared between the slices of an {@link IndexSearcher} that searches
+         * segments concurrently.
          */
         final class TermWeight extends Weight {
             private final Similarity similarity;
@@ -2,7 +2,12 @@ package querqy.lucene.rewrite;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.lucene.index.IndexReaderContext;
 import org.apache.lucene.index.LeafReaderContext;
@@ -11,7 +16,10 @@ import org.apache.lucene.index.TermState;
 import org.apache.lucene.index.TermStates;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
-import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.InPlaceMergeSorter;
+import org.apache.lucene.util.ThreadInterruptedException;
+import querqy.lucene.rewrite.cache.TermStatsCache;
 
 /**
  * Created by rene on 10/09/2016.
@@ -23,14 +31,41 @@ public class DocumentFrequencyCorrection {
         USER_QUERY, OTHER_QUERY
     }
 
-    protected final List<Integer> clauseOffsets = new ArrayList<>();
-    private TermStats termStats = null;
+    protected int[] clauseOffsets = new int[8];
+    protected int numClauses = 0;
+    // safely published, TermStats are not changed after they have been calculated
+    private volatile TermStats termStats = null;
     protected int endUserQuery = -1;
     protected Status status = Status.USER_QUERY;
     protected int maxInClause = -1;
     protected int maxInUserQuery = -1;
     protected long maxTotalTermFreqInUserQuery = -1;
     int termIndex = -1;
+    protected final TermStatsCache termStatsCache;
+    protected final Executor executor;
+
+    public DocumentFrequencyCorrection() {
+        this(null);
+    }
+
+    /**
+     * @param termStatsCache A cache for the term statistics that is shared between requests or null. If it is set,
+     *                       the terms dictionary is only read for terms that are not in the cache.
+     */
+    public DocumentFrequencyCorrection(final TermStatsCache termStatsCache) {
+        this(termStatsCache, null);
+    }
+
+    /**
+     * @param termStatsCache A cache for the term statistics that is shared between requests or null. If it is set,
+     *                       the terms dictionary is only read for terms that are not in the cache.
+     * @param executor An executor for reading the term statistics of the index segments in parallel or null. This will
+     *                 normally be the executor of the {@link org.apache.lucene.search.IndexSearcher}.
+     */
+    public DocumentFrequencyCorrection(final TermStatsCache termStatsCache, final Executor executor) {
+        this.termStatsCache = termStatsCache;
+        this.executor = executor;
+    }
 
 
     protected TermStats doCalculateTermContexts(final IndexReaderContext indexReaderContext) throws IOException {
@@ -40,31 +75,66 @@ public class DocumentFrequencyCorrection {
         final TermStates[] states = new TermStates[dfs.length];
 
         for (int i = 0; i < dfs.length; i++) {
+            states[i] = new TermStates(indexReaderContext);
+        }
 
-            final Term term = terms.get(i);
+        final List<LeafReaderContext> leaves = indexReaderContext.leaves();
 
-            states[i] = new TermStates(indexReaderContext);
+        final TermStatsCache.ReaderCache readerCache = termStatsCache == null
+                ? null : termStatsCache.forContext(indexReaderContext).orElse(null);
 
-            for (final LeafReaderContext ctx : indexReaderContext.leaves()) {
+        final int[] sortedTermIndexes;
+        // the term states per term and leaf of the terms that we have to put into the cache
+        final TermState[][] leafStatesToCache;
 
-                final Terms terms = ctx.reader().terms(term.field());
-                if (terms != null) {
-                    final TermsEnum termsEnum = terms.iterator();
-                    if (termsEnum.seekExact(term.bytes())) {
-                        final TermState termState = termsEnum.termState();
-                        dfs[i] = dfs[i] + termsEnum.docFreq();
-                        totalTermFrequencies[i] = totalTermFrequencies[i] + termsEnum.totalTermFreq();
+        if (readerCache == null) {
+            sortedTermIndexes = sortTermIndexesByFieldAndBytes();
+            leafStatesToCache = null;
+        } else {
+            sortedTermIndexes = takeTermStatsFromCache(readerCache, dfs, totalTermFrequencies, states);
+            leafStatesToCache = new TermState[dfs.length][];
+            for (final int i : sortedTermIndexes) {
+                leafStatesToCache[i] = new TermState[leaves.size()];
+            }
+        }
+
+        if (sortedTermIndexes.length > 0) {
+
+            final LeafTermStats[] leafTermStats = collectLeafTermStats(leaves, sortedTermIndexes);
+
+            for (final LeafReaderContext ctx : leaves) {
+
+                final LeafTermStats leafStats = leafTermStats[ctx.ord];
+
+                for (final int i : sortedTermIndexes) {
+                    final TermState termState = leafStats.termStates[i];
+                    if (termState != null) {
+                        dfs[i] += leafStats.dfs[i];
+                        totalTermFrequencies[i] += leafStats.totalTermFrequencies[i];
                         // we'll update df and ttf later, just register the ord
                         states[i].register(termState, ctx.ord, 0, 0L);
+                        if (leafStatesToCache != null) {
+                            leafStatesToCache[i][ctx.ord] = termState;
+                        }
                     }
                 }
+            }
+        }
 
+        if (leafStatesToCache != null) {
+            for (final int i : sortedTermIndexes) {
+                readerCache.put(terms.get(i), new TermStatsCache.Entry(dfs[i], totalTermFrequencies[i],
+                        leafStatesToCache[i]));
             }
         }
 
-        for (int i = 0, last = clauseOffsets.size() - 1; i <= last; i++) {
-            final int start = clauseOffsets.get(i);
-            final int end = (i == last) ? terms.size() : clauseOffsets.get(i + 1);
+        // local copies, so that the calculation doesn't depend on the statistics of a previous calculation
+        int maxDfInUserQuery = maxInUserQuery;
+        long maxTtfInUserQuery = maxTotalTermFreqInUserQuery;
+
+        for (int i = 0, last = numClauses - 1; i <= last; i++) {
+            final int start = clauseOffsets[i];
+            final int end = (i == last) ? terms.size() : clauseOffsets[i + 1];
             int pos = start;
             if (pos < end) {
                 int maxDfInClause = dfs[pos];
@@ -74,18 +144,18 @@ public class DocumentFrequencyCorrection {
                     maxTotalTermFreqInClause = Math.max(maxTotalTermFreqInClause, totalTermFrequencies[pos++]);
                 }
                 if (endUserQuery < 0 || start < endUserQuery) {
-                    if (maxDfInClause > maxInUserQuery) {
-                        maxInUserQuery = maxDfInClause;
+                    if (maxDfInClause > maxDfInUserQuery) {
+                        maxDfInUserQuery = maxDfInClause;
                     }
 
-                    if (maxTotalTermFreqInClause > maxTotalTermFreqInUserQuery) {
-                        maxTotalTermFreqInUserQuery = maxTotalTermFreqInClause;
+                    if (maxTotalTermFreqInClause > maxTtfInUserQuery) {
+                        maxTtfInUserQuery = maxTotalTermFreqInClause;
                     }
 
 
                 } else {
-                    maxDfInClause += (maxInUserQuery - 1);
-                    maxTotalTermFreqInClause += (maxTotalTermFreqInUserQuery - 1);
+                    maxDfInClause += (maxDfInUserQuery - 1);
+                    maxTotalTermFreqInClause += (maxTtfInUserQuery - 1);
                 }
                 pos = start;
 
@@ -102,6 +172,193 @@ public class DocumentFrequencyCorrection {
 
     }
 
+    /**
+     * Seek the terms in each leaf. If an {@link Executor} is set and if there is more than one leaf, the leaves are
+     * processed in parallel. The calling thread also processes leaves that haven't been started by the executor yet,
+     * so that this method cannot wait for a busy executor forever.
+     *
+     * @param leaves The leaves of the top-level reader
+     * @param sortedTermIndexes The indexes into {@link #terms} of the terms to seek, sorted by field name and then by
+     *                          term bytes
+     * @return The statistics per leaf, indexed by the ord of the leaf
+     * @throws IOException if the terms dictionary cannot be read
+     */
+    protected LeafTermStats[] collectLeafTermStats(final List<LeafReaderContext> leaves,
+                                                   final int[] sortedTermIndexes) throws IOException {
+
+        final LeafTermStats[] leafTermStats = new LeafTermStats[leaves.size()];
+
+        if (executor == null || leaves.size() < 2) {
+            for (final LeafReaderContext ctx : leaves) {
+                leafTermStats[ctx.ord] = collectLeafTermStats(ctx, sortedTermIndexes);
+            }
+            return leafTermStats;
+        }
+
+        final List<FutureTask<LeafTermStats>> tasks = new ArrayList<>(leaves.size());
+        for (final LeafReaderContext ctx : leaves) {
+            final FutureTask<LeafTermStats> task = new FutureTask<>(() -> collectLeafTermStats(ctx,
+                    sortedTermIndexes));
+            tasks.add(task);
+            try {
+                executor.execute(task);
+            } catch (final RejectedExecutionException e) {
+                // the task will be run by the calling thread below
+            }
+        }
+
+        for (final LeafReaderContext ctx : leaves) {
+            final FutureTask<LeafTermStats> task = tasks.get(ctx.ord);
+            // no-op if the task has already been started by the executor
+            task.run();
+            try {
+                leafTermStats[ctx.ord] = task.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ThreadInterruptedException(e);
+            } catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+
+        return leafTermStats;
+
+    }
+
+    /**
+     * Seek the terms in a single leaf. All terms of a field are sought in ascending order with a single
+     * {@link TermsEnum}.
+     *
+     * @param ctx The leaf
+     * @param sortedTermIndexes The indexes into {@link #terms} of the terms to seek, sorted by field name and then by
+     *                          term bytes
+     * @return The statistics of the terms in this leaf
+     * @throws IOException if the terms dictionary cannot be read
+     */
+    protected LeafTermStats collectLeafTermStats(final LeafReaderContext ctx, final int[] sortedTermIndexes)
+            throws IOException {
+
+        final LeafTermStats leafStats = new LeafTermStats(terms.size());
+
+        String field = null;
+        TermsEnum termsEnum = null;
+        BytesRef previousBytes = null;
+        boolean found = false;
+
+        for (final int i : sortedTermIndexes) {
+
+            final Term term = terms.get(i);
+
+            if (!term.field().equals(field)) {
+                field = term.field();
+                final Terms fieldTerms = ctx.reader().terms(field);
+                termsEnum = fieldTerms == null ? null : fieldTerms.iterator();
+                previousBytes = null;
+            }
+
+            if (termsEnum != null) {
+
+                final BytesRef bytes = term.bytes();
+
+                // the same term can occur more than once in a query, there is no need to seek it again
+                if (previousBytes == null || !previousBytes.bytesEquals(bytes)) {
+                    found = termsEnum.seekExact(bytes);
+                    previousBytes = bytes;
+                }
+
+                if (found) {
+                    leafStats.termStates[i] = termsEnum.termState();
+                    leafStats.dfs[i] = termsEnum.docFreq();
+                    leafStats.totalTermFrequencies[i] = termsEnum.totalTermFreq();
+                }
+            }
+        }
+
+        return leafStats;
+    }
+
+    /**
+     * Copy the statistics of the terms that are found in the cache into the arrays.
+     *
+     * @return The indexes into {@link #terms} of the terms that were not found in the cache, sorted by field name and
+     * then by term bytes
+     */
+    protected int[] takeTermStatsFromCache(final TermStatsCache.ReaderCache readerCache, final int[] dfs,
+                                           final long[] totalTermFrequencies, final TermStates[] states) {
+
+        final int[] missing = new int[dfs.length];
+        int numMissing = 0;
+
+        for (int i = 0; i < dfs.length; i++) {
+            final TermStatsCache.Entry entry = readerCache.get(terms.get(i));
+            if (entry == null) {
+                missing[numMissing++] = i;
+            } else {
+                dfs[i] = entry.getDocFreq();
+                totalTermFrequencies[i] = entry.getTotalTermFreq();
+                for (int ord = 0, len = readerCache.getNumLeaves(); ord < len; ord++) {
+                    final TermState termState = entry.getTermState(ord);
+                    if (termState != null) {
+                        states[i].register(termState, ord, 0, 0L);
+                    }
+                }
+            }
+        }
+
+        return sortTermIndexes(Arrays.copyOf(missing, numMissing));
+    }
+
+    /**
+     * @return The indexes into {@link #terms}, sorted by field name and then by term bytes
+     */
+    protected int[] sortTermIndexesByFieldAndBytes() {
+
+        final int[] sortedTermIndexes = new int[terms.size()];
+        for (int i = 0; i < sortedTermIndexes.length; i++) {
+            sortedTermIndexes[i] = i;
+        }
+
+        return sortTermIndexes(sortedTermIndexes);
+    }
+
+    /**
+     * Sort indexes into {@link #terms} by field name and then by term bytes
+     *
+     * @param sortedTermIndexes The indexes. They will be sorted in place.
+     * @return The sorted indexes
+     */
+    protected int[] sortTermIndexes(final int[] sortedTermIndexes) {
+
+        new InPlaceMergeSorter() {
+
+            @Override
+            protected void swap(final int i, final int j) {
+                final int tmp = sortedTermIndexes[i];
+                sortedTermIndexes[i] = sortedTermIndexes[j];
+                sortedTermIndexes[j] = tmp;
+            }
+
+            @Override
+            protected int compare(final int i, final int j) {
+                // Term.compareTo compares by field and then by bytes
+                return terms.get(sortedTermIndexes[i]).compareTo(terms.get(sortedTermIndexes[j]));
+            }
+
+        }.sort(0, sortedTermIndexes.length);
+
+        return sortedTermIndexes;
+    }
+
 
     public void prepareTerm(Term term) {
         terms.add(term);
@@ -118,28 +375,60 @@ public class DocumentFrequencyCorrection {
     }
 
 
+    /**
+     * <p>Get the corrected document frequency and the term states of a term for a top-level reader.</p>
+     *
+     * <p>The statistics of all terms are calculated when this method is called for the first time for the given
+     * reader. The calculation happens only once per reader, even if weights are created concurrently. The returned
+     * {@link TermStates} are not changed afterwards, so that they can be shared between the slices of an
+     * {@link org.apache.lucene.search.IndexSearcher} that searches segments concurrently.</p>
+     *
+     * @param tqIndex The index of the term
+     * @param indexReaderContext The top-level reader context
+     * @return The document frequency and the term states
+     * @throws IOException if the terms dictionary cannot be read
+     */
     public DocumentFrequencyAndTermContext getDocumentFrequencyAndTermContext(final int tqIndex,
                                                                               final IndexReaderContext indexReaderContext)
             throws IOException {
 
+        final TermStats ts = getTermStats(indexReaderContext);
+        return new DocumentFrequencyAndTermContext(ts.documentFrequencies[tqIndex], ts.termStates[tqIndex]);
+    }
+
+    /**
+     * Get the statistics of all terms for a top-level reader. They are calculated if they haven't been calculated for
+     * this reader before. This method can be used to calculate the statistics up front, before any weight is created.
+     *
+     * @param indexReaderContext The top-level reader context
+     * @return The statistics
+     * @throws IOException if the terms dictionary cannot be read
+     */
+    public TermStats getTermStats(final IndexReaderContext indexReaderContext) throws IOException {
+
         TermStats ts = termStats;
         if (ts == null || ts.topReaderContext != indexReaderContext) {
-            ts = calculateTermContexts(indexReaderContext);
+            synchronized (this) {
+                // double-checked: another thread might have calculated the stats while we were waiting for the lock
+                ts = termStats;
+                if (ts == null || ts.topReaderContext != indexReaderContext) {
+                    ts = calculateTermContexts(indexReaderContext);
+                }
+            }
         }
-
-        return new DocumentFrequencyAndTermContext(ts.documentFrequencies[tqIndex], ts.termStates[tqIndex]);
+        return ts;
     }
 
+    /**
+     * Must only be called while holding the lock on this object.
+     */
     protected TermStats calculateTermContexts(final IndexReaderContext indexReaderContext)
             throws IOException {
 
-        return setTermStats(doCalculateTermContexts(indexReaderContext));
-
-    }
-
-    private synchronized TermStats setTermStats(final TermStats ts) {
+        final TermStats ts = doCalculateTermContexts(indexReaderContext);
         this.termStats = ts;
-        return this.termStats;
+        return ts;
+
     }
 
     public void newClause() {
@@ -147,7 +436,10 @@ public class DocumentFrequencyCorrection {
           maxInUserQuery = Math.max(maxInClause, maxInUserQuery); // TODO: do we need this?
        }
        maxInClause = -1; // TODO: do we need this?
-       clauseOffsets.add(terms.size());
+       if (numClauses == clauseOffsets.length) {
+           clauseOffsets = Arrays.copyOf(clauseOffsets, numClauses * 2);
+       }
+       clauseOffsets[numClauses++] = terms.size();
     }
 
     public void finishedUserQuery() {
@@ -164,7 +456,11 @@ public class DocumentFrequencyCorrection {
 
         final int prime = 31;
 
-        int result = prime + ((clauseOffsets == null) ? 0 : clauseOffsets.hashCode());
+        int result = prime + numClauses;
+
+        for (int i = 0; i < numClauses; i++) {
+            result = prime * result + clauseOffsets[i];
+        }
 
         for (final Term term: terms) {
             result = prime * result + term.hashCode();
@@ -183,11 +479,13 @@ public class DocumentFrequencyCorrection {
             return false;
         final DocumentFrequencyCorrection other =
                 (DocumentFrequencyCorrection) obj;
-        if (clauseOffsets == null) {
-            if (other.clauseOffsets != null)
-                return false;
-        } else if (!clauseOffsets.equals(other.clauseOffsets))
+        if (numClauses != other.numClauses)
             return false;
+        for (int i = 0; i < numClauses; i++) {
+            if (clauseOffsets[i] != other.clauseOffsets[i]) {
+                return false;
+            }
+        }
         if (terms == null) {
             if (other.terms != null)
                 return false;
@@ -214,6 +512,22 @@ public class DocumentFrequencyCorrection {
 
     }
 
+    /**
+     * The statistics of the terms in a single leaf, indexed by the index of the term. The term state is null if the
+     * term doesn't exist in the leaf.
+     */
+    protected static class LeafTermStats {
+        final TermState[] termStates;
+        final int[] dfs;
+        final long[] totalTermFrequencies;
+
+        LeafTermStats(final int numTerms) {
+            termStates = new TermState[numTerms];
+            dfs = new int[numTerms];
+            totalTermFrequencies = new long[numTerms];
+        }
+    }
+
     public static class TermStats {
         final int[] documentFrequencies;
         final TermStates[] termStates;
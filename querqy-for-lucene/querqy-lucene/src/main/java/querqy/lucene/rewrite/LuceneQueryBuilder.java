@@ -13,6 +13,7 @@ import org.apache.lucene.search.Query;
 
 import querqy.CompoundCharSequence;
 import querqy.lucene.rewrite.BooleanQueryFactory.Clause;
+import querqy.lucene.rewrite.cache.AnalysisCache;
 import querqy.lucene.rewrite.cache.TermQueryCache;
 import querqy.model.AbstractNodeVisitor;
 import querqy.model.BooleanQuery;
@@ -77,6 +78,45 @@ public class LuceneQueryBuilder extends AbstractNodeVisitor<LuceneQueryFactory<?
                               final SearchFieldsAndBoosting searchFieldsAndBoosting,
                               final float dmqTieBreakerMultiplier, final boolean normalizeBooleanQueryBoost,
                               final TermQueryCache termQueryCache) {
+        this(termQueryBuilder, analyzer, searchFieldsAndBoosting, dmqTieBreakerMultiplier, normalizeBooleanQueryBoost,
+                termQueryCache, null);
+    }
+
+    /**
+     * @param termQueryBuilder The TermQueryBuilder
+     * @param analyzer The query Analyzer
+     * @param searchFieldsAndBoosting The search fields and their boost factors
+     * @param dmqTieBreakerMultiplier The tie breaker for dismax queries
+     * @param normalizeBooleanQueryBoost Iff true and if the analyzer turns a single token into multiple tokens, divide their aggregate score by their count
+     * @param termQueryCache The term query cache or null
+     * @param analysisCache The cache for query-time analysis results or null
+     * @see #LuceneQueryBuilder(TermQueryBuilder, Analyzer, SearchFieldsAndBoosting, float, boolean, TermQueryCache)
+     */
+    public LuceneQueryBuilder(final TermQueryBuilder termQueryBuilder, final Analyzer analyzer,
+                              final SearchFieldsAndBoosting searchFieldsAndBoosting,
+                              final float dmqTieBreakerMultiplier, final boolean normalizeBooleanQueryBoost,
+                              final TermQueryCache termQueryCache, final AnalysisCache analysisCache) {
+        this(termQueryBuilder, analyzer, searchFieldsAndBoosting, dmqTieBreakerMultiplier, normalizeBooleanQueryBoost,
+                termQueryCache, analysisCache, null);
+    }
+
+    /**
+     * @param termQueryBuilder The TermQueryBuilder
+     * @param analyzer The query Analyzer
+     * @param searchFieldsAndBoosting The search fields and their boost factors
+     * @param dmqTieBreakerMultiplier The tie breaker for dismax queries
+     * @param normalizeBooleanQueryBoost Iff true and if the analyzer turns a single token into multiple tokens, divide their aggregate score by their count
+     * @param termQueryCache The term query cache or null
+     * @param analysisCache The cache for query-time analysis results or null
+     * @param termExistenceFilter The filter for the terms of the index against which the query will be executed or
+     *                            null. Term queries for terms that don't exist in a filtered field will be dropped.
+     * @see #LuceneQueryBuilder(TermQueryBuilder, Analyzer, SearchFieldsAndBoosting, float, boolean, TermQueryCache)
+     */
+    public LuceneQueryBuilder(final TermQueryBuilder termQueryBuilder, final Analyzer analyzer,
+                              final SearchFieldsAndBoosting searchFieldsAndBoosting,
+                              final float dmqTieBreakerMultiplier, final boolean normalizeBooleanQueryBoost,
+                              final TermQueryCache termQueryCache, final AnalysisCache analysisCache,
+                              final TermExistenceFilter termExistenceFilter) {
         if (termQueryBuilder == null) {
             throw new IllegalArgumentException("TermQueryBuilder must not be null");
         }
@@ -85,7 +125,7 @@ public class LuceneQueryBuilder extends AbstractNodeVisitor<LuceneQueryFactory<?
         this.dmqTieBreakerMultiplier = dmqTieBreakerMultiplier;
         this.normalizeBooleanQueryBoost = normalizeBooleanQueryBoost;
         this.termQueryBuilder = termQueryBuilder;
-        termSubQueryBuilder = new TermSubQueryBuilder(analyzer, termQueryCache);
+        termSubQueryBuilder = new TermSubQueryBuilder(analyzer, termQueryCache, analysisCache, termExistenceFilter);
     }
 
     public void reset() {
@@ -177,6 +217,11 @@ public class LuceneQueryBuilder extends AbstractNodeVisitor<LuceneQueryFactory<?
                     return result.queryFactory;
                 }
             case DMQ:
+                if (cannotMatch(bq)) {
+                    // let the parent DMQ drop this disjunct
+                    dmqStack.getLast().add(NeverMatchQueryFactory.FACTORY);
+                    return NeverMatchQueryFactory.FACTORY;
+                }
                 if (result.occur != Occur.SHOULD) {
                     // create a wrapper query
                     final BooleanQueryFactory wrapper = new BooleanQueryFactory(false);
@@ -217,8 +262,20 @@ public class LuceneQueryBuilder extends AbstractNodeVisitor<LuceneQueryFactory<?
 
         parentType = myParentType;
 
+        // drop disjuncts that can't match, for example, because their terms don't exist in the index
+        final boolean hasDisjuncts = dmq.getNumberOfDisjuncts() > 0;
+        dmq.disjuncts.removeIf(LuceneQueryBuilder::isNeverMatch);
+
         switch (dmq.getNumberOfDisjuncts()) {
             case 0:
+                if (hasDisjuncts) {
+                    // all disjuncts were dropped. Keep the DMQ in the parent query as a query that never matches so
+                    // that required clauses are still required. A negative clause that never matches can be dropped.
+                    if (disjunctionMaxQuery.occur != querqy.model.SubQuery.Occur.MUST_NOT) {
+                        clauseStack.getLast().add(NeverMatchQueryFactory.FACTORY, occur(disjunctionMaxQuery.occur));
+                    }
+                    return NeverMatchQueryFactory.FACTORY;
+                }
                 // no sub-query - this can happen if analysis filters out all tokens (stopwords)
             return new NeverMatchQueryFactory();
             case 1:
@@ -296,6 +353,39 @@ public class LuceneQueryBuilder extends AbstractNodeVisitor<LuceneQueryFactory<?
 
     }
 
+    static boolean isNeverMatch(final LuceneQueryFactory<?> factory) {
+        return (factory instanceof NeverMatchQueryFactory)
+                || ((factory instanceof TermSubQueryFactory) && ((TermSubQueryFactory) factory).isNeverMatchQuery());
+    }
+
+    /**
+     * @param bq The BooleanQueryFactory
+     * @return true if a required clause or - if there is no required clause - all optional clauses never match
+     */
+    static boolean cannotMatch(final BooleanQueryFactory bq) {
+        boolean hasRequiredClause = false;
+        boolean hasOptionalClause = false;
+        boolean hasMatchingOptionalClause = false;
+        for (final Clause clause : bq.clauses) {
+            switch (clause.occur) {
+                case MUST:
+                case FILTER:
+                    if (isNeverMatch(clause.queryFactory)) {
+                        return true;
+                    }
+                    hasRequiredClause = true;
+                    break;
+                case SHOULD:
+                    hasOptionalClause = true;
+                    hasMatchingOptionalClause |= !isNeverMatch(clause.queryFactory);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return !hasRequiredClause && hasOptionalClause && !hasMatchingOptionalClause;
+    }
+
    /**
     * 
     * <p>
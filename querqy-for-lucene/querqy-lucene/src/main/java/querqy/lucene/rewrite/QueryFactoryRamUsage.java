@@ -0,0 +1,132 @@
+package querqy.lucene.rewrite;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+import querqy.lucene.rewrite.prms.PRMSAndQuery;
+import querqy.lucene.rewrite.prms.PRMSDisjunctionMaxQuery;
+import querqy.lucene.rewrite.prms.PRMSQuery;
+import querqy.lucene.rewrite.prms.PRMSTermQuery;
+
+import java.util.Collection;
+import java.util.LinkedList;
+
+/**
+ * <p>Estimates the memory that is used by the trees of {@link LuceneQueryFactory}s and {@link PRMSQuery}s which are
+ * created for the analyzed terms of a query and which are kept in a {@link querqy.lucene.rewrite.cache.TermQueryCache}.
+ * </p>
+ *
+ * <p>The estimates are meant for weighing cache entries against each other. They count the objects of the known
+ * factory and PRMS query types and their terms. A {@link PRMSTermQuery} shares its term with the corresponding
+ * {@link TermQueryFactory}, so the term is only counted once. Objects of other types are counted with their shallow
+ * size.</p>
+ */
+public final class QueryFactoryRamUsage {
+
+    private static final long TERM_BYTES = RamUsageEstimator.shallowSizeOfInstance(Term.class)
+            + RamUsageEstimator.shallowSizeOfInstance(BytesRef.class);
+    private static final long LINKED_LIST_BYTES = RamUsageEstimator.shallowSizeOfInstance(LinkedList.class);
+    private static final long LINKED_LIST_NODE_BYTES = RamUsageEstimator.alignObjectSize(
+            RamUsageEstimator.NUM_BYTES_OBJECT_HEADER + 3L * RamUsageEstimator.NUM_BYTES_OBJECT_REF);
+    private static final long TERM_QUERY_FACTORY_BYTES =
+            RamUsageEstimator.shallowSizeOfInstance(TermQueryFactory.class);
+    private static final long BOOLEAN_QUERY_FACTORY_BYTES =
+            RamUsageEstimator.shallowSizeOfInstance(BooleanQueryFactory.class);
+    private static final long CLAUSE_BYTES = RamUsageEstimator.shallowSizeOfInstance(BooleanQueryFactory.Clause.class);
+    private static final long DISJUNCTION_MAX_QUERY_FACTORY_BYTES =
+            RamUsageEstimator.shallowSizeOfInstance(DisjunctionMaxQueryFactory.class);
+    private static final long TERM_SUB_QUERY_FACTORY_BYTES =
+            RamUsageEstimator.shallowSizeOfInstance(TermSubQueryFactory.class);
+    private static final long PRMS_TERM_QUERY_BYTES = RamUsageEstimator.shallowSizeOfInstance(PRMSTermQuery.class);
+    private static final long PRMS_AND_QUERY_BYTES = RamUsageEstimator.shallowSizeOfInstance(PRMSAndQuery.class);
+    private static final long PRMS_DISJUNCTION_MAX_QUERY_BYTES =
+            RamUsageEstimator.shallowSizeOfInstance(PRMSDisjunctionMaxQuery.class);
+
+    private QueryFactoryRamUsage() {
+    }
+
+    /**
+     * @param factory The query factory
+     * @return The estimated size of the factory and of its sub-factories in bytes, 0 for null
+     */
+    public static long ramBytesUsed(final LuceneQueryFactory<?> factory) {
+
+        if (factory == null || factory == NeverMatchQueryFactory.FACTORY) {
+            return 0L;
+        }
+
+        if (factory instanceof TermQueryFactory) {
+            return TERM_QUERY_FACTORY_BYTES + ramBytesUsed(((TermQueryFactory) factory).term);
+        }
+
+        if (factory instanceof BooleanQueryFactory) {
+            final Collection<BooleanQueryFactory.Clause> clauses = ((BooleanQueryFactory) factory).clauses;
+            long size = BOOLEAN_QUERY_FACTORY_BYTES + LINKED_LIST_BYTES;
+            for (final BooleanQueryFactory.Clause clause : clauses) {
+                size += LINKED_LIST_NODE_BYTES + CLAUSE_BYTES + ramBytesUsed(clause.queryFactory);
+            }
+            return size;
+        }
+
+        if (factory instanceof DisjunctionMaxQueryFactory) {
+            long size = DISJUNCTION_MAX_QUERY_FACTORY_BYTES + LINKED_LIST_BYTES;
+            for (final LuceneQueryFactory<?> disjunct : ((DisjunctionMaxQueryFactory) factory).disjuncts) {
+                size += LINKED_LIST_NODE_BYTES + ramBytesUsed(disjunct);
+            }
+            return size;
+        }
+
+        if (factory instanceof TermSubQueryFactory) {
+            final TermSubQueryFactory termSubQueryFactory = (TermSubQueryFactory) factory;
+            return TERM_SUB_QUERY_FACTORY_BYTES + ramBytesUsed(termSubQueryFactory.root)
+                    + ramBytesUsed(termSubQueryFactory.prmsQuery);
+        }
+
+        return RamUsageEstimator.shallowSizeOf(factory);
+    }
+
+    /**
+     * @param prmsQuery The PRMS query
+     * @return The estimated size of the PRMS query and of its sub-queries in bytes, excluding terms, 0 for null
+     */
+    public static long ramBytesUsed(final PRMSQuery prmsQuery) {
+
+        if (prmsQuery == null || prmsQuery == PRMSQuery.NEVER_MATCH_PRMS_QUERY) {
+            return 0L;
+        }
+
+        if (prmsQuery instanceof PRMSTermQuery) {
+            return PRMS_TERM_QUERY_BYTES;
+        }
+
+        if (prmsQuery instanceof PRMSAndQuery) {
+            return PRMS_AND_QUERY_BYTES + ramBytesUsed(((PRMSAndQuery) prmsQuery).getClauses());
+        }
+
+        if (prmsQuery instanceof PRMSDisjunctionMaxQuery) {
+            return PRMS_DISJUNCTION_MAX_QUERY_BYTES
+                    + ramBytesUsed(((PRMSDisjunctionMaxQuery) prmsQuery).getDisjuncts());
+        }
+
+        return RamUsageEstimator.shallowSizeOf(prmsQuery);
+    }
+
+    private static long ramBytesUsed(final Collection<PRMSQuery> prmsQueries) {
+        long size = LINKED_LIST_BYTES;
+        for (final PRMSQuery prmsQuery : prmsQueries) {
+            size += LINKED_LIST_NODE_BYTES + ramBytesUsed(prmsQuery);
+        }
+        return size;
+    }
+
+    /**
+     * @param term The term
+     * @return The estimated size of the term and of its bytes in bytes. The field name is not counted as it is shared
+     * between terms.
+     */
+    public static long ramBytesUsed(final Term term) {
+        return TERM_BYTES + RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_ARRAY_HEADER
+                + (long) term.bytes().length);
+    }
+
+}
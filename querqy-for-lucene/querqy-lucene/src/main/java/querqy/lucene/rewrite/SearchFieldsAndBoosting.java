@@ -8,6 +8,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import querqy.lucene.rewrite.cache.PRMSFieldProbabilityCache;
 import querqy.lucene.rewrite.prms.PRMSFieldBoost;
 import querqy.model.Term;
 
@@ -23,11 +24,24 @@ public class SearchFieldsAndBoosting {
     final Map<String, Float> queryFieldsAndBoostings;
     final Map<String, Float> generatedQueryFieldsAndBoostings;
     final FieldBoostModel fieldBoostModel;
+    final PRMSFieldProbabilityCache prmsFieldProbabilityCache;
     
     public SearchFieldsAndBoosting(final FieldBoostModel fieldBoostModel,
                                    final Map<String, Float> queryFieldsAndBoostings,
                                    final Map<String, Float> generatedQueryFieldsAndBoostings,
                                    final float defaultGeneratedFieldBoostFactor) {
+        this(fieldBoostModel, queryFieldsAndBoostings, generatedQueryFieldsAndBoostings,
+                defaultGeneratedFieldBoostFactor, null);
+    }
+
+    /**
+     * @param prmsFieldProbabilityCache The cache for the field probabilities of {@link FieldBoostModel#PRMS} or null
+     */
+    public SearchFieldsAndBoosting(final FieldBoostModel fieldBoostModel,
+                                   final Map<String, Float> queryFieldsAndBoostings,
+                                   final Map<String, Float> generatedQueryFieldsAndBoostings,
+                                   final float defaultGeneratedFieldBoostFactor,
+                                   final PRMSFieldProbabilityCache prmsFieldProbabilityCache) {
         if (fieldBoostModel == null) {
             throw new IllegalArgumentException("FieldBoostModel must not be null");
         }
@@ -35,11 +49,12 @@ public class SearchFieldsAndBoosting {
         this.queryFieldsAndBoostings = queryFieldsAndBoostings;
         this.generatedQueryFieldsAndBoostings = generatedQueryFieldsAndBoostings;
         this.defaultGeneratedFieldBoostFactor = defaultGeneratedFieldBoostFactor;
+        this.prmsFieldProbabilityCache = prmsFieldProbabilityCache;
     }
 
     public SearchFieldsAndBoosting withFieldBoostModel(final FieldBoostModel newModel) {
         return new SearchFieldsAndBoosting(newModel, queryFieldsAndBoostings, generatedQueryFieldsAndBoostings,
-                defaultGeneratedFieldBoostFactor);
+                defaultGeneratedFieldBoostFactor, prmsFieldProbabilityCache);
     }
     
     public boolean hasSearchField(String searchField, Term term) {
@@ -83,7 +98,7 @@ public class SearchFieldsAndBoosting {
 
                 case NONE: return ConstantFieldBoost.NORM_BOOST;
 
-                case PRMS: return new PRMSFieldBoost();
+                case PRMS: return new PRMSFieldBoost(prmsFieldProbabilityCache);
 
                 default: throw new IllegalStateException("Unknown FieldBoostModel: " + fieldBoostModel);
 
@@ -0,0 +1,179 @@
+package querqy.lucene.rewrite;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiTerms;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.NoOutputs;
+import org.apache.lucene.util.fst.Util;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Knows which terms exist in selected fields of an index, so that query parts for terms that can't match can be
+ * pruned before they are weighted and scored.</p>
+ *
+ * <p>The terms of each field are copied into an {@link FST} when the filter is built. Lookups are exact and don't
+ * touch the index. The terms of deleted documents are kept until their segments are merged away, which only means
+ * that such terms are not pruned.</p>
+ *
+ * <p>A filter reflects the index at the time it was built. It must only be used for queries that are executed against
+ * the same reader. Instances are immutable and thread-safe.</p>
+ *
+ * @see querqy.lucene.rewrite.cache.TermExistenceFilterCache
+ */
+public class TermExistenceFilter implements Accountable {
+
+    private static final NoOutputs OUTPUTS = NoOutputs.getSingleton();
+
+    // field name -> FST of the field's terms or null if the field has no terms
+    private final Map<String, FST<Object>> fieldTerms;
+
+    private TermExistenceFilter(final Map<String, FST<Object>> fieldTerms) {
+        this.fieldTerms = fieldTerms;
+    }
+
+    /**
+     * Build a filter from the terms dictionary of an index.
+     *
+     * @param indexReader The top-level reader
+     * @param fields The fields to be filtered
+     * @return The filter
+     * @throws IOException if the terms cannot be read from the index
+     */
+    public static TermExistenceFilter build(final IndexReader indexReader, final Collection<String> fields)
+            throws IOException {
+
+        final Map<String, FST<Object>> fieldTerms = new HashMap<>(fields.size());
+
+        for (final String field : fields) {
+
+            final Terms terms = MultiTerms.getTerms(indexReader, field);
+            if (terms == null) {
+                fieldTerms.put(field, null);
+                continue;
+            }
+
+            final Builder<Object> builder = new Builder<>(FST.INPUT_TYPE.BYTE1, OUTPUTS);
+            final IntsRefBuilder scratch = new IntsRefBuilder();
+
+            // the terms come in sorted order, as required by the FST builder
+            final TermsEnum termsEnum = terms.iterator();
+            BytesRef bytes;
+            while ((bytes = termsEnum.next()) != null) {
+                builder.add(Util.toIntsRef(bytes, scratch), OUTPUTS.getNoOutput());
+            }
+
+            fieldTerms.put(field, builder.finish());
+
+        }
+
+        return new TermExistenceFilter(fieldTerms);
+    }
+
+    /**
+     * @param field The field name
+     * @return true iff the terms of this field are known to the filter
+     */
+    public boolean isFiltered(final String field) {
+        return fieldTerms.containsKey(field);
+    }
+
+    public Set<String> getFields() {
+        return Collections.unmodifiableSet(fieldTerms.keySet());
+    }
+
+    /**
+     * @param term The term
+     * @return false iff the field of the term is filtered and the term doesn't exist in this field
+     * @throws IOException if the FST cannot be read
+     */
+    public boolean mayExist(final Term term) throws IOException {
+        if (!fieldTerms.containsKey(term.field())) {
+            return true;
+        }
+        final FST<Object> fst = fieldTerms.get(term.field());
+        return fst != null && Util.get(fst, term.bytes()) != null;
+    }
+
+    /**
+     * Test whether a query that was created for the analyzed tokens of a term can match any document.
+     *
+     * @param factory The query factory
+     * @return false iff the query created by the factory can't match any document
+     * @throws IOException if the FST cannot be read
+     */
+    public boolean mayMatch(final LuceneQueryFactory<?> factory) throws IOException {
+
+        if (factory instanceof NeverMatchQueryFactory) {
+            return false;
+        }
+
+        if (factory instanceof TermQueryFactory) {
+            return mayExist(((TermQueryFactory) factory).term);
+        }
+
+        if (factory instanceof DisjunctionMaxQueryFactory) {
+            for (final LuceneQueryFactory<?> disjunct : ((DisjunctionMaxQueryFactory) factory).disjuncts) {
+                if (mayMatch(disjunct)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        if (factory instanceof BooleanQueryFactory) {
+            boolean hasRequiredClause = false;
+            boolean hasMatchingOptionalClause = false;
+            for (final BooleanQueryFactory.Clause clause : ((BooleanQueryFactory) factory).clauses) {
+                switch (clause.occur) {
+                    case MUST:
+                    case FILTER:
+                        if (!mayMatch(clause.queryFactory)) {
+                            return false;
+                        }
+                        hasRequiredClause = true;
+                        break;
+                    case SHOULD:
+                        hasMatchingOptionalClause |= mayMatch(clause.queryFactory);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return hasRequiredClause || hasMatchingOptionalClause;
+        }
+
+        if (factory instanceof TermSubQueryFactory) {
+            return mayMatch(((TermSubQueryFactory) factory).root);
+        }
+
+        return true;
+    }
+
+    /**
+     * @return The estimated size of the FSTs in bytes
+     */
+    @Override
+    public long ramBytesUsed() {
+        long ramBytesUsed = 0L;
+        for (final FST<Object> fst : fieldTerms.values()) {
+            if (fst != null) {
+                ramBytesUsed += fst.ramBytesUsed();
+            }
+        }
+        return ramBytesUsed;
+    }
+
+}
@@ -16,6 +16,7 @@ import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.util.BytesRef;
 
+import querqy.lucene.rewrite.cache.AnalysisCache;
 import querqy.lucene.rewrite.cache.CacheKey;
 import querqy.lucene.rewrite.cache.TermQueryCache;
 import querqy.lucene.rewrite.cache.TermQueryCacheValue;
@@ -33,10 +34,39 @@ import querqy.rewrite.commonrules.model.PositionSequence;
 public class TermSubQueryBuilder {
     
     private final TermQueryCache termQueryCache;
+    private final AnalysisCache analysisCache;
+    private final TermExistenceFilter termExistenceFilter;
     private final Analyzer analyzer;
     
     public TermSubQueryBuilder(final Analyzer analyzer, final TermQueryCache termQueryCache) {
+        this(analyzer, termQueryCache, null);
+    }
+
+    /**
+     * @param analyzer The query analyzer
+     * @param termQueryCache The term query cache or null
+     * @param analysisCache The cache for the analysis results or null. It is only used for terms that are not found in
+     *                      the termQueryCache.
+     */
+    public TermSubQueryBuilder(final Analyzer analyzer, final TermQueryCache termQueryCache,
+                               final AnalysisCache analysisCache) {
+        this(analyzer, termQueryCache, analysisCache, null);
+    }
+
+    /**
+     * @param analyzer The query analyzer
+     * @param termQueryCache The term query cache or null
+     * @param analysisCache The cache for the analysis results or null. It is only used for terms that are not found in
+     *                      the termQueryCache.
+     * @param termExistenceFilter The filter for the terms of the index against which the query will be executed or
+     *                            null. Sub-queries that can't match according to this filter will be replaced with a
+     *                            {@link NeverMatchQueryFactory}. Entries of the termQueryCache are not affected.
+     */
+    public TermSubQueryBuilder(final Analyzer analyzer, final TermQueryCache termQueryCache,
+                               final AnalysisCache analysisCache, final TermExistenceFilter termExistenceFilter) {
         this.termQueryCache = termQueryCache;
+        this.analysisCache = analysisCache;
+        this.termExistenceFilter = termExistenceFilter;
         this.analyzer = analyzer;
     }
     
@@ -55,14 +85,42 @@ public class TermSubQueryBuilder {
                 // query factory if the term does not exist in the index. cacheValue.hasQuery() returns
                 // true/false correspondingly.
                 // Cache entries don't have a boost factor, it is only added later via the queryFactory.
-                return (cacheValue.hasQuery()) ? new TermSubQueryFactory(cacheValue, boost) : null;
+                return (cacheValue.hasQuery()) ? filter(fieldname, new TermSubQueryFactory(cacheValue, boost)) : null;
             } 
             
         } else {
             cacheKey = null;
         }
         
-        final LuceneQueryFactoryAndPRMSQuery root;
+        final PositionSequence<org.apache.lucene.index.Term> sequence = analysisCache == null
+                ? analyze(fieldname, sourceTerm)
+                : analysisCache.analyze(analyzer, fieldname, sourceTerm, () -> analyze(fieldname, sourceTerm));
+
+        final LuceneQueryFactoryAndPRMSQuery root = positionSequenceToQueryFactoryAndPRMS(sequence);
+
+        putQueryFactoryAndPRMSQueryIntoCache(cacheKey, root);
+        
+        return root == null ? null : filter(fieldname, new TermSubQueryFactory(root, boost));
+    }
+
+    /**
+     * Replace a sub-query that can't match according to the {@link TermExistenceFilter} with a query that never
+     * matches. This must only be applied after the sub-query has been put into the term query cache, as the cache is
+     * independent from the index.
+     */
+    protected TermSubQueryFactory filter(final String fieldname, final TermSubQueryFactory termSubQueryFactory)
+            throws IOException {
+        if (termExistenceFilter == null || termSubQueryFactory.isNeverMatchQuery()
+                || !termExistenceFilter.isFiltered(fieldname) || termExistenceFilter.mayMatch(termSubQueryFactory)) {
+            return termSubQueryFactory;
+        }
+        return new TermSubQueryFactory(NeverMatchQueryFactory.FACTORY, PRMSQuery.NEVER_MATCH_PRMS_QUERY,
+                termSubQueryFactory.boost);
+    }
+
+    protected PositionSequence<org.apache.lucene.index.Term> analyze(final String fieldname, final Term sourceTerm)
+            throws IOException {
+
         TokenStream ts = null;
         try {
            
@@ -82,7 +140,7 @@ public class TermSubQueryBuilder {
                sequence.addElement(new org.apache.lucene.index.Term(fieldname, new BytesRef(termAttr)));
            }
            
-           root = positionSequenceToQueryFactoryAndPRMS(sequence);
+           return sequence;
 
         } finally {
            if (ts != null) {
@@ -92,10 +150,6 @@ public class TermSubQueryBuilder {
                }
            }
         }
-
-        putQueryFactoryAndPRMSQueryIntoCache(cacheKey, root);
-        
-        return root == null ? null : new TermSubQueryFactory(root, boost);
     }
 
     protected void putQueryFactoryAndPRMSQueryIntoCache(final CacheKey cacheKey, final LuceneQueryFactoryAndPRMSQuery value) {
@@ -0,0 +1,157 @@
+package querqy.lucene.rewrite.cache;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.Term;
+import querqy.ConcurrentLRUCache;
+import querqy.rewrite.commonrules.model.PositionSequence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * <p>A cache for the results of query-time text analysis.</p>
+ *
+ * <p>The result of analysing the chars of a query term for a field only depends on the {@link Analyzer}, the field
+ * name and the chars, but not on the index. The cache can thus be shared between requests and searchers. Entries are
+ * keyed by the identity of the analyzer, so that an analyzer that is replaced (for example, after a schema change)
+ * never sees the results of its predecessor. Entries of replaced analyzers are dropped by LRU eviction.</p>
+ *
+ * <p>The number of entries is bounded, least recently used entries will be evicted. Instances are thread-safe.</p>
+ */
+public class AnalysisCache {
+
+    private final ConcurrentLRUCache<Key, Term[][]> cache;
+
+    /**
+     * @param maxSize The maximum number of entries. Must be greater than 0.
+     */
+    public AnalysisCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize > 0 expected. Actual value: " + maxSize);
+        }
+        cache = new ConcurrentLRUCache<>(maxSize);
+    }
+
+    /**
+     * Get the analyzed tokens of the input from the cache or analyse the input and cache the result.
+     *
+     * @param analyzer The analyzer
+     * @param fieldname The field name that is passed to the analyzer
+     * @param input The chars to analyse
+     * @param analysis The function that analyses the input if it is not in the cache
+     * @return A new sequence of the token positions. Each position holds the tokens at that position. The sequence
+     * is empty if the analyzer didn't produce any token.
+     * @throws IOException if the analysis failed
+     */
+    public PositionSequence<Term> analyze(final Analyzer analyzer, final String fieldname, final CharSequence input,
+                                          final Analysis analysis) throws IOException {
+
+        final Term[][] positions;
+        try {
+            positions = cache.computeIfAbsent(new Key(analyzer, fieldname, input.toString()), key -> {
+                try {
+                    return toArray(analysis.analyze());
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        final PositionSequence<Term> sequence = new PositionSequence<>();
+        for (final Term[] position : positions) {
+            sequence.nextPosition();
+            for (final Term term : position) {
+                sequence.addElement(term);
+            }
+        }
+        return sequence;
+    }
+
+    private static Term[][] toArray(final PositionSequence<Term> sequence) {
+        final Term[][] positions = new Term[sequence.size()][];
+        int i = 0;
+        for (final List<Term> position : sequence) {
+            positions[i++] = position.toArray(new Term[0]);
+        }
+        return positions;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public int getMaxSize() {
+        return cache.getMaxSize();
+    }
+
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "AnalysisCache{" + cache + '}';
+    }
+
+    /**
+     * Analyses a single input.
+     */
+    @FunctionalInterface
+    public interface Analysis {
+
+        /**
+         * @return The token positions
+         * @throws IOException if the analysis failed
+         */
+        PositionSequence<Term> analyze() throws IOException;
+    }
+
+    private static class Key {
+
+        final Analyzer analyzer;
+        final String fieldname;
+        final String input;
+        final int hashCode;
+
+        Key(final Analyzer analyzer, final String fieldname, final String input) {
+            this.analyzer = analyzer;
+            this.fieldname = fieldname;
+            this.input = input;
+            int h = System.identityHashCode(analyzer);
+            h = 31 * h + (fieldname == null ? 0 : fieldname.hashCode());
+            hashCode = 31 * h + input.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Key other = (Key) o;
+            return analyzer == other.analyzer
+                    && hashCode == other.hashCode
+                    && input.equals(other.input)
+                    && (fieldname == null ? other.fieldname == null : fieldname.equals(other.fieldname));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+}
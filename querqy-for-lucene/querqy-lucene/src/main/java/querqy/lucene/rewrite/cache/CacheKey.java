@@ -16,15 +16,17 @@ public class CacheKey {
     public final String fieldname;
    // public final Term term;
     protected final ComparableCharSequence value;
+    // keys are probed for every term of every query, don't hash the CharSequence each time
+    protected final int hashCode;
     
     public CacheKey(String fieldname, Term term) {
         this.fieldname = fieldname;
        // this.term = term;
         value = term.getValue();
+        hashCode = calculateHashCode();
     }
 
-    @Override
-    public int hashCode() {
+    private int calculateHashCode() {
         final int prime = 31;
         int result = 1;
         result = prime * result
@@ -33,6 +35,11 @@ public class CacheKey {
         return result;
     }
 
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj)
@@ -42,6 +49,8 @@ public class CacheKey {
         if (getClass() != obj.getClass())
             return false;
         CacheKey other = (CacheKey) obj;
+        if (hashCode != other.hashCode)
+            return false;
         if (fieldname == null) {
             if (other.fieldname != null)
                 return false;
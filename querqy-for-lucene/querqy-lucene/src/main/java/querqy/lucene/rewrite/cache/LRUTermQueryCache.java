@@ -0,0 +1,244 @@
+package querqy.lucene.rewrite.cache;
+
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>A thread-safe {@link TermQueryCache} that is bounded by the estimated memory of its entries and that evicts the
+ * least recently used entries. It doesn't depend on a search engine and can be shared between requests and searchers
+ * as the cached values don't depend on the index.</p>
+ *
+ * <p>The cache is split into segments by the hash code of the key. Each segment is an access-ordered
+ * {@link LinkedHashMap} that is guarded by its own lock and that gets an equal share of the memory budget. The LRU
+ * order is maintained per segment, which makes the eviction order approximate. The memory of an entry is estimated
+ * from its key and from {@link TermQueryCacheValue#ramBytesUsed()}. Entries that are larger than the share of a
+ * segment are not cached.</p>
+ *
+ * <p>Hits, misses and evictions are counted without locking.</p>
+ */
+public class LRUTermQueryCache implements TermQueryCache, Accountable {
+
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    // LinkedHashMap.Entry (hash, key, value, next, before, after) plus the slot in the hash table
+    private static final long MAP_ENTRY_BYTES = RamUsageEstimator.alignObjectSize(
+            RamUsageEstimator.NUM_BYTES_OBJECT_HEADER + Integer.BYTES + 5L * RamUsageEstimator.NUM_BYTES_OBJECT_REF)
+            + RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+    private static final long ENTRY_BYTES = RamUsageEstimator.shallowSizeOfInstance(Entry.class);
+    private static final long KEY_BYTES = RamUsageEstimator.shallowSizeOfInstance(CacheKey.class);
+
+    private final Segment[] segments;
+    private final long maxRamBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxRamBytes The maximum estimated memory of all entries in bytes. Must be greater than 0.
+     */
+    public LRUTermQueryCache(final long maxRamBytes) {
+        this(maxRamBytes, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * @param maxRamBytes The maximum estimated memory of all entries in bytes. Must be greater than 0.
+     * @param concurrencyLevel The number of segments. Must be greater than 0.
+     */
+    public LRUTermQueryCache(final long maxRamBytes, final int concurrencyLevel) {
+
+        if (maxRamBytes < 1L) {
+            throw new IllegalArgumentException("maxRamBytes > 0 expected. Actual value: " + maxRamBytes);
+        }
+        if (concurrencyLevel < 1) {
+            throw new IllegalArgumentException("concurrencyLevel > 0 expected. Actual value: " + concurrencyLevel);
+        }
+
+        this.maxRamBytes = maxRamBytes;
+
+        segments = new Segment[concurrencyLevel];
+        final long ramBytesPerSegment = Math.max(1L, maxRamBytes / concurrencyLevel);
+        for (int i = 0; i < concurrencyLevel; i++) {
+            segments[i] = new Segment(ramBytesPerSegment);
+        }
+    }
+
+    @Override
+    public TermQueryCacheValue get(final CacheKey key) {
+        final Segment segment = segmentFor(key);
+        final Entry entry;
+        synchronized (segment) {
+            entry = segment.map.get(key);
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    @Override
+    public void put(final CacheKey key, final TermQueryCacheValue value) {
+
+        if (value == null) {
+            throw new IllegalArgumentException("value must not be null");
+        }
+
+        final Entry entry = new Entry(value, ramBytesUsed(key, value));
+        final Segment segment = segmentFor(key);
+
+        if (entry.ramBytesUsed > segment.maxRamBytes) {
+            return;
+        }
+
+        synchronized (segment) {
+            segment.put(key, entry);
+        }
+
+    }
+
+    /**
+     * Remove all entries. The statistics will not be reset.
+     */
+    public void clear() {
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                segment.map.clear();
+                segment.ramBytesUsed = 0L;
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.map.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return The estimated memory of all entries in bytes
+     */
+    @Override
+    public long ramBytesUsed() {
+        long ramBytesUsed = 0L;
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                ramBytesUsed += segment.ramBytesUsed;
+            }
+        }
+        return ramBytesUsed;
+    }
+
+    public long getMaxRamBytes() {
+        return maxRamBytes;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return The ratio of hits to lookups or 0 if there were no lookups yet.
+     */
+    public double getHitRatio() {
+        final long h = hits.sum();
+        final long lookups = h + misses.sum();
+        return lookups == 0L ? 0.0 : (double) h / (double) lookups;
+    }
+
+    /**
+     * Estimate the memory of a cache entry.
+     *
+     * @param key The key
+     * @param value The value
+     * @return The estimated memory of the entry in bytes
+     */
+    protected long ramBytesUsed(final CacheKey key, final TermQueryCacheValue value) {
+        final long valueChars = key.value == null ? 0L : key.value.length();
+        return MAP_ENTRY_BYTES + ENTRY_BYTES + KEY_BYTES
+                + RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_ARRAY_HEADER
+                        + Character.BYTES * valueChars)
+                + value.ramBytesUsed();
+    }
+
+    private Segment segmentFor(final CacheKey key) {
+        final int h = key.hashCode();
+        // spread the higher bits like HashMap does
+        return segments[((h ^ (h >>> 16)) & 0x7fffffff) % segments.length];
+    }
+
+    @Override
+    public String toString() {
+        return "LRUTermQueryCache{" +
+                "maxRamBytes=" + maxRamBytes +
+                ", ramBytesUsed=" + ramBytesUsed() +
+                ", size=" + size() +
+                ", hits=" + getHitCount() +
+                ", misses=" + getMissCount() +
+                ", evictions=" + getEvictionCount() +
+                '}';
+    }
+
+    private static class Entry {
+
+        final TermQueryCacheValue value;
+        final long ramBytesUsed;
+
+        Entry(final TermQueryCacheValue value, final long ramBytesUsed) {
+            this.value = value;
+            this.ramBytesUsed = ramBytesUsed;
+        }
+    }
+
+    private class Segment {
+
+        final long maxRamBytes;
+        final LinkedHashMap<CacheKey, Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+        long ramBytesUsed = 0L;
+
+        Segment(final long maxRamBytes) {
+            this.maxRamBytes = maxRamBytes;
+        }
+
+        /**
+         * Must be called while holding the lock on this segment.
+         */
+        void put(final CacheKey key, final Entry entry) {
+
+            final Entry previous = map.put(key, entry);
+            ramBytesUsed += entry.ramBytesUsed;
+            if (previous != null) {
+                ramBytesUsed -= previous.ramBytesUsed;
+            }
+
+            // the new entry is the most recently used one and it fits into the segment on its own, so it will not be
+            // evicted
+            final Iterator<Map.Entry<CacheKey, Entry>> iterator = map.entrySet().iterator();
+            while (ramBytesUsed > maxRamBytes && iterator.hasNext()) {
+                final Map.Entry<CacheKey, Entry> eldest = iterator.next();
+                ramBytesUsed -= eldest.getValue().ramBytesUsed;
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package querqy.lucene.rewrite.cache;
+
+import org.apache.lucene.index.IndexReader;
+import querqy.ConcurrentLRUCache;
+import querqy.lucene.rewrite.prms.PRMSFieldBoost;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * <p>A cache for the field probabilities that are calculated by {@link PRMSFieldBoost} from the index statistics of
+ * a query term.</p>
+ *
+ * <p>The probabilities only depend on the term, on the set of fields in which the term is searched and on the
+ * index. The cache is scoped to the top-level {@link IndexReader}: entries are kept per reader, identified by the key
+ * of its {@link IndexReader.CacheHelper}. The caches of the old and of the new reader are kept side by side while a
+ * new searcher is warmed up (see {@link ReaderScopedCaches}). The entries of a reader are dropped when the reader is
+ * closed. Readers that don't provide a cache helper are never cached.</p>
+ *
+ * <p>The number of entries per reader is bounded, least recently used entries will be evicted. Instances are
+ * thread-safe.</p>
+ */
+public class PRMSFieldProbabilityCache {
+
+    private final int maxSize;
+    private final ReaderScopedCaches<ReaderCache> readerCaches = new ReaderScopedCaches<>();
+
+    /**
+     * @param maxSize The maximum number of terms per reader. Must be greater than 0.
+     */
+    public PRMSFieldProbabilityCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize > 0 expected. Actual value: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the cache for a top-level IndexReader.
+     *
+     * @param indexReader The top-level reader, as returned by
+     *                    {@link org.apache.lucene.search.IndexSearcher#getIndexReader()}
+     * @return The cache for the reader or an empty Optional if the reader doesn't support caching.
+     */
+    public Optional<ReaderCache> forReader(final IndexReader indexReader) {
+        return readerCaches.get(indexReader, () -> new ReaderCache(maxSize));
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return The number of readers for which a cache is kept
+     */
+    public int getNumberOfReaders() {
+        return readerCaches.getNumberOfReaders();
+    }
+
+    /**
+     * The cached field probabilities for a single top-level reader.
+     */
+    public static class ReaderCache {
+
+        private final ConcurrentLRUCache<Key, Map<String, Float>> cache;
+
+        private ReaderCache(final int maxSize) {
+            this.cache = new ConcurrentLRUCache<>(maxSize);
+        }
+
+        /**
+         * @param term The term value
+         * @param fields The fields in which the term is searched
+         * @return The probabilities per field or null if they are not in the cache
+         */
+        public Map<String, Float> get(final String term, final Set<String> fields) {
+            return cache.get(new Key(term, fields));
+        }
+
+        /**
+         * @param term The term value
+         * @param fields The fields in which the term is searched. The set must not be changed after it has been put
+         *               into the cache.
+         * @param probabilities The probabilities per field. The map must not be changed after it has been put into the
+         *                      cache.
+         */
+        public void put(final String term, final Set<String> fields, final Map<String, Float> probabilities) {
+            cache.put(new Key(term, fields), probabilities);
+        }
+
+        public int size() {
+            return cache.size();
+        }
+
+        public long getHitCount() {
+            return cache.getHitCount();
+        }
+
+        public long getMissCount() {
+            return cache.getMissCount();
+        }
+
+        public long getEvictionCount() {
+            return cache.getEvictionCount();
+        }
+
+    }
+
+    private static class Key {
+
+        final String term;
+        final Set<String> fields;
+        final int hashCode;
+
+        Key(final String term, final Set<String> fields) {
+            this.term = term;
+            this.fields = fields;
+            hashCode = 31 * term.hashCode() + fields.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return hashCode == other.hashCode && term.equals(other.term) && fields.equals(other.fields);
+        }
+    }
+
+}
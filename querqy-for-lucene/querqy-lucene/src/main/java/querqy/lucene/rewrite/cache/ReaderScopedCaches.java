@@ -0,0 +1,129 @@
+package querqy.lucene.rewrite.cache;
+
+import org.apache.lucene.index.IndexReader;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * <p>Holds one cache per {@link IndexReader}, identified by the key of the reader's
+ * {@link IndexReader.CacheHelper}.</p>
+ *
+ * <p>Old and new searchers serve requests side by side while a new searcher is warmed up, so the caches of up to
+ * maxReaders readers are kept at the same time. The cache of a reader is dropped when the reader is closed or, if
+ * more readers are open, when it is the oldest cache. Only one closed listener is registered per reader. Readers that
+ * don't provide a cache helper are never cached.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @param <C> The type of the per-reader cache
+ */
+public class ReaderScopedCaches<C> {
+
+    /**
+     * The default maximum number of readers for which caches are kept at the same time
+     */
+    public static final int DEFAULT_MAX_READERS = 4;
+
+    private final int maxReaders;
+    private final Map<IndexReader.CacheKey, Entry<C>> caches = new ConcurrentHashMap<>();
+    // the keys of the readers for which a closed listener has been registered
+    private final Set<IndexReader.CacheKey> listenedKeys = ConcurrentHashMap.newKeySet();
+    private long entryCount = 0L;
+
+    public ReaderScopedCaches() {
+        this(DEFAULT_MAX_READERS);
+    }
+
+    /**
+     * @param maxReaders The maximum number of readers for which caches are kept at the same time. Must be greater
+     *                   than 0.
+     */
+    public ReaderScopedCaches(final int maxReaders) {
+        if (maxReaders < 1) {
+            throw new IllegalArgumentException("maxReaders > 0 expected. Actual value: " + maxReaders);
+        }
+        this.maxReaders = maxReaders;
+    }
+
+    /**
+     * Get the cache for an IndexReader or create it if it doesn't exist yet.
+     *
+     * @param indexReader The reader
+     * @param cacheFactory Creates the cache for the reader
+     * @return The cache for the reader or an empty Optional if the reader doesn't support caching.
+     */
+    public Optional<C> get(final IndexReader indexReader, final Supplier<C> cacheFactory) {
+
+        final IndexReader.CacheHelper cacheHelper = indexReader.getReaderCacheHelper();
+        if (cacheHelper == null) {
+            return Optional.empty();
+        }
+
+        final IndexReader.CacheKey key = cacheHelper.getKey();
+
+        final Entry<C> entry = caches.get(key);
+        if (entry != null) {
+            return Optional.of(entry.cache);
+        }
+
+        synchronized (this) {
+
+            final Entry<C> existing = caches.get(key);
+            if (existing != null) {
+                return Optional.of(existing.cache);
+            }
+
+            if (!listenedKeys.contains(key)) {
+                cacheHelper.addClosedListener(this::onReaderClosed);
+                listenedKeys.add(key);
+            }
+
+            if (caches.size() >= maxReaders) {
+                caches.values().stream()
+                        .min(Comparator.comparingLong(oldest -> oldest.sequenceNumber))
+                        .ifPresent(oldest -> caches.remove(oldest.key));
+            }
+
+            final Entry<C> newEntry = new Entry<>(key, cacheFactory.get(), entryCount++);
+            caches.put(key, newEntry);
+            return Optional.of(newEntry.cache);
+        }
+
+    }
+
+    public int getMaxReaders() {
+        return maxReaders;
+    }
+
+    /**
+     * @return The number of readers for which a cache is kept
+     */
+    public int getNumberOfReaders() {
+        return caches.size();
+    }
+
+    // Lucene calls closed listeners while holding a lock on its listeners, so we must not lock here.
+    private void onReaderClosed(final IndexReader.CacheKey key) {
+        caches.remove(key);
+        listenedKeys.remove(key);
+    }
+
+    private static class Entry<C> {
+
+        final IndexReader.CacheKey key;
+        final C cache;
+        final long sequenceNumber;
+
+        Entry(final IndexReader.CacheKey key, final C cache, final long sequenceNumber) {
+            this.key = key;
+            this.cache = cache;
+            this.sequenceNumber = sequenceNumber;
+        }
+    }
+
+}
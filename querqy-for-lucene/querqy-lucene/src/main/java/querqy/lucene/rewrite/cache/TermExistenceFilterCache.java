@@ -0,0 +1,112 @@
+package querqy.lucene.rewrite.cache;
+
+import org.apache.lucene.index.IndexReader;
+import querqy.lucene.rewrite.TermExistenceFilter;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>Holds the {@link TermExistenceFilter} for the most recent top-level {@link IndexReader}.</p>
+ *
+ * <p>Building a filter reads all terms of the filtered fields, which is too expensive to be done during a request.
+ * The filter should be loaded via {@link #load(IndexReader)} when a new searcher is opened, for example from a
+ * {@link org.apache.lucene.search.SearcherFactory} or a Solr newSearcher event listener. Requests get the filter via
+ * {@link #forReader(IndexReader)}, which never builds a filter. It only returns the filter if it was built for the
+ * same reader (identified by the key of its {@link IndexReader.CacheHelper}), so that requests against an older
+ * searcher are not pruned by the terms of a newer one. The filter is dropped when its reader is closed. Readers that
+ * don't provide a cache helper are never filtered.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ */
+public class TermExistenceFilterCache {
+
+    private final Set<String> fields;
+    private final AtomicReference<ReaderFilter> current = new AtomicReference<>();
+
+    /**
+     * @param fields The names of the fields for which the existence of terms will be tested. Must not be empty.
+     */
+    public TermExistenceFilterCache(final Collection<String> fields) {
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("fields must not be empty");
+        }
+        this.fields = Collections.unmodifiableSet(new LinkedHashSet<>(fields));
+    }
+
+    /**
+     * Build the filter for a reader unless it has already been built and make it the current filter.
+     *
+     * @param indexReader The top-level reader of the new searcher
+     * @return The filter or an empty Optional if the reader doesn't support caching.
+     * @throws IOException if the terms cannot be read from the index
+     */
+    public synchronized Optional<TermExistenceFilter> load(final IndexReader indexReader) throws IOException {
+
+        final IndexReader.CacheHelper cacheHelper = indexReader.getReaderCacheHelper();
+        if (cacheHelper == null) {
+            return Optional.empty();
+        }
+
+        final IndexReader.CacheKey key = cacheHelper.getKey();
+
+        final ReaderFilter readerFilter = current.get();
+        if (readerFilter != null && readerFilter.key == key) {
+            return Optional.of(readerFilter.filter);
+        }
+
+        final TermExistenceFilter filter = TermExistenceFilter.build(indexReader, fields);
+        current.set(new ReaderFilter(key, filter));
+        cacheHelper.addClosedListener(this::onReaderClosed);
+
+        return Optional.of(filter);
+
+    }
+
+    /**
+     * Get the filter for a top-level IndexReader.
+     *
+     * @param indexReader The top-level reader, as returned by
+     *                    {@link org.apache.lucene.search.IndexSearcher#getIndexReader()}
+     * @return The filter or an empty Optional if no filter has been loaded for this reader
+     */
+    public Optional<TermExistenceFilter> forReader(final IndexReader indexReader) {
+
+        final IndexReader.CacheHelper cacheHelper = indexReader.getReaderCacheHelper();
+        if (cacheHelper == null) {
+            return Optional.empty();
+        }
+
+        final ReaderFilter readerFilter = current.get();
+        return (readerFilter != null && readerFilter.key == cacheHelper.getKey())
+                ? Optional.of(readerFilter.filter) : Optional.empty();
+    }
+
+    public Set<String> getFields() {
+        return fields;
+    }
+
+    private void onReaderClosed(final IndexReader.CacheKey key) {
+        final ReaderFilter readerFilter = current.get();
+        if (readerFilter != null && readerFilter.key == key) {
+            current.compareAndSet(readerFilter, null);
+        }
+    }
+
+    private static class ReaderFilter {
+
+        final IndexReader.CacheKey key;
+        final TermExistenceFilter filter;
+
+        ReaderFilter(final IndexReader.CacheKey key, final TermExistenceFilter filter) {
+            this.key = key;
+            this.filter = filter;
+        }
+    }
+
+}
@@ -3,16 +3,23 @@
  */
 package querqy.lucene.rewrite.cache;
 
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
 import querqy.lucene.rewrite.LuceneQueryFactory;
 import querqy.lucene.rewrite.LuceneQueryFactoryAndPRMSQuery;
+import querqy.lucene.rewrite.QueryFactoryRamUsage;
 import querqy.lucene.rewrite.prms.PRMSQuery;
 
 /**
  * @author rene
  *
  */
-public class TermQueryCacheValue extends LuceneQueryFactoryAndPRMSQuery {
-    
+public class TermQueryCacheValue extends LuceneQueryFactoryAndPRMSQuery implements Accountable {
+
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(TermQueryCacheValue.class);
+
+    // the factories are complete when they are put into the cache, estimate their size only once
+    private final long ramBytesUsed;
     
     public TermQueryCacheValue(LuceneQueryFactoryAndPRMSQuery queryFactoryAndPRMSQuery) {
         this(queryFactoryAndPRMSQuery.queryFactory, queryFactoryAndPRMSQuery.prmsQuery);
@@ -20,11 +27,21 @@ public class TermQueryCacheValue extends LuceneQueryFactoryAndPRMSQuery {
     
     public TermQueryCacheValue(LuceneQueryFactory<?> queryFactory, PRMSQuery prmsQuery) {
         super(queryFactory, prmsQuery);
+        ramBytesUsed = BASE_RAM_BYTES_USED + QueryFactoryRamUsage.ramBytesUsed(queryFactory)
+                + QueryFactoryRamUsage.ramBytesUsed(prmsQuery);
     }
     
     public boolean hasQuery() {
         return queryFactory != null;
     }
+
+    /**
+     * @return The estimated size of this value, including the query factories, in bytes
+     */
+    @Override
+    public long ramBytesUsed() {
+        return ramBytesUsed;
+    }
     
 
 }
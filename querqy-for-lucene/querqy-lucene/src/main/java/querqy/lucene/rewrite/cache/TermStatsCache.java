@@ -0,0 +1,158 @@
+package querqy.lucene.rewrite.cache;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermState;
+import querqy.ConcurrentLRUCache;
+import querqy.lucene.rewrite.DocumentFrequencyCorrection;
+
+import java.util.Optional;
+
+/**
+ * <p>A cache for the per-term index statistics that are collected by {@link DocumentFrequencyCorrection}.</p>
+ *
+ * <p>For each term, the cache holds the document frequency and the total term frequency over all segments and the
+ * {@link TermState} of the term in each segment. A TermState is only read when a term is looked up in the segment it
+ * was created for, so it can be shared between requests as long as the top-level reader doesn't change.</p>
+ *
+ * <p>The cache is scoped to the top-level {@link IndexReaderContext}: entries are kept per reader, identified by the
+ * key of its {@link IndexReader.CacheHelper}. The caches of the old and of the new reader are kept side by side while
+ * a new searcher is warmed up (see {@link ReaderScopedCaches}). The entries of a reader are dropped when the reader is
+ * closed. Readers that don't provide a cache helper are never cached.</p>
+ *
+ * <p>The number of entries per reader is bounded, least recently used entries will be evicted. Instances are
+ * thread-safe.</p>
+ */
+public class TermStatsCache {
+
+    private final int maxSize;
+    private final ReaderScopedCaches<ReaderCache> readerCaches = new ReaderScopedCaches<>();
+
+    /**
+     * @param maxSize The maximum number of terms per reader. Must be greater than 0.
+     */
+    public TermStatsCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize > 0 expected. Actual value: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the cache for the reader of a top-level IndexReaderContext.
+     *
+     * @param topReaderContext The top-level context, as returned by
+     *                         {@link org.apache.lucene.search.IndexSearcher#getTopReaderContext()}
+     * @return The cache for the reader or an empty Optional if the reader doesn't support caching.
+     */
+    public Optional<ReaderCache> forContext(final IndexReaderContext topReaderContext) {
+        return readerCaches.get(topReaderContext.reader(),
+                () -> new ReaderCache(topReaderContext.leaves().size(), maxSize));
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return The number of readers for which a cache is kept
+     */
+    public int getNumberOfReaders() {
+        return readerCaches.getNumberOfReaders();
+    }
+
+    /**
+     * The cached term statistics for a single top-level reader.
+     */
+    public static class ReaderCache {
+
+        private final int numLeaves;
+        private final ConcurrentLRUCache<Term, Entry> cache;
+
+        private ReaderCache(final int numLeaves, final int maxSize) {
+            this.numLeaves = numLeaves;
+            this.cache = new ConcurrentLRUCache<>(maxSize);
+        }
+
+        /**
+         * @param term The term
+         * @return The statistics of the term or null if they are not in the cache
+         */
+        public Entry get(final Term term) {
+            return cache.get(term);
+        }
+
+        /**
+         * @param term The term. It must not be changed after it has been put into the cache.
+         * @param entry The statistics of the term
+         */
+        public void put(final Term term, final Entry entry) {
+            if (entry.leafStates.length != numLeaves) {
+                throw new IllegalArgumentException("Expected term states for " + numLeaves + " leaves but got "
+                        + entry.leafStates.length);
+            }
+            cache.put(term, entry);
+        }
+
+        public int getNumLeaves() {
+            return numLeaves;
+        }
+
+        public int size() {
+            return cache.size();
+        }
+
+        public long getHitCount() {
+            return cache.getHitCount();
+        }
+
+        public long getMissCount() {
+            return cache.getMissCount();
+        }
+
+        public long getEvictionCount() {
+            return cache.getEvictionCount();
+        }
+
+    }
+
+    /**
+     * The statistics of a single term. Instances are immutable once they have been put into the cache.
+     */
+    public static class Entry {
+
+        private final int docFreq;
+        private final long totalTermFreq;
+        private final TermState[] leafStates;
+
+        /**
+         * @param docFreq The document frequency summed up over all leaves
+         * @param totalTermFreq The total term frequency summed up over all leaves
+         * @param leafStates The TermState of the term per leaf, indexed by the ord of the leaf. The element is null if
+         *                   the term doesn't exist in the leaf.
+         */
+        public Entry(final int docFreq, final long totalTermFreq, final TermState[] leafStates) {
+            this.docFreq = docFreq;
+            this.totalTermFreq = totalTermFreq;
+            this.leafStates = leafStates;
+        }
+
+        public int getDocFreq() {
+            return docFreq;
+        }
+
+        public long getTotalTermFreq() {
+            return totalTermFreq;
+        }
+
+        /**
+         * @param leafOrd The ord of the leaf
+         * @return The TermState or null if the term doesn't exist in the leaf
+         */
+        public TermState getTermState(final int leafOrd) {
+            return leafStates[leafOrd];
+        }
+    }
+
+}
@@ -16,8 +16,6 @@ public class PRMSDisjunctionMaxQuery implements PRMSQuery {
     
     final List<PRMSQuery> disjuncts;
     
-    private Double probability = null;
-    
     public PRMSDisjunctionMaxQuery(List<PRMSQuery> disjuncts) {
         if (disjuncts.isEmpty()) {
             throw new IllegalArgumentException("disjuncts.size() > 0 expected");
@@ -32,18 +30,12 @@ public class PRMSDisjunctionMaxQuery implements PRMSQuery {
     public double calculateLikelihood(IndexReader indexReader)
             throws IOException {
         
-        if (probability == null) {
-            
-            double max = 0.0;
-            for (PRMSQuery clause: disjuncts) {
-                max = Math.max(max, clause.calculateLikelihood(indexReader));
-            }
-            
-            probability = max;
-        
+        double max = 0.0;
+        for (PRMSQuery clause: disjuncts) {
+            max = Math.max(max, clause.calculateLikelihood(indexReader));
         }
         
-        return probability;
+        return max;
     }
 
     public List<PRMSQuery> getDisjuncts() {
@@ -1,52 +1,95 @@
 /**
- * 
+ *
  */
 package querqy.lucene.rewrite.prms;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.IndexSearcher;
 
 import querqy.lucene.rewrite.FieldBoost;
 import querqy.lucene.rewrite.TermSubQueryFactory;
+import querqy.lucene.rewrite.cache.PRMSFieldProbabilityCache;
 import querqy.model.Term;
 
 /**
+ * <p>A {@link FieldBoost} that derives the boost of a field from the probability that the term was meant to be
+ * searched in this field. The probabilities are calculated from the index once per instance and they can be shared
+ * between requests using a {@link PRMSFieldProbabilityCache}.</p>
+ *
  * @author rene
  *
  */
 public class PRMSFieldBoost implements FieldBoost {
-    
+
     Map<String, PRMSQuery> fieldPRMSQueries = new HashMap<>();
-    Map<String, Float> probabilities = null;
+    volatile Map<String, Float> probabilities = null;
+
+    private final PRMSFieldProbabilityCache probabilityCache;
+    private String sourceTermValue = null;
+
+    public PRMSFieldBoost() {
+        this(null);
+    }
+
+    /**
+     * @param probabilityCache The cache for the field probabilities or null
+     */
+    public PRMSFieldBoost(final PRMSFieldProbabilityCache probabilityCache) {
+        this.probabilityCache = probabilityCache;
+    }
 
     /* (non-Javadoc)
      * @see querqy.lucene.rewrite.TermQueryBoost#getBoost()
      */
     @Override
     public float getBoost(String fieldname, IndexReader indexReader) throws IOException {
-        if (probabilities == null) {
-            calculateProbabilities(indexReader);
+        Map<String, Float> probs = probabilities;
+        if (probs == null) {
+            synchronized (this) {
+                probs = probabilities;
+                if (probs == null) {
+                    probs = calculateProbabilities(indexReader);
+                    probabilities = probs;
+                }
+            }
         }
-        Float p = probabilities.get(fieldname);
+        Float p = probs.get(fieldname);
         return p == null ? 0f : p;
     }
-    
-    protected void calculateProbabilities(IndexReader indexReader) throws IOException {
+
+    protected Map<String, Float> calculateProbabilities(IndexReader indexReader) throws IOException {
+
+        final Optional<PRMSFieldProbabilityCache.ReaderCache> readerCache =
+                (probabilityCache == null || sourceTermValue == null)
+                        ? Optional.empty() : probabilityCache.forReader(indexReader);
+        final Set<String> fields = readerCache.isPresent() ? new HashSet<>(fieldPRMSQueries.keySet()) : null;
+
+        if (readerCache.isPresent()) {
+            final Map<String, Float> cached = readerCache.get().get(sourceTermValue, fields);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
         Map<String, Float> probs = new HashMap<>();
         switch (fieldPRMSQueries.size()) {
         case 0 : break;
-        case 1 : 
+        case 1 :
             {
                 Map.Entry<String, PRMSQuery> entry = fieldPRMSQueries.entrySet().iterator().next();
                 double l = entry.getValue().calculateLikelihood(indexReader);
-                probs.put(entry.getKey(), l == 0.0 ? 0f : 1f);  
+                probs.put(entry.getKey(), l == 0.0 ? 0f : 1f);
             }
             break;
-        default: 
+        default:
             double sum = 0.0;
             Map<String, Double> likelihoods = new HashMap<String, Double>();
             for (Map.Entry<String, PRMSQuery> entry: fieldPRMSQueries.entrySet()) {
@@ -57,27 +100,39 @@ public class PRMSFieldBoost implements FieldBoost {
             for (Map.Entry<String, Double> entry: likelihoods.entrySet()) {
                 probs.put(entry.getKey(), (float) (entry.getValue() / sum));
             }
-            probabilities = probs;
         }
+
+        probs = Collections.unmodifiableMap(probs);
+
+        if (readerCache.isPresent()) {
+            readerCache.get().put(sourceTermValue, fields, probs);
+        }
+
+        return probs;
     }
 
     @Override
     public void registerTermSubQuery(String fieldname, TermSubQueryFactory termSubQueryFactory, Term sourceTerm) {
-        
+
+        if (sourceTermValue == null && sourceTerm != null) {
+            sourceTermValue = sourceTerm.getValue().toString();
+        }
+
         if (!termSubQueryFactory.isNeverMatchQuery()) {
             if (fieldPRMSQueries.put(fieldname, termSubQueryFactory.prmsQuery) != null) {
                 throw new IllegalStateException("A PRMSQuery has already been registered for field " + fieldname);
             }
         }
-        
+
     }
-    
+
     @Override
     public String toString(String fieldname) {
         StringBuilder sb = new StringBuilder();
         sb.append("^PRMS(");
-        if (probabilities != null) {
-            Float p = probabilities.get(fieldname);
+        Map<String, Float> probs = probabilities;
+        if (probs != null) {
+            Float p = probs.get(fieldname);
             if (p == null) {
                 p = 0f;
             }
@@ -87,7 +142,7 @@ public class PRMSFieldBoost implements FieldBoost {
             switch (numFields) {
             case 0 : break;
             case 1 : sb.append(fieldPRMSQueries.keySet().iterator().next()); break;
-            default: 
+            default:
                 int i = 0;
                 for (String field: fieldPRMSQueries.keySet()) {
                     if (i++ > 0) {
@@ -129,7 +184,7 @@ public class PRMSFieldBoost implements FieldBoost {
     }
 
 
-    
-    
+
+
 
 }
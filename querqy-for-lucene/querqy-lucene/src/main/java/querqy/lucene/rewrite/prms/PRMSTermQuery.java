@@ -16,38 +16,31 @@ public class PRMSTermQuery implements PRMSQuery {
     
     final Term term;
     
-    private Double likelihood = null;
-    
     public PRMSTermQuery(Term term) {
         this.term = term;
     }
     
     /**
-     * Calculates the likelihood of the term query for the given index
+     * Calculates the likelihood of the term query for the given index. The result is not memoized as instances can be
+     * shared between requests and readers (see {@link querqy.lucene.rewrite.cache.TermQueryCache}).
      */
     @Override
     public double calculateLikelihood(IndexReader indexReader) throws IOException {
         
-        if (likelihood == null) {
+        long totalTermsInField = indexReader.getSumTotalTermFreq(term.field());
         
-            long totalTermsInField = indexReader.getSumTotalTermFreq(term.field());
-            
-            if (totalTermsInField == -1L) {
-                throw new UnsupportedOperationException("Codec does not support IndexReader.getSumTotalTermFreq(field)");
-            }
-            if (totalTermsInField < 1L) {
-                return 0.0;
-            }
-            long totalTf = indexReader.totalTermFreq(term);
-            if (totalTf == -1L) {
-                throw new UnsupportedOperationException("Codec does not support IndexReader.totalTermFreq(term)");
-            }
-            
-            likelihood = ((double) totalTf) / (double) totalTermsInField;
-            
+        if (totalTermsInField == -1L) {
+            throw new UnsupportedOperationException("Codec does not support IndexReader.getSumTotalTermFreq(field)");
+        }
+        if (totalTermsInField < 1L) {
+            return 0.0;
+        }
+        long totalTf = indexReader.totalTermFreq(term);
+        if (totalTf == -1L) {
+            throw new UnsupportedOperationException("Codec does not support IndexReader.totalTermFreq(term)");
         }
         
-        return likelihood;
+        return ((double) totalTf) / (double) totalTermsInField;
     }
 
     public Term getTerm() {
@@ -0,0 +1,254 @@
+package querqy.lucene.contrib.rewrite.wordbreak;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+import querqy.lucene.contrib.rewrite.wordbreak.LuceneCompounder.CompoundTerm;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.Query;
+import querqy.model.Term;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class WordBreakCacheTest extends LuceneTestCase {
+
+    @Test
+    public void testThatDocFreqIsCachedPerReader() throws IOException {
+
+        final Analyzer analyzer = new WhitespaceAnalyzer();
+        final Directory directory = newDirectory();
+        final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+
+        try {
+            addDoc(writer, "a b");
+            addDoc(writer, "a");
+            writer.commit();
+
+            final WordBreakCache cache = new WordBreakCache(10);
+            final org.apache.lucene.index.Term termA = new org.apache.lucene.index.Term("f1", "a");
+
+            try (final DirectoryReader reader1 = DirectoryReader.open(directory)) {
+
+                final WordBreakCache.ReaderCache readerCache1 = cache.forReader(reader1)
+                        .orElseThrow(AssertionError::new);
+                assertEquals(2, readerCache1.docFreq(termA));
+                assertEquals(2, readerCache1.docFreq(new org.apache.lucene.index.Term("f1", "a")));
+                assertEquals(1, readerCache1.getHitCount());
+                assertEquals(1, readerCache1.getMissCount());
+                assertSame(readerCache1, cache.forReader(reader1).orElseThrow(AssertionError::new));
+
+                addDoc(writer, "a");
+                writer.commit();
+
+                try (final DirectoryReader reader2 = DirectoryReader.openIfChanged(reader1)) {
+
+                    assertNotNull(reader2);
+
+                    final WordBreakCache.ReaderCache readerCache2 = cache.forReader(reader2)
+                            .orElseThrow(AssertionError::new);
+                    assertNotSame(readerCache1, readerCache2);
+                    assertEquals(0, readerCache2.size());
+                    assertEquals(3, readerCache2.docFreq(termA));
+
+                    // old and new reader serve requests alternately while the new searcher is warmed up
+                    assertSame(readerCache1, cache.forReader(reader1).orElseThrow(AssertionError::new));
+                    assertSame(readerCache2, cache.forReader(reader2).orElseThrow(AssertionError::new));
+                    assertEquals(2, cache.getNumberOfReaders());
+                }
+
+                // the cache of a closed reader is dropped
+                assertEquals(1, cache.getNumberOfReaders());
+                assertSame(readerCache1, cache.forReader(reader1).orElseThrow(AssertionError::new));
+            }
+
+            assertEquals(0, cache.getNumberOfReaders());
+
+        } finally {
+            writer.close();
+            directory.close();
+            analyzer.close();
+        }
+
+    }
+
+    @Test
+    public void testThatWordBreakResultsAreCached() throws IOException {
+
+        final Analyzer analyzer = new WhitespaceAnalyzer();
+        final Directory directory = newDirectory();
+        final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+
+        try {
+            addDoc(writer, "a b");
+            writer.commit();
+
+            final LuceneWordBreaker delegate = mock(LuceneWordBreaker.class);
+            when(delegate.breakWord(any(), any(), anyInt(), anyBoolean()))
+                    .thenReturn(Collections.singletonList(new CharSequence[] {"ab", "c"}));
+
+            final CachingWordBreaker wordBreaker = new CachingWordBreaker(delegate, new WordBreakCache(10));
+
+            try (final DirectoryReader reader = DirectoryReader.open(directory)) {
+
+                final List<CharSequence[]> result1 = wordBreaker.breakWord("abc", reader, 2, false);
+                final List<CharSequence[]> result2 = wordBreaker.breakWord(new StringBuilder("abc"), reader, 2,
+                        false);
+
+                assertEquals(1, result2.size());
+                assertEquals("ab", result2.get(0)[0]);
+                assertEquals("c", result2.get(0)[1]);
+                assertSame(result1, result2);
+                verify(delegate, times(1)).breakWord(any(), any(), anyInt(), anyBoolean());
+
+                // different params must not be served from the cache
+                wordBreaker.breakWord("abc", reader, 3, false);
+                wordBreaker.breakWord("abc", reader, 2, true);
+                verify(delegate, times(3)).breakWord(any(), any(), anyInt(), anyBoolean());
+            }
+
+        } finally {
+            writer.close();
+            directory.close();
+            analyzer.close();
+        }
+
+    }
+
+    @Test
+    public void testThatCompoundResultsAreCachedAndReferToCurrentTerms() throws IOException {
+
+        final Analyzer analyzer = new WhitespaceAnalyzer();
+        final Directory directory = newDirectory();
+        final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+
+        try {
+            addDoc(writer, "ab");
+            writer.commit();
+
+            final LuceneCompounder delegate = mock(LuceneCompounder.class);
+            when(delegate.combine(any(), any(), anyBoolean())).thenAnswer(invocation -> {
+                final Term[] terms = invocation.getArgument(0);
+                return Collections.singletonList(new CompoundTerm("ab", terms));
+            });
+
+            final CachingCompounder compounder = new CachingCompounder(delegate, new WordBreakCache(10));
+
+            try (final DirectoryReader reader = DirectoryReader.open(directory)) {
+
+                final Term[] terms1 = createTerms("a", "b");
+                final List<CompoundTerm> result1 = compounder.combine(terms1, reader, false);
+                assertEquals(1, result1.size());
+                assertEquals("ab", result1.get(0).value);
+                assertSame(terms1[0], result1.get(0).originalTerms[0]);
+                assertSame(terms1[1], result1.get(0).originalTerms[1]);
+
+                final Term[] terms2 = createTerms("a", "b");
+                final List<CompoundTerm> result2 = compounder.combine(terms2, reader, false);
+                assertEquals(1, result2.size());
+                assertEquals("ab", result2.get(0).value);
+                assertSame(terms2[0], result2.get(0).originalTerms[0]);
+                assertSame(terms2[1], result2.get(0).originalTerms[1]);
+
+                verify(delegate, times(1)).combine(any(), any(), anyBoolean());
+
+                compounder.combine(terms2, reader, true);
+                verify(delegate, times(2)).combine(any(), any(), anyBoolean());
+            }
+
+        } finally {
+            writer.close();
+            directory.close();
+            analyzer.close();
+        }
+
+    }
+
+    @Test
+    public void testThatOldestReaderCacheIsDroppedIfMaxReadersIsExceeded() throws IOException {
+
+        final Analyzer analyzer = new WhitespaceAnalyzer();
+        final Directory directory = newDirectory();
+        final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+
+        final List<DirectoryReader> readers = new ArrayList<>();
+        try {
+            final WordBreakCache cache = new WordBreakCache(10);
+            final List<WordBreakCache.ReaderCache> readerCaches = new ArrayList<>();
+
+            for (int i = 0; i <= WordBreakCache.MAX_READERS; i++) {
+                addDoc(writer, "a");
+                writer.commit();
+                final DirectoryReader reader = DirectoryReader.open(directory);
+                readers.add(reader);
+                readerCaches.add(cache.forReader(reader).orElseThrow(AssertionError::new));
+            }
+
+            assertEquals(WordBreakCache.MAX_READERS, cache.getNumberOfReaders());
+
+            for (int i = 1; i <= WordBreakCache.MAX_READERS; i++) {
+                assertSame(readerCaches.get(i), cache.forReader(readers.get(i)).orElseThrow(AssertionError::new));
+            }
+
+            // the first reader is still open but its cache was dropped
+            assertNotSame(readerCaches.get(0), cache.forReader(readers.get(0)).orElseThrow(AssertionError::new));
+
+        } finally {
+            IOUtils.close(readers);
+            writer.close();
+            directory.close();
+            analyzer.close();
+        }
+
+    }
+
+    @Test
+    public void testThatReaderWithoutCacheHelperIsNotCached() {
+        final IndexReader reader = mock(IndexReader.class);
+        assertFalse(new WordBreakCache(10).forReader(reader).isPresent());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatMaxSizeMustBePositive() {
+        new WordBreakCache(0);
+    }
+
+    private static Term[] createTerms(final String... values) {
+        final Query query = new Query();
+        final Term[] terms = new Term[values.length];
+        for (int i = 0; i < values.length; i++) {
+            final DisjunctionMaxQuery dmq = new DisjunctionMaxQuery(query, querqy.model.Clause.Occur.SHOULD, false);
+            query.addClause(dmq);
+            terms[i] = new Term(dmq, values[i]);
+            dmq.addClause(terms[i]);
+        }
+        return terms;
+    }
+
+    private static void addDoc(final IndexWriter writer, final String value) throws IOException {
+        final Document doc = new Document();
+        doc.add(new TextField("f1", value, Field.Store.NO));
+        writer.addDocument(doc);
+    }
+
+}
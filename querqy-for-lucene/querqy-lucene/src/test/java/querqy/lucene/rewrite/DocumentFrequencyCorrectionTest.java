@@ -4,14 +4,26 @@ import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexReaderContext;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.LuceneTestCase;
 import org.junit.Test;
 import querqy.lucene.rewrite.DependentTermQueryBuilder.DependentTermQuery;
 import querqy.lucene.rewrite.DocumentFrequencyCorrection.DocumentFrequencyAndTermContext;
+import querqy.lucene.rewrite.cache.TermStatsCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static querqy.lucene.rewrite.TestUtil.addNumDocsWithStringField;
 import static querqy.lucene.rewrite.TestUtil.newTerm;
@@ -123,6 +135,337 @@ public class DocumentFrequencyCorrectionTest extends LuceneTestCase {
         
     }
 
+    @Test
+    public void testTermsInMultipleFieldsAndSegments() throws Exception {
+
+        Analyzer analyzer = new MockAnalyzer(random());
+
+        Directory directory = newDirectory();
+        RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory, analyzer);
+
+        int dfA = getRandomDf();
+        int dfB = getRandomDf();
+        int dfX = getRandomDf();
+
+        // spread the terms over several segments
+        addNumDocsWithStringField("f1", "a", indexWriter, dfA);
+        indexWriter.commit();
+        addNumDocsWithStringField("f1", "b", indexWriter, dfB);
+        addNumDocsWithStringField("f2", "x", indexWriter, dfX - 1);
+        indexWriter.commit();
+        addNumDocsWithStringField("f2", "x", indexWriter, 1);
+
+        indexWriter.close();
+
+        IndexReader indexReader = DirectoryReader.open(directory);
+        IndexSearcher indexSearcher = newSearcher(indexReader);
+
+        DocumentFrequencyCorrection dfc = new DocumentFrequencyCorrection();
+
+        // terms are not added in field and bytes order
+        dfc.newClause();
+        Term tx = newTerm("f2", "x", dfc);
+        Term tb = newTerm("f1", "b", dfc);
+        Term ta = newTerm("f1", "a", dfc);
+        dfc.newClause();
+        Term ta2 = newTerm("f1", "a", dfc);
+        Term tMissingField = newTerm("f3", "a", dfc);
+        dfc.finishedUserQuery();
+        dfc.newClause();
+        Term tMissingTerm = newTerm("f1", "zz", dfc);
+        Term tx2 = newTerm("f2", "x", dfc);
+
+        DependentTermQuery tqx = new DependentTermQuery(tx, dfc, ConstantFieldBoost.NORM_BOOST);
+        DependentTermQuery tqb = new DependentTermQuery(tb, dfc, ConstantFieldBoost.NORM_BOOST);
+        DependentTermQuery tqa = new DependentTermQuery(ta, dfc, ConstantFieldBoost.NORM_BOOST);
+        DependentTermQuery tqa2 = new DependentTermQuery(ta2, dfc, ConstantFieldBoost.NORM_BOOST);
+        DependentTermQuery tqMissingField = new DependentTermQuery(tMissingField, dfc,
+                ConstantFieldBoost.NORM_BOOST);
+        DependentTermQuery tqMissingTerm = new DependentTermQuery(tMissingTerm, dfc, ConstantFieldBoost.NORM_BOOST);
+        DependentTermQuery tqx2 = new DependentTermQuery(tx2, dfc, ConstantFieldBoost.NORM_BOOST);
+
+        IndexReaderContext context = indexSearcher.getTopReaderContext();
+
+        int maxInFirstClause = Math.max(dfA, Math.max(dfB, dfX));
+
+        DocumentFrequencyAndTermContext dftcx = dfc.getDocumentFrequencyAndTermContext(tqx.tqIndex, context);
+        assertEquals(dfX, dftcx.df);
+        assertEquals(maxInFirstClause, dftcx.termStates.docFreq());
+
+        DocumentFrequencyAndTermContext dftcb = dfc.getDocumentFrequencyAndTermContext(tqb.tqIndex, context);
+        assertEquals(dfB, dftcb.df);
+        assertEquals(maxInFirstClause, dftcb.termStates.docFreq());
+
+        DocumentFrequencyAndTermContext dftca = dfc.getDocumentFrequencyAndTermContext(tqa.tqIndex, context);
+        assertEquals(dfA, dftca.df);
+        assertEquals(maxInFirstClause, dftca.termStates.docFreq());
+
+        DocumentFrequencyAndTermContext dftca2 = dfc.getDocumentFrequencyAndTermContext(tqa2.tqIndex, context);
+        assertEquals(dfA, dftca2.df);
+        assertEquals(dfA, dftca2.termStates.docFreq());
+
+        DocumentFrequencyAndTermContext dftcMissingField = dfc.getDocumentFrequencyAndTermContext(
+                tqMissingField.tqIndex, context);
+        assertEquals(0, dftcMissingField.df);
+        assertEquals(0, dftcMissingField.termStates.docFreq());
+
+        DocumentFrequencyAndTermContext dftcMissingTerm = dfc.getDocumentFrequencyAndTermContext(
+                tqMissingTerm.tqIndex, context);
+        assertEquals(0, dftcMissingTerm.df);
+        assertEquals(0, dftcMissingTerm.termStates.docFreq());
+
+        DocumentFrequencyAndTermContext dftcx2 = dfc.getDocumentFrequencyAndTermContext(tqx2.tqIndex, context);
+        assertEquals(dfX, dftcx2.df);
+        // df = max in clause + max in user query - 1
+        assertEquals(dfX + maxInFirstClause - 1, dftcx2.termStates.docFreq());
+
+        // a term state must have been registered for each segment that contains the term
+        for (LeafReaderContext leaf : context.leaves()) {
+            Terms terms = leaf.reader().terms("f2");
+            boolean inSegment = terms != null && terms.iterator().seekExact(tx.bytes());
+            assertEquals(inSegment, dftcx.termStates.get(leaf) != null);
+            assertEquals(inSegment, dftcx2.termStates.get(leaf) != null);
+        }
+
+        indexReader.close();
+        directory.close();
+        analyzer.close();
+
+    }
+
+    @Test
+    public void testThatTermStatsAreTakenFromCache() throws Exception {
+
+        Analyzer analyzer = new MockAnalyzer(random());
+
+        Directory directory = newDirectory();
+        RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory, analyzer);
+
+        int dfA = getRandomDf();
+        int dfB = dfA + 3;
+
+        addNumDocsWithStringField("f1", "a", indexWriter, dfA);
+        indexWriter.commit();
+        addNumDocsWithStringField("f1", "b", indexWriter, dfB);
+
+        indexWriter.close();
+
+        IndexReader indexReader = DirectoryReader.open(directory);
+        // not using newSearcher() as it might wrap the reader into a reader without a cache helper
+        IndexSearcher indexSearcher = new IndexSearcher(indexReader);
+        IndexReaderContext context = indexSearcher.getTopReaderContext();
+
+        TermStatsCache cache = new TermStatsCache(10);
+
+        // first request puts a, b and the missing term into the cache
+        DocumentFrequencyCorrection dfc1 = new DocumentFrequencyCorrection(cache);
+        dfc1.newClause();
+        Term ta1 = newTerm("f1", "a", dfc1);
+        Term tb1 = newTerm("f1", "b", dfc1);
+        Term tMissing1 = newTerm("f1", "zz", dfc1);
+        dfc1.finishedUserQuery();
+
+        DependentTermQuery tqa1 = new DependentTermQuery(ta1, dfc1, ConstantFieldBoost.NORM_BOOST);
+        DependentTermQuery tqb1 = new DependentTermQuery(tb1, dfc1, ConstantFieldBoost.NORM_BOOST);
+        DependentTermQuery tqMissing1 = new DependentTermQuery(tMissing1, dfc1, ConstantFieldBoost.NORM_BOOST);
+
+        assertEquals(dfA, dfc1.getDocumentFrequencyAndTermContext(tqa1.tqIndex, context).df);
+        assertEquals(dfB, dfc1.getDocumentFrequencyAndTermContext(tqb1.tqIndex, context).df);
+        assertEquals(0, dfc1.getDocumentFrequencyAndTermContext(tqMissing1.tqIndex, context).df);
+
+        TermStatsCache.ReaderCache readerCache = cache.forContext(context).orElseThrow(AssertionError::new);
+        assertEquals(3, readerCache.size());
+        assertEquals(0, readerCache.getHitCount());
+
+        // second request takes a and the missing term from the cache, only c must be looked up in the index
+        DocumentFrequencyCorrection dfc2 = new DocumentFrequencyCorrection(cache);
+        dfc2.newClause();
+        Term ta2 = newTerm("f1", "a", dfc2);
+        Term tMissing2 = newTerm("f1", "zz", dfc2);
+        Term tc2 = newTerm("f1", "c", dfc2);
+        dfc2.finishedUserQuery();
+        dfc2.newClause();
+        Term tb2 = newTerm("f1", "b", dfc2);
+
+        DependentTermQuery tqa2 = new DependentTermQuery(ta2, dfc2, ConstantFieldBoost.NORM_BOOST);
+        DependentTermQuery tqMissing2 = new DependentTermQuery(tMissing2, dfc2, ConstantFieldBoost.NORM_BOOST);
+        DependentTermQuery tqc2 = new DependentTermQuery(tc2, dfc2, ConstantFieldBoost.NORM_BOOST);
+        DependentTermQuery tqb2 = new DependentTermQuery(tb2, dfc2, ConstantFieldBoost.NORM_BOOST);
+
+        DocumentFrequencyAndTermContext dftca2 = dfc2.getDocumentFrequencyAndTermContext(tqa2.tqIndex, context);
+        assertEquals(dfA, dftca2.df);
+        assertEquals(dfA, dftca2.termStates.docFreq());
+        assertEquals(0, dfc2.getDocumentFrequencyAndTermContext(tqMissing2.tqIndex, context).df);
+        assertEquals(0, dfc2.getDocumentFrequencyAndTermContext(tqc2.tqIndex, context).df);
+
+        DocumentFrequencyAndTermContext dftcb2 = dfc2.getDocumentFrequencyAndTermContext(tqb2.tqIndex, context);
+        assertEquals(dfB, dftcb2.df);
+        // df = max in clause + max in user query - 1
+        assertEquals(dfB + dfA - 1, dftcb2.termStates.docFreq());
+
+        assertEquals(3, readerCache.getHitCount());
+        assertEquals(4, readerCache.size());
+
+        // the term states from the cache must have been registered for each segment that contains the term
+        for (LeafReaderContext leaf : context.leaves()) {
+            Terms terms = leaf.reader().terms("f1");
+            assertEquals(terms != null && terms.iterator().seekExact(ta2.bytes()), dftca2.termStates.get(leaf) != null);
+            assertEquals(terms != null && terms.iterator().seekExact(tb2.bytes()), dftcb2.termStates.get(leaf) != null);
+        }
+
+        // old and new reader serve requests alternately while a new searcher is warmed up
+        IndexReader indexReader2 = DirectoryReader.open(directory);
+        TermStatsCache.ReaderCache readerCache2 = cache.forContext(indexReader2.getContext())
+                .orElseThrow(AssertionError::new);
+        assertNotSame(readerCache, readerCache2);
+        assertEquals(0, readerCache2.size());
+        assertSame(readerCache, cache.forContext(context).orElseThrow(AssertionError::new));
+        assertSame(readerCache2, cache.forContext(indexReader2.getContext()).orElseThrow(AssertionError::new));
+        assertEquals(4, readerCache.size());
+        assertEquals(2, cache.getNumberOfReaders());
+
+        // the reader cache is dropped when the reader is closed
+        indexReader.close();
+        assertEquals(1, cache.getNumberOfReaders());
+        assertSame(readerCache2, cache.forContext(indexReader2.getContext()).orElseThrow(AssertionError::new));
+
+        indexReader2.close();
+        assertEquals(0, cache.getNumberOfReaders());
+        directory.close();
+        analyzer.close();
+
+    }
+
+    @Test
+    public void testThatLeavesCanBeReadInParallel() throws Exception {
+
+        Analyzer analyzer = new MockAnalyzer(random());
+
+        Directory directory = newDirectory();
+        RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory, analyzer);
+
+        int dfA = getRandomDf();
+        int dfB = getRandomDf();
+
+        // spread the terms over several segments
+        addNumDocsWithStringField("f1", "a", indexWriter, dfA - 1);
+        indexWriter.commit();
+        addNumDocsWithStringField("f1", "b", indexWriter, dfB);
+        addNumDocsWithStringField("f2", "a", indexWriter, 2);
+        indexWriter.commit();
+        addNumDocsWithStringField("f1", "a", indexWriter, 1);
+
+        indexWriter.close();
+
+        IndexReader indexReader = DirectoryReader.open(directory);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+
+            IndexSearcher indexSearcher = new IndexSearcher(indexReader, executor);
+            IndexReaderContext context = indexSearcher.getTopReaderContext();
+
+            DocumentFrequencyCorrection dfc = new DocumentFrequencyCorrection(null, executor);
+            dfc.newClause();
+            Term ta = newTerm("f1", "a", dfc);
+            Term tb = newTerm("f1", "b", dfc);
+            Term ta2 = newTerm("f2", "a", dfc);
+            Term tMissing = newTerm("f1", "zz", dfc);
+            dfc.finishedUserQuery();
+
+            DependentTermQuery tqa = new DependentTermQuery(ta, dfc, ConstantFieldBoost.NORM_BOOST);
+            DependentTermQuery tqb = new DependentTermQuery(tb, dfc, ConstantFieldBoost.NORM_BOOST);
+            DependentTermQuery tqa2 = new DependentTermQuery(ta2, dfc, ConstantFieldBoost.NORM_BOOST);
+            DependentTermQuery tqMissing = new DependentTermQuery(tMissing, dfc, ConstantFieldBoost.NORM_BOOST);
+
+            DocumentFrequencyAndTermContext dftca = dfc.getDocumentFrequencyAndTermContext(tqa.tqIndex, context);
+            assertEquals(dfA, dftca.df);
+            assertEquals(Math.max(dfA, dfB), dftca.termStates.docFreq());
+            assertEquals(dfB, dfc.getDocumentFrequencyAndTermContext(tqb.tqIndex, context).df);
+            assertEquals(2, dfc.getDocumentFrequencyAndTermContext(tqa2.tqIndex, context).df);
+            assertEquals(0, dfc.getDocumentFrequencyAndTermContext(tqMissing.tqIndex, context).df);
+
+            for (LeafReaderContext leaf : context.leaves()) {
+                Terms terms = leaf.reader().terms("f1");
+                boolean inSegment = terms != null && terms.iterator().seekExact(ta.bytes());
+                assertEquals(inSegment, dftca.termStates.get(leaf) != null);
+            }
+
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            indexReader.close();
+            directory.close();
+            analyzer.close();
+        }
+
+    }
+
+    @Test
+    public void testThatTermStatsAreCalculatedOnceForConcurrentWeights() throws Exception {
+
+        Analyzer analyzer = new MockAnalyzer(random());
+
+        Directory directory = newDirectory();
+        RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory, analyzer);
+
+        int dfA = getRandomDf();
+        addNumDocsWithStringField("f1", "a", indexWriter, dfA);
+        indexWriter.commit();
+        addNumDocsWithStringField("f1", "b", indexWriter, dfA + 1);
+
+        indexWriter.close();
+
+        IndexReader indexReader = DirectoryReader.open(directory);
+        IndexSearcher indexSearcher = newSearcher(indexReader);
+        IndexReaderContext context = indexSearcher.getTopReaderContext();
+
+        DocumentFrequencyCorrection dfc = new DocumentFrequencyCorrection();
+        dfc.newClause();
+        Term ta = newTerm("f1", "a", dfc);
+        Term tb = newTerm("f1", "b", dfc);
+        dfc.finishedUserQuery();
+
+        DependentTermQuery tqa = new DependentTermQuery(ta, dfc, ConstantFieldBoost.NORM_BOOST);
+        DependentTermQuery tqb = new DependentTermQuery(tb, dfc, ConstantFieldBoost.NORM_BOOST);
+
+        int numThreads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        CountDownLatch startSignal = new CountDownLatch(1);
+
+        try {
+
+            List<Future<DocumentFrequencyCorrection.TermStats>> futures = new ArrayList<>();
+            for (int i = 0; i < numThreads; i++) {
+                futures.add(executor.submit(() -> {
+                    startSignal.await();
+                    return dfc.getTermStats(context);
+                }));
+            }
+
+            startSignal.countDown();
+
+            DocumentFrequencyCorrection.TermStats termStats = futures.get(0).get();
+            for (Future<DocumentFrequencyCorrection.TermStats> future : futures) {
+                assertSame(termStats, future.get());
+            }
+
+            DocumentFrequencyAndTermContext dftca = dfc.getDocumentFrequencyAndTermContext(tqa.tqIndex, context);
+            assertEquals(dfA, dftca.df);
+            assertEquals(dfA + 1, dftca.termStates.docFreq());
+            assertSame(termStats.termStates[tqb.tqIndex],
+                    dfc.getDocumentFrequencyAndTermContext(tqb.tqIndex, context).termStates);
+
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            indexReader.close();
+            directory.close();
+            analyzer.close();
+        }
+
+    }
+
     int getRandomDf() {
         return 1 + new Long(Math.round(50.0 * Math.random())).intValue();
     }
@@ -0,0 +1,226 @@
+package querqy.lucene.rewrite;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import querqy.lucene.rewrite.SearchFieldsAndBoosting.FieldBoostModel;
+import querqy.lucene.rewrite.cache.TermExistenceFilterCache;
+import querqy.parser.WhiteSpaceQuerqyParser;
+
+public class TermExistenceFilterTest extends LuceneTestCase {
+
+    @Test
+    public void testMayExist() throws Exception {
+
+        Directory directory = newDirectory();
+        IndexWriter indexWriter = newIndexWriter(directory, new StandardAnalyzer());
+        addDoc(indexWriter, "f1", "abc");
+        addDoc(indexWriter, "f2", "def");
+        indexWriter.close();
+
+        IndexReader indexReader = DirectoryReader.open(directory);
+
+        TermExistenceFilter filter = TermExistenceFilter.build(indexReader, Arrays.asList("f1", "f2", "f3"));
+
+        assertTrue(filter.mayExist(new Term("f1", "abc")));
+        assertFalse(filter.mayExist(new Term("f1", "def")));
+        assertFalse(filter.mayExist(new Term("f1", "ab")));
+        assertFalse(filter.mayExist(new Term("f1", "abcd")));
+        assertTrue(filter.mayExist(new Term("f2", "def")));
+        assertFalse(filter.mayExist(new Term("f2", "abc")));
+
+        // filtered field without any terms
+        assertTrue(filter.isFiltered("f3"));
+        assertFalse(filter.mayExist(new Term("f3", "abc")));
+
+        // not filtered
+        assertFalse(filter.isFiltered("f4"));
+        assertTrue(filter.mayExist(new Term("f4", "xyz")));
+
+        assertTrue(filter.ramBytesUsed() > 0L);
+
+        indexReader.close();
+        directory.close();
+
+    }
+
+    @Test
+    public void testMayMatch() throws Exception {
+
+        Directory directory = newDirectory();
+        IndexWriter indexWriter = newIndexWriter(directory, new StandardAnalyzer());
+        addDoc(indexWriter, "f1", "abc");
+        indexWriter.close();
+
+        IndexReader indexReader = DirectoryReader.open(directory);
+
+        TermExistenceFilter filter = TermExistenceFilter.build(indexReader, Collections.singletonList("f1"));
+
+        TermQueryFactory abc = new TermQueryFactory(new Term("f1", "abc"));
+        TermQueryFactory xyz = new TermQueryFactory(new Term("f1", "xyz"));
+
+        assertTrue(filter.mayMatch(abc));
+        assertFalse(filter.mayMatch(xyz));
+        assertFalse(filter.mayMatch(NeverMatchQueryFactory.FACTORY));
+
+        DisjunctionMaxQueryFactory dmq = new DisjunctionMaxQueryFactory();
+        dmq.add(xyz);
+        assertFalse(filter.mayMatch(dmq));
+        dmq.add(abc);
+        assertTrue(filter.mayMatch(dmq));
+
+        BooleanQueryFactory allRequired = new BooleanQueryFactory(false);
+        allRequired.add(abc, Occur.MUST);
+        allRequired.add(xyz, Occur.MUST);
+        assertFalse(filter.mayMatch(allRequired));
+
+        BooleanQueryFactory optional = new BooleanQueryFactory(false);
+        optional.add(abc, Occur.SHOULD);
+        optional.add(xyz, Occur.SHOULD);
+        assertTrue(filter.mayMatch(optional));
+
+        indexReader.close();
+        directory.close();
+
+    }
+
+    @Test
+    public void testThatTermsThatDontExistArePrunedFromQuery() throws Exception {
+
+        Analyzer analyzer = new StandardAnalyzer();
+        Directory directory = newDirectory();
+        IndexWriter indexWriter = newIndexWriter(directory, analyzer);
+        addDoc(indexWriter, "f1", "abc");
+        addDoc(indexWriter, "f1", "abc");
+        addDoc(indexWriter, "f2", "def");
+        addDoc(indexWriter, "f2", "klm");
+        indexWriter.close();
+
+        IndexReader indexReader = DirectoryReader.open(directory);
+        IndexSearcher searcher = newSearcher(indexReader);
+
+        TermExistenceFilter filter = TermExistenceFilter.build(indexReader, Arrays.asList("f1", "f2"));
+
+        Query unfiltered = build("abc def xyz", analyzer, null);
+        Query filtered = build("abc def xyz", analyzer, filter);
+
+        assertTrue(unfiltered.toString().contains("f2:abc"));
+        assertTrue(unfiltered.toString().contains("f1:xyz"));
+
+        String filteredString = filtered.toString();
+        assertTrue(filteredString.contains("f1:abc"));
+        assertTrue(filteredString.contains("f2:def"));
+        assertFalse(filteredString.contains("f2:abc"));
+        assertFalse(filteredString.contains("f1:def"));
+        assertFalse(filteredString.contains("xyz"));
+
+        assertEquals(3, searcher.count(unfiltered));
+        assertEquals(searcher.count(unfiltered), searcher.count(filtered));
+
+        // a required term that doesn't exist at all must not be dropped silently
+        Query required = build("+abc +xyz", analyzer, filter);
+        assertEquals(0, searcher.count(required));
+
+        // a prohibited term that doesn't exist can't exclude any document
+        Query prohibited = build("abc -xyz", analyzer, filter);
+        assertEquals(2, searcher.count(prohibited));
+
+        indexReader.close();
+        directory.close();
+
+    }
+
+    @Test
+    public void testThatCacheOnlyReturnsFilterForLoadedReader() throws Exception {
+
+        Directory directory = newDirectory();
+        IndexWriter indexWriter = newIndexWriter(directory, new StandardAnalyzer());
+        addDoc(indexWriter, "f1", "abc");
+        indexWriter.commit();
+
+        DirectoryReader indexReader = DirectoryReader.open(directory);
+
+        TermExistenceFilterCache cache = new TermExistenceFilterCache(Collections.singletonList("f1"));
+        assertFalse(cache.forReader(indexReader).isPresent());
+
+        TermExistenceFilter filter = cache.load(indexReader).get();
+        assertSame(filter, cache.forReader(indexReader).get());
+        assertSame(filter, cache.load(indexReader).get());
+        assertFalse(filter.mayExist(new Term("f1", "def")));
+
+        addDoc(indexWriter, "f1", "def");
+        indexWriter.close();
+
+        DirectoryReader newIndexReader = DirectoryReader.openIfChanged(indexReader);
+        assertNotNull(newIndexReader);
+        assertFalse(cache.forReader(newIndexReader).isPresent());
+
+        TermExistenceFilter newFilter = cache.load(newIndexReader).get();
+        assertTrue(newFilter.mayExist(new Term("f1", "def")));
+
+        // the old reader must not be pruned by the terms of the new one
+        assertFalse(cache.forReader(indexReader).isPresent());
+
+        newIndexReader.close();
+        assertFalse(cache.forReader(newIndexReader).isPresent());
+
+        indexReader.close();
+        directory.close();
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatCacheRequiresFields() {
+        new TermExistenceFilterCache(Collections.emptyList());
+    }
+
+    Query build(String input, Analyzer analyzer, TermExistenceFilter filter) {
+        Map<String, Float> fields = new HashMap<>();
+        fields.put("f1", 1f);
+        fields.put("f2", 1f);
+        SearchFieldsAndBoosting searchFieldsAndBoosting = new SearchFieldsAndBoosting(FieldBoostModel.FIXED, fields,
+                fields, 0.8f);
+
+        DocumentFrequencyCorrection dfc = new DocumentFrequencyCorrection();
+        LuceneQueryBuilder queryBuilder = new LuceneQueryBuilder(new DependentTermQueryBuilder(dfc), analyzer,
+                searchFieldsAndBoosting, 0.01f, false, null, null, filter);
+
+        Query query = queryBuilder.createQuery(new WhiteSpaceQuerqyParser().parse(input));
+        dfc.finishedUserQuery();
+        return query;
+    }
+
+    static IndexWriter newIndexWriter(Directory directory, Analyzer analyzer) throws IOException {
+        IndexWriterConfig conf = new IndexWriterConfig(analyzer);
+        conf.setCodec(Codec.forName(TestUtil.LUCENE_CODEC));
+        return new IndexWriter(directory, conf);
+    }
+
+    static void addDoc(IndexWriter indexWriter, String fieldname, String value) throws IOException {
+        Document doc = new Document();
+        doc.add(new TextField(fieldname, value, Store.YES));
+        indexWriter.addDocument(doc);
+    }
+
+}
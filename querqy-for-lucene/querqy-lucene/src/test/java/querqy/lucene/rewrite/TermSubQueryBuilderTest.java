@@ -17,6 +17,7 @@ import org.junit.Test;
 
 import org.mockito.Mockito;
 import querqy.lucene.rewrite.BooleanQueryFactory.Clause;
+import querqy.lucene.rewrite.cache.AnalysisCache;
 import querqy.lucene.rewrite.cache.CacheKey;
 import querqy.lucene.rewrite.cache.TermQueryCache;
 import querqy.lucene.rewrite.cache.TermQueryCacheValue;
@@ -185,6 +186,48 @@ public class TermSubQueryBuilderTest {
 
     }
     
+    @Test
+    public void testThatAnalysisResultIsTakenFromAnalysisCache() throws Exception {
+
+        AnalysisCache analysisCache = new AnalysisCache(10);
+        TermSubQueryBuilder builder = new TermSubQueryBuilder(ANALYZER, null, analysisCache);
+
+        querqy.model.Term term = new querqy.model.Term(null, "f", "Abc", false);
+
+        TermSubQueryFactory factory1 = builder.termToFactory("f", term, ConstantFieldBoost.NORM_BOOST);
+        assertEquals(1, analysisCache.size());
+        assertEquals(0L, analysisCache.getHitCount());
+
+        TermSubQueryFactory factory2 = builder.termToFactory("f", term, ConstantFieldBoost.NORM_BOOST);
+        assertEquals(1, analysisCache.size());
+        assertEquals(1L, analysisCache.getHitCount());
+
+        assertThat(factory1.root, tqf(new Term("f", "abc")));
+        assertThat(factory2.root, tqf(new Term("f", "abc")));
+
+        // same chars in another field and with another analyzer
+        builder.termToFactory("g", term, ConstantFieldBoost.NORM_BOOST);
+        new TermSubQueryBuilder(new StandardAnalyzer(), null, analysisCache)
+                .termToFactory("f", term, ConstantFieldBoost.NORM_BOOST);
+        assertEquals(3, analysisCache.size());
+        assertEquals(1L, analysisCache.getHitCount());
+
+    }
+
+    @Test
+    public void testThatEmptyAnalysisResultIsCached() throws Exception {
+
+        AnalysisCache analysisCache = new AnalysisCache(10);
+        TermSubQueryBuilder builder = new TermSubQueryBuilder(ANALYZER, null, analysisCache);
+
+        querqy.model.Term term = new querqy.model.Term(null, "f", ".", false);
+
+        assertNull(builder.termToFactory("f", term, ConstantFieldBoost.NORM_BOOST));
+        assertNull(builder.termToFactory("f", term, ConstantFieldBoost.NORM_BOOST));
+        assertEquals(1L, analysisCache.getHitCount());
+
+    }
+
     public TQFMatcher tqf(Term term) {
         return new TQFMatcher(term);
     }
@@ -0,0 +1,122 @@
+package querqy.lucene.rewrite.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import querqy.lucene.rewrite.TermQueryFactory;
+import querqy.lucene.rewrite.prms.PRMSTermQuery;
+import querqy.model.Term;
+
+public class LRUTermQueryCacheTest {
+
+    @Test
+    public void testPutAndGet() {
+        final LRUTermQueryCache cache = new LRUTermQueryCache(1024L * 1024L);
+        final CacheKey key = key("f1", "a");
+        assertNull(cache.get(key));
+
+        final TermQueryCacheValue value = value("f1", "a");
+        cache.put(key, value);
+
+        assertSame(value, cache.get(key("f1", "a")));
+        assertNull(cache.get(key("f2", "a")));
+        assertEquals(1, cache.size());
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(2L, cache.getMissCount());
+        assertTrue(cache.ramBytesUsed() > value.ramBytesUsed());
+    }
+
+    @Test
+    public void testThatReplacedEntryIsNotCountedTwice() {
+        final LRUTermQueryCache cache = new LRUTermQueryCache(1024L * 1024L);
+        cache.put(key("f1", "a"), value("f1", "a"));
+        final long ramBytesUsed = cache.ramBytesUsed();
+        cache.put(key("f1", "a"), value("f1", "a"));
+        assertEquals(1, cache.size());
+        assertEquals(ramBytesUsed, cache.ramBytesUsed());
+    }
+
+    @Test
+    public void testThatLeastRecentlyUsedEntryIsEvictedWhenMemoryIsExceeded() {
+        final long entryBytes = entryBytes();
+        final LRUTermQueryCache cache = new LRUTermQueryCache(2L * entryBytes + entryBytes / 2L, 1);
+
+        cache.put(key("f1", "a"), value("f1", "a"));
+        cache.put(key("f1", "b"), value("f1", "b"));
+        cache.get(key("f1", "a"));
+        cache.put(key("f1", "c"), value("f1", "c"));
+
+        assertEquals(2, cache.size());
+        assertEquals(1L, cache.getEvictionCount());
+        assertEquals(2L * entryBytes, cache.ramBytesUsed());
+        assertTrue(cache.get(key("f1", "a")) != null);
+        assertNull(cache.get(key("f1", "b")));
+        assertTrue(cache.get(key("f1", "c")) != null);
+    }
+
+    @Test
+    public void testThatEntryLargerThanSegmentIsNotCached() {
+        final LRUTermQueryCache cache = new LRUTermQueryCache(entryBytes() - 1L, 1);
+        cache.put(key("f1", "a"), value("f1", "a"));
+        assertEquals(0, cache.size());
+        assertEquals(0L, cache.ramBytesUsed());
+        assertEquals(0L, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testClear() {
+        final LRUTermQueryCache cache = new LRUTermQueryCache(1024L * 1024L, 4);
+        for (int i = 0; i < 100; i++) {
+            cache.put(key("f1", "a" + i), value("f1", "a" + i));
+        }
+        assertEquals(100, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0L, cache.ramBytesUsed());
+    }
+
+    @Test
+    public void testThatRamUsageIsBoundedAcrossSegments() {
+        final long maxRamBytes = 20L * entryBytes();
+        final LRUTermQueryCache cache = new LRUTermQueryCache(maxRamBytes, 4);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(key("f1", "a" + i), value("f1", "a" + i));
+        }
+        assertTrue(cache.ramBytesUsed() <= maxRamBytes);
+        assertTrue(cache.getEvictionCount() > 0L);
+    }
+
+    @Test
+    public void testCacheKeyEqualsAndHashCode() {
+        final CacheKey key = key("f1", "abc");
+        final CacheKey sameKey = new CacheKey("f1", new Term(null, new StringBuilder("abc")));
+        assertEquals(key, sameKey);
+        assertEquals(key.hashCode(), sameKey.hashCode());
+        assertNotEquals(key, key("f2", "abc"));
+        assertNotEquals(key, key("f1", "abd"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatMaxRamBytesMustBePositive() {
+        new LRUTermQueryCache(0L);
+    }
+
+    private static long entryBytes() {
+        final LRUTermQueryCache cache = new LRUTermQueryCache(1024L * 1024L, 1);
+        cache.put(key("f1", "x"), value("f1", "x"));
+        return cache.ramBytesUsed();
+    }
+
+    private static CacheKey key(final String field, final String value) {
+        return new CacheKey(field, new Term(null, value));
+    }
+
+    private static TermQueryCacheValue value(final String field, final String value) {
+        final org.apache.lucene.index.Term term = new org.apache.lucene.index.Term(field, value);
+        return new TermQueryCacheValue(new TermQueryFactory(term), new PRMSTermQuery(term));
+    }
+}
@@ -0,0 +1,171 @@
+package querqy.lucene.rewrite.cache;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ReaderScopedCachesTest extends LuceneTestCase {
+
+    @Test
+    public void testThatCachesOfAlternatingReadersAreKept() throws IOException {
+
+        final Analyzer analyzer = new WhitespaceAnalyzer();
+        final Directory directory = newDirectory();
+        final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+
+        try {
+            addDoc(writer, "a");
+            writer.commit();
+
+            final ReaderScopedCaches<Object> caches = new ReaderScopedCaches<>();
+
+            try (final DirectoryReader reader1 = DirectoryReader.open(directory)) {
+
+                final Object cache1 = caches.get(reader1, Object::new).orElseThrow(AssertionError::new);
+
+                addDoc(writer, "b");
+                writer.commit();
+
+                try (final DirectoryReader reader2 = DirectoryReader.openIfChanged(reader1)) {
+
+                    assertNotNull(reader2);
+
+                    final Object cache2 = caches.get(reader2, Object::new).orElseThrow(AssertionError::new);
+                    assertNotSame(cache1, cache2);
+
+                    // old and new reader serve requests alternately while the new searcher is warmed up
+                    for (int i = 0; i < 3; i++) {
+                        assertSame(cache1, caches.get(reader1, Object::new).orElseThrow(AssertionError::new));
+                        assertSame(cache2, caches.get(reader2, Object::new).orElseThrow(AssertionError::new));
+                    }
+                    assertEquals(2, caches.getNumberOfReaders());
+                }
+
+                // the cache of a closed reader is dropped
+                assertEquals(1, caches.getNumberOfReaders());
+                assertSame(cache1, caches.get(reader1, Object::new).orElseThrow(AssertionError::new));
+            }
+
+            assertEquals(0, caches.getNumberOfReaders());
+
+        } finally {
+            writer.close();
+            directory.close();
+            analyzer.close();
+        }
+
+    }
+
+    @Test
+    public void testThatOldestCacheIsDroppedIfMaxReadersIsExceeded() throws IOException {
+
+        final Analyzer analyzer = new WhitespaceAnalyzer();
+        final Directory directory = newDirectory();
+        final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+
+        final List<DirectoryReader> readers = new ArrayList<>();
+        try {
+            final ReaderScopedCaches<Object> caches = new ReaderScopedCaches<>(2);
+            final List<Object> readerCaches = new ArrayList<>();
+
+            for (int i = 0; i < 3; i++) {
+                addDoc(writer, "a");
+                writer.commit();
+                final DirectoryReader reader = DirectoryReader.open(directory);
+                readers.add(reader);
+                readerCaches.add(caches.get(reader, Object::new).orElseThrow(AssertionError::new));
+            }
+
+            assertEquals(2, caches.getNumberOfReaders());
+            assertSame(readerCaches.get(1), caches.get(readers.get(1), Object::new).orElseThrow(AssertionError::new));
+            assertSame(readerCaches.get(2), caches.get(readers.get(2), Object::new).orElseThrow(AssertionError::new));
+
+            // the first reader is still open but its cache was dropped
+            assertNotSame(readerCaches.get(0), caches.get(readers.get(0), Object::new)
+                    .orElseThrow(AssertionError::new));
+
+        } finally {
+            IOUtils.close(readers);
+            writer.close();
+            directory.close();
+            analyzer.close();
+        }
+
+    }
+
+    @Test
+    public void testThatClosedListenerIsRegisteredOncePerReader() throws IOException {
+
+        final Analyzer analyzer = new WhitespaceAnalyzer();
+        final Directory directory = newDirectory();
+        final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+
+        try {
+            addDoc(writer, "a");
+            writer.commit();
+
+            try (final DirectoryReader reader1 = DirectoryReader.open(directory);
+                 final DirectoryReader reader2 = DirectoryReader.open(directory)) {
+
+                final IndexReader.CacheHelper cacheHelper = mock(IndexReader.CacheHelper.class);
+                when(cacheHelper.getKey()).thenReturn(reader1.getReaderCacheHelper().getKey());
+                final IndexReader reader = mock(IndexReader.class);
+                when(reader.getReaderCacheHelper()).thenReturn(cacheHelper);
+
+                final ReaderScopedCaches<Object> caches = new ReaderScopedCaches<>(1);
+
+                // the cache of the mocked reader is dropped and re-created each time the other reader is used
+                for (int i = 0; i < 3; i++) {
+                    assertTrue(caches.get(reader, Object::new).isPresent());
+                    assertTrue(caches.get(reader2, Object::new).isPresent());
+                }
+
+                verify(cacheHelper, times(1)).addClosedListener(any());
+            }
+
+        } finally {
+            writer.close();
+            directory.close();
+            analyzer.close();
+        }
+
+    }
+
+    @Test
+    public void testThatReaderWithoutCacheHelperIsNotCached() {
+        final IndexReader reader = mock(IndexReader.class);
+        assertFalse(new ReaderScopedCaches<>().get(reader, Object::new).isPresent());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatMaxReadersMustBePositive() {
+        new ReaderScopedCaches<>(0);
+    }
+
+    private static void addDoc(final IndexWriter writer, final String value) throws IOException {
+        final Document doc = new Document();
+        doc.add(new TextField("f1", value, Field.Store.NO));
+        writer.addDocument(doc);
+    }
+
+}
@@ -30,10 +30,16 @@ import querqy.lucene.rewrite.DocumentFrequencyCorrection;
 import querqy.lucene.rewrite.LuceneQueryBuilder;
 import querqy.lucene.rewrite.SearchFieldsAndBoosting;
 import querqy.lucene.rewrite.SearchFieldsAndBoosting.FieldBoostModel;
+import querqy.lucene.rewrite.TermQueryFactory;
+import querqy.lucene.rewrite.TermSubQueryFactory;
 import querqy.lucene.rewrite.TestUtil;
+import querqy.lucene.rewrite.cache.PRMSFieldProbabilityCache;
+import querqy.model.Term;
 import querqy.parser.WhiteSpaceQuerqyParser;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class PRMSFieldBoostTest extends LuceneTestCase {
@@ -117,6 +123,119 @@ public class PRMSFieldBoostTest extends LuceneTestCase {
         
     }
     
+    @Test
+    public void testThatSingleFieldGetsProbabilityOne() throws Exception {
+
+        Directory directory = newDirectory();
+        Analyzer analyzer = new StandardAnalyzer();
+
+        IndexWriterConfig conf = new IndexWriterConfig(analyzer);
+        conf.setCodec(Codec.forName(TestUtil.LUCENE_CODEC));
+        IndexWriter indexWriter = new IndexWriter(directory, conf);
+        addNumDocs("f1", "abc", indexWriter, 2);
+        indexWriter.close();
+
+        PRMSFieldBoost fieldBoost = new PRMSFieldBoost();
+        register(fieldBoost, "f1", "abc");
+
+        IndexReader indexReader = DirectoryReader.open(directory);
+        assertEquals(1f, fieldBoost.getBoost("f1", indexReader), 0.00001f);
+        assertEquals(0f, fieldBoost.getBoost("f2", indexReader), 0.00001f);
+
+        indexReader.close();
+        directory.close();
+        analyzer.close();
+    }
+
+    @Test
+    public void testThatProbabilitiesAreCachedPerReader() throws Exception {
+
+        Directory directory = newDirectory();
+        Analyzer analyzer = new StandardAnalyzer();
+
+        IndexWriterConfig conf = new IndexWriterConfig(analyzer);
+        conf.setCodec(Codec.forName(TestUtil.LUCENE_CODEC));
+        IndexWriter indexWriter = new IndexWriter(directory, conf);
+        addNumDocs("f1", "abc", indexWriter, 2);
+        addNumDocs("f1", "def", indexWriter, 4);
+        addNumDocs("f2", "abc", indexWriter, 4);
+        addNumDocs("f2", "def", indexWriter, 2);
+        indexWriter.commit();
+
+        PRMSFieldProbabilityCache cache = new PRMSFieldProbabilityCache(10);
+
+        DirectoryReader indexReader = DirectoryReader.open(directory);
+
+        PRMSFieldBoost fieldBoost1 = new PRMSFieldBoost(cache);
+        register(fieldBoost1, "f1", "abc");
+        register(fieldBoost1, "f2", "abc");
+        float f1Boost = fieldBoost1.getBoost("f1", indexReader);
+        assertEquals(2f, fieldBoost1.getBoost("f2", indexReader) / f1Boost, 0.00001f);
+
+        // same term and fields: the likelihoods must not be read again
+        PRMSQuery prmsQuery = Mockito.mock(PRMSQuery.class);
+        PRMSFieldBoost fieldBoost2 = new PRMSFieldBoost(cache);
+        registerPRMSQuery(fieldBoost2, "f1", "abc", prmsQuery);
+        registerPRMSQuery(fieldBoost2, "f2", "abc", prmsQuery);
+        assertEquals(f1Boost, fieldBoost2.getBoost("f1", indexReader), 0.00001f);
+        verify(prmsQuery, never()).calculateLikelihood(any(IndexReader.class));
+
+        PRMSFieldProbabilityCache.ReaderCache readerCache = cache.forReader(indexReader).get();
+        assertEquals(1, readerCache.size());
+        assertEquals(1L, readerCache.getHitCount());
+
+        // a different set of fields is a different entry
+        PRMSFieldBoost fieldBoost3 = new PRMSFieldBoost(cache);
+        register(fieldBoost3, "f1", "abc");
+        assertEquals(1f, fieldBoost3.getBoost("f1", indexReader), 0.00001f);
+        assertEquals(2, readerCache.size());
+
+        // a new reader gets its own probabilities
+        addNumDocs("f1", "abc", indexWriter, 6);
+        indexWriter.close();
+        DirectoryReader newIndexReader = DirectoryReader.openIfChanged(indexReader);
+        assertNotNull(newIndexReader);
+
+        PRMSFieldBoost fieldBoost4 = new PRMSFieldBoost(cache);
+        register(fieldBoost4, "f1", "abc");
+        register(fieldBoost4, "f2", "abc");
+        assertEquals(1f, fieldBoost4.getBoost("f2", newIndexReader) / fieldBoost4.getBoost("f1", newIndexReader),
+                0.00001f);
+        assertEquals(1, cache.forReader(newIndexReader).get().size());
+
+        // old and new reader serve requests alternately while the new searcher is warmed up: the probabilities of the
+        // old reader are still cached
+        PRMSQuery oldReaderQuery = Mockito.mock(PRMSQuery.class);
+        PRMSFieldBoost fieldBoost5 = new PRMSFieldBoost(cache);
+        registerPRMSQuery(fieldBoost5, "f1", "abc", oldReaderQuery);
+        registerPRMSQuery(fieldBoost5, "f2", "abc", oldReaderQuery);
+        assertEquals(f1Boost, fieldBoost5.getBoost("f1", indexReader), 0.00001f);
+        verify(oldReaderQuery, never()).calculateLikelihood(any(IndexReader.class));
+        assertSame(readerCache, cache.forReader(indexReader).get());
+        assertEquals(2, cache.getNumberOfReaders());
+
+        // the cached probabilities are dropped when the reader is closed
+        indexReader.close();
+        assertEquals(1, cache.getNumberOfReaders());
+        newIndexReader.close();
+        assertEquals(0, cache.getNumberOfReaders());
+        directory.close();
+        analyzer.close();
+    }
+
+    private static void register(PRMSFieldBoost fieldBoost, String fieldname, String value) {
+        org.apache.lucene.index.Term term = new org.apache.lucene.index.Term(fieldname, value);
+        fieldBoost.registerTermSubQuery(fieldname, new TermSubQueryFactory(new TermQueryFactory(term),
+                new PRMSTermQuery(term), fieldBoost), new Term(null, value));
+    }
+
+    private static void registerPRMSQuery(PRMSFieldBoost fieldBoost, String fieldname, String value,
+                                          PRMSQuery prmsQuery) {
+        org.apache.lucene.index.Term term = new org.apache.lucene.index.Term(fieldname, value);
+        fieldBoost.registerTermSubQuery(fieldname, new TermSubQueryFactory(new TermQueryFactory(term), prmsQuery,
+                fieldBoost), new Term(null, value));
+    }
+
     public static void addNumDocs(String fieldname, String value, IndexWriter indexWriter, int num) throws IOException {
         for (int i = 0; i < num; i++) {
             Document doc = new Document();
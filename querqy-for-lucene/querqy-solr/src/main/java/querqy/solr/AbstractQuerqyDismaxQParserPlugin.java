@@ -1,7 +1,9 @@
 package querqy.solr;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -19,34 +21,55 @@ import org.apache.solr.search.SolrCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import querqy.lucene.rewrite.cache.AnalysisCache;
 import querqy.lucene.rewrite.cache.CacheKey;
 import querqy.lucene.rewrite.cache.TermQueryCache;
 import querqy.lucene.rewrite.cache.TermQueryCacheValue;
+import querqy.lucene.rewrite.cache.PRMSFieldProbabilityCache;
+import querqy.lucene.rewrite.cache.TermExistenceFilterCache;
+import querqy.lucene.rewrite.cache.TermStatsCache;
 import querqy.parser.QuerqyParser;
 import querqy.parser.WhiteSpaceQuerqyParser;
 import querqy.rewrite.RewriteChain;
 import querqy.rewrite.RewriterFactory;
 import querqy.infologging.InfoLogging;
+import querqy.timing.TimingListener;
 import querqy.infologging.Sink;
 import querqy.lucene.GZIPAwareResourceLoader;
 
 /**
  * Abstract superclass for QuerqyDismaxQParserPlugins.
  */
-public abstract class AbstractQuerqyDismaxQParserPlugin extends QParserPlugin implements ResourceLoaderAware {
+public abstract class AbstractQuerqyDismaxQParserPlugin extends QParserPlugin implements ResourceLoaderAware,
+        Closeable {
 
     public static final String CONF_CACHE_NAME = "termQueryCache.name";
     public static final String CONF_CACHE_UPDATE = "termQueryCache.update";
+    public static final String CONF_TIMING_LISTENER = "timingListener";
+    public static final String CONF_ANALYSIS_CACHE_SIZE = "analysisCache.size";
+    public static final String CONF_TERM_STATS_CACHE_SIZE = "termStatsCache.size";
+    public static final String CONF_PRMS_FIELD_PROBABILITY_CACHE_SIZE = "prmsFieldProbabilityCache.size";
+    /**
+     * The fields (separated by whitespace) for which a {@link querqy.lucene.rewrite.TermExistenceFilter} will be
+     * used. The filter must be loaded by a {@link TermExistenceFilterLoader} when a new searcher is opened.
+     */
+    public static final String CONF_TERM_EXISTENCE_FILTER_FIELDS = "termExistenceFilter.fields";
 
     protected Logger logger = LoggerFactory.getLogger(getClass());
 
     protected NamedList<?> initArgs = null;
+    protected ResourceLoader resourceLoader = null;
     protected RewriteChain rewriteChain = null;
 
     protected SolrQuerqyParserFactory querqyParserFactory = null;
     protected String termQueryCacheName = null;
     protected boolean ignoreTermQueryCacheUpdates = true;
     protected InfoLogging infoLogging;
+    protected TimingListener timingListener = null;
+    protected AnalysisCache analysisCache = null;
+    protected TermStatsCache termStatsCache = null;
+    protected PRMSFieldProbabilityCache prmsFieldProbabilityCache = null;
+    protected TermExistenceFilterCache termExistenceFilterCache = null;
 
     public abstract QParser createParser(String qstr, SolrParams localParams, SolrParams params, SolrQueryRequest req,
                                          InfoLogging tracking, TermQueryCache termQueryCache);
@@ -59,9 +82,28 @@ public abstract class AbstractQuerqyDismaxQParserPlugin extends QParserPlugin im
     @Override
     public void inform(final ResourceLoader solrResourceLoader) throws IOException {
         ResourceLoader loader = new GZIPAwareResourceLoader(solrResourceLoader);
+        resourceLoader = loader;
 
         rewriteChain = loadRewriteChain(loader);
         infoLogging = loadInfoLogging(loader);
+        timingListener = loadTimingListener(loader);
+
+        final Integer analysisCacheSize = (Integer) initArgs.get(CONF_ANALYSIS_CACHE_SIZE);
+        analysisCache = (analysisCacheSize == null || analysisCacheSize < 1)
+                ? null : new AnalysisCache(analysisCacheSize);
+
+        final Integer termStatsCacheSize = (Integer) initArgs.get(CONF_TERM_STATS_CACHE_SIZE);
+        termStatsCache = (termStatsCacheSize == null || termStatsCacheSize < 1)
+                ? null : new TermStatsCache(termStatsCacheSize);
+
+        final Integer prmsFieldProbabilityCacheSize = (Integer) initArgs.get(CONF_PRMS_FIELD_PROBABILITY_CACHE_SIZE);
+        prmsFieldProbabilityCache = (prmsFieldProbabilityCacheSize == null || prmsFieldProbabilityCacheSize < 1)
+                ? null : new PRMSFieldProbabilityCache(prmsFieldProbabilityCacheSize);
+
+        final String termExistenceFilterFields = (String) initArgs.get(CONF_TERM_EXISTENCE_FILTER_FIELDS);
+        termExistenceFilterCache = (termExistenceFilterFields == null || termExistenceFilterFields.trim().isEmpty())
+                ? null
+                : new TermExistenceFilterCache(Arrays.asList(termExistenceFilterFields.trim().split("\\s+")));
 
         termQueryCacheName = (String) initArgs.get(CONF_CACHE_NAME);
 
@@ -76,6 +118,17 @@ public abstract class AbstractQuerqyDismaxQParserPlugin extends QParserPlugin im
         this.querqyParserFactory = loadSolrQuerqyParserFactory(loader, initArgs);
     }
 
+    /**
+     * Called by Solr when the core is closed or reloaded. Stops the background reloading of rules that were loaded
+     * for this plugin.
+     */
+    @Override
+    public void close() {
+        if (resourceLoader != null) {
+            SimpleCommonRulesRewriterFactory.cancelReloads(resourceLoader);
+        }
+    }
+
     protected SolrQuerqyParserFactory loadSolrQuerqyParserFactory(final ResourceLoader loader,
                                                                   final NamedList<?> args) throws IOException {
 
@@ -118,9 +171,15 @@ public abstract class AbstractQuerqyDismaxQParserPlugin extends QParserPlugin im
 
         final NamedList<?> chainConfig = (NamedList<?>) initArgs.get("rewriteChain");
         final List<RewriterFactory> factories = new ArrayList<>();
+        int resultCacheSize = 0;
 
         if (chainConfig != null) {
 
+            final Integer resultCacheSizeConf = (Integer) chainConfig.get("resultCacheSize");
+            if (resultCacheSizeConf != null) {
+                resultCacheSize = resultCacheSizeConf;
+            }
+
             @SuppressWarnings("unchecked")
             final List<NamedList<?>> rewriterConfigs = (List<NamedList<?>>) chainConfig.getAll("rewriter");
             if (rewriterConfigs != null) {
@@ -151,8 +210,15 @@ public abstract class AbstractQuerqyDismaxQParserPlugin extends QParserPlugin im
             }
         }
 
-        return new RewriteChain(factories);
+        return new RewriteChain(factories, resultCacheSize);
+
+    }
 
+    private TimingListener loadTimingListener(final ResourceLoader loader) {
+        final String className = (String) initArgs.get(CONF_TIMING_LISTENER);
+        return (className == null || className.trim().isEmpty())
+                ? null
+                : loader.newInstance(className.trim(), TimingListener.class);
     }
 
     private InfoLogging loadInfoLogging(final ResourceLoader loader) throws IOException {
@@ -250,4 +316,24 @@ public abstract class AbstractQuerqyDismaxQParserPlugin extends QParserPlugin im
         return rewriteChain;
     }
 
+    public TimingListener getTimingListener() {
+        return timingListener;
+    }
+
+    public AnalysisCache getAnalysisCache() {
+        return analysisCache;
+    }
+
+    public TermStatsCache getTermStatsCache() {
+        return termStatsCache;
+    }
+
+    public PRMSFieldProbabilityCache getPRMSFieldProbabilityCache() {
+        return prmsFieldProbabilityCache;
+    }
+
+    public TermExistenceFilterCache getTermExistenceFilterCache() {
+        return termExistenceFilterCache;
+    }
+
 }
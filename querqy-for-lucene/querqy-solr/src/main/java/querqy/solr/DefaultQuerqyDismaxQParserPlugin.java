@@ -14,7 +14,9 @@ public class DefaultQuerqyDismaxQParserPlugin extends AbstractQuerqyDismaxQParse
                                final SolrQueryRequest req, final InfoLogging infoLogging,
                                final TermQueryCache termQueryCache) {
          return new QuerqyDismaxQParser(qstr, localParams, params, req,
-                 createQuerqyParser(qstr, localParams, params, req), rewriteChain, infoLogging, termQueryCache);
+                 createQuerqyParser(qstr, localParams, params, req), rewriteChain, infoLogging, termQueryCache,
+                 timingListener, analysisCache, termStatsCache, prmsFieldProbabilityCache,
+                 termExistenceFilterCache);
    }
 
 }
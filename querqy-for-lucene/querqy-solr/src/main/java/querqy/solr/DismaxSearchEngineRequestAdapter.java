@@ -30,7 +30,12 @@ import querqy.lucene.PhraseBoosting.PhraseBoostFieldParams;
 import querqy.lucene.QuerySimilarityScoring;
 import querqy.lucene.LuceneSearchEngineRequestAdapter;
 import querqy.lucene.rewrite.SearchFieldsAndBoosting;
+import querqy.lucene.rewrite.TermExistenceFilter;
+import querqy.lucene.rewrite.cache.AnalysisCache;
 import querqy.lucene.rewrite.cache.TermQueryCache;
+import querqy.lucene.rewrite.cache.PRMSFieldProbabilityCache;
+import querqy.lucene.rewrite.cache.TermExistenceFilterCache;
+import querqy.lucene.rewrite.cache.TermStatsCache;
 import querqy.model.ParametrizedRawQuery;
 import querqy.model.QuerqyQuery;
 import querqy.model.RawQuery;
@@ -39,6 +44,8 @@ import querqy.parser.QuerqyParser;
 import querqy.rewrite.RewriteChain;
 import querqy.infologging.InfoLogging;
 import querqy.infologging.InfoLoggingContext;
+import querqy.timing.RequestTimings;
+import querqy.timing.TimingListener;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -88,6 +95,10 @@ public class DismaxSearchEngineRequestAdapter implements LuceneSearchEngineReque
     private final SolrParams solrParams;
     private final SolrQueryRequest request;
     private final TermQueryCache termQueryCache;
+    private final AnalysisCache analysisCache;
+    private final TermStatsCache termStatsCache;
+    private final PRMSFieldProbabilityCache prmsFieldProbabilityCache;
+    private final TermExistenceFilterCache termExistenceFilterCache;
     private final QuerqyParser querqyParser;
     private final RewriteChain rewriteChain;
     private final List<FieldParams> allPhraseFields;
@@ -95,6 +106,7 @@ public class DismaxSearchEngineRequestAdapter implements LuceneSearchEngineReque
     private final Map<String, Object> context;
     private final QParser qParser;
     private final InfoLoggingContext infoLoggingContext;
+    private final TimingListener timingListener;
 
     private Map<String, String> additionalParams = null;
 
@@ -103,7 +115,112 @@ public class DismaxSearchEngineRequestAdapter implements LuceneSearchEngineReque
                                             final QuerqyParser querqyParser, final RewriteChain rewriteChain,
                                             final InfoLogging infoLogging,
                                             final TermQueryCache termQueryCache) {
+        this(qParser, request, queryString, solrParams, querqyParser, rewriteChain, infoLogging, termQueryCache,
+                null);
+    }
+
+    /**
+     * @param timingListener A listener that is shared between requests or null. If the debug output for timings is
+     *                       enabled for this request, the timings will also be collected in a {@link RequestTimings}
+     *                       object under the {@link RequestTimings#CONTEXT_KEY} key of the context.
+     */
+    public DismaxSearchEngineRequestAdapter(final QParser qParser, final SolrQueryRequest request,
+                                            final String queryString, final SolrParams solrParams,
+                                            final QuerqyParser querqyParser, final RewriteChain rewriteChain,
+                                            final InfoLogging infoLogging,
+                                            final TermQueryCache termQueryCache,
+                                            final TimingListener timingListener) {
+        this(qParser, request, queryString, solrParams, querqyParser, rewriteChain, infoLogging, termQueryCache,
+                timingListener, null);
+    }
+
+    /**
+     * @param timingListener A listener that is shared between requests or null. If the debug output for timings is
+     *                       enabled for this request, the timings will also be collected in a {@link RequestTimings}
+     *                       object under the {@link RequestTimings#CONTEXT_KEY} key of the context.
+     * @param analysisCache The cache for query-time analysis results that is shared between requests or null
+     */
+    public DismaxSearchEngineRequestAdapter(final QParser qParser, final SolrQueryRequest request,
+                                            final String queryString, final SolrParams solrParams,
+                                            final QuerqyParser querqyParser, final RewriteChain rewriteChain,
+                                            final InfoLogging infoLogging,
+                                            final TermQueryCache termQueryCache,
+                                            final TimingListener timingListener,
+                                            final AnalysisCache analysisCache) {
+        this(qParser, request, queryString, solrParams, querqyParser, rewriteChain, infoLogging, termQueryCache,
+                timingListener, analysisCache, null);
+    }
+
+    /**
+     * @param timingListener A listener that is shared between requests or null. If the debug output for timings is
+     *                       enabled for this request, the timings will also be collected in a {@link RequestTimings}
+     *                       object under the {@link RequestTimings#CONTEXT_KEY} key of the context.
+     * @param analysisCache The cache for query-time analysis results that is shared between requests or null
+     * @param termStatsCache The cache for the term statistics of document frequency correction that is shared between
+     *                       requests or null
+     */
+    public DismaxSearchEngineRequestAdapter(final QParser qParser, final SolrQueryRequest request,
+                                            final String queryString, final SolrParams solrParams,
+                                            final QuerqyParser querqyParser, final RewriteChain rewriteChain,
+                                            final InfoLogging infoLogging,
+                                            final TermQueryCache termQueryCache,
+                                            final TimingListener timingListener,
+                                            final AnalysisCache analysisCache,
+                                            final TermStatsCache termStatsCache) {
+        this(qParser, request, queryString, solrParams, querqyParser, rewriteChain, infoLogging, termQueryCache,
+                timingListener, analysisCache, termStatsCache, null);
+    }
+
+    /**
+     * @param timingListener A listener that is shared between requests or null. If the debug output for timings is
+     *                       enabled for this request, the timings will also be collected in a {@link RequestTimings}
+     *                       object under the {@link RequestTimings#CONTEXT_KEY} key of the context.
+     * @param analysisCache The cache for query-time analysis results that is shared between requests or null
+     * @param termStatsCache The cache for the term statistics of document frequency correction that is shared between
+     *                       requests or null
+     * @param prmsFieldProbabilityCache The cache for the field probabilities of the PRMS field boost model that is
+     *                                  shared between requests or null
+     */
+    public DismaxSearchEngineRequestAdapter(final QParser qParser, final SolrQueryRequest request,
+                                            final String queryString, final SolrParams solrParams,
+                                            final QuerqyParser querqyParser, final RewriteChain rewriteChain,
+                                            final InfoLogging infoLogging,
+                                            final TermQueryCache termQueryCache,
+                                            final TimingListener timingListener,
+                                            final AnalysisCache analysisCache,
+                                            final TermStatsCache termStatsCache,
+                                            final PRMSFieldProbabilityCache prmsFieldProbabilityCache) {
+        this(qParser, request, queryString, solrParams, querqyParser, rewriteChain, infoLogging, termQueryCache,
+                timingListener, analysisCache, termStatsCache, prmsFieldProbabilityCache, null);
+    }
+
+    /**
+     * @param timingListener A listener that is shared between requests or null. If the debug output for timings is
+     *                       enabled for this request, the timings will also be collected in a {@link RequestTimings}
+     *                       object under the {@link RequestTimings#CONTEXT_KEY} key of the context.
+     * @param analysisCache The cache for query-time analysis results that is shared between requests or null
+     * @param termStatsCache The cache for the term statistics of document frequency correction that is shared between
+     *                       requests or null
+     * @param prmsFieldProbabilityCache The cache for the field probabilities of the PRMS field boost model that is
+     *                                  shared between requests or null
+     * @param termExistenceFilterCache The holder of the filter for the terms that exist in the index or null. The
+     *                                 filter is only applied if it was loaded for the searcher of this request.
+     */
+    public DismaxSearchEngineRequestAdapter(final QParser qParser, final SolrQueryRequest request,
+                                            final String queryString, final SolrParams solrParams,
+                                            final QuerqyParser querqyParser, final RewriteChain rewriteChain,
+                                            final InfoLogging infoLogging,
+                                            final TermQueryCache termQueryCache,
+                                            final TimingListener timingListener,
+                                            final AnalysisCache analysisCache,
+                                            final TermStatsCache termStatsCache,
+                                            final PRMSFieldProbabilityCache prmsFieldProbabilityCache,
+                                            final TermExistenceFilterCache termExistenceFilterCache) {
         this.qParser = qParser;
+        this.analysisCache = analysisCache;
+        this.termStatsCache = termStatsCache;
+        this.prmsFieldProbabilityCache = prmsFieldProbabilityCache;
+        this.termExistenceFilterCache = termExistenceFilterCache;
         this.userQueryString = queryString;
         this.solrParams = solrParams;
         this.termQueryCache = termQueryCache;
@@ -115,6 +232,14 @@ public class DismaxSearchEngineRequestAdapter implements LuceneSearchEngineReque
         this.rewriteChain = rewriteChain;
         this.context = new HashMap<>();
 
+        if (solrParams.getBool(DEBUG_TIMING, false) && isDebugQuery()) {
+            final RequestTimings requestTimings = new RequestTimings();
+            context.put(RequestTimings.CONTEXT_KEY, requestTimings);
+            this.timingListener = TimingListener.combine(timingListener, requestTimings);
+        } else {
+            this.timingListener = timingListener;
+        }
+
         final int ps0 = solrParams.getInt(PS, 0);
         final int ps2 = solrParams.getInt(PS2, ps0);
         final int ps3 = solrParams.getInt(PS3, ps0);
@@ -159,6 +284,28 @@ public class DismaxSearchEngineRequestAdapter implements LuceneSearchEngineReque
         return Optional.ofNullable(termQueryCache);
     }
 
+    @Override
+    public Optional<AnalysisCache> getAnalysisCache() {
+        return Optional.ofNullable(analysisCache);
+    }
+
+    @Override
+    public Optional<TermStatsCache> getTermStatsCache() {
+        return Optional.ofNullable(termStatsCache);
+    }
+
+    @Override
+    public Optional<PRMSFieldProbabilityCache> getPRMSFieldProbabilityCache() {
+        return Optional.ofNullable(prmsFieldProbabilityCache);
+    }
+
+    @Override
+    public Optional<TermExistenceFilter> getTermExistenceFilter() {
+        return termExistenceFilterCache == null
+                ? Optional.empty()
+                : termExistenceFilterCache.forReader(request.getSearcher().getIndexReader());
+    }
+
     @Override
     public boolean addQuerqyBoostQueriesToMainQuery() {
         return QBOOST_METHOD_OPT.equals(solrParams.get(QBOOST_METHOD, QBOOST_METHOD_DEFAULT));
@@ -282,6 +429,11 @@ public class DismaxSearchEngineRequestAdapter implements LuceneSearchEngineReque
         return Optional.ofNullable(infoLoggingContext);
     }
 
+    @Override
+    public Optional<TimingListener> getTimingListener() {
+        return Optional.ofNullable(timingListener);
+    }
+
     @Override
     public Analyzer getQueryAnalyzer() {
         return request.getSchema().getQueryAnalyzer();
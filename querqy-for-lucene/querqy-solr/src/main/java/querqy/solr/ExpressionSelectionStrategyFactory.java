@@ -12,7 +12,10 @@ public class ExpressionSelectionStrategyFactory implements FactoryAdapter<Select
     public SelectionStrategyFactory createFactory(final String strategyId, final NamedList<?> args,
                                                   final ResourceLoader resourceLoader) {
         // TODO: pass strategyId
-        return new ExpressionCriteriaSelectionStrategyFactory();
+        final Integer cacheSize = (Integer) args.get("cacheSize");
+        return cacheSize == null
+                ? new ExpressionCriteriaSelectionStrategyFactory()
+                : new ExpressionCriteriaSelectionStrategyFactory(cacheSize);
     }
 
     @Override
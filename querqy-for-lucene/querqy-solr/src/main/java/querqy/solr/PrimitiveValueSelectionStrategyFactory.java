@@ -11,7 +11,10 @@ public class PrimitiveValueSelectionStrategyFactory implements FactoryAdapter<Se
     public SelectionStrategyFactory createFactory(final String strategyId, final NamedList<?> args,
                                                   final ResourceLoader resourceLoader) {
         // TODO: pass strategyId
-        return new querqy.rewrite.commonrules.select.PrimitiveValueSelectionStrategyFactory();
+        final Integer cacheSize = (Integer) args.get("cacheSize");
+        return cacheSize == null
+                ? new querqy.rewrite.commonrules.select.PrimitiveValueSelectionStrategyFactory()
+                : new querqy.rewrite.commonrules.select.PrimitiveValueSelectionStrategyFactory(cacheSize);
     }
 
     @Override
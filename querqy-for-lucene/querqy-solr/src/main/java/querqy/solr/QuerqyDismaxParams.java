@@ -191,4 +191,10 @@ public interface QuerqyDismaxParams {
      * Turn info logging on/off. Default = 'off'
      */
     String INFO_LOGGING = "querqy.infoLogging";
+
+    /**
+     * Add the timings of the query processing phases and of each rewriter to the debug output. Only applies if
+     * debugQuery is enabled. Default = 'off'
+     */
+    String DEBUG_TIMING = "querqy.debug.timing";
 }
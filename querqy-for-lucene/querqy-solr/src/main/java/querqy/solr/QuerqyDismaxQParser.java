@@ -19,11 +19,16 @@ import org.apache.solr.search.WrappedQuery;
 import querqy.lucene.LuceneQueries;
 import querqy.lucene.QueryParsingController;
 import querqy.lucene.LuceneSearchEngineRequestAdapter;
+import querqy.lucene.rewrite.cache.AnalysisCache;
+import querqy.lucene.rewrite.cache.PRMSFieldProbabilityCache;
+import querqy.lucene.rewrite.cache.TermExistenceFilterCache;
 import querqy.lucene.rewrite.cache.TermQueryCache;
+import querqy.lucene.rewrite.cache.TermStatsCache;
 import querqy.parser.QuerqyParser;
 import querqy.rewrite.RewriteChain;
 import querqy.rewrite.SearchEngineRequestAdapter;
 import querqy.infologging.InfoLogging;
+import querqy.timing.TimingListener;
 
 import java.util.List;
 import java.util.Map;
@@ -58,6 +63,132 @@ public class QuerqyDismaxQParser extends QParser {
                                final SolrQueryRequest req, final QuerqyParser querqyParser,
                                final RewriteChain rewriteChain, final InfoLogging infoLogging,
                                final TermQueryCache termQueryCache) {
+        this(qstr, localParams, params, req, querqyParser, rewriteChain, infoLogging, termQueryCache, null);
+    }
+
+    /**
+     * Constructor for the QParser
+     *
+     * @param qstr        The part of the query string specific to this parser
+     * @param localParams The set of parameters that are specific to this QParser.  See http://wiki.apache.org/solr/LocalParams
+     * @param params      The rest of the {@link SolrParams}
+     * @param req         The original {@link SolrQueryRequest}
+     * @param querqyParser The Querqy query parser to be applied to the input query string
+     * @param rewriteChain The chain of rewriters to be applied to this request
+     * @param infoLogging The info logging object for this request
+     * @param termQueryCache The term query cache.
+     * @param timingListener The listener for the timings of the query processing phases or null
+     *
+     */
+    public QuerqyDismaxQParser(final String qstr, final SolrParams localParams, final SolrParams params,
+                               final SolrQueryRequest req, final QuerqyParser querqyParser,
+                               final RewriteChain rewriteChain, final InfoLogging infoLogging,
+                               final TermQueryCache termQueryCache, final TimingListener timingListener) {
+        this(qstr, localParams, params, req, querqyParser, rewriteChain, infoLogging, termQueryCache, timingListener,
+                null);
+    }
+
+    /**
+     * Constructor for the QParser
+     *
+     * @param qstr        The part of the query string specific to this parser
+     * @param localParams The set of parameters that are specific to this QParser.  See http://wiki.apache.org/solr/LocalParams
+     * @param params      The rest of the {@link SolrParams}
+     * @param req         The original {@link SolrQueryRequest}
+     * @param querqyParser The Querqy query parser to be applied to the input query string
+     * @param rewriteChain The chain of rewriters to be applied to this request
+     * @param infoLogging The info logging object for this request
+     * @param termQueryCache The term query cache.
+     * @param timingListener The listener for the timings of the query processing phases or null
+     * @param analysisCache The cache for query-time analysis results or null
+     *
+     */
+    public QuerqyDismaxQParser(final String qstr, final SolrParams localParams, final SolrParams params,
+                               final SolrQueryRequest req, final QuerqyParser querqyParser,
+                               final RewriteChain rewriteChain, final InfoLogging infoLogging,
+                               final TermQueryCache termQueryCache, final TimingListener timingListener,
+                               final AnalysisCache analysisCache) {
+        this(qstr, localParams, params, req, querqyParser, rewriteChain, infoLogging, termQueryCache, timingListener,
+                analysisCache, null);
+    }
+
+    /**
+     * Constructor for the QParser
+     *
+     * @param qstr        The part of the query string specific to this parser
+     * @param localParams The set of parameters that are specific to this QParser.  See http://wiki.apache.org/solr/LocalParams
+     * @param params      The rest of the {@link SolrParams}
+     * @param req         The original {@link SolrQueryRequest}
+     * @param querqyParser The Querqy query parser to be applied to the input query string
+     * @param rewriteChain The chain of rewriters to be applied to this request
+     * @param infoLogging The info logging object for this request
+     * @param termQueryCache The term query cache.
+     * @param timingListener The listener for the timings of the query processing phases or null
+     * @param analysisCache The cache for query-time analysis results or null
+     * @param termStatsCache The cache for the term statistics of document frequency correction or null
+     *
+     */
+    public QuerqyDismaxQParser(final String qstr, final SolrParams localParams, final SolrParams params,
+                               final SolrQueryRequest req, final QuerqyParser querqyParser,
+                               final RewriteChain rewriteChain, final InfoLogging infoLogging,
+                               final TermQueryCache termQueryCache, final TimingListener timingListener,
+                               final AnalysisCache analysisCache, final TermStatsCache termStatsCache) {
+        this(qstr, localParams, params, req, querqyParser, rewriteChain, infoLogging, termQueryCache, timingListener,
+                analysisCache, termStatsCache, null);
+    }
+
+    /**
+     * Constructor for the QParser
+     *
+     * @param qstr        The part of the query string specific to this parser
+     * @param localParams The set of parameters that are specific to this QParser.  See http://wiki.apache.org/solr/LocalParams
+     * @param params      The rest of the {@link SolrParams}
+     * @param req         The original {@link SolrQueryRequest}
+     * @param querqyParser The Querqy query parser to be applied to the input query string
+     * @param rewriteChain The chain of rewriters to be applied to this request
+     * @param infoLogging The info logging object for this request
+     * @param termQueryCache The term query cache.
+     * @param timingListener The listener for the timings of the query processing phases or null
+     * @param analysisCache The cache for query-time analysis results or null
+     * @param termStatsCache The cache for the term statistics of document frequency correction or null
+     * @param prmsFieldProbabilityCache The cache for the field probabilities of the PRMS field boost model or null
+     *
+     */
+    public QuerqyDismaxQParser(final String qstr, final SolrParams localParams, final SolrParams params,
+                               final SolrQueryRequest req, final QuerqyParser querqyParser,
+                               final RewriteChain rewriteChain, final InfoLogging infoLogging,
+                               final TermQueryCache termQueryCache, final TimingListener timingListener,
+                               final AnalysisCache analysisCache, final TermStatsCache termStatsCache,
+                               final PRMSFieldProbabilityCache prmsFieldProbabilityCache) {
+        this(qstr, localParams, params, req, querqyParser, rewriteChain, infoLogging, termQueryCache, timingListener,
+                analysisCache, termStatsCache, prmsFieldProbabilityCache, null);
+    }
+
+    /**
+     * Constructor for the QParser
+     *
+     * @param qstr        The part of the query string specific to this parser
+     * @param localParams The set of parameters that are specific to this QParser.  See http://wiki.apache.org/solr/LocalParams
+     * @param params      The rest of the {@link SolrParams}
+     * @param req         The original {@link SolrQueryRequest}
+     * @param querqyParser The Querqy query parser to be applied to the input query string
+     * @param rewriteChain The chain of rewriters to be applied to this request
+     * @param infoLogging The info logging object for this request
+     * @param termQueryCache The term query cache.
+     * @param timingListener The listener for the timings of the query processing phases or null
+     * @param analysisCache The cache for query-time analysis results or null
+     * @param termStatsCache The cache for the term statistics of document frequency correction or null
+     * @param prmsFieldProbabilityCache The cache for the field probabilities of the PRMS field boost model or null
+     * @param termExistenceFilterCache The holder of the filter for the terms that exist in the index or null
+     *
+     */
+    public QuerqyDismaxQParser(final String qstr, final SolrParams localParams, final SolrParams params,
+                               final SolrQueryRequest req, final QuerqyParser querqyParser,
+                               final RewriteChain rewriteChain, final InfoLogging infoLogging,
+                               final TermQueryCache termQueryCache, final TimingListener timingListener,
+                               final AnalysisCache analysisCache, final TermStatsCache termStatsCache,
+                               final PRMSFieldProbabilityCache prmsFieldProbabilityCache,
+                               final TermExistenceFilterCache termExistenceFilterCache) {
         super(qstr, localParams, params, req);
         final String q = Objects.requireNonNull(qstr).trim();
 
@@ -69,7 +200,8 @@ public class QuerqyDismaxQParser extends QParser {
         this.querqyParser = querqyParser;
 
         requestAdapter = new DismaxSearchEngineRequestAdapter(this, req, userQueryString,
-                SolrParams.wrapDefaults(localParams, params), querqyParser, rewriteChain, infoLogging, termQueryCache);
+                SolrParams.wrapDefaults(localParams, params), querqyParser, rewriteChain, infoLogging, termQueryCache,
+                timingListener, analysisCache, termStatsCache, prmsFieldProbabilityCache, termExistenceFilterCache);
 
 
         controller = createQueryParsingController();
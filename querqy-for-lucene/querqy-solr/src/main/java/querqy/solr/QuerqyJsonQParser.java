@@ -6,9 +6,14 @@ import org.apache.solr.request.SolrQueryRequest;
 import querqy.infologging.InfoLogging;
 import querqy.lucene.JsonQueryParsingController;
 import querqy.lucene.QueryParsingController;
+import querqy.lucene.rewrite.cache.AnalysisCache;
+import querqy.lucene.rewrite.cache.PRMSFieldProbabilityCache;
+import querqy.lucene.rewrite.cache.TermExistenceFilterCache;
 import querqy.lucene.rewrite.cache.TermQueryCache;
+import querqy.lucene.rewrite.cache.TermStatsCache;
 import querqy.parser.QuerqyParser;
 import querqy.rewrite.RewriteChain;
+import querqy.timing.TimingListener;
 
 import java.util.Map;
 
@@ -24,7 +29,54 @@ public class QuerqyJsonQParser extends QuerqyDismaxQParser {
                              final SolrQueryRequest req, final QuerqyParser querqyParser,
                              final RewriteChain rewriteChain, final InfoLogging infoLogging,
                              final TermQueryCache termQueryCache) {
-        super(qstr, localParams, params, req, querqyParser, rewriteChain, infoLogging, termQueryCache);
+        this(qstr, localParams, params, req, querqyParser, rewriteChain, infoLogging, termQueryCache, null);
+    }
+
+    public QuerqyJsonQParser(final String qstr, final SolrParams localParams, final SolrParams params,
+                             final SolrQueryRequest req, final QuerqyParser querqyParser,
+                             final RewriteChain rewriteChain, final InfoLogging infoLogging,
+                             final TermQueryCache termQueryCache, final TimingListener timingListener) {
+        this(qstr, localParams, params, req, querqyParser, rewriteChain, infoLogging, termQueryCache, timingListener,
+                null);
+    }
+
+    public QuerqyJsonQParser(final String qstr, final SolrParams localParams, final SolrParams params,
+                             final SolrQueryRequest req, final QuerqyParser querqyParser,
+                             final RewriteChain rewriteChain, final InfoLogging infoLogging,
+                             final TermQueryCache termQueryCache, final TimingListener timingListener,
+                             final AnalysisCache analysisCache) {
+        this(qstr, localParams, params, req, querqyParser, rewriteChain, infoLogging, termQueryCache, timingListener,
+                analysisCache, null);
+    }
+
+    public QuerqyJsonQParser(final String qstr, final SolrParams localParams, final SolrParams params,
+                             final SolrQueryRequest req, final QuerqyParser querqyParser,
+                             final RewriteChain rewriteChain, final InfoLogging infoLogging,
+                             final TermQueryCache termQueryCache, final TimingListener timingListener,
+                             final AnalysisCache analysisCache, final TermStatsCache termStatsCache) {
+        this(qstr, localParams, params, req, querqyParser, rewriteChain, infoLogging, termQueryCache, timingListener,
+                analysisCache, termStatsCache, null);
+    }
+
+    public QuerqyJsonQParser(final String qstr, final SolrParams localParams, final SolrParams params,
+                             final SolrQueryRequest req, final QuerqyParser querqyParser,
+                             final RewriteChain rewriteChain, final InfoLogging infoLogging,
+                             final TermQueryCache termQueryCache, final TimingListener timingListener,
+                             final AnalysisCache analysisCache, final TermStatsCache termStatsCache,
+                             final PRMSFieldProbabilityCache prmsFieldProbabilityCache) {
+        this(qstr, localParams, params, req, querqyParser, rewriteChain, infoLogging, termQueryCache, timingListener,
+                analysisCache, termStatsCache, prmsFieldProbabilityCache, null);
+    }
+
+    public QuerqyJsonQParser(final String qstr, final SolrParams localParams, final SolrParams params,
+                             final SolrQueryRequest req, final QuerqyParser querqyParser,
+                             final RewriteChain rewriteChain, final InfoLogging infoLogging,
+                             final TermQueryCache termQueryCache, final TimingListener timingListener,
+                             final AnalysisCache analysisCache, final TermStatsCache termStatsCache,
+                             final PRMSFieldProbabilityCache prmsFieldProbabilityCache,
+                             final TermExistenceFilterCache termExistenceFilterCache) {
+        super(qstr, localParams, params, req, querqyParser, rewriteChain, infoLogging, termQueryCache,
+                timingListener, analysisCache, termStatsCache, prmsFieldProbabilityCache, termExistenceFilterCache);
     }
 
     @Override
@@ -13,6 +13,8 @@ public class QuerqyJsonQParserPlugin extends AbstractQuerqyDismaxQParserPlugin {
                                final SolrQueryRequest req, final InfoLogging infoLogging,
                                final TermQueryCache termQueryCache) {
          return new QuerqyJsonQParser(qstr, localParams, params, req,
-                 createQuerqyParser(qstr, localParams, params, req), rewriteChain, infoLogging, termQueryCache);
+                 createQuerqyParser(qstr, localParams, params, req), rewriteChain, infoLogging, termQueryCache,
+                 timingListener, analysisCache, termStatsCache, prmsFieldProbabilityCache,
+                 termExistenceFilterCache);
    }
 }
@@ -4,18 +4,32 @@
 package querqy.solr;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.solr.common.util.ExecutorUtil;
 import org.apache.solr.common.util.NamedList;
+import org.apache.solr.util.DefaultSolrThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import querqy.rewrite.RewriterFactory;
 import querqy.rewrite.commonrules.select.ExpressionCriteriaSelectionStrategyFactory;
 import querqy.rewrite.commonrules.QuerqyParserFactory;
 import querqy.rewrite.commonrules.WhiteSpaceQuerqyParserFactory;
+import querqy.rewrite.commonrules.model.RulesIndexType;
 import querqy.rewrite.commonrules.select.SelectionStrategyFactory;
 
 /**
@@ -26,6 +40,18 @@ public class SimpleCommonRulesRewriterFactory implements FactoryAdapter<Rewriter
     private static final SelectionStrategyFactory DEFAULT_SELECTION_STRATEGY_FACTORY =
             new ExpressionCriteriaSelectionStrategyFactory();
 
+    private static final Logger LOG = LoggerFactory.getLogger(SimpleCommonRulesRewriterFactory.class);
+
+    private static final ScheduledExecutorService RELOAD_EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                final Thread thread = new Thread(runnable, "querqy-rules-reload");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // The scheduled reload tasks by the resource loader that they use to read the rules
+    private static final Map<ResourceLoader, List<ScheduledFuture<?>>> RELOAD_TASKS = new IdentityHashMap<>();
+
     /*
      * (non-Javadoc)
      *
@@ -86,10 +112,111 @@ public class SimpleCommonRulesRewriterFactory implements FactoryAdapter<Rewriter
             querqyParser = new WhiteSpaceQuerqyParserFactory();
         }
 
-        return new querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory(id,
-                new InputStreamReader(resourceLoader.openResource(rulesResourceName), "UTF-8"), querqyParser,
-                ignoreCase == null || ignoreCase, selectionStrategyFactories, DEFAULT_SELECTION_STRATEGY_FACTORY,
-                buildTermCache == null || buildTermCache);
+        // optional rules that were compiled using querqy.rewrite.commonrules.SimpleCommonRulesCompiler. They will only
+        // be used if they were compiled from the current rules.
+        final String compiledRulesResourceName = (String) args.get("compiledRules");
+        final InputStream compiledRules = compiledRulesResourceName == null
+                ? null : resourceLoader.openResource(compiledRulesResourceName);
+
+        // optional number of threads for parsing the rules in parallel
+        final Integer parserThreads = (Integer) args.get("rules.parserThreads");
+        final ExecutorService parserExecutor = parserThreads != null && parserThreads > 1
+                ? ExecutorUtil.newMDCAwareFixedThreadPool(parserThreads,
+                        new DefaultSolrThreadFactory("querqy-rules-parser"))
+                : null;
+
+        // optional type of the index for looking up the rules input: CHAR_TRIE (default) or TOKEN_ID
+        final String indexTypeName = (String) args.get("rules.indexType");
+        final RulesIndexType indexType = indexTypeName == null
+                ? RulesIndexType.CHAR_TRIE : RulesIndexType.valueOf(indexTypeName.trim().toUpperCase(Locale.ROOT));
+
+        // optional maximum number of combinations of query terms per position that are looked up in the rules. There
+        // is no limit by default.
+        final Integer maxCombinationsPerPosition = (Integer) args.get("rules.maxCombinationsPerPosition");
+
+        final querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory factory;
+        try {
+            final querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory.Builder builder =
+                    querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory.builder(id,
+                            new InputStreamReader(resourceLoader.openResource(rulesResourceName), "UTF-8"),
+                            querqyParser)
+                    .setIgnoreCase(ignoreCase == null || ignoreCase)
+                    .setSelectionStrategyFactories(selectionStrategyFactories)
+                    .setDefaultSelectionStrategyFactory(DEFAULT_SELECTION_STRATEGY_FACTORY)
+                    .setBuildTermCache(buildTermCache == null || buildTermCache)
+                    .setCompiledRules(compiledRules)
+                    .setParserExecutor(parserExecutor)
+                    .setIndexType(indexType);
+            if (maxCombinationsPerPosition != null) {
+                builder.setMaxCombinationsPerPosition(maxCombinationsPerPosition);
+            }
+            factory = builder.build();
+        } finally {
+            if (parserExecutor != null) {
+                parserExecutor.shutdownNow();
+            }
+        }
+
+        // optional interval in seconds for checking the rules resource for changes. Changed rules will be parsed in
+        // the background and replace the current rules without reloading the core.
+        final Integer reloadInterval = (Integer) args.get("rules.reloadInterval");
+        if (reloadInterval != null && reloadInterval > 0) {
+            scheduleReload(factory, rulesResourceName, resourceLoader, reloadInterval);
+        }
+
+        return factory;
+    }
+
+    private static void scheduleReload(final querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory factory,
+                                       final String rulesResourceName, final ResourceLoader resourceLoader,
+                                       final int reloadInterval) {
+
+        final String rewriterId = factory.getRewriterId();
+
+        final ScheduledFuture<?> future = RELOAD_EXECUTOR.scheduleWithFixedDelay(() -> {
+
+            try {
+                if (factory.reloadIfChanged(new InputStreamReader(resourceLoader.openResource(rulesResourceName),
+                        "UTF-8"))) {
+                    LOG.info("Reloaded rules for rewriter {} from {}, version {}", rewriterId, rulesResourceName,
+                            factory.getRulesVersion());
+                }
+            } catch (final Exception e) {
+                LOG.error("Could not reload rules for rewriter " + rewriterId + " from " + rulesResourceName
+                        + ". Keeping the current rules.", e);
+            }
+
+        }, reloadInterval, reloadInterval, TimeUnit.SECONDS);
+
+        synchronized (RELOAD_TASKS) {
+            RELOAD_TASKS.computeIfAbsent(resourceLoader, loader -> new ArrayList<>()).add(future);
+        }
+
+    }
+
+    /**
+     * Cancels the periodic reloading of all rules that were loaded using the given {@link ResourceLoader}. This must
+     * be called when the core that owns the resource loader is closed, as the reload tasks would otherwise keep the
+     * resource loader and the rules of the closed core alive.
+     *
+     * @param resourceLoader The resource loader that was passed to
+     *                       {@link #createFactory(String, NamedList, ResourceLoader)}
+     */
+    static void cancelReloads(final ResourceLoader resourceLoader) {
+        final List<ScheduledFuture<?>> futures;
+        synchronized (RELOAD_TASKS) {
+            futures = RELOAD_TASKS.remove(resourceLoader);
+        }
+        if (futures != null) {
+            futures.forEach(future -> future.cancel(false));
+        }
+    }
+
+    static int getNumberOfScheduledReloads(final ResourceLoader resourceLoader) {
+        synchronized (RELOAD_TASKS) {
+            final List<ScheduledFuture<?>> futures = RELOAD_TASKS.get(resourceLoader);
+            return futures == null ? 0 : futures.size();
+        }
     }
 
     @Override
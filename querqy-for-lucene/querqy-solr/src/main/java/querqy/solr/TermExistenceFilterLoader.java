@@ -0,0 +1,73 @@
+package querqy.solr;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import org.apache.solr.core.AbstractSolrEventListener;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import querqy.lucene.rewrite.TermExistenceFilter;
+import querqy.lucene.rewrite.cache.TermExistenceFilterCache;
+
+/**
+ * <p>Builds the {@link TermExistenceFilter} of a Querqy query parser plugin for a new searcher.</p>
+ *
+ * <p>The fields of the filter are configured at the query parser plugin
+ * ({@link AbstractQuerqyDismaxQParserPlugin#CONF_TERM_EXISTENCE_FILTER_FIELDS}). This listener must be registered for
+ * the firstSearcher and newSearcher events so that the filter exists before the searcher is registered. Requests
+ * against a searcher for which no filter was built are not filtered.</p>
+ */
+public class TermExistenceFilterLoader extends AbstractSolrEventListener {
+
+    static final Logger LOG = LoggerFactory.getLogger(TermExistenceFilterLoader.class);
+
+    public static final String CONF_Q_PARSER_PLUGIN = "qParserPlugin";
+
+    public TermExistenceFilterLoader(final SolrCore core) {
+        super(core);
+    }
+
+    protected AbstractQuerqyDismaxQParserPlugin getQParserPlugin() {
+        final String parserName = (String) getArgs().get(CONF_Q_PARSER_PLUGIN);
+        if (parserName == null) {
+            throw new RuntimeException("Missing configuration property: " + CONF_Q_PARSER_PLUGIN);
+        }
+        final AbstractQuerqyDismaxQParserPlugin qParserPlugin = (AbstractQuerqyDismaxQParserPlugin) getCore()
+                .getQueryPlugin(parserName);
+        if (qParserPlugin == null) {
+            throw new RuntimeException("No query parser plugin for name '" + parserName + "'");
+        }
+        return qParserPlugin;
+    }
+
+    @Override
+    public void newSearcher(final SolrIndexSearcher newSearcher, final SolrIndexSearcher currentSearcher) {
+
+        final TermExistenceFilterCache filterCache = getQParserPlugin().getTermExistenceFilterCache();
+        if (filterCache == null) {
+            LOG.warn("No fields configured for the Querqy term existence filter. Set {} at the query parser plugin.",
+                    AbstractQuerqyDismaxQParserPlugin.CONF_TERM_EXISTENCE_FILTER_FIELDS);
+            return;
+        }
+
+        final long t1 = System.currentTimeMillis();
+        try {
+            final Optional<TermExistenceFilter> filter = filterCache.load(newSearcher.getIndexReader());
+            if (LOG.isInfoEnabled()) {
+                if (filter.isPresent()) {
+                    LOG.info("Built Querqy term existence filter for fields {} in {}ms, using {} bytes",
+                            filterCache.getFields(), System.currentTimeMillis() - t1, filter.get().ramBytesUsed());
+                } else {
+                    LOG.info("Querqy term existence filter not supported by the index reader");
+                }
+            }
+        } catch (final IOException e) {
+            LOG.error("Error building Querqy term existence filter", e);
+        }
+
+    }
+
+}
@@ -1,16 +1,26 @@
 package querqy.solr;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TopDocs;
+import org.apache.solr.common.util.ExecutorUtil;
 import org.apache.solr.core.AbstractSolrEventListener;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.search.SolrCache;
 import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.util.DefaultSolrThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,6 +49,19 @@ public class TermQueryCachePreloader extends AbstractSolrEventListener {
     public static final String CONF_CACHE_NAME = "cacheName";
     
     public static final String CONF_TEST_FOR_HITS = "testForHits";
+
+    /**
+     * The number of threads to use for preloading. Defaults to 1.
+     */
+    public static final String CONF_THREADS = "threads";
+
+    /**
+     * The max. time in milliseconds to spend on preloading. Preloading stops when the budget is exceeded. Not limited
+     * by default.
+     */
+    public static final String CONF_TIME_BUDGET_MILLIS = "timeBudgetMillis";
+
+    public static final int DEFAULT_THREADS = 1;
     
     public TermQueryCachePreloader(SolrCore core) {
         super(core);
@@ -83,6 +106,26 @@ public class TermQueryCachePreloader extends AbstractSolrEventListener {
         return doTest != null && doTest;
     }
     
+    protected int getNumThreads() {
+        final Object threads = getArgs().get(CONF_THREADS);
+        if (threads == null) {
+            return DEFAULT_THREADS;
+        }
+        final int numThreads = ((Number) threads).intValue();
+        if (numThreads < 1) {
+            throw new IllegalArgumentException(CONF_THREADS + " > 0 expected. Found: " + numThreads);
+        }
+        return numThreads;
+    }
+
+    /**
+     * @return The time budget in millis or a value &lt; 1 if the time for preloading is not limited.
+     */
+    protected long getTimeBudgetMillis() {
+        final Object budget = getArgs().get(CONF_TIME_BUDGET_MILLIS);
+        return budget == null ? -1L : ((Number) budget).longValue();
+    }
+    
     @Override
     public void newSearcher(final SolrIndexSearcher newSearcher, final SolrIndexSearcher currentSearcher) {
 
@@ -91,10 +134,18 @@ public class TermQueryCachePreloader extends AbstractSolrEventListener {
         final Map<String, Float> preloadFields = getPreloadFields();
         
         final boolean testForHits = isTestForHits();
+
+        final int numThreads = getNumThreads();
+
+        final long timeBudgetMillis = getTimeBudgetMillis();
         
-        LOG.info("Starting preload for Querqy TermQueryCache. Testing for hits: {}", testForHits);
+        LOG.info("Starting preload for Querqy TermQueryCache. Testing for hits: {}, threads: {}, time budget: {}",
+                testForHits, numThreads, timeBudgetMillis > 0 ? timeBudgetMillis + "ms" : "unlimited");
         final long t1 = System.currentTimeMillis();
-        
+        final long deadline = timeBudgetMillis > 0 ? t1 + timeBudgetMillis : Long.MAX_VALUE;
+
+        final LongAdder numPreloaded = new LongAdder();
+        final AtomicBoolean timeBudgetExceeded = new AtomicBoolean(false);
         
         final AbstractQuerqyDismaxQParserPlugin queryPluginPlugin = getQParserPlugin();
         final RewriteChain rewriteChain = queryPluginPlugin.getRewriteChain();
@@ -105,20 +156,23 @@ public class TermQueryCachePreloader extends AbstractSolrEventListener {
             if (!factories.isEmpty()) {
             
                 final TermSubQueryBuilder termSubQueryBuilder = new TermSubQueryBuilder(newSearcher.getSchema().getQueryAnalyzer(), cache);
+
+                // split the work by factory and field
+                final List<Callable<Void>> tasks = new ArrayList<>();
                 for (final RewriterFactory factory : factories) {
-                    for (final Term term: factory.getCacheableGenerableTerms()) {
-                        final String field = term.getField();
-                        if (field != null) {
-                            if (preloadFields.containsKey(field)) {
-                                preloadTerm(newSearcher, termSubQueryBuilder, field, term, testForHits, cache);
-                            }
-                        } else {
-                            for (final String fieldname : preloadFields.keySet()) {
-                                preloadTerm(newSearcher, termSubQueryBuilder, fieldname, term, testForHits, cache);
-                            }
+                    final Set<Term> terms = factory.getCacheableGenerableTerms();
+                    if (!terms.isEmpty()) {
+                        for (final String fieldname : preloadFields.keySet()) {
+                            tasks.add(() -> {
+                                preloadField(newSearcher, termSubQueryBuilder, fieldname, terms, testForHits, cache,
+                                        deadline, numPreloaded, timeBudgetExceeded);
+                                return null;
+                            });
                         }
                     }
                 }
+
+                runTasks(tasks, numThreads);
                 
             }
             
@@ -126,10 +180,69 @@ public class TermQueryCachePreloader extends AbstractSolrEventListener {
         
         if (LOG.isInfoEnabled()) {
             final long t2 = System.currentTimeMillis();
-            LOG.info("Finished preload for Querqy TermQueryCache after {}ms", (t2 - t1));
+            final long count = numPreloaded.sum();
+            final long millis = t2 - t1;
+            LOG.info("Finished preload for Querqy TermQueryCache after {}ms. Preloaded {} entries ({} entries/s).{}",
+                    millis, count, millis > 0 ? (count * 1000L) / millis : count,
+                    timeBudgetExceeded.get() ? " Stopped preloading as the time budget was exceeded." : "");
         }
         
     }
+
+    protected void runTasks(final List<Callable<Void>> tasks, final int numThreads) {
+
+        if (numThreads < 2 || tasks.size() < 2) {
+            for (final Callable<Void> task : tasks) {
+                try {
+                    task.call();
+                } catch (final Exception e) {
+                    LOG.error("Error preloading Querqy TermQueryCache", e);
+                }
+            }
+            return;
+        }
+
+        final ExecutorService executor = ExecutorUtil.newMDCAwareFixedThreadPool(Math.min(numThreads, tasks.size()),
+                new DefaultSolrThreadFactory("querqyTermQueryCachePreloader"));
+        try {
+            for (final Future<Void> future : executor.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (final ExecutionException e) {
+                    LOG.error("Error preloading Querqy TermQueryCache", e.getCause());
+                }
+            }
+        } catch (final InterruptedException e) {
+            LOG.warn("Interrupted while preloading Querqy TermQueryCache");
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    protected void preloadField(final IndexSearcher searcher, final TermSubQueryBuilder termSubQueryBuilder,
+                                final String field, final Set<Term> terms, final boolean testForHits,
+                                final TermQueryCache cache, final long deadline, final LongAdder numPreloaded,
+                                final AtomicBoolean timeBudgetExceeded) {
+
+        for (final Term term : terms) {
+
+            if (timeBudgetExceeded.get() || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+
+            if (System.currentTimeMillis() > deadline) {
+                timeBudgetExceeded.set(true);
+                return;
+            }
+
+            final String termField = term.getField();
+            if (termField == null || termField.equals(field)) {
+                preloadTerm(searcher, termSubQueryBuilder, field, term, testForHits, cache);
+                numPreloaded.increment();
+            }
+        }
+    }
     
 
     protected void preloadTerm(final IndexSearcher searcher, final TermSubQueryBuilder termSubQueryBuilder,
@@ -19,6 +19,7 @@ public class WordBreakCompoundRewriterFactory implements FactoryAdapter<Rewriter
     private static final int DEFAULT_MAX_COMBINE_LENGTH = 30;
     private static final int DEFAULT_MIN_BREAK_LENGTH = 3;
     private static final int DEFAULT_MAX_DECOMPOUND_EXPANSIONS = 3;
+    private static final int DEFAULT_CACHE_SIZE = 0;
 
     @Override
     public RewriterFactory createFactory(final String id, final NamedList<?> args, ResourceLoader resourceLoader) {
@@ -62,6 +63,12 @@ public class WordBreakCompoundRewriterFactory implements FactoryAdapter<Rewriter
         // terms that are "protected", i.e. false positives that should never be split and never be result of a combination
         final List<String> protectedWords = (List<String>) args.get("protectedWords");
 
+        // the max. number of docFreq and (de)compounding results to cache per searcher, 0 disables the cache
+        final Integer cacheSize = getOrDefault(args, "cacheSize", DEFAULT_CACHE_SIZE);
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("cacheSize >= 0 expected. Found: " + cacheSize);
+        }
+
         // the indexReader has to be supplied on a per-request basis from a request thread-local
         final Supplier<IndexReader> indexReaderSupplier = () ->
                 SolrRequestInfo.getRequestInfo().getReq().getSearcher().getIndexReader();
@@ -69,7 +76,7 @@ public class WordBreakCompoundRewriterFactory implements FactoryAdapter<Rewriter
         return new querqy.lucene.contrib.rewrite.wordbreak.WordBreakCompoundRewriterFactory(id, indexReaderSupplier,
                 morphology, indexField, lowerCaseInput, minSuggestionFreq, maxCombineLength, minBreakLength,
                 reverseCompoundTriggerWords, alwaysAddReverseCompounds, maxDecompoundExpansions,
-                verifyDecompoundCollation, protectedWords);
+                verifyDecompoundCollation, protectedWords, cacheSize);
     }
 
     @Override
@@ -114,5 +114,30 @@ public class AbstractQuerqyDismaxQParserPluginTest {
 
     }
 
+    @Test
+    public void testThatRulesReloadingIsCancelledOnClose() throws Exception {
+
+        final NamedList<Object> rewriterConfig = new NamedList<>();
+        rewriterConfig.add("class", "querqy.solr.SimpleCommonRulesRewriterFactory");
+        rewriterConfig.add("id", "common1");
+        rewriterConfig.add("rules", "solr/collection1/conf/rules-cache.txt");
+        rewriterConfig.add("rules.reloadInterval", 3600);
+
+        final NamedList<Object> chainConfig = new NamedList<>();
+        chainConfig.add("rewriter", rewriterConfig);
+
+        final NamedList<Object> args = new NamedList<>();
+        args.add("rewriteChain", chainConfig);
+
+        plugin.init(args);
+        plugin.inform(new ClasspathResourceLoader(getClass().getClassLoader()));
+
+        assertEquals(1, SimpleCommonRulesRewriterFactory.getNumberOfScheduledReloads(plugin.resourceLoader));
+
+        plugin.close();
+
+        assertEquals(0, SimpleCommonRulesRewriterFactory.getNumberOfScheduledReloads(plugin.resourceLoader));
+
+    }
 
 }